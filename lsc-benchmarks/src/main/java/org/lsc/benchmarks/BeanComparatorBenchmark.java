@@ -0,0 +1,124 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lsc.LscModifications;
+import org.lsc.Task;
+import org.lsc.beans.BeanComparator;
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the differences calculation between a source and a destination
+ * entry, for the usual user and group shapes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanComparatorBenchmark {
+
+	/** Number of values of the member attribute of the groups */
+	@Param({ "100", "10000" })
+	public int groupSize;
+
+	private Task task;
+
+	private IBean srcUser;
+
+	private IBean sameDstUser;
+
+	private IBean changedDstUser;
+
+	private IBean srcGroup;
+
+	private IBean changedDstGroup;
+
+	@Setup
+	public void setUp() throws Exception {
+		task = SyntheticBeans.newTask("beanComparatorBenchmark");
+		srcUser = SyntheticBeans.newUser(42);
+		sameDstUser = SyntheticBeans.newUser(42);
+		changedDstUser = SyntheticBeans.withChangedValues(SyntheticBeans.withChangedValues(srcUser, "telephoneNumber", 1), "memberOf", 3);
+		srcGroup = SyntheticBeans.newGroup(42, groupSize);
+		changedDstGroup = SyntheticBeans.withChangedValues(srcGroup, "member", groupSize / 100 + 1);
+	}
+
+	@Benchmark
+	public LscModifications createUser() throws LscServiceException {
+		return BeanComparator.calculateModifications(task, srcUser, null);
+	}
+
+	@Benchmark
+	public LscModifications unchangedUser() throws LscServiceException {
+		return BeanComparator.calculateModifications(task, srcUser, sameDstUser);
+	}
+
+	@Benchmark
+	public LscModifications changedUser() throws LscServiceException {
+		return BeanComparator.calculateModifications(task, srcUser, changedDstUser);
+	}
+
+	@Benchmark
+	public LscModifications changedGroup() throws LscServiceException {
+		return BeanComparator.calculateModifications(task, srcGroup, changedDstGroup);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lsc.LscModifications;
+import org.lsc.Task;
+import org.lsc.beans.BeanComparator;
+import org.lsc.beans.IBean;
+import org.lsc.utils.output.CsvLayout;
+import org.lsc.utils.output.LdifLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Cost of the formatting of the applied modifications by the LDIF and CSV
+ * layouts, and of the bean copy done for each entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+	private IBean user;
+
+	private LscModifications createUser;
+
+	private LscModifications changeUser;
+
+	private CsvLayout csvLayout;
+
+	private ILoggingEvent createUserEvent;
+
+	@Setup
+	public void setUp() throws Exception {
+		Task task = SyntheticBeans.newTask("layoutBenchmark");
+		user = SyntheticBeans.newUser(42);
+		createUser = BeanComparator.calculateModifications(task, user, null);
+		changeUser = BeanComparator.calculateModifications(task, user,
+						SyntheticBeans.withChangedValues(SyntheticBeans.withChangedValues(user, "telephoneNumber", 1), "memberOf", 3));
+
+		csvLayout = new CsvLayout();
+		csvLayout.setSeparator(";");
+		csvLayout.setAttrs("dn;uid;cn;sn;givenName;mail;telephoneNumber;employeeNumber");
+		csvLayout.start();
+
+		Logger logger = new LoggerContext().getLogger(LayoutBenchmark.class);
+		createUserEvent = new LoggingEvent("org.lsc", logger, Level.INFO, createUser.toString(), null, new Object[] { createUser });
+	}
+
+	@Benchmark
+	public String ldifCreate() {
+		return LdifLayout.format(createUser);
+	}
+
+	@Benchmark
+	public String ldifModify() {
+		return LdifLayout.format(changeUser);
+	}
+
+	@Benchmark
+	public String csvCreate() {
+		return csvLayout.doLayout(createUserEvent);
+	}
+
+	@Benchmark
+	public IBean cloneBean() throws CloneNotSupportedException {
+		return user.clone();
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.lsc.Task;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+import org.lsc.configuration.ForceSyncOptionsType;
+import org.lsc.configuration.PluginDestinationServiceType;
+import org.lsc.configuration.PluginSourceServiceType;
+import org.lsc.configuration.TaskType;
+import org.lsc.exception.LscConfigurationException;
+
+/**
+ * Builds the synthetic entries used by the benchmarks.
+ * 
+ * The beans mimic the cardinalities of a typical directory: users with
+ * around twenty mostly single-valued attributes and a few dozen group
+ * memberships, and groups with a large member attribute.
+ */
+public final class SyntheticBeans {
+
+	/** Number of groups each synthetic user is a member of */
+	public static final int GROUPS_PER_USER = 25;
+
+	/** The datasets written by the synthetic destination service */
+	public static final List<String> WRITE_DATASETS = Collections.unmodifiableList(Arrays.asList(new String[] {
+			"objectClass", "uid", "cn", "sn", "givenName", "displayName", "mail", "telephoneNumber",
+			"mobile", "employeeNumber", "employeeType", "departmentNumber", "title", "description",
+			"ou", "l", "postalAddress", "preferredLanguage", "memberOf", "member" }));
+
+	private static final String BASE_DN = "dc=lsc-project,dc=org";
+
+	private SyntheticBeans() {
+	}
+
+	/**
+	 * Get the distinguished name of a synthetic user
+	 * @param index the user number
+	 * @return the distinguished name
+	 */
+	public static String userDn(int index) {
+		return "uid=" + uid(index) + ",ou=People," + BASE_DN;
+	}
+
+	/**
+	 * Get the distinguished name of a synthetic group
+	 * @param index the group number
+	 * @return the distinguished name
+	 */
+	public static String groupDn(int index) {
+		return String.format("cn=group%05d,ou=Groups,%s", index, BASE_DN);
+	}
+
+	/**
+	 * Build a synthetic user entry
+	 * @param index the user number, used to derive all the values
+	 * @return the user bean
+	 */
+	public static IBean newUser(int index) {
+		String uid = uid(index);
+		IBean bean = new SimpleBean();
+		bean.setMainIdentifier(userDn(index));
+		bean.setDataset("objectClass", values("top", "person", "organizationalPerson", "inetOrgPerson"));
+		bean.setDataset("uid", values(uid));
+		bean.setDataset("cn", values("Firstname" + index + " Lastname" + index));
+		bean.setDataset("sn", values("Lastname" + index));
+		bean.setDataset("givenName", values("Firstname" + index));
+		bean.setDataset("displayName", values("Firstname" + index + " Lastname" + index));
+		bean.setDataset("mail", values(uid + "@lsc-project.org", "firstname" + index + ".lastname" + index + "@lsc-project.org"));
+		bean.setDataset("telephoneNumber", values(String.format("+33 1 23 45 %02d %02d", index % 100, (index / 100) % 100)));
+		bean.setDataset("mobile", values(String.format("+33 6 12 34 %02d %02d", index % 100, (index / 100) % 100)));
+		bean.setDataset("employeeNumber", values(Integer.toString(100000 + index)));
+		bean.setDataset("employeeType", values("employee"));
+		bean.setDataset("departmentNumber", values(Integer.toString(index % 50)));
+		bean.setDataset("title", values("Engineer"));
+		bean.setDataset("description", values("Synthetic user number " + index));
+		bean.setDataset("ou", values("Department " + (index % 50)));
+		bean.setDataset("l", values("Paris"));
+		bean.setDataset("postalAddress", values("1 rue de la Paix$75002 Paris$France"));
+		bean.setDataset("preferredLanguage", values("fr"));
+		Set<Object> memberOf = new LinkedHashSet<Object>();
+		for (int i = 0; i < GROUPS_PER_USER; i++) {
+			memberOf.add(groupDn((index + i * 7) % 1000));
+		}
+		bean.setDataset("memberOf", memberOf);
+		return bean;
+	}
+
+	/**
+	 * Build a synthetic group entry
+	 * @param index the group number
+	 * @param members the number of values of the member attribute
+	 * @return the group bean
+	 */
+	public static IBean newGroup(int index, int members) {
+		IBean bean = new SimpleBean();
+		bean.setMainIdentifier(groupDn(index));
+		bean.setDataset("objectClass", values("top", "groupOfNames"));
+		bean.setDataset("cn", values(String.format("group%05d", index)));
+		bean.setDataset("description", values("Synthetic group number " + index));
+		Set<Object> member = new LinkedHashSet<Object>();
+		for (int i = 0; i < members; i++) {
+			member.add(userDn(i));
+		}
+		bean.setDataset("member", member);
+		return bean;
+	}
+
+	/**
+	 * Build a copy of a bean where some values of a dataset have been
+	 * replaced, as seen when an entry changed since the last synchronization
+	 * @param bean the original bean
+	 * @param dataset the dataset to modify
+	 * @param changes the number of values to replace
+	 * @return the modified copy
+	 * @throws CloneNotSupportedException thrown if the bean can not be cloned
+	 */
+	public static IBean withChangedValues(IBean bean, String dataset, int changes) throws CloneNotSupportedException {
+		IBean copy = bean.clone();
+		List<Object> values = new ArrayList<Object>(bean.getDatasetById(dataset));
+		for (int i = 0; i < changes && i < values.size(); i++) {
+			values.set(values.size() - 1 - i, "changed" + i + "-" + values.get(values.size() - 1 - i));
+		}
+		copy.setDataset(dataset, new LinkedHashSet<Object>(values));
+		return copy;
+	}
+
+	/**
+	 * Build a task synchronizing between two {@link SyntheticService}
+	 * instances with the force synchronization policy
+	 * @param name the task name
+	 * @return the task
+	 * @throws LscConfigurationException thrown if the task can not be instantiated
+	 */
+	public static Task newTask(String name) throws LscConfigurationException {
+		TaskType taskType = new TaskType();
+		taskType.setName(name);
+		PluginSourceServiceType source = new PluginSourceServiceType();
+		source.setName(name + "-src");
+		source.setImplementationClass(SyntheticService.class.getName());
+		taskType.setPluginSourceService(source);
+		PluginDestinationServiceType destination = new PluginDestinationServiceType();
+		destination.setName(name + "-dst");
+		destination.setImplementationClass(SyntheticService.class.getName());
+		taskType.setPluginDestinationService(destination);
+		taskType.setForceSyncOptions(new ForceSyncOptionsType());
+		return new Task(taskType);
+	}
+
+	private static String uid(int index) {
+		return String.format("user%05d", index);
+	}
+
+	private static Set<Object> values(String... values) {
+		return new LinkedHashSet<Object>(Arrays.asList((Object[]) values));
+	}
+}
@@ -45,14 +45,27 @@
  */
 package org.lsc;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.naming.CommunicationException;
 
@@ -60,14 +73,25 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import org.lsc.LscDatasetModification.LscDatasetModificationType;
 import org.lsc.beans.BeanComparator;
+import org.lsc.beans.BeanComparisonContext;
 import org.lsc.beans.IBean;
-import org.lsc.beans.syncoptions.ISyncOptions;
+import org.lsc.beans.syncoptions.CompiledSyncPlan;
+import org.lsc.beans.syncoptions.PropertiesBasedSyncOptions;
 import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.PivotTransformationType.Transformation;
+import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceCommunicationException;
 import org.lsc.exception.LscServiceException;
+import org.lsc.jndi.AbstractSimpleJndiService;
+import org.lsc.service.FingerprintStore;
 import org.lsc.service.IAsynchronousService;
+import org.lsc.service.IBatchReadableService;
+import org.lsc.service.IBatchWritableService;
+import org.lsc.service.IPushedChangesService;
+import org.lsc.service.IResumableService;
 import org.lsc.service.IService;
+import org.lsc.service.ISortedService;
+import org.lsc.service.IStreamingService;
 import org.lsc.utils.LSCStructuralLogger;
 import org.lsc.utils.ScriptingEvaluator;
 import org.slf4j.Logger;
@@ -82,6 +106,9 @@ public abstract class AbstractSynchronize {
 
 	static final Logger LOGGER = LoggerFactory.getLogger(AbstractSynchronize.class);
 
+	/** Separator between the pivot values in the pivot keys */
+	private static final char PIVOT_KEY_SEPARATOR = '\u0000';
+
 	/** List of configured options. */
 	private static Options options = new Options();
 
@@ -123,6 +150,12 @@ public abstract class AbstractSynchronize {
 	 */
 	private int threads;
 
+	/**
+	 * The synchronization threads budget, shared by the pools of all the
+	 * tasks running at the same time
+	 */
+	private Semaphore workers;
+
 	/**
 	 * Maximum time waiting for synchronizing threads tasks to finish (in seconds)
 	 * This is the global synchronization task time - 3600 by default
@@ -130,7 +163,32 @@ public abstract class AbstractSynchronize {
 	private int timeLimit;
 
 	/**
-	 * Map used to keep trace of all running threads
+	 * Number of modifications applied together to the destination, if it
+	 * supports it. Default to 1: modifications are applied one by one
+	 */
+	private int batchSize;
+
+	/**
+	 * Maximum time a modification waits for its batch to be full before
+	 * being applied (in milliseconds) - 1000 by default
+	 */
+	private long batchDelay;
+
+	/**
+	 * Whether the scripts and the entries of all the tasks are profiled, see
+	 * {@link ScriptProfiler}. Tasks may also be profiled by their own setting
+	 */
+	private boolean profile;
+
+	/**
+	 * Time above which a profiled entry is logged (in milliseconds), 0 to use
+	 * the task setting
+	 */
+	private long slowEntryThreshold;
+
+	/**
+	 * Map used to keep trace of all running threads, updated by the
+	 * concurrently running tasks
 	 */
 	private Map<String, Thread> asynchronousThreads;
 	
@@ -144,141 +202,286 @@ public abstract class AbstractSynchronize {
 	 */
 	protected AbstractSynchronize() {
 		timeLimit = 3600;
-		asynchronousThreads = new HashMap<String, Thread>();
-		mapSTasks = new HashMap<String, AsynchronousRunner>();
+		batchSize = 1;
+		batchDelay = 1000;
+		asynchronousThreads = new ConcurrentHashMap<String, Thread>();
+		mapSTasks = new ConcurrentHashMap<String, AsynchronousRunner>();
 	}
 
 	/**
 	 * Clean the destination LDAP directory (delete objects not present in
 	 * source).
 	 * 
-	 * @param syncName
-	 *            the synchronization name
-	 * @param srcService
-	 *            the source service (JDBC or JNDI)
-	 * @param dstJndiService
-	 *            the jndi destination service
+	 * The pivots of all the source entries are read first, then each
+	 * destination pivot is looked up in this list: the entries found there
+	 * are kept without any further request. The other ones are handed to the
+	 * thread pool, which searches them in the source as the clean filter or
+	 * request defines it, and deletes them according to the delete
+	 * condition if they are not found. Being absent from the list is never
+	 * enough to delete an entry, as the clean filter may be wider than the
+	 * list, and pivot values may be written differently in both services.
+	 * The list is not used at all when the destination pivots must be
+	 * transformed.
+	 * 
+	 * @param task the task to run
+	 * @return the run status
 	 */
 	protected final boolean clean2Ldap(Task task) {
+		List<Transformation> transformations = LscConfiguration.getPivotTransformation(task.getTaskType());
+		if (transformations != null && !transformations.isEmpty()) {
+			return lookupClean2Ldap(task);
+		}
 
 		InfoCounter counter = new InfoCounter();
 
+		// Read all the source pivots before deleting anything: an incomplete
+		// list would lead to delete entries which still exist in the source
+		Set<String> srcKeys = new HashSet<String>();
+		Iterator<Entry<String, LscDatasets>> ids = null;
+		try {
+			ids = getPivots(task.getSourceService());
+			while (ids.hasNext()) {
+				LscDatasets pivots = ids.next().getValue();
+				srcKeys.add(getPivotKey(pivots));
+			}
+		} catch (Exception e) {
+			LOGGER.error("Error getting list of IDs in the source for task {}, cleaning aborted", task.getName());
+			LOGGER.debug(e.toString(), e);
+			return false;
+		} finally {
+			close(ids);
+		}
+
 		// Get list of all entries from the destination
-		Set<Entry<String, LscDatasets>> ids = null;
 		try {
-			ids = task.getDestinationService().getListPivots().entrySet();
-		} catch (LscServiceException e) {
+			ids = getPivots(task.getDestinationService());
+
+			// Make sure we have at least one entry to work on
+			if (!ids.hasNext()) {
+				LOGGER.error("Empty or non existant destination (no IDs found)");
+				close(ids);
+				return false;
+			}
+		} catch (Exception e) {
 			LOGGER.error("Error getting list of IDs in the destination for task {}", task.getName());
 			LOGGER.debug(e.toString(), e);
+			close(ids);
 			return false;
 		}
 
-		// Make sure we have at least one entry to work on
-		if (ids.isEmpty()) {
-			LOGGER.error("Empty or non existant destination (no IDs found)");
-			return false;
+		SynchronizeThreadPoolExecutor threadPool = newThreadPool();
+		startRun(task, threadPool);
+
+		// Read all the destination pivots before deleting anything, so that
+		// the destination search is not changed while it is being read
+		List<Entry<String, LscDatasets>> orphans = new ArrayList<Entry<String, LscDatasets>>();
+		Entry<String, LscDatasets> id;
+		while ((id = nextPivot(task, ids, counter)) != null) {
+			if (srcKeys.contains(getPivotKey(id.getValue()))) {
+				counter.incrementCountAll();
+				continue;
+			}
+			orphans.add(id);
 		}
 
-		ISyncOptions syncOptions = task.getSyncOptions();
+		AtomicBoolean aborted = new AtomicBoolean();
+		for (Entry<String, LscDatasets> orphan : orphans) {
+			if (aborted.get()) {
+				// the connection has been lost, see SynchronizeTask#clean()
+				break;
+			}
+			SynchronizeTask cleanTask = new SynchronizeTask(task, counter, this, orphan, false);
+			cleanTask.setClean(aborted);
+			threadPool.runTask(cleanTask);
+		}
+		try {
+			threadPool.shutdown();
+			threadPool.awaitTermination(timeLimit, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
+			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
+		}
+		endRun(task);
 
-		LscModifications lm = null;
+		logStatus(counter);
+		return !aborted.get() && counter.getCountError() == 0;
+	}
 
-		/** Hash table to pass objects into JavaScript condition */
-		Map<String, Object> conditionObjects = null;
+	/**
+	 * Build the key identifying an entry from its pivot values. Names and
+	 * values are lower cased, as directories compare them case insensitively.
+	 * @param pivots the pivot values
+	 * @return the key
+	 */
+	static String getPivotKey(LscDatasets pivots) {
+		Map<String, String> values = new TreeMap<String, String>();
+		for (Entry<String, Object> pivot : pivots.getDatasets().entrySet()) {
+			Object value = pivot.getValue();
+			values.put(pivot.getKey().toLowerCase(),
+							(value instanceof byte[] ? new String((byte[]) value) : String.valueOf(value)).toLowerCase());
+		}
+		StringBuilder key = new StringBuilder();
+		for (Entry<String, String> value : values.entrySet()) {
+			key.append(value.getKey()).append('=').append(value.getValue()).append(PIVOT_KEY_SEPARATOR);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Clean the destination by searching each destination entry in the
+	 * source, as required when pivot transformations are configured.
+	 * 
+	 * @param task the task to run
+	 * @return the run status
+	 */
+	private boolean lookupClean2Ldap(Task task) {
+
+		InfoCounter counter = new InfoCounter();
+
+		// Get list of all entries from the destination
+		Iterator<Entry<String, LscDatasets>> ids = null;
+		try {
+			ids = getPivots(task.getDestinationService());
+
+			// Make sure we have at least one entry to work on
+			if (!ids.hasNext()) {
+				LOGGER.error("Empty or non existant destination (no IDs found)");
+				close(ids);
+				return false;
+			}
+		} catch (Exception e) {
+			LOGGER.error("Error getting list of IDs in the destination for task {}", task.getName());
+			LOGGER.debug(e.toString(), e);
+			close(ids);
+			return false;
+		}
+
+		startRun(task, null);
 
-		IBean taskBean;
+		// Read all the destination pivots before deleting anything, so that
+		// the destination search is not changed while it is being read
+		List<Entry<String, LscDatasets>> dstIds = new ArrayList<Entry<String, LscDatasets>>();
+		Entry<String, LscDatasets> nextId;
+		while ((nextId = nextPivot(task, ids, counter)) != null) {
+			dstIds.add(nextId);
+		}
 
 		// Loop on all entries in the destination and delete them if they're not
 		// found in the source
-		for (Entry<String, LscDatasets> id : ids) {
+		for (Entry<String, LscDatasets> id : dstIds) {
 			counter.incrementCountAll();
+			task.getMetrics().entryProcessed();
 
 			try {
 				// Search for the corresponding object in the source
-				taskBean = getBean(task, task.getSourceService(), id.getKey(), id.getValue(), false, false);
+				IBean taskBean = getBean(task, task.getSourceService(), id.getKey(), id.getValue(), false, false);
 
 				// If we didn't find the object in the source, delete it in the
 				// destination
-				if (taskBean == null) {
-					// Retrieve condition to evaluate before deleting
-					Boolean doDelete = null;
-					String conditionString = syncOptions.getDeleteCondition();
-
-					// Don't use JavaScript evaluator for primitive cases
-					if (conditionString.matches("true")) {
-						doDelete = true;
-					} else if (conditionString.matches("false")) {
-						doDelete = false;
-					} else {
-						IBean dstBean = getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), true, false);
-						// Log an error if the bean could not be retrieved!
-						// This shouldn't happen.
-						if (dstBean == null) {
-							LOGGER.error("Could not retrieve the object {} from the directory!", id.getKey());
-							counter.incrementCountError();
-							continue;
-						}
-
-						// Put the bean in a map to pass to JavaScript
-						// evaluator
-						conditionObjects = new HashMap<String, Object>();
-						conditionObjects.put("dstBean", dstBean);
-						conditionObjects.putAll(task.getScriptingVars());
-
-						// Evaluate if we have to do something
-						doDelete = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
-					}
-
-					if (doDelete) {
-						lm = new LscModifications(LscModificationType.DELETE_OBJECT, task.getName());
-						lm.setMainIdentifer(id.getKey());
-
-						List<LscDatasetModification> attrsMod = new ArrayList<LscDatasetModification>();
-						for (Entry<String,Object> attr : id.getValue().getDatasets().entrySet()) {
-							attrsMod.add(new LscDatasetModification(LscDatasetModificationType.DELETE_VALUES, attr.getKey(), Collections.singletonList(attr.getValue())));
-						}
-						lm.setLscAttributeModifications(attrsMod);
-
-	                    counter.incrementCountModifiable();
-	                    
-						// if "nodelete" was specified in command line options,
-						// log action for debugging purposes and continue
-	                    if (nodelete) {
-							logShouldAction(lm, task.getName());
-	                    	continue;
-	                    }
-					} else {
-						continue;
-					}
-
-					// if we got here, we have a modification to apply - let's
-					// do it!
-					if (task.getDestinationService().apply(lm)) {
-						counter.incrementCountCompleted();
-						logAction(lm, id, task.getName());
-					} else {
-						counter.incrementCountError();
-						logActionError(lm, id.getValue(), new Exception("Technical problem while applying modifications to destination service"));
-					}
+				if (taskBean == null && !deleteOrphan(task, counter, id, null)) {
+					endRun(task);
+					return false;
 				}
 			} catch (LscServiceException e) {
 				counter.incrementCountError();
-				logActionError(lm, id.getValue(), e);
-				if(e.getCause().getClass().isAssignableFrom(CommunicationException.class)) {
+				logActionError(null, id.getValue(), e);
+				if (e.getCause() != null && e.getCause().getClass().isAssignableFrom(CommunicationException.class)) {
 					// we lost the connection to the source or destination, stop
 					// everything!
 					LOGGER.error("Connection lost! Aborting.");
+					endRun(task);
 					return false;
 				} else {
 					LOGGER.error("Unable to delete object {} ({})", id.getKey(), e.toString());
 				}
 			}
 		}
+		endRun(task);
 
 		logStatus(counter);
 		return counter.getCountError() == 0;
 	}
 
+	/**
+	 * Get a batch to defer the modifications of a task to
+	 * 
+	 * @param task the task
+	 * @param counter the task counter
+	 * @return the batch, or null if the modifications must be applied one by
+	 *         one, because no batch size is configured or because the
+	 *         destination service does not support it
+	 */
+	ModificationsBatch newBatch(Task task, InfoCounter counter) {
+		if (batchSize <= 1 || !(task.getDestinationService() instanceof IBatchWritableService)) {
+			return null;
+		}
+		return new ModificationsBatch(task, counter, this, batchSize, batchDelay);
+	}
+
+	/**
+	 * @param batch the modifications batch, or null
+	 * @return true if the entries must not be dispatched anymore because
+	 *         the batch lost the connection to the destination
+	 */
+	static boolean isAborted(ModificationsBatch batch) {
+		return batch != null && batch.isAborted();
+	}
+
+	/**
+	 * List the identifiers of all the entries of a service. They are read
+	 * while they are consumed if the service supports it, otherwise the
+	 * whole list is read first.
+	 * 
+	 * @param service the source or destination service
+	 * @return the entries identifiers
+	 * @throws LscServiceException if the listing can not be started
+	 */
+	private static Iterator<Entry<String, LscDatasets>> getPivots(IService service) throws LscServiceException {
+		if (service instanceof IStreamingService) {
+			return ((IStreamingService) service).getPivotsIterator();
+		}
+		return service.getListPivots().entrySet().iterator();
+	}
+
+	/**
+	 * Read the next identifier. An error while reading ends the listing,
+	 * and is counted as a synchronization error.
+	 * 
+	 * @param task the task
+	 * @param ids the identifiers iterator, closed once they have all been read
+	 * @param counter the task counter
+	 * @return the next identifier, or null if there is none left
+	 */
+	private static Entry<String, LscDatasets> nextPivot(Task task, Iterator<Entry<String, LscDatasets>> ids,
+					InfoCounter counter) {
+		try {
+			if (ids.hasNext()) {
+				return ids.next();
+			}
+		} catch (RuntimeException e) {
+			counter.incrementCountError();
+			LOGGER.error("Error getting list of IDs for task {} ({})", task.getName(),
+							(e.getCause() != null ? e.getCause().toString() : e.toString()));
+			LOGGER.debug(e.toString(), e);
+		}
+		close(ids);
+		return null;
+	}
+
+	/**
+	 * Release the resources held by an identifiers iterator
+	 * @param ids the iterator, may be null
+	 */
+	private static void close(Iterator<?> ids) {
+		if (ids instanceof Closeable) {
+			try {
+				((Closeable) ids).close();
+			} catch (IOException e) {
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+	}
+
 	/**
 	 * Synchronize the destination LDAP directory (create and update objects
 	 * from source).
@@ -299,32 +502,276 @@ public abstract class AbstractSynchronize {
 
 		InfoCounter counter = new InfoCounter();
 		// Get list of all entries from the source
-		Set<Entry<String, LscDatasets>> ids = null;
+		Iterator<Entry<String, LscDatasets>> ids = null;
 		SynchronizeThreadPoolExecutor threadPool = null;
 
 		try {
-			ids = task.getSourceService().getListPivots().entrySet();
+			ids = getPivots(task.getSourceService());
+
+			// Make sure we have at least one entry to work on
+			if (!ids.hasNext()) {
+				LOGGER.error("Empty or non existant source (no IDs found)");
+				close(ids);
+				return false;
+			}
 		} catch (Exception e) {
 			LOGGER.error("Error getting list of IDs in the source for task {}", task.getName());
 			LOGGER.debug(e.toString(), e);
+			close(ids);
 			return false;
 		}
 
-		// Make sure we have at least one entry to work on
-		if (ids.isEmpty()) {
-			LOGGER.error("Empty or non existant source (no IDs found)");
-			return false;
-		}
-
-		threadPool = new SynchronizeThreadPoolExecutor(getThreads());
+		threadPool = newThreadPool();
+		startRun(task, threadPool);
+		openFingerprints(task);
+		ModificationsBatch batch = newBatch(task, counter);
 
 		/*
 		 * Loop on all entries in the source and add or update them in the
-		 * destination
+		 * destination. Streamed identifiers are dispatched while they are
+		 * read, the thread pool blocking this loop when its queue is full.
+		 * If the source can read several entries at once, or if the
+		 * destination can look several entries up at once, they are read by
+		 * groups before being dispatched.
 		 */
+		int readSize = getBatchReadSize(task);
+		List<Entry<String, LscDatasets>> readIds = new ArrayList<Entry<String, LscDatasets>>(Math.max(readSize, 0));
+		Entry<String, LscDatasets> id;
+		while (!isAborted(batch) && (id = nextPivot(task, ids, counter)) != null) {
+			if (readSize > 1) {
+				readIds.add(id);
+				if (readIds.size() >= readSize) {
+					runSynchronizeTasks(task, counter, threadPool, batch, readIds, true);
+					readIds.clear();
+				}
+				continue;
+			}
+			SynchronizeTask syncTask = new SynchronizeTask(task, counter, this, id, true);
+			syncTask.setBatch(batch);
+			threadPool.runTask(syncTask);
+		}
+		if (!readIds.isEmpty() && !isAborted(batch)) {
+			runSynchronizeTasks(task, counter, threadPool, batch, readIds, true);
+		}
+		try {
+			threadPool.shutdown();
+			threadPool.awaitTermination(timeLimit, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
+			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
+		}
+		if (batch != null) {
+			batch.close();
+		}
+		closeFingerprints(task, counter.getCountError() == 0);
+		endRun(task);
+
+		logStatus(counter);
+		return counter.getCountError() == 0;
+	}
+
+	/**
+	 * Get the number of entries of a task read at once, in its source or in
+	 * its destination, see {@link IBatchReadableService}
+	 * 
+	 * @param task the task
+	 * @return the number of entries, 0 or 1 if they are read one by one
+	 */
+	int getBatchReadSize(Task task) {
+		return Math.max(getSourceBatchReadSize(task), getDestinationBatchReadSize(task));
+	}
+
+	static int getSourceBatchReadSize(Task task) {
+		return (task.getSourceService() instanceof IBatchReadableService
+						? ((IBatchReadableService) task.getSourceService()).getBatchReadSize() : 0);
+	}
+
+	/**
+	 * The destination entries are only looked up by groups when they are
+	 * looked up with the source pivots as they are, and when most of them
+	 * are not skipped thanks to the fingerprints, see {@link FingerprintStore}
+	 */
+	private int getDestinationBatchReadSize(Task task) {
+		if (!(task.getDestinationService() instanceof IBatchReadableService) || task.getFingerprints() != null) {
+			return 0;
+		}
+		List<Transformation> transformations = getPivotTransformations(task);
+		if (transformations != null && !transformations.isEmpty()) {
+			return 0;
+		}
+		return ((IBatchReadableService) task.getDestinationService()).getBatchReadSize();
+	}
+
+	/**
+	 * Read a group of source entries at once, look their destination
+	 * entries up at once, and dispatch their synchronization. The entries
+	 * which have not been read are read again one by one by their
+	 * synchronization task.
+	 * 
+	 * The destination entries must only be looked up in advance when each
+	 * pivot is synchronized once: a pivot dispatched again before its
+	 * previous synchronization has been applied would otherwise be
+	 * compared to a stale destination entry.
+	 * 
+	 * @param task the task
+	 * @param counter the task counter
+	 * @param threadPool the synchronization threads
+	 * @param batch the modifications batch, or null
+	 * @param ids the source entries identifiers
+	 * @param lookupDestination true to look the destination entries up
+	 *            at once
+	 */
+	void runSynchronizeTasks(Task task, InfoCounter counter, SynchronizeThreadPoolExecutor threadPool,
+					ModificationsBatch batch, List<Entry<String, LscDatasets>> ids, boolean lookupDestination) {
+		Map<String, IBean> srcBeans = Collections.emptyMap();
+		if (getSourceBatchReadSize(task) > 1) {
+			long start = System.nanoTime();
+			try {
+				srcBeans = ((IBatchReadableService) task.getSourceService()).getBeans(ids);
+				task.getMetrics().record(TaskMetrics.Phase.SOURCE_READ, System.nanoTime() - start);
+			} catch (LscServiceException e) {
+				LOGGER.warn("Unable to read {} source entries at once for task {}, reading them one by one ({})",
+								new Object[] { ids.size(), task.getName(), e.toString() });
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+		Map<String, IBean> dstBeans = Collections.emptyMap();
+		if (lookupDestination && getDestinationBatchReadSize(task) > 1) {
+			long start = System.nanoTime();
+			try {
+				dstBeans = ((IBatchReadableService) task.getDestinationService()).getBeans(ids);
+				task.getMetrics().record(TaskMetrics.Phase.DESTINATION_READ, System.nanoTime() - start);
+			} catch (LscServiceException e) {
+				LOGGER.warn("Unable to look {} destination entries up at once for task {}, looking them up one by one ({})",
+								new Object[] { ids.size(), task.getName(), e.toString() });
+				LOGGER.debug(e.toString(), e);
+			}
+		}
 		for (Entry<String, LscDatasets> id : ids) {
-			threadPool.runTask(new SynchronizeTask(task, counter, this, id, true));
+			SynchronizeTask syncTask = new SynchronizeTask(task, counter, this, id, true);
+			syncTask.setSourceBean(srcBeans.get(id.getKey()));
+			if (dstBeans.containsKey(id.getKey())) {
+				syncTask.setDestinationBean(dstBeans.get(id.getKey()));
+			}
+			syncTask.setBatch(batch);
+			threadPool.runTask(syncTask);
+		}
+	}
+
+	/**
+	 * Synchronize and clean the destination in one single pass. Both services
+	 * list all their entries, fully populated and sorted on the pivot
+	 * attributes, and the two lists are walked side by side: entries found
+	 * on both sides are updated without any further lookup, entries only
+	 * found in the source are looked up in the destination before being
+	 * created, and entries only found in the destination are cleaned as
+	 * {@link #clean2Ldap(Task)} does, by searching them in the source with
+	 * the clean filter before deleting them.
+	 * 
+	 * The pivot values are compared as lower cased Java strings, one UTF-16
+	 * character after the other, see {@link ISortedService}. The directory
+	 * ordering rule of the sort attribute must give the same order, as
+	 * caseIgnoreOrderingMatch does for ASCII values. Otherwise the order
+	 * check of each list aborts the merge, and the synchronization and the
+	 * cleaning must be run separately. Deletions are only dispatched once
+	 * both lists have been completely read and checked to be correctly
+	 * ordered.
+	 * 
+	 * If one of the services is not able to list sorted entries, or if pivot
+	 * transformations are configured, this falls back to a synchronization
+	 * followed by a cleaning.
+	 * 
+	 * @param task the task to run
+	 * @return the run status
+	 */
+	protected final boolean merge2Ldap(final Task task) {
+		if (!(task.getSourceService() instanceof ISortedService)
+						|| !(task.getDestinationService() instanceof ISortedService)) {
+			LOGGER.warn("Services of task {} can not list sorted entries. Running synchronization and cleaning instead of merge.", task.getName());
+			boolean syncStatus = synchronize2Ldap(task);
+			return clean2Ldap(task) && syncStatus;
+		}
+		List<Transformation> transformations = LscConfiguration.getPivotTransformation(task.getTaskType());
+		if (transformations != null && !transformations.isEmpty()) {
+			LOGGER.warn("Pivot transformations of task {} are not supported in merge mode. Running synchronization and cleaning instead of merge.", task.getName());
+			boolean syncStatus = synchronize2Ldap(task);
+			return clean2Ldap(task) && syncStatus;
+		}
+
+		InfoCounter counter = new InfoCounter();
+		ISortedService srcService = (ISortedService) task.getSourceService();
+		ISortedService dstService = (ISortedService) task.getDestinationService();
+
+		MergeCursor src = null;
+		MergeCursor dst = null;
+		try {
+			src = new MergeCursor(srcService.getSortedBeans(), srcService.getPivotAttributes(), "source", counter);
+			dst = new MergeCursor(dstService.getSortedBeans(), dstService.getPivotAttributes(), "destination", counter);
+		} catch (LscServiceException e) {
+			LOGGER.error("Error getting sorted entries for task {}", task.getName());
+			LOGGER.debug(e.toString(), e);
+			return false;
+		}
+
+		// Destination entries not found in the source, cleaned at the end
+		List<MergeCursor.Position> orphans = new ArrayList<MergeCursor.Position>();
+		boolean completed = false;
+
+		SynchronizeThreadPoolExecutor threadPool = newThreadPool();
+		startRun(task, threadPool);
+		openFingerprints(task);
+		ModificationsBatch batch = newBatch(task, counter);
+		try {
+			boolean hasSrc = src.next();
+			boolean hasDst = dst.next();
+			while ((hasSrc || hasDst) && !isAborted(batch)) {
+				int cmp = (!hasSrc ? 1 : (!hasDst ? -1 : src.getKey().compareTo(dst.getKey())));
+				SynchronizeTask syncTask = null;
+				if (cmp < 0) {
+					// looked up in the destination, in case the orders differ
+					syncTask = new SynchronizeTask(task, counter, this, src.getId(), true);
+					syncTask.setSourceBean(src.getBean());
+					hasSrc = src.next();
+				} else if (cmp > 0) {
+					orphans.add(dst.getPosition());
+					hasDst = dst.next();
+				} else {
+					syncTask = new SynchronizeTask(task, counter, this, src.getId(), src.getBean(), dst.getBean());
+					hasSrc = src.next();
+					hasDst = dst.next();
+				}
+				if (syncTask != null) {
+					syncTask.setBatch(batch);
+					threadPool.runTask(syncTask);
+				}
+			}
+			completed = !isAborted(batch);
+		} catch (LscServiceException e) {
+			counter.incrementCountError();
+			LOGGER.error("Merge of task {} aborted: {}", task.getName(), e.getMessage());
+			LOGGER.debug(e.toString(), e);
+		} catch (RuntimeException e) {
+			counter.incrementCountError();
+			LOGGER.error("Merge of task {} aborted: {}", task.getName(), (e.getCause() != null ? e.getCause().toString() : e.toString()));
+			LOGGER.debug(e.toString(), e);
+		}
+
+		if (!completed) {
+			LOGGER.error("Skipping the deletion of {} entries for task {} because the merge did not complete", orphans.size(), task.getName());
+		} else {
+			AtomicBoolean aborted = new AtomicBoolean();
+			for (MergeCursor.Position orphan : orphans) {
+				if (aborted.get()) {
+					// the connection has been lost, see SynchronizeTask#clean()
+					break;
+				}
+				SynchronizeTask cleanTask = new SynchronizeTask(task, counter, this, orphan.getId(), false);
+				cleanTask.setDestinationBean(orphan.getBean());
+				cleanTask.setClean(aborted);
+				threadPool.runTask(cleanTask);
+			}
 		}
+
 		try {
 			threadPool.shutdown();
 			threadPool.awaitTermination(timeLimit, TimeUnit.SECONDS);
@@ -332,11 +779,102 @@ public abstract class AbstractSynchronize {
 			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
 			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
 		}
+		if (batch != null) {
+			batch.close();
+		}
+		closeFingerprints(task, completed && counter.getCountError() == 0);
+		endRun(task);
 
 		logStatus(counter);
 		return counter.getCountError() == 0;
 	}
 
+	/**
+	 * Delete a destination entry that has no counterpart in the source,
+	 * according to the delete condition
+	 * @param task the task
+	 * @param counter the task counter
+	 * @param id the destination entry pivot
+	 * @param dstBean the destination entry, or null to read it only if the
+	 *            delete condition requires it
+	 * @return false if the connection has been lost, true otherwise
+	 */
+	boolean deleteOrphan(Task task, InfoCounter counter, Entry<String, LscDatasets> id, IBean dstBean) {
+		LscModifications lm = null;
+		try {
+			// Retrieve condition to evaluate before deleting
+			boolean doDelete;
+			String conditionString = task.getSyncOptions().getDeleteCondition();
+
+			// Don't use JavaScript evaluator for primitive cases
+			if ("true".equals(conditionString)) {
+				doDelete = true;
+			} else if ("false".equals(conditionString)) {
+				doDelete = false;
+			} else {
+				if (dstBean == null) {
+					dstBean = getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), true, false);
+					if (dstBean == null) {
+						LOGGER.error("Could not retrieve the object {} from the directory!", id.getKey());
+						counter.incrementCountError();
+						return true;
+					}
+				}
+				Map<String, Object> conditionObjects = new HashMap<String, Object>();
+				conditionObjects.put("dstBean", dstBean);
+				conditionObjects.putAll(task.getScriptingVars());
+				String dataset = ScriptProfiler.enter(LscModificationType.DELETE_OBJECT.getDescription() + " condition");
+				try {
+					doDelete = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
+				} finally {
+					ScriptProfiler.exit(dataset);
+				}
+			}
+			if (!doDelete) {
+				return true;
+			}
+
+			lm = new LscModifications(LscModificationType.DELETE_OBJECT, task.getName());
+			lm.setMainIdentifer(dstBean != null ? dstBean.getMainIdentifier() : id.getKey());
+			List<LscDatasetModification> attrsMod = new ArrayList<LscDatasetModification>();
+			for (Entry<String,Object> attr : id.getValue().getDatasets().entrySet()) {
+				attrsMod.add(new LscDatasetModification(LscDatasetModificationType.DELETE_VALUES, attr.getKey(), Collections.singletonList(attr.getValue())));
+			}
+			lm.setLscAttributeModifications(attrsMod);
+
+			counter.incrementCountModifiable();
+
+			// if "nodelete" was specified in command line options,
+			// log action for debugging purposes and continue
+			if (nodelete) {
+				logShouldAction(lm, task.getName());
+				return true;
+			}
+
+			long start = System.nanoTime();
+			boolean applied = task.getDestinationService().apply(lm);
+			task.getMetrics().record(TaskMetrics.Phase.APPLY, System.nanoTime() - start);
+			if (applied) {
+				counter.incrementCountCompleted();
+				logAction(lm, id, task.getName());
+			} else {
+				counter.incrementCountError();
+				logActionError(lm, id.getValue(), new Exception("Technical problem while applying modifications to destination service"));
+			}
+		} catch (LscServiceException e) {
+			counter.incrementCountError();
+			logActionError(lm, id.getValue(), e);
+			if (e.getCause() != null && e.getCause().getClass().isAssignableFrom(CommunicationException.class)) {
+				// we lost the connection to the destination, stop everything!
+				LOGGER.error("Connection lost! Aborting.");
+				return false;
+			} else {
+				LOGGER.error("Unable to delete object {} ({})", id.getKey(), e.toString());
+			}
+		}
+		return true;
+	}
+
 	public final synchronized void startAsynchronousSynchronize2Ldap(Task task) {
 
 		AsynchronousRunner asyncRunner = new AsynchronousRunner(task, this);
@@ -520,7 +1058,17 @@ public abstract class AbstractSynchronize {
 	}
 	
 	protected IBean getBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes, boolean fromSameService, boolean fromSource) throws LscServiceException {
-		List<Transformation> transformations = LscConfiguration.getPivotTransformation(task.getTaskType());
+		long start = System.nanoTime();
+		try {
+			return readBean(task, service, pivotName, pivotAttributes, fromSameService, fromSource);
+		} finally {
+			task.getMetrics().record(service == task.getSourceService() ? TaskMetrics.Phase.SOURCE_READ
+							: TaskMetrics.Phase.DESTINATION_READ, System.nanoTime() - start);
+		}
+	}
+
+	private IBean readBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes, boolean fromSameService, boolean fromSource) throws LscServiceException {
+		List<Transformation> transformations = getPivotTransformations(task);
 		if (! fromSameService && transformations != null) {
 			LscDatasets newPivots = new LscDatasets(pivotAttributes.getDatasets());
 			for (Entry<String, Object> pivot: pivotAttributes.getDatasets().entrySet()) {
@@ -535,6 +1083,22 @@ public abstract class AbstractSynchronize {
 		return service.getBean(pivotName, pivotAttributes, fromSameService);
 	}
 
+	/**
+	 * Get the pivot transformations of a task, from its resolved
+	 * synchronization options when available
+	 * @param task the task
+	 * @return the transformations, or null if there are none
+	 */
+	private List<Transformation> getPivotTransformations(Task task) {
+		if (task.getSyncOptions() instanceof PropertiesBasedSyncOptions) {
+			CompiledSyncPlan plan = ((PropertiesBasedSyncOptions) task.getSyncOptions()).getSyncPlan();
+			if (plan != null) {
+				return plan.getPivotTransformations();
+			}
+		}
+		return LscConfiguration.getPivotTransformation(task.getTaskType());
+	}
+
 	protected Object transform(Task task, Transformation transformation, Object value) throws LscServiceException{
 		Map<String, Object> javaScriptObjects = new HashMap<String, Object>();
 		javaScriptObjects.put("value", value);
@@ -542,12 +1106,17 @@ public abstract class AbstractSynchronize {
 			javaScriptObjects.put("custom", task.getCustomLibraries());
 		}
 		javaScriptObjects.putAll(task.getScriptingVars());
-		if (LscConfiguration.isLdapBinaryAttribute(transformation.getToAttribute())) {
-			return ScriptingEvaluator.evalToByteArray(task, transformation.getValue(), javaScriptObjects);
-		} else {
-			return ScriptingEvaluator.evalToString(task, transformation.getValue(), javaScriptObjects);
-		}
-
+		String dataset = ScriptProfiler.enter(transformation.getToAttribute() + " pivot transformation");
+		try {
+			if (CompiledSyncPlan.isBinaryAttribute(task.getSyncOptions(), transformation.getToAttribute())) {
+				return ScriptingEvaluator.evalToByteArray(task, transformation.getValue(), javaScriptObjects);
+			} else {
+				return ScriptingEvaluator.evalToString(task, transformation.getValue(), javaScriptObjects);
+			}
+		} finally {
+			ScriptProfiler.exit(dataset);
+		}
+
 	}
 
 	/**
@@ -609,6 +1178,21 @@ public abstract class AbstractSynchronize {
 		this.threads = threads;
 	}
 
+	/**
+	 * Get a pool of synchronization threads for a task run. The pools of
+	 * the tasks running at the same time share the same budget of threads,
+	 * so that no more than {@link #getThreads()} entries are synchronized
+	 * at the same time.
+	 * 
+	 * @return the new pool
+	 */
+	synchronized SynchronizeThreadPoolExecutor newThreadPool() {
+		if (workers == null) {
+			workers = new Semaphore(Math.max(threads, 1), true);
+		}
+		return new SynchronizeThreadPoolExecutor(threads, workers);
+	}
+
 	/**
 	 * Time limit accessor
 	 * @return the number of seconds
@@ -626,15 +1210,196 @@ public abstract class AbstractSynchronize {
 		this.timeLimit = timeLimit;
 	}
 
+	/**
+	 * Batch size accessor
+	 * @return the number of modifications applied together
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Batch size accessor
+	 * 
+	 * @param batchSize the number of modifications applied together, 1 to
+	 *            apply them one by one
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Batch delay accessor
+	 * @return the number of milliseconds
+	 */
+	public long getBatchDelay() {
+		return batchDelay;
+	}
+
+	/**
+	 * Batch delay accessor
+	 * 
+	 * @param batchDelay the maximum number of milliseconds a modification
+	 *            waits for its batch to be full
+	 */
+	public void setBatchDelay(long batchDelay) {
+		this.batchDelay = batchDelay;
+	}
+
+	/**
+	 * Profile accessor
+	 * @return true if all the tasks are profiled
+	 */
+	public boolean isProfile() {
+		return profile;
+	}
+
+	/**
+	 * Profile accessor
+	 * 
+	 * @param profile true to profile all the tasks, whatever their setting
+	 */
+	public void setProfile(boolean profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Slow entry threshold accessor
+	 * @return the number of milliseconds, 0 to use the task setting
+	 */
+	public long getSlowEntryThreshold() {
+		return slowEntryThreshold;
+	}
+
+	/**
+	 * Slow entry threshold accessor
+	 * 
+	 * @param slowEntryThreshold the time above which a profiled entry is
+	 *            logged, in milliseconds
+	 */
+	public void setSlowEntryThreshold(long slowEntryThreshold) {
+		this.slowEntryThreshold = slowEntryThreshold;
+	}
+
+	/**
+	 * Start measuring a run of a task, profiling it if required
+	 * 
+	 * @param task the task
+	 * @param threadPool the synchronization threads, or null
+	 */
+	void startRun(Task task, SynchronizeThreadPoolExecutor threadPool) {
+		TaskType taskType = task.getTaskType();
+		ScriptProfiler profiler = null;
+		if (profile || (taskType != null && Boolean.TRUE.equals(taskType.isProfile()))) {
+			long threshold = slowEntryThreshold;
+			if (threshold <= 0) {
+				threshold = (taskType != null && taskType.getSlowEntryThreshold() != null
+								? taskType.getSlowEntryThreshold() : ScriptProfiler.DEFAULT_SLOW_ENTRY_THRESHOLD);
+			}
+			profiler = new ScriptProfiler(task.getName(), threshold);
+		}
+		task.getMetrics().setProfiler(profiler);
+		task.getMetrics().startRun(threadPool);
+		checkPoolSize(task, task.getSourceService());
+		checkPoolSize(task, task.getDestinationService());
+	}
+
+	/**
+	 * Warn if the synchronization threads of a task are more than the pooled
+	 * connections of one of its directories, as they would then wait for each
+	 * other. The pool size is set by the poolSize element of the connection.
+	 * 
+	 * @param task the task
+	 * @param service the source or destination service of the task
+	 */
+	private void checkPoolSize(Task task, Object service) {
+		if (service instanceof AbstractSimpleJndiService) {
+			int poolSize = ((AbstractSimpleJndiService) service).getJndiServices().getPoolSize();
+			if (getThreads() > poolSize) {
+				LOGGER.warn("Task {} runs {} threads but only {} connections are pooled to {}: raise the poolSize of the connection",
+								new Object[] { task.getName(), getThreads(), poolSize,
+												((AbstractSimpleJndiService) service).getJndiServices().getContextDn() });
+			}
+		}
+	}
+
+	/**
+	 * Stop measuring the run of a task, and log its profile if it has been
+	 * profiled
+	 * 
+	 * @param task the task
+	 */
+	void endRun(Task task) {
+		task.getMetrics().endRun();
+		ScriptProfiler profiler = task.getMetrics().getProfiler();
+		if (profiler != null) {
+			profiler.logReport();
+		}
+	}
+
+	/**
+	 * Open the fingerprints store of a task if it is enabled, so that the
+	 * source entries which have not changed since the previous runs are
+	 * skipped, see {@link FingerprintStore}
+	 * 
+	 * @param task the task
+	 */
+	private void openFingerprints(Task task) {
+		TaskType taskType = task.getTaskType();
+		if (taskType == null || !Boolean.TRUE.equals(taskType.isFingerprints())) {
+			return;
+		}
+		long maxAge = (taskType.getFingerprintsMaxAge() != null
+						? taskType.getFingerprintsMaxAge() * 1000 : FingerprintStore.DEFAULT_MAX_AGE);
+		try {
+			task.setFingerprints(FingerprintStore.forTask(task.getName(), maxAge));
+		} catch (LscServiceException e) {
+			LOGGER.error("Unable to open the fingerprints of task {}, synchronizing all the entries ({})",
+							task.getName(), e.getCause() != null ? e.getCause().toString() : e.toString());
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Close the fingerprints store of a task, if it has been opened
+	 * 
+	 * @param task the task
+	 * @param complete true if all the source entries have been read and
+	 *            synchronized, to forget the entries which have not been seen
+	 */
+	private void closeFingerprints(Task task, boolean complete) {
+		FingerprintStore fingerprints = task.getFingerprints();
+		if (fingerprints == null) {
+			return;
+		}
+		task.setFingerprints(null);
+		if (complete) {
+			int purged = fingerprints.purge();
+			if (purged > 0) {
+				LOGGER.debug("Forgot the fingerprints of {} entries no longer in the source of task {}", purged, task.getName());
+			}
+		}
+		LOGGER.info("{} unchanged entries skipped by task {}", fingerprints.getSkipped(), task.getName());
+		fingerprints.close();
+	}
+
 }
 
 class AsynchronousRunner implements Runnable {
     
     static final Logger LOGGER = LoggerFactory.getLogger(AsynchronousRunner.class);
 
+    /** Maximum number of pushed changes dispatched at once */
+    private static final int PUSHED_CHANGES_MAX = 100;
+
     private AbstractSynchronize abstractSynchronize;
     private Task task;
     private InfoCounter counter;
+    private long lastCheckpoint;
+    /** Errors counted when the position was last saved */
+    private int checkpointErrors;
+    /** Whether some changes failed, so that the position must not be saved anymore */
+    private boolean failed;
     
     public AsynchronousRunner(Task task, AbstractSynchronize abstractSynchronize) {
         this.task = task;
@@ -644,7 +1409,9 @@ class AsynchronousRunner implements Runnable {
     public void run() {
         counter = new InfoCounter();
 
-        SynchronizeThreadPoolExecutor threadPool = new SynchronizeThreadPoolExecutor(abstractSynchronize.getThreads());
+        SynchronizeThreadPoolExecutor threadPool = abstractSynchronize.newThreadPool();
+        abstractSynchronize.startRun(task, threadPool);
+        ModificationsBatch batch = abstractSynchronize.newBatch(task, counter);
 
         Entry<String, LscDatasets> nextId = null;
         try {
@@ -663,11 +1430,20 @@ class AsynchronousRunner implements Runnable {
             AbstractSynchronize.LOGGER.debug("Asynchronous synchronize {}", task.getName());
 
             boolean interrupted = false;
-            while (!interrupted) {
+            while (!interrupted && !AbstractSynchronize.isAborted(batch)) {
+                if (aService instanceof IPushedChangesService) {
+                    interrupted = !synchronizePushedChanges((IPushedChangesService) aService, threadPool, batch, fromSource);
+                    continue;
+                }
                 nextId = aService.getNextId();
                 if (nextId != null) {
-                    threadPool.runTask(new SynchronizeTask(task, counter, abstractSynchronize, nextId, fromSource));
+                    SynchronizeTask syncTask = new SynchronizeTask(task, counter, abstractSynchronize, nextId, fromSource);
+                    syncTask.setBatch(batch);
+                    threadPool.runTask(syncTask);
                 } else {
+                    if (aService instanceof IResumableService) {
+                        checkpoint((IResumableService) aService, threadPool, batch);
+                    }
                     try {
                         Thread.sleep(aService.getInterval());
                     } catch (InterruptedException e) {
@@ -688,9 +1464,81 @@ class AsynchronousRunner implements Runnable {
 			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
 			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
 		}
+		if (batch != null) {
+			batch.close();
+		}
+		abstractSynchronize.endRun(task);
 
     }
     
+    /**
+     * Wait for the changes pushed by the service, and synchronize them as
+     * soon as they are received
+     * @return false if the thread has been interrupted
+     */
+    private boolean synchronizePushedChanges(IPushedChangesService service, SynchronizeThreadPoolExecutor threadPool,
+                    ModificationsBatch batch, boolean fromSource) throws LscServiceException {
+        List<Entry<String, LscDatasets>> nextIds;
+        try {
+            nextIds = service.waitNextIds(PUSHED_CHANGES_MAX, service.getInterval());
+        } catch (InterruptedException e) {
+            AbstractSynchronize.LOGGER.debug("Synchronization thread interrupted !");
+            return false;
+        }
+        // the same entry may change again before its previous change has
+        // been applied, so only the source entries are read by groups
+        int readSize = (fromSource ? AbstractSynchronize.getSourceBatchReadSize(task) : 0);
+        if (readSize > 1) {
+            for (int start = 0; start < nextIds.size(); start += readSize) {
+                abstractSynchronize.runSynchronizeTasks(task, counter, threadPool, batch,
+                                nextIds.subList(start, Math.min(start + readSize, nextIds.size())), false);
+            }
+        } else {
+            for (Entry<String, LscDatasets> id : nextIds) {
+                SynchronizeTask syncTask = new SynchronizeTask(task, counter, abstractSynchronize, id, fromSource);
+                syncTask.setBatch(batch);
+                threadPool.runTask(syncTask);
+            }
+        }
+        // save the position when idle, or regularly under a continuous flow of changes
+        if (service instanceof IResumableService
+                        && (nextIds.isEmpty() || System.currentTimeMillis() - lastCheckpoint >= service.getInterval())) {
+            checkpoint((IResumableService) service, threadPool, batch);
+        }
+        return true;
+    }
+
+    /**
+     * Save the position of the asynchronous service once all the changes it
+     * returned have been applied. Once one of them has failed, the position
+     * is not saved anymore, so that the failed change is returned again
+     * after a restart.
+     */
+    private void checkpoint(IResumableService service, SynchronizeThreadPoolExecutor threadPool,
+                    ModificationsBatch batch) {
+        if (!threadPool.isIdle()) {
+            return;
+        }
+        if (batch != null) {
+            batch.flush();
+        }
+        if (failed || counter.getCountError() > checkpointErrors) {
+            if (!failed) {
+                LOGGER.warn("Some changes of task {} could not be synchronized: its position will not be saved anymore, so that they are read again after a restart",
+                                task.getName());
+                failed = true;
+            }
+            return;
+        }
+        try {
+            service.checkpoint();
+            lastCheckpoint = System.currentTimeMillis();
+        } catch (LscServiceException e) {
+            LOGGER.error("Unable to save the synchronization position of task {} ({})", task.getName(), e.toString());
+            LOGGER.debug(e.toString(), e);
+        }
+    }
+
     public InfoCounter getCounter() {
     	return counter;
     }
@@ -709,6 +1557,20 @@ class SynchronizeTask implements Runnable {
 	private Entry<String, LscDatasets> id;
 	private Task task;
 	private boolean fromSource;
+	/** Entries already read by the caller, see {@link AbstractSynchronize#merge2Ldap(Task)} and {@link #setSourceBean(IBean)} */
+	private IBean srcBean;
+	private IBean dstBean;
+	private boolean preloaded;
+	/** Whether the destination entry has already been looked up, see {@link #setDestinationBean(IBean)} */
+	private boolean dstLookedUp;
+	/** Optional batch the modifications are deferred to */
+	private ModificationsBatch batch;
+	/** Whether the destination entry must be deleted, see {@link AbstractSynchronize#clean2Ldap(Task)} */
+	private boolean clean;
+	/** Set once the connection is lost, shared by the clean tasks of a run */
+	private AtomicBoolean cleanAborted;
+	/** Fingerprint of the source entry, when the task records them */
+	private byte[] sourceFingerprint;
 
 	public SynchronizeTask(final Task task, InfoCounter counter,
 			AbstractSynchronize abstractSynchronize,
@@ -722,8 +1584,45 @@ class SynchronizeTask implements Runnable {
 		this.fromSource = fromSource;
 	}
 
+	/**
+	 * Build a task for entries already read from both services
+	 * @param srcBean the source entry
+	 * @param dstBean the destination entry, or null if it does not exist
+	 */
+	public SynchronizeTask(final Task task, InfoCounter counter,
+			AbstractSynchronize abstractSynchronize,
+			Entry<String, LscDatasets> id,
+			IBean srcBean, IBean dstBean) {
+		this(task, counter, abstractSynchronize, id, true);
+		this.srcBean = srcBean;
+		this.dstBean = dstBean;
+		this.preloaded = true;
+	}
+
 	public void run() {
         counter.incrementCountAll();
+        task.getMetrics().entryProcessed();
+        task.getMetrics().startEntry();
+        try {
+        	runEntry();
+        } finally {
+        	task.getMetrics().endEntry(id != null ? id.getKey() : (srcBean != null ? srcBean.getMainIdentifier() : null));
+        }
+	}
+
+	private void runEntry() {
+        if (preloaded) {
+        	run(srcBean, dstBean);
+        	return;
+        }
+        if (clean) {
+        	clean();
+        	return;
+        }
+        if (srcBean != null) {
+        	run(srcBean);
+        	return;
+        }
 		try {
             run(abstractSynchronize.getBean(task, fromSource ? task.getSourceService() : task.getDestinationService(), id.getKey(), id.getValue(), true, fromSource));
 		} catch (RuntimeException e) {
@@ -741,10 +1640,7 @@ class SynchronizeTask implements Runnable {
 
 	public boolean run(IBean entry) {
 		
-		LscModifications lm = null;
 		IBean dstBean = null;
-		/** Hash table to pass objects into JavaScript condition */
-		Map<String, Object> conditionObjects = null;
 
 		try {
 			/*
@@ -757,8 +1653,15 @@ class SynchronizeTask implements Runnable {
 				return false;
 			}
 
+			// Nothing to do if the entry has not changed since its last synchronization
+			if (isUnchanged(entry)) {
+				return true;
+			}
+
 			// Search destination for matching object
-			if(id != null) {
+			if (dstLookedUp) {
+				dstBean = this.dstBean;
+			} else if(id != null) {
 				dstBean = abstractSynchronize.getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), ! fromSource, fromSource);
 			} else {
 				LscDatasets entryDatasets = new LscDatasets();
@@ -767,18 +1670,64 @@ class SynchronizeTask implements Runnable {
 				}
 				dstBean = abstractSynchronize.getBean(task, task.getDestinationService(), entry.getMainIdentifier(), entryDatasets, ! fromSource, fromSource);
 			}
+		} catch (RuntimeException e) {
+			counter.incrementCountError();
+			abstractSynchronize.logActionError(null, (id != null ? id.getValue() : ( entry != null ? entry.getMainIdentifier() : e.toString())), e);
+			
+			if (e.getCause() instanceof LscServiceCommunicationException) {
+				AbstractSynchronize.LOGGER.error("Connection lost! Aborting.");
+			}
+			return false;
+		} catch (Exception e) {
+			counter.incrementCountError();
+			abstractSynchronize.logActionError(null, (id != null ? id.getValue() : entry.getMainIdentifier()), e);
+			return false;
+		}
+
+		return run(entry, dstBean);
+	}
+
+	/**
+	 * Synchronize a source entry with its destination counterpart
+	 * @param entry the source entry
+	 * @param dstBean the destination entry, or null if it does not exist
+	 * @return the synchronization status
+	 */
+	public boolean run(IBean entry, IBean dstBean) {
 
-			// Calculate operation that would be performed
-			LscModificationType modificationType = BeanComparator.calculateModificationType(task, entry, dstBean);
+		LscModifications lm = null;
+		/** Hash table to pass objects into JavaScript condition */
+		Map<String, Object> conditionObjects = null;
+		FingerprintStore fingerprints = null;
+		byte[] destinationFingerprint = null;
+		boolean inSync = false;
+
+		try {
+			if (isUnchanged(entry)) {
+				return true;
+			}
+			if (sourceFingerprint != null) {
+				fingerprints = task.getFingerprints();
+				destinationFingerprint = (dstBean != null ? FingerprintStore.fingerprint(dstBean) : null);
+				byte[] previous = (fingerprints != null ? fingerprints.getDestination(getFingerprintKey(entry), sourceFingerprint) : null);
+				if (previous != null && !Arrays.equals(previous, destinationFingerprint)) {
+					LOGGER.info("Destination entry of {} has been modified since its last synchronization by task {}", getFingerprintKey(entry), syncName);
+				}
+			}
+
+			// Calculate operation that would be performed, the comparison
+			// context keeps it for the modifications calculation
+			BeanComparisonContext comparison = new BeanComparisonContext(task, entry, dstBean);
+			LscModificationType modificationType = comparison.getModificationType();
 
 			// Retrieve condition to evaluate before creating/updating
 			Boolean applyCondition = null;
 			String conditionString = task.getSyncOptions().getCondition(modificationType);
 
 			// Don't use JavaScript evaluator for primitive cases
-			if (conditionString.matches("true")) {
+			if ("true".equals(conditionString)) {
 				applyCondition = true;
-			} else if (conditionString.matches("false")) {
+			} else if ("false".equals(conditionString)) {
 				applyCondition = false;
 			} else {
 				conditionObjects = new HashMap<String, Object>();
@@ -787,14 +1736,22 @@ class SynchronizeTask implements Runnable {
 				conditionObjects.putAll(task.getScriptingVars());
 
 				// Evaluate if we have to do something
-				applyCondition = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
+				String dataset = ScriptProfiler.enter(modificationType.getDescription() + " condition");
+				try {
+					applyCondition = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
+				} finally {
+					ScriptProfiler.exit(dataset);
+				}
 			}
 
 			if (applyCondition) {
-				lm = BeanComparator.calculateModifications(task, entry, dstBean);
+				long start = System.nanoTime();
+				lm = BeanComparator.calculateModifications(comparison);
+				task.getMetrics().record(TaskMetrics.Phase.COMPARE, System.nanoTime() - start);
 
 				// if there's nothing to do, skip to the next object
 				if (lm == null) {
+					inSync = true;
 					return true;
 				}
 
@@ -813,9 +1770,20 @@ class SynchronizeTask implements Runnable {
 			}
 
 			// if we got here, we have a modification to apply - let's do it!
-			if (task.getDestinationService().apply(lm)) {
+			if (batch != null) {
+				// the result will be counted and logged once the batch is applied
+				batch.add(lm, id, (id != null ? id.getValue() : entry.getMainIdentifier()));
+				return true;
+			}
+			long start = System.nanoTime();
+			boolean applied = task.getDestinationService().apply(lm);
+			task.getMetrics().record(TaskMetrics.Phase.APPLY, System.nanoTime() - start);
+			if (applied) {
 				counter.incrementCountCompleted();
 				abstractSynchronize.logAction(lm, id, syncName);
+				// the destination values are not known anymore
+				inSync = true;
+				destinationFingerprint = null;
 				return true;
 			} else {
 				counter.incrementCountError();
@@ -834,7 +1802,35 @@ class SynchronizeTask implements Runnable {
 			counter.incrementCountError();
 			abstractSynchronize.logActionError(lm, (id != null ? id.getValue() : entry.getMainIdentifier()), e);
 			return false;
+		} finally {
+			// only the entries known to be in sync may be skipped next time
+			if (fingerprints != null) {
+				if (inSync) {
+					fingerprints.put(getFingerprintKey(entry), sourceFingerprint, destinationFingerprint);
+				} else {
+					fingerprints.remove(getFingerprintKey(entry));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if the source entry has not changed since it has last been
+	 * found in sync with the destination, see {@link FingerprintStore}
+	 * @param entry the source entry
+	 * @return true if the entry does not need to be synchronized
+	 */
+	private boolean isUnchanged(IBean entry) {
+		FingerprintStore fingerprints = task.getFingerprints();
+		if (!fromSource || fingerprints == null || sourceFingerprint != null) {
+			return false;
 		}
+		sourceFingerprint = FingerprintStore.fingerprint(entry);
+		return fingerprints.isUnchanged(getFingerprintKey(entry), sourceFingerprint);
+	}
+
+	private String getFingerprintKey(IBean entry) {
+		return (id != null ? id.getKey() : entry.getMainIdentifier());
 	}
 
 	public String getSyncName() {
@@ -853,6 +1849,363 @@ class SynchronizeTask implements Runnable {
 		return id;
 	}
 
+	/**
+	 * Use a source entry already read by the caller, see
+	 * {@link IBatchReadableService}
+	 * @param srcBean the source entry, or null to read it
+	 */
+	public void setSourceBean(IBean srcBean) {
+		this.srcBean = srcBean;
+	}
+
+	/**
+	 * Use a destination entry already looked up by the caller, see
+	 * {@link IBatchReadableService}
+	 * @param dstBean the destination entry, or null if it does not exist
+	 */
+	public void setDestinationBean(IBean dstBean) {
+		this.dstBean = dstBean;
+		this.dstLookedUp = true;
+	}
+
+	/**
+	 * Defer the modifications to a batch instead of applying them one by one
+	 * @param batch the batch, or null to apply the modifications directly
+	 */
+	public void setBatch(ModificationsBatch batch) {
+		this.batch = batch;
+	}
+
+	/**
+	 * Search the destination entry in the source instead of synchronizing
+	 * it, and delete it if it is not found there, because it is missing from
+	 * the source pivots list. The destination entry is only read again if
+	 * the delete condition requires it and it has not been set, see
+	 * {@link #setDestinationBean(IBean)}
+	 * @param aborted flag shared by the clean tasks of the run, set when the
+	 *            connection is lost so that the remaining tasks do nothing
+	 */
+	public void setClean(AtomicBoolean aborted) {
+		this.clean = true;
+		this.cleanAborted = aborted;
+	}
+
+	/**
+	 * Delete the destination entry if it is not found in the source,
+	 * according to the delete condition
+	 */
+	private void clean() {
+		if (cleanAborted.get()) {
+			return;
+		}
+		try {
+			if (abstractSynchronize.getBean(task, task.getSourceService(), id.getKey(), id.getValue(), false, false) != null) {
+				return;
+			}
+			if (!abstractSynchronize.deleteOrphan(task, counter, id, (dstLookedUp ? dstBean : null))) {
+				cleanAborted.set(true);
+			}
+		} catch (RuntimeException e) {
+			counter.incrementCountError();
+			abstractSynchronize.logActionError(null, id.getValue(), e);
+
+			if (e.getCause() instanceof LscServiceCommunicationException) {
+				AbstractSynchronize.LOGGER.error("Connection lost! Aborting.");
+				cleanAborted.set(true);
+			}
+		} catch (Exception e) {
+			counter.incrementCountError();
+			abstractSynchronize.logActionError(null, id.getValue(), e);
+
+			if (e instanceof LscServiceCommunicationException) {
+				AbstractSynchronize.LOGGER.error("Connection lost! Aborting.");
+				cleanAborted.set(true);
+			}
+		}
+	}
+}
+
+/**
+ * Modifications waiting to be applied together to a destination service.
+ * 
+ * The synchronization threads add their modifications, and the pending
+ * modifications are applied once the batch size is reached, or once the
+ * oldest one has been waiting longer than the batch delay. The result of
+ * each modification is then counted and logged as if it had been applied
+ * by itself.
+ */
+class ModificationsBatch {
+
+	static final Logger LOGGER = LoggerFactory.getLogger(ModificationsBatch.class);
+
+	private final Task task;
+	private final InfoCounter counter;
+	private final AbstractSynchronize abstractSynchronize;
+	private final IBatchWritableService service;
+	private final int size;
+	private final long delay;
+
+	private List<LscModifications> modifications;
+	private List<Object> identifiers;
+	private List<Entry<String, LscDatasets>> ids;
+	private long firstPendingTime;
+	private volatile boolean aborted;
+
+	private final ScheduledExecutorService flusher;
+
+	/**
+	 * @param size the maximum number of pending modifications
+	 * @param delay the maximum time a modification is kept pending, in milliseconds
+	 */
+	public ModificationsBatch(Task task, InfoCounter counter, AbstractSynchronize abstractSynchronize,
+					int size, long delay) {
+		this.task = task;
+		this.counter = counter;
+		this.abstractSynchronize = abstractSynchronize;
+		this.service = (IBatchWritableService) task.getDestinationService();
+		this.size = size;
+		this.delay = delay;
+		reset();
+
+		flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "batch-" + ModificationsBatch.this.task.getName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		flusher.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				flushExpired();
+			}
+		}, delay, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void reset() {
+		modifications = new ArrayList<LscModifications>(size);
+		identifiers = new ArrayList<Object>(size);
+		ids = new ArrayList<Entry<String, LscDatasets>>(size);
+	}
+
+	/**
+	 * Add a modification, applying the batch if it is full. The batch is
+	 * applied while holding its lock, so that the modifications reach the
+	 * destination in the order they were added, whichever thread applies
+	 * them.
+	 * @param lm the modification
+	 * @param id the entry identifier, may be null
+	 * @param identifier the entry identifier to log in case of error
+	 */
+	public synchronized void add(LscModifications lm, Entry<String, LscDatasets> id, Object identifier) {
+		if (modifications.isEmpty()) {
+			firstPendingTime = System.currentTimeMillis();
+		}
+		modifications.add(lm);
+		identifiers.add(identifier);
+		ids.add(id);
+		if (modifications.size() >= size) {
+			flush();
+		}
+	}
+
+	private synchronized void flushExpired() {
+		if (!modifications.isEmpty() && System.currentTimeMillis() - firstPendingTime >= delay) {
+			flush();
+		}
+	}
+
+	/**
+	 * Apply all the pending modifications
+	 */
+	public synchronized void flush() {
+		if (modifications.isEmpty()) {
+			return;
+		}
+		List<LscModifications> pending = modifications;
+		List<Object> pendingIdentifiers = identifiers;
+		List<Entry<String, LscDatasets>> pendingIds = ids;
+		reset();
+		apply(pending, pendingIds, pendingIdentifiers);
+	}
+
+	/**
+	 * Stop the periodic flush and apply the pending modifications
+	 */
+	public void close() {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(abstractSynchronize.getTimeLimit(), TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+		flush();
+	}
+
+	/**
+	 * @return true if the connection to the destination has been lost: the
+	 *         remaining modifications are not applied anymore, and no more
+	 *         entries should be synchronized
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	private void apply(List<LscModifications> lms, List<Entry<String, LscDatasets>> lmIds, List<Object> lmIdentifiers) {
+		boolean[] results = null;
+		Exception failure = null;
+		long start = System.nanoTime();
+		if (aborted) {
+			failure = new Exception("Connection lost, modification not applied");
+		} else {
+			try {
+				results = service.apply(lms);
+				task.getMetrics().record(TaskMetrics.Phase.APPLY, System.nanoTime() - start);
+			} catch (LscServiceException e) {
+				failure = e;
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		}
+
+		for (int i = 0; i < lms.size(); i++) {
+			if (results != null && results[i]) {
+				counter.incrementCountCompleted();
+				abstractSynchronize.logAction(lms.get(i), lmIds.get(i), task.getName());
+			} else {
+				counter.incrementCountError();
+				abstractSynchronize.logActionError(lms.get(i), lmIdentifiers.get(i), (failure != null ? failure
+								: new Exception("Technical problem while applying modifications to the destination")));
+			}
+		}
+		if (!aborted && failure != null && (failure instanceof LscServiceCommunicationException
+						|| failure.getCause() instanceof LscServiceCommunicationException)) {
+			LOGGER.error("Connection lost! Aborting the synchronization of task {}.", task.getName());
+			aborted = true;
+		}
+	}
+}
+
+/**
+ * Walk through the sorted entries of a service, as used by the merge mode,
+ * and check they are really ordered on the pivot attributes.
+ */
+class MergeCursor {
+
+	static final Logger LOGGER = LoggerFactory.getLogger(MergeCursor.class);
+
+	/** Separator between the pivot values in the merge key */
+	private static final char KEY_SEPARATOR = '\u0000';
+
+	private final Iterator<IBean> beans;
+	private final List<String> pivotAttributes;
+	private final String serviceName;
+	private final InfoCounter counter;
+
+	private Position position;
+
+	public MergeCursor(Iterator<IBean> beans, List<String> pivotAttributes, String serviceName, InfoCounter counter) {
+		this.beans = beans;
+		this.pivotAttributes = pivotAttributes;
+		this.serviceName = serviceName;
+		this.counter = counter;
+	}
+
+	/**
+	 * Move to the next entry. Entries without any pivot value are reported
+	 * as errors and skipped.
+	 * @return false if there are no more entries
+	 * @throws LscServiceException if the entries are not correctly sorted
+	 */
+	public boolean next() throws LscServiceException {
+		String previousKey = (position != null ? position.key : null);
+		while (beans.hasNext()) {
+			IBean bean = beans.next();
+			Map<String, Object> pivots = new HashMap<String, Object>();
+			String key = getKey(bean, pivots);
+			if (key == null) {
+				counter.incrementCountError();
+				LOGGER.error("Entry {} from the {} has no pivot value, skipping it", bean.getMainIdentifier(), serviceName);
+				continue;
+			}
+			if (previousKey != null && key.compareTo(previousKey) <= 0) {
+				throw new LscServiceException("Entries from the " + serviceName + " are not sorted on the pivot attributes, or have duplicate pivots ("
+								+ bean.getMainIdentifier() + " after " + position.bean.getMainIdentifier() + ")");
+			}
+			position = new Position(key, bean, new AbstractMap.SimpleEntry<String, LscDatasets>(bean.getMainIdentifier(), new LscDatasets(pivots)));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Build the merge key from the pivot values, lower cased. For a multi
+	 * valued pivot the smallest value is used, as a server side sort does.
+	 * @param bean the entry
+	 * @param pivots filled with the pivot values
+	 * @return the key, or null if a pivot has no value
+	 */
+	private String getKey(IBean bean, Map<String, Object> pivots) {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < pivotAttributes.size(); i++) {
+			String pivotAttribute = pivotAttributes.get(i);
+			Set<Object> values = bean.getDatasetById(pivotAttribute);
+			if (values == null || values.isEmpty()) {
+				return null;
+			}
+			String smallest = null;
+			for (Object value : values) {
+				String stringValue = (value instanceof byte[] ? new String((byte[]) value) : value.toString()).toLowerCase();
+				if (smallest == null || stringValue.compareTo(smallest) < 0) {
+					smallest = stringValue;
+					pivots.put(pivotAttribute, value);
+				}
+			}
+			if (i > 0) {
+				key.append(KEY_SEPARATOR);
+			}
+			key.append(smallest);
+		}
+		return key.toString();
+	}
+
+	public String getKey() {
+		return position.key;
+	}
+
+	public IBean getBean() {
+		return position.bean;
+	}
+
+	public Entry<String, LscDatasets> getId() {
+		return position.id;
+	}
+
+	public Position getPosition() {
+		return position;
+	}
+
+	/**
+	 * A read entry with its merge key and pivot values
+	 */
+	static class Position {
+		private final String key;
+		private final IBean bean;
+		private final Entry<String, LscDatasets> id;
+
+		Position(String key, IBean bean, Entry<String, LscDatasets> id) {
+			this.key = key;
+			this.bean = bean;
+			this.id = id;
+		}
+
+		public IBean getBean() {
+			return bean;
+		}
+
+		public Entry<String, LscDatasets> getId() {
+			return id;
+		}
+	}
 }
 
 /**
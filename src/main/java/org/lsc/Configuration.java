@@ -60,6 +60,7 @@ import java.util.Properties;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.StringUtils;
+import org.lsc.configuration.AuditType;
 import org.lsc.configuration.CsvAuditType;
 import org.lsc.configuration.JaxbXmlConfigurationHelper;
 import org.lsc.configuration.LdapConnectionType;
@@ -69,6 +70,7 @@ import org.lsc.configuration.PropertiesConfigurationHelper;
 import org.lsc.exception.LscConfigurationException;
 import org.lsc.exception.LscException;
 import org.lsc.jndi.JndiServices;
+import org.lsc.utils.output.AsyncAuditAppender;
 import org.lsc.utils.output.CsvLayout;
 import org.lsc.utils.output.LdifLayout;
 import org.slf4j.Logger;
@@ -77,7 +79,9 @@ import org.slf4j.LoggerFactory;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.joran.JoranConfigurator;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.Layout;
 import ch.qos.logback.core.joran.spi.JoranException;
 
 /**
@@ -567,12 +571,6 @@ public class Configuration {
 	protected static void setUpCsvLogging(LoggerContext context) {
 		CsvAuditType audit = (CsvAuditType) LscConfiguration.getAudit("CSV");
 
-		FileAppender<ILoggingEvent> appender = new FileAppender<ILoggingEvent>();
-		appender.setName(audit.getName());
-		appender.setAppend(audit.isAppend());
-		appender.setFile(audit.getFile());
-		appender.setContext(context);
-
 		CsvLayout csvLayout = new CsvLayout();
 		csvLayout.setLogOperations(audit.getOperations());
 		csvLayout.setAttrs(audit.getDatasets());
@@ -584,21 +582,12 @@ public class Configuration {
 		csvLayout.setContext(context);
 		csvLayout.start();
 
-		appender.setLayout(csvLayout);
-		appender.start();
-		ch.qos.logback.classic.Logger rootLogger = context.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
-		rootLogger.addAppender(appender);
+		setUpAuditAppender(context, audit, csvLayout);
 	}
 
 	protected static void setUpLdifLogging(LoggerContext context) {
 		LdifAuditType audit = (LdifAuditType) LscConfiguration.getAudit("LDIF");
 
-		FileAppender<ILoggingEvent> appender = new FileAppender<ILoggingEvent>();
-		appender.setName(audit.getName());
-		appender.setAppend(audit.isAppend());
-		appender.setFile(audit.getFile());
-		appender.setContext(context);
-
 		LdifLayout ldifLayout = new LdifLayout();
 		ldifLayout.setLogOperations(audit.getOperations());
 		if(audit.isLogOnlyLdif() != null) {
@@ -607,7 +596,37 @@ public class Configuration {
 		ldifLayout.setContext(context);
 		ldifLayout.start();
 
-		appender.setLayout(ldifLayout);
+		setUpAuditAppender(context, audit, ldifLayout);
+	}
+
+	/**
+	 * Write the audit events to the audit file, from a dedicated thread if
+	 * the audit is asynchronous
+	 * @param context the logging context
+	 * @param audit the audit configuration
+	 * @param layout the started audit layout
+	 */
+	private static void setUpAuditAppender(LoggerContext context, AuditType audit, Layout<ILoggingEvent> layout) {
+		Appender<ILoggingEvent> appender;
+		if (Boolean.TRUE.equals(audit.isAsynchronous())) {
+			AsyncAuditAppender asyncAppender = new AsyncAuditAppender();
+			asyncAppender.setAppend(audit.isAppend());
+			asyncAppender.setFile(audit.getFile());
+			if (audit.getBufferSize() != null) {
+				asyncAppender.setBufferSize(audit.getBufferSize());
+			}
+			asyncAppender.setFsync(Boolean.TRUE.equals(audit.isFsync()));
+			asyncAppender.setLayout(layout);
+			appender = asyncAppender;
+		} else {
+			FileAppender<ILoggingEvent> fileAppender = new FileAppender<ILoggingEvent>();
+			fileAppender.setAppend(audit.isAppend());
+			fileAppender.setFile(audit.getFile());
+			fileAppender.setLayout(layout);
+			appender = fileAppender;
+		}
+		appender.setName(audit.getName());
+		appender.setContext(context);
 		appender.start();
 		ch.qos.logback.classic.Logger rootLogger = context.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
 		rootLogger.addAppender(appender);
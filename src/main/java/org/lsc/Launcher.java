@@ -84,6 +84,9 @@ public final class Launcher {
 	/** List of the cleaning types. */
 	private List<String> cleanType;
 
+	/** List of the merged synchronizing and cleaning types. */
+	private List<String> mergeType;
+
 	/** Configuration files location */
 	private String configurationLocation;
 
@@ -95,6 +98,21 @@ public final class Launcher {
 
 	/** Time limit in seconds*/
 	private int timeLimit;
+
+	/** Number of modifications applied together */
+	private int batchSize;
+
+	/** Batch delay in milliseconds */
+	private long batchDelay;
+
+	/** Number of tasks run at the same time */
+	private int concurrentTasks;
+
+	/** Profile the scripts of all the tasks */
+	private boolean profile;
+
+	/** Slow entry threshold in milliseconds */
+	private long slowEntryThreshold;
 	
 	/** Available command line options definition */
 	private static Options options;
@@ -115,10 +133,16 @@ public final class Launcher {
 						"Asynchronous synchronization task (one of the available tasks or 'all')");
 		options.addOption("s", "synchronize", true, "Synchronization task (one of the available tasks or 'all')");
 		options.addOption("c", "clean", true, "Cleaning type (one of the available tasks or 'all')");
+		options.addOption("m", "merge", true, "Synchronization and cleaning in a single pass over sorted entries (one of the available tasks or 'all')");
 		options.addOption("v", "validate", false, "Validate configuration (check connections ...)");
 		options.addOption("f", "config", true, "Specify configuration directory");
 		options.addOption("t", "threads", true, "Number of parallel threads to synchronize a task (default: 5)");
 		options.addOption("i", "time-limit", true, "Time limit in parallel server mode in seconds (default: 3600)");
+		options.addOption("b", "batch-size", true, "Number of modifications applied together to the destination, if it supports it (default: 1)");
+		options.addOption("bd", "batch-delay", true, "Maximum time a modification waits for its batch to be full in milliseconds (default: 1000)");
+		options.addOption("ct", "concurrent-tasks", true, "Number of independent tasks run at the same time, sharing the threads (default: 1)");
+		options.addOption("pf", "profile", false, "Profile the scripts of all tasks and log the slow entries");
+		options.addOption("se", "slow-entry", true, "Time above which a profiled entry is logged in milliseconds (default: 1000)");
 		options.addOption("x", "convert", false, "Convert lsc.properties to lsc.xml (-f is mandatory while converting)");
 		options.addOption("h", "help", false, "Get this text");
 	}
@@ -130,6 +154,7 @@ public final class Launcher {
 		syncType = new ArrayList<String>();
 		asyncType = new ArrayList<String>();
 		cleanType = new ArrayList<String>();
+		mergeType = new ArrayList<String>();
 	}
 
 	/**
@@ -220,7 +245,24 @@ public final class Launcher {
 			if (timeLimit > 0) {
 				sync.setTimeLimit( timeLimit );
 			}
-			sync.launch(asyncType, syncType, cleanType);
+			if (batchSize > 0) {
+				sync.setBatchSize( batchSize );
+			}
+			if (batchDelay > 0) {
+				sync.setBatchDelay( batchDelay );
+			}
+			if (concurrentTasks > 0) {
+				sync.setConcurrentTasks( concurrentTasks );
+			}
+			if (profile) {
+				sync.setProfile( profile );
+			}
+			if (slowEntryThreshold > 0) {
+				sync.setSlowEntryThreshold( slowEntryThreshold );
+			}
+			if (!sync.launch(asyncType, syncType, cleanType, mergeType)) {
+				return 1;
+			}
 		} catch (Exception e) {
 			if (!Configuration.isLoggingSetup()) {
 				System.err.println("Error: " + e.toString());
@@ -260,9 +302,27 @@ public final class Launcher {
 			if (cmdLine.hasOption("i")) {
 				timeLimit = Integer.parseInt(cmdLine.getOptionValue("i"));
 			}
+			if (cmdLine.hasOption("b")) {
+				batchSize = Integer.parseInt(cmdLine.getOptionValue("b"));
+			}
+			if (cmdLine.hasOption("bd")) {
+				batchDelay = Long.parseLong(cmdLine.getOptionValue("bd"));
+			}
+			if (cmdLine.hasOption("ct")) {
+				concurrentTasks = Integer.parseInt(cmdLine.getOptionValue("ct"));
+			}
+			if (cmdLine.hasOption("pf")) {
+				profile = true;
+			}
+			if (cmdLine.hasOption("se")) {
+				slowEntryThreshold = Long.parseLong(cmdLine.getOptionValue("se"));
+			}
 			if (cmdLine.hasOption("c")) {
 				cleanType = parseSyncType(cmdLine.getOptionValue("c"));
 			}
+			if (cmdLine.hasOption("m")) {
+				mergeType = parseSyncType(cmdLine.getOptionValue("m"));
+			}
 			if (cmdLine.hasOption("x")) {
 				convertConfiguration = true;
 			}
@@ -272,12 +332,12 @@ public final class Launcher {
 		
 			if(cmdLine.getOptions().length == 0 || 
 							cmdLine.hasOption("h") || 
-							((asyncType.size() == 0) && (syncType.size() == 0) && (cleanType.size() == 0)) 
+							((asyncType.size() == 0) && (syncType.size() == 0) && (cleanType.size() == 0) && (mergeType.size() == 0)) 
 							&& ! convertConfiguration && ! validateConfiguration ) {
 				printHelp();
 				return 1;
 			}
-			if(!asyncType.isEmpty() && (!syncType.isEmpty() || !cleanType.isEmpty())) {
+			if(!asyncType.isEmpty() && (!syncType.isEmpty() || !cleanType.isEmpty() || !mergeType.isEmpty())) {
 				System.err.println("Asynchronous synchronization is mutually exclusive with synchronous synchronizing and cleaning !");
 				printHelp();
 				return 1;
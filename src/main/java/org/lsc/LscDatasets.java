@@ -51,10 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.directory.api.ldap.model.entry.BinaryValue;
-import org.apache.directory.api.ldap.model.filter.EqualityNode;
 import org.apache.directory.api.ldap.model.filter.FilterEncoder;
-import org.apache.directory.api.ldap.model.filter.SimpleNode;
 import org.lsc.utils.CaseIgnoreStringHashMap;
 
 /**
@@ -66,6 +63,8 @@ public class LscDatasets implements Serializable {
 
 	/**	 */
 	private static final long serialVersionUID = 746918525778409642L;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 	
 	/** The heart of this class - a map of datasets names to values */
 	protected Map<String, Object> values;
@@ -94,9 +93,15 @@ public class LscDatasets implements Serializable {
 	public String getValueForFilter(String attribute) {
 		Object value = values.get(attribute);
 		if(value instanceof byte[]) {
-			BinaryValue binValue = new BinaryValue((byte[])value);
-			SimpleNode<byte[]> filter = new EqualityNode<byte[]>(attribute, binValue);
-			return filter.getEscapedValue().toString();
+			// escape every byte, as the filter encoder does for non ASCII ones
+			byte[] bytes = (byte[]) value;
+			char[] escaped = new char[bytes.length * 3];
+			for (int i = 0; i < bytes.length; i++) {
+				escaped[i * 3] = '\\';
+				escaped[i * 3 + 1] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+				escaped[i * 3 + 2] = HEX_DIGITS[bytes[i] & 0x0f];
+			}
+			return new String(escaped);
 		} else {
 			String stringValue = getStringValueAttribute(attribute);
 			if (stringValue != null) {
@@ -0,0 +1,314 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lsc.TaskMetrics.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Profile the scripts and the entries of a task run.
+ * 
+ * The wall time of every expression evaluated through the
+ * {@link org.lsc.utils.ScriptingEvaluator} is accumulated by dataset and
+ * expression, the dataset being the one declared by the caller through
+ * {@link #enter(String)}. Entries whose processing takes longer than the
+ * threshold are logged with the time spent in each phase, and a report of
+ * the expressions ranked by cumulated time is logged at the end of the run.
+ * 
+ * Profiling is enabled for a task by its profile setting, or for all the
+ * tasks from the command line.
+ */
+public class ScriptProfiler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScriptProfiler.class);
+
+	/** Default slow entry threshold, in milliseconds */
+	public static final long DEFAULT_SLOW_ENTRY_THRESHOLD = 1000;
+
+	/** Dataset reported for expressions evaluated outside of any declared one */
+	private static final String NO_DATASET = "-";
+
+	/** Maximum length of the expressions written in the report */
+	private static final int MAX_EXPRESSION_LENGTH = 80;
+
+	/** The dataset whose values are being evaluated by the current thread */
+	private static final ThreadLocal<String> DATASET = new ThreadLocal<String>();
+
+	/**
+	 * Cumulated evaluations of an expression
+	 */
+	static final class ExpressionStats {
+		private final String dataset;
+		private final String expression;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		ExpressionStats(String dataset, String expression) {
+			this.dataset = dataset;
+			this.expression = expression;
+		}
+
+		void record(long nanos) {
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+			long currentMax = max.get();
+			while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+				currentMax = max.get();
+			}
+		}
+	}
+
+	/**
+	 * Time spent by the current thread in the phases of an entry
+	 */
+	private static final class EntryTiming {
+		private long start;
+		private final long[] phases = new long[Phase.values().length];
+	}
+
+	private final String taskName;
+
+	private final long slowEntryThreshold;
+
+	private final ConcurrentMap<String, ConcurrentMap<String, ExpressionStats>> expressions;
+
+	private final ThreadLocal<EntryTiming> entries;
+
+	/**
+	 * @param taskName the profiled task
+	 * @param slowEntryThreshold the time above which an entry is logged, in milliseconds
+	 */
+	public ScriptProfiler(String taskName, long slowEntryThreshold) {
+		this.taskName = taskName;
+		this.slowEntryThreshold = slowEntryThreshold * 1000000;
+		expressions = new ConcurrentHashMap<String, ConcurrentMap<String, ExpressionStats>>();
+		entries = new ThreadLocal<EntryTiming>() {
+			@Override
+			protected EntryTiming initialValue() {
+				return new EntryTiming();
+			}
+		};
+	}
+
+	/**
+	 * Declare the dataset whose values are going to be evaluated by the
+	 * current thread
+	 * @param dataset the dataset name, or a description of the evaluated script
+	 * @return the previous dataset, to be restored by {@link #exit(String)}
+	 */
+	public static String enter(String dataset) {
+		String previous = DATASET.get();
+		DATASET.set(dataset);
+		return previous;
+	}
+
+	/**
+	 * Restore the dataset declared before {@link #enter(String)}
+	 * @param previous the value returned by {@link #enter(String)}
+	 */
+	public static void exit(String previous) {
+		if (previous != null) {
+			DATASET.set(previous);
+		} else {
+			DATASET.remove();
+		}
+	}
+
+	/**
+	 * Record an expression evaluation
+	 * @param expression the expression
+	 * @param nanos the evaluation time, in nanoseconds
+	 */
+	public void recordExpression(String expression, long nanos) {
+		String dataset = DATASET.get();
+		if (dataset == null) {
+			dataset = NO_DATASET;
+		}
+		ConcurrentMap<String, ExpressionStats> datasetExpressions = expressions.get(dataset);
+		if (datasetExpressions == null) {
+			datasetExpressions = new ConcurrentHashMap<String, ExpressionStats>();
+			ConcurrentMap<String, ExpressionStats> existing = expressions.putIfAbsent(dataset, datasetExpressions);
+			if (existing != null) {
+				datasetExpressions = existing;
+			}
+		}
+		ExpressionStats stats = datasetExpressions.get(expression);
+		if (stats == null) {
+			stats = new ExpressionStats(dataset, expression);
+			ExpressionStats existing = datasetExpressions.putIfAbsent(expression, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		stats.record(nanos);
+	}
+
+	/**
+	 * Start timing an entry processed by the current thread
+	 */
+	public void startEntry() {
+		EntryTiming timing = entries.get();
+		for (int i = 0; i < timing.phases.length; i++) {
+			timing.phases[i] = 0;
+		}
+		timing.start = System.nanoTime();
+	}
+
+	/**
+	 * Add the duration of a phase to the entry processed by the current thread
+	 * @param phase the phase
+	 * @param nanos the duration, in nanoseconds
+	 */
+	public void recordPhase(Phase phase, long nanos) {
+		EntryTiming timing = entries.get();
+		if (timing.start != 0) {
+			timing.phases[phase.ordinal()] += nanos;
+		}
+	}
+
+	/**
+	 * Stop timing the entry processed by the current thread, and log it if
+	 * it has been too slow
+	 * @param id the entry identifier
+	 */
+	public void endEntry(Object id) {
+		EntryTiming timing = entries.get();
+		if (timing.start == 0) {
+			return;
+		}
+		long elapsed = System.nanoTime() - timing.start;
+		timing.start = 0;
+		if (elapsed < slowEntryThreshold) {
+			return;
+		}
+		StringBuilder phases = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			phases.append(phases.length() == 0 ? "" : ", ").append(phase.name().toLowerCase())
+							.append(": ").append(toMillis(timing.phases[phase.ordinal()])).append(" ms");
+		}
+		LOGGER.warn("Slow entry {} in task {}: {} ms ({})", new Object[] { id, taskName, toMillis(elapsed), phases });
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos / 1000000;
+	}
+
+	/**
+	 * @return the evaluated expressions, the most costly first
+	 */
+	List<ExpressionStats> getRankedExpressions() {
+		List<ExpressionStats> ranked = new ArrayList<ExpressionStats>();
+		for (ConcurrentMap<String, ExpressionStats> datasetExpressions : expressions.values()) {
+			ranked.addAll(datasetExpressions.values());
+		}
+		Collections.sort(ranked, new Comparator<ExpressionStats>() {
+			public int compare(ExpressionStats o1, ExpressionStats o2) {
+				long t1 = o1.total.get();
+				long t2 = o2.total.get();
+				return (t1 < t2 ? 1 : (t1 == t2 ? 0 : -1));
+			}
+		});
+		return ranked;
+	}
+
+	/**
+	 * Build the report of the evaluated expressions, ranked by cumulated time
+	 * @return the report
+	 */
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append("Script profile of task ").append(taskName).append(String.format("%n"));
+		report.append(String.format("%4s %12s %10s %10s %10s  %-20s %s%n",
+						"rank", "total (ms)", "calls", "mean (ms)", "max (ms)", "dataset", "expression"));
+		int rank = 0;
+		for (ExpressionStats stats : getRankedExpressions()) {
+			long count = stats.count.get();
+			long total = stats.total.get();
+			report.append(String.format("%4d %12.1f %10d %10.3f %10.1f  %-20s %s%n",
+							++rank, total / 1e6, count, (count > 0 ? total / 1e6 / count : 0d),
+							stats.max.get() / 1e6, stats.dataset, abbreviate(stats.expression)));
+		}
+		return report.toString();
+	}
+
+	private static String abbreviate(String expression) {
+		String oneLine = expression.replaceAll("\\s+", " ").trim();
+		return (oneLine.length() > MAX_EXPRESSION_LENGTH ? oneLine.substring(0, MAX_EXPRESSION_LENGTH - 3) + "..." : oneLine);
+	}
+
+	/**
+	 * Log the report of the evaluated expressions
+	 */
+	public void logReport() {
+		if (expressions.isEmpty()) {
+			LOGGER.info("No script evaluated by task {}", taskName);
+			return;
+		}
+		LOGGER.info(getReport());
+	}
+
+	/**
+	 * Get the total time spent evaluating an expression, mainly for tests
+	 * @param dataset the dataset
+	 * @param expression the expression
+	 * @return the total time, in nanoseconds, or 0 if it has not been evaluated
+	 */
+	long getTotal(String dataset, String expression) {
+		ConcurrentMap<String, ExpressionStats> datasetExpressions = expressions.get(dataset);
+		ExpressionStats stats = (datasetExpressions != null ? datasetExpressions.get(expression) : null);
+		return (stats != null ? stats.total.get() : 0);
+	}
+}
@@ -52,11 +52,17 @@ import java.lang.reflect.Method;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.lsc.beans.IBean;
@@ -66,6 +72,7 @@ import org.lsc.exception.LscConfigurationException;
 import org.lsc.jmx.LscServerImpl;
 import org.lsc.service.IAsynchronousService;
 import org.lsc.utils.LSCStructuralLogger;
+import org.lsc.utils.SequencesFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -87,8 +94,15 @@ public class SimpleSynchronize extends AbstractSynchronize {
 
 	public static final List<String> EMPTY_LIST = new ArrayList<String>();
 
+	/** The tasks already instantiated */
 	Map<String, Task> cache;
 
+	/** The configured tasks, instantiated on first use */
+	private Map<String, TaskType> taskTypes;
+
+	/** Maximum number of tasks running at the same time */
+	private int concurrentTasks;
+
 	/**
 	 * Default constructor
 	 */
@@ -96,17 +110,124 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		super();
 		setThreads(5); 
 		cache = new TreeMap<String, Task>();
+		taskTypes = new TreeMap<String, TaskType>();
+		concurrentTasks = 1;
+	}
+
+	/**
+	 * Concurrent tasks accessor
+	 * 
+	 * @return the maximum number of tasks running at the same time
+	 */
+	public int getConcurrentTasks() {
+		return concurrentTasks;
+	}
+
+	/**
+	 * Concurrent tasks accessor
+	 * 
+	 * @param concurrentTasks the maximum number of tasks running at the
+	 *            same time, independent ones according to their dependsOn
+	 *            configuration. The running tasks share the same
+	 *            synchronization threads budget, so no more than threads
+	 *            entries are synchronized at the same time against the
+	 *            shared services.
+	 */
+	public void setConcurrentTasks(int concurrentTasks) {
+		this.concurrentTasks = concurrentTasks;
 	}
 	
+	/**
+	 * Read the configured tasks. The tasks and their services are only
+	 * instantiated when they are launched for the first time.
+	 * @throws LscConfigurationException
+	 */
 	public void init() throws LscConfigurationException {
 		Collection<TaskType> tasks = LscConfiguration.getTasks();
-		for(TaskType t: tasks) {
-			cache.put(t.getName(), new Task(t));
+		synchronized (cache) {
+			for(TaskType t: tasks) {
+				taskTypes.put(t.getName(), t);
+			}
+		}
+	}
+
+	/**
+	 * Get the tasks, instantiating the ones not used yet. Most services
+	 * connect to their directory or database when they are created, so the
+	 * missing tasks are instantiated in parallel.
+	 * 
+	 * @param taskNames the names of configured tasks
+	 * @return the tasks, in the same order
+	 * @throws LscConfigurationException if a task can not be instantiated
+	 */
+	private List<Task> getTasks(List<String> taskNames) throws LscConfigurationException {
+		List<TaskType> missingTasks = new ArrayList<TaskType>();
+		synchronized (cache) {
+			for (String taskName : taskNames) {
+				if (!cache.containsKey(taskName)) {
+					missingTasks.add(taskTypes.get(taskName));
+				}
+			}
+		}
+
+		if (missingTasks.size() == 1) {
+			Task task = new Task(missingTasks.get(0));
+			synchronized (cache) {
+				cache.put(task.getName(), task);
+			}
+		} else if (missingTasks.size() > 1) {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(missingTasks.size(), Math.max(getThreads(), 1)));
+			List<Future<Task>> futures = new ArrayList<Future<Task>>();
+			for (final TaskType taskType : missingTasks) {
+				futures.add(executor.submit(new Callable<Task>() {
+					public Task call() throws LscConfigurationException {
+						return new Task(taskType);
+					}
+				}));
+			}
+			executor.shutdown();
+
+			// Keep the tasks which have been instantiated, so that they are closed
+			LscConfigurationException failure = null;
+			for (Future<Task> future : futures) {
+				try {
+					Task task = future.get();
+					synchronized (cache) {
+						cache.put(task.getName(), task);
+					}
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = (e.getCause() instanceof LscConfigurationException ? (LscConfigurationException) e.getCause()
+										: new LscConfigurationException(e.getCause()));
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new LscConfigurationException(e);
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
 		}
+
+		List<Task> tasks = new ArrayList<Task>();
+		synchronized (cache) {
+			for (String taskName : taskNames) {
+				tasks.add(cache.get(taskName));
+			}
+		}
+		return tasks;
 	}
 	
 	private void close() {
-		for (Task task: cache.values()) {
+		// give back the sequence values reserved but not used before the
+		// directory connections are closed
+		SequencesFactory.releaseInstance();
+		List<Task> tasks;
+		synchronized (cache) {
+			tasks = new ArrayList<Task>(cache.values());
+		}
+		for (Task task: tasks) {
 			if (task.getSourceService() instanceof Closeable) {
 				try {
 					((Closeable)task.getSourceService()).close();
@@ -138,6 +259,24 @@ public class SimpleSynchronize extends AbstractSynchronize {
 	 */
 	public final boolean launch(final List<String> asyncTasks, final List<String> syncTasks,
 					final List<String> cleanTasks) throws Exception {
+		return launch(asyncTasks, syncTasks, cleanTasks, EMPTY_LIST);
+	}
+
+	/**
+	 * Main method Check properties, and for each task, launch the
+	 * synchronization and the cleaning phases, or the merge of both.
+	 * @param asyncTasks 
+	 *                string list of the asynchronous synchronization tasks to launch
+	 * @param syncTasks string list of the synchronization tasks to launch
+	 * @param cleanTasks string list of the cleaning tasks to launch
+	 * @param mergeTasks string list of the tasks to synchronize and clean in a single sorted pass
+	 *
+	 * @return the launch status - true if all tasks executed successfully, 
+	 * 				false if no tasks were executed or any failed
+	 * @throws Exception
+	 */
+	public final boolean launch(final List<String> asyncTasks, final List<String> syncTasks,
+					final List<String> cleanTasks, final List<String> mergeTasks) throws Exception {
 		Boolean foundATask = false;
 		boolean canClose = true;
 		boolean launchResult = true;
@@ -147,49 +286,63 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		boolean isASyncTaskAll = asyncTasks.contains(ALL_TASKS_KEYWORD);
 		boolean isSyncTaskAll = syncTasks.contains(ALL_TASKS_KEYWORD);
 		boolean isCleanTaskAll = cleanTasks.contains(ALL_TASKS_KEYWORD);
+		boolean isMergeTaskAll = mergeTasks.contains(ALL_TASKS_KEYWORD);
 		
 		if(getTasksName() == null) {
 			return false;
-		} else if(getTasks().length == 0) {
+		} else if(taskTypes.isEmpty()) {
 			init();
 		}
 		if(!asyncTasks.isEmpty()) {
             LscServerImpl.startJmx(this);
 		}
+
+		// Only instantiate the requested tasks
+		List<String> taskNames = new ArrayList<String>();
+		for (String taskName: getTaskNames()) {
+			if (isSyncTaskAll || syncTasks.contains(taskName)
+							|| isCleanTaskAll || cleanTasks.contains(taskName)
+							|| isMergeTaskAll || mergeTasks.contains(taskName)
+							|| isASyncTaskAll || asyncTasks.contains(taskName)) {
+				taskNames.add(taskName);
+			}
+		}
 		
-		for (Task task: cache.values()) {
+		if (concurrentTasks > 1 && taskNames.size() > 1) {
+			LOGGER.info("Up to {} tasks run at the same time, sharing {} synchronization threads",
+							concurrentTasks, getThreads());
+		}
+		TaskScheduler scheduler = new TaskScheduler(concurrentTasks);
+		for (final Task task: getTasks(taskNames)) {
+			foundATask = true;
 
 			// Launch the task either if explicitly specified or if "all" magic keyword used
-			if (isSyncTaskAll || syncTasks.contains(task.getName())) {
-				foundATask = true;
-
-				if (!launchTask(task, Task.Mode.sync)) {
-					launchResult = false;
-				} else {
-					if(task.getSyncHook() != null && task.getSyncHook() != "") {
-						runPostHook(task.getName(), task.getSyncHook(), task.getTaskType());
-					}
-				}
+			final boolean sync = isSyncTaskAll || syncTasks.contains(task.getName());
+			final boolean clean = isCleanTaskAll || cleanTasks.contains(task.getName());
+			final boolean merge = isMergeTaskAll || mergeTasks.contains(task.getName());
+			final boolean async = isASyncTaskAll || asyncTasks.contains(task.getName());
+			if (async) {
+				canClose = false;
 			}
-			if (isCleanTaskAll || cleanTasks.contains(task.getName())) {
-				foundATask = true;
 
-				if (!launchTask(task, Task.Mode.clean)) {
-					launchResult = false;
-				} else {
-					if(task.getCleanHook() != null && task.getCleanHook() != "") {
-						runPostHook(task.getName(), task.getCleanHook(), task.getTaskType());
-					}
-				}
+			List<String> dependsOn = new ArrayList<String>();
+			if (task.getTaskType().getDependsOn() != null) {
+				dependsOn.addAll(task.getTaskType().getDependsOn().getString());
 			}
-			if (isASyncTaskAll || asyncTasks.contains(task.getName())) {
-				foundATask = true;
-				
-				canClose = false;
-
-				if(!launchTask(task, Task.Mode.async)) {
-					launchResult = false;
+			scheduler.add(task.getName(), dependsOn, new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return launchTask(task, sync, clean, merge, async);
 				}
+			});
+		}
+
+		// Independent tasks run concurrently, up to the configured number
+		for (Entry<String, TaskScheduler.Status> status: scheduler.run().entrySet()) {
+			if (status.getValue() != TaskScheduler.Status.SUCCEEDED) {
+				LOGGER.error("Task {} {}", status.getKey(), status.getValue().name().toLowerCase());
+				launchResult = false;
+			} else {
+				LOGGER.debug("Task {} {}", status.getKey(), status.getValue().name().toLowerCase());
 			}
 		}
 		
@@ -205,6 +358,57 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		return launchResult;
 	}
 
+	/**
+	 * Launch the requested modes of a task, and their post hooks
+	 * 
+	 * @param task the task
+	 * @param sync true to synchronize
+	 * @param clean true to clean
+	 * @param merge true to synchronize and clean in a single pass
+	 * @param async true to start the asynchronous synchronization
+	 * @return true if all the modes succeeded
+	 * @throws Exception
+	 */
+	private boolean launchTask(final Task task, boolean sync, boolean clean, boolean merge, boolean async) throws Exception {
+		boolean launchResult = true;
+		if (sync) {
+			if (!launchTask(task, Task.Mode.sync)) {
+				launchResult = false;
+			} else {
+				if(task.getSyncHook() != null && task.getSyncHook() != "") {
+					runPostHook(task.getName(), task.getSyncHook(), task.getTaskType());
+				}
+			}
+		}
+		if (clean) {
+			if (!launchTask(task, Task.Mode.clean)) {
+				launchResult = false;
+			} else {
+				if(task.getCleanHook() != null && task.getCleanHook() != "") {
+					runPostHook(task.getName(), task.getCleanHook(), task.getTaskType());
+				}
+			}
+		}
+		if (merge) {
+			if (!launchTask(task, Task.Mode.merge)) {
+				launchResult = false;
+			} else {
+				if(task.getSyncHook() != null && task.getSyncHook() != "") {
+					runPostHook(task.getName(), task.getSyncHook(), task.getTaskType());
+				}
+				if(task.getCleanHook() != null && task.getCleanHook() != "") {
+					runPostHook(task.getName(), task.getCleanHook(), task.getTaskType());
+				}
+			}
+		}
+		if (async) {
+			if(!launchTask(task, Task.Mode.async)) {
+				launchResult = false;
+			}
+		}
+		return launchResult;
+	}
+
 	/**
 	 * Launch a task. Call this for once each task type and task mode.
 	 *
@@ -231,6 +435,9 @@ public class SimpleSynchronize extends AbstractSynchronize {
 				case sync:
 					status = synchronize2Ldap(task);
 					break;
+				case merge:
+					status = merge2Ldap(task);
+					break;
 				case async:
 					if(task.getSourceService() instanceof IAsynchronousService
 					        || task.getDestinationService() instanceof IAsynchronousService) {
@@ -331,22 +538,92 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		}
 	}
 
+	/**
+	 * Get the tasks already instantiated
+	 * @return the tasks, by name
+	 */
 	public Set<Entry<String, Task>> getTasksName() {
 		return cache.entrySet();
 	}
+
+	/**
+	 * Get a task only if it has already been instantiated, see
+	 * {@link #getTask(String)}
+	 * @param taskName the task name
+	 * @return the task, or null if it has not been used yet or is not configured
+	 */
+	public Task getInstantiatedTask(String taskName) {
+		synchronized (cache) {
+			return cache.get(taskName);
+		}
+	}
+
+	/**
+	 * Get the names of all the configured tasks, without instantiating them
+	 * @return the task names
+	 */
+	public List<String> getTaskNames() {
+		synchronized (cache) {
+			return new ArrayList<String>(taskTypes.keySet());
+		}
+	}
 	
+	/**
+	 * Check whether the source service of a task is asynchronous, from the
+	 * configuration, without instantiating the task
+	 * @param taskName the task name
+	 * @return true if the source service implements IAsynchronousService
+	 */
 	public boolean isAsynchronousTask(String taskName) {
-		return cache.get(taskName).getSourceService() instanceof IAsynchronousService;
+		TaskType taskType;
+		synchronized (cache) {
+			taskType = taskTypes.get(taskName);
+		}
+		if (taskType == null || LscConfiguration.getSourceService(taskType) == null) {
+			return false;
+		}
+		try {
+			return IAsynchronousService.class.isAssignableFrom(LscConfiguration.getServiceImplementation(LscConfiguration.getSourceService(taskType)));
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
 	}
 
+	/**
+	 * Get a task, instantiating it if it has not been used yet
+	 * @param taskName the task name
+	 * @return the task, or null if it is not configured or can not be instantiated
+	 */
 	@Override
 	public Task getTask(String taskName) {
-		return cache.get(taskName);
+		synchronized (cache) {
+			if (cache.containsKey(taskName) || !taskTypes.containsKey(taskName)) {
+				return cache.get(taskName);
+			}
+		}
+		try {
+			return getTasks(Collections.singletonList(taskName)).get(0);
+		} catch (LscConfigurationException e) {
+			LOGGER.error("Error while instantiating task \"{}\". Please check your configuration! ({})", taskName, e.toString());
+			LOGGER.debug(e.toString(), e);
+			return null;
+		}
 	}
 
+	/**
+	 * Get all the configured tasks, instantiating the ones not used yet
+	 * @return the tasks
+	 */
 	@Override
 	public Task[] getTasks() {
-		return cache.values().toArray(new Task[cache.values().size()]);
+		List<Task> tasks = new ArrayList<Task>();
+		for (String taskName : getTaskNames()) {
+			Task task = getTask(taskName);
+			if (task != null) {
+				tasks.add(task);
+			}
+		}
+		return tasks.toArray(new Task[tasks.size()]);
 	}
 
 	/**
@@ -356,7 +633,7 @@ public class SimpleSynchronize extends AbstractSynchronize {
 	 * @return false if at least one synchronization has failed, true if all of them have succeeded
 	 */
 	public final boolean launchById(String taskName, Map<String, LscDatasets> entries) {
-		Task task = cache.get(taskName);
+		Task task = getTask(taskName);
 		InfoCounter counter = new InfoCounter();
 		for(Entry<String, LscDatasets> entry : entries.entrySet()) {
 		    new SynchronizeTask(task, counter, this, entry, true).run();
@@ -365,7 +642,7 @@ public class SimpleSynchronize extends AbstractSynchronize {
 	}
 
 	public final boolean launch(String taskName, IBean bean) {
-		Task task = cache.get(taskName);
+		Task task = getTask(taskName);
 		InfoCounter counter = new InfoCounter();
 		return new SynchronizeTask(task, counter, this, null, true).run(bean);
 	}
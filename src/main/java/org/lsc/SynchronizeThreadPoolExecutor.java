@@ -3,8 +3,10 @@ package org.lsc;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,11 +24,26 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 
 	BlockingQueue<Runnable> queue;
 
+	/** Number of tasks submitted and not yet completed */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/** The workers budget shared with the pools of the other running tasks, or null */
+	private final Semaphore workers;
+
 	/** Default logger */
 	final Logger LOGGER = LoggerFactory
 			.getLogger(SynchronizeThreadPoolExecutor.class);
 
 	protected SynchronizeThreadPoolExecutor(int threads) {
+		this(threads, null);
+	}
+
+	/**
+	 * @param threads the number of threads of this pool
+	 * @param workers the permits to run an entry synchronization, shared by
+	 *            the pools of all the running tasks, or null
+	 */
+	protected SynchronizeThreadPoolExecutor(int threads, Semaphore workers) {
 		super(threads, threads, keepAliveTime, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), new RejectedExecutionHandler() {
 			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
 				// this will block if the queue is full
@@ -40,12 +57,15 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 			}
 		);
 		queue = getQueue(); 
+		this.workers = workers;
 	}
 
 	/**
 	 * Run a task
 	 * In the threadpoolexecutor implementation, store it in the queue and let
-	 * the pool consume it as soon as it can, in a FIFO way without any priority
+	 * the pool consume it as soon as it can, in a FIFO way without any priority.
+	 * Wait first for a worker permit if the workers are shared with the other
+	 * running tasks
 	 * @param task the runnable object
 	 */
 	protected void runTask(SynchronizeTask task) {
@@ -54,7 +74,24 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 //			LOGGER.debug("Queue Size before assigning the task.."
 //					+ queue.size());
 //		}
-		execute(task);
+		if (workers != null) {
+			try {
+				workers.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+		pending.incrementAndGet();
+		try {
+			execute(task);
+		} catch (RuntimeException e) {
+			pending.decrementAndGet();
+			if (workers != null) {
+				workers.release();
+			}
+			throw e;
+		}
 		this.beforeExecute(new Thread(task.getSyncName() + "-" + task.getId().getKey()), task);
 //		if (LOGGER.isDebugEnabled()) {
 //			LOGGER.debug("Queue Size after assigning the task: {}", queue.size());
@@ -77,4 +114,23 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 			t.setName(task.getSyncName() + "-" + t.getId());
 		}
 	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		super.afterExecute(r, t);
+		if(r instanceof SynchronizeTask) {
+			pending.decrementAndGet();
+			if (workers != null) {
+				workers.release();
+			}
+		}
+	}
+
+	/**
+	 * Check whether all the submitted tasks have been completed
+	 * @return true if no task is waiting or running
+	 */
+	public boolean isIdle() {
+		return pending.get() == 0;
+	}
 }
@@ -58,6 +58,7 @@ import org.lsc.beans.syncoptions.SyncOptionsFactory;
 import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscConfigurationException;
+import org.lsc.service.FingerprintStore;
 import org.lsc.service.IService;
 import org.lsc.service.IWritableService;
 import org.slf4j.Logger;
@@ -75,7 +76,8 @@ public class Task {
 	public enum Mode {
 		clean,
 		sync,
-		async;
+		async,
+		merge;
 	}
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Task.class);
@@ -99,10 +101,15 @@ public class Task {
 	private String syncHook;
 	
 	private TaskType taskType;
+
+	private final TaskMetrics metrics;
+
+	private volatile FingerprintStore fingerprints;
 	
 	public Task(TaskType t) throws LscConfigurationException {
 		this.name = t.getName();
 		this.taskType = t;
+		this.metrics = new TaskMetrics(name);
 		try {
 			cleanHook = t.getCleanHook();
 			syncHook = t.getSyncHook();
@@ -216,4 +223,23 @@ public class Task {
 	public TaskType getTaskType() {
 		return taskType;
 	}
+
+	/**
+	 * @return the throughput and latencies of this task
+	 */
+	public TaskMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the fingerprints of the entries of the current run, or null
+	 *         if they are not recorded
+	 */
+	public FingerprintStore getFingerprints() {
+		return fingerprints;
+	}
+
+	public void setFingerprints(FingerprintStore fingerprints) {
+		this.fingerprints = fingerprints;
+	}
 }
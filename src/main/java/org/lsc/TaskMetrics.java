@@ -0,0 +1,243 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lsc.utils.LatencyHistogram;
+
+/**
+ * Throughput and latencies of a task, exposed through JMX.
+ * 
+ * The synchronization threads record the time spent in each phase of an
+ * entry synchronization. Everything is lock free so that the measures do
+ * not slow down the threads they measure. Phases may be nested: the time of
+ * the scripts evaluated while comparing the entries is counted both in
+ * {@link Phase#SCRIPT} and {@link Phase#COMPARE}. The latencies and the
+ * entries count are cumulated since the task has been loaded, while the
+ * throughput is measured for each run.
+ */
+public class TaskMetrics {
+
+	/**
+	 * Measured phases of an entry synchronization
+	 */
+	public enum Phase {
+		/** Read the entry from the source service */
+		SOURCE_READ,
+		/** Read the entry from the destination service */
+		DESTINATION_READ,
+		/** Evaluate a script, condition or dataset value */
+		SCRIPT,
+		/** Compute the modifications to apply */
+		COMPARE,
+		/** Apply the modifications to the destination service */
+		APPLY;
+	}
+
+	private final String taskName;
+
+	private final Map<Phase, LatencyHistogram> histograms;
+
+	/** Entries handled since the task has been loaded */
+	private final AtomicLong entries;
+
+	/** Entries handled during the current or last run */
+	private final AtomicLong runEntries;
+
+	private volatile long runStart;
+
+	private volatile long runEnd;
+
+	private volatile SynchronizeThreadPoolExecutor threadPool;
+
+	/** The profiler of the current run, or null if it is not profiled */
+	private volatile ScriptProfiler profiler;
+
+	public TaskMetrics(String taskName) {
+		this.taskName = taskName;
+		histograms = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new LatencyHistogram());
+		}
+		entries = new AtomicLong();
+		runEntries = new AtomicLong();
+	}
+
+	/**
+	 * Start measuring a run of the task
+	 * @param threadPool the pool running the synchronization threads
+	 */
+	public void startRun(SynchronizeThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+		runEntries.set(0);
+		runEnd = 0;
+		runStart = System.nanoTime();
+	}
+
+	/**
+	 * Stop measuring the current run
+	 */
+	public void endRun() {
+		runEnd = System.nanoTime();
+		threadPool = null;
+	}
+
+	/**
+	 * Count an entry handled by the task
+	 */
+	public void entryProcessed() {
+		entries.incrementAndGet();
+		runEntries.incrementAndGet();
+	}
+
+	/**
+	 * Record the duration of a phase
+	 * @param phase the phase
+	 * @param nanos the duration, in nanoseconds
+	 */
+	public void record(Phase phase, long nanos) {
+		histograms.get(phase).record(nanos);
+		ScriptProfiler currentProfiler = profiler;
+		if (currentProfiler != null) {
+			currentProfiler.recordPhase(phase, nanos);
+		}
+	}
+
+	/**
+	 * Record the evaluation time of a script
+	 * @param expression the evaluated expression
+	 * @param nanos the duration, in nanoseconds
+	 */
+	public void recordScript(String expression, long nanos) {
+		record(Phase.SCRIPT, nanos);
+		ScriptProfiler currentProfiler = profiler;
+		if (currentProfiler != null) {
+			currentProfiler.recordExpression(expression, nanos);
+		}
+	}
+
+	/**
+	 * Start timing an entry processed by the current thread, if the run is
+	 * profiled
+	 */
+	public void startEntry() {
+		ScriptProfiler currentProfiler = profiler;
+		if (currentProfiler != null) {
+			currentProfiler.startEntry();
+		}
+	}
+
+	/**
+	 * Stop timing the entry processed by the current thread, see
+	 * {@link #startEntry()}
+	 * @param id the entry identifier
+	 */
+	public void endEntry(Object id) {
+		ScriptProfiler currentProfiler = profiler;
+		if (currentProfiler != null) {
+			currentProfiler.endEntry(id);
+		}
+	}
+
+	/**
+	 * @return the profiler of the current or last run, or null if it is not profiled
+	 */
+	public ScriptProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Profile the next runs, see {@link #startRun(SynchronizeThreadPoolExecutor)}
+	 * @param profiler the profiler, or null to stop profiling
+	 */
+	public void setProfiler(ScriptProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	public String getTaskName() {
+		return taskName;
+	}
+
+	/**
+	 * @return the number of entries handled since the task has been loaded
+	 */
+	public long getEntries() {
+		return entries.get();
+	}
+
+	/**
+	 * @return the throughput of the current run, or of the last one if the
+	 *         task is not running
+	 */
+	public double getEntriesPerSecond() {
+		long start = runStart;
+		if (start == 0) {
+			return 0;
+		}
+		long end = runEnd;
+		long elapsed = (end != 0 ? end : System.nanoTime()) - start;
+		return elapsed > 0 ? runEntries.get() * 1000000000d / elapsed : 0;
+	}
+
+	/**
+	 * @return the number of entries waiting for a synchronization thread
+	 */
+	public int getQueueDepth() {
+		SynchronizeThreadPoolExecutor pool = threadPool;
+		return pool != null ? pool.getQueue().size() : 0;
+	}
+
+	/**
+	 * @param phase the phase
+	 * @return the durations recorded for this phase
+	 */
+	public LatencyHistogram getHistogram(Phase phase) {
+		return histograms.get(phase);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.lsc.exception.LscConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run the launched tasks according to their dependencies. A task is started
+ * once all the tasks it depends on have succeeded, and at most a given number
+ * of tasks run at the same time. A task depending on a failed task is skipped.
+ * 
+ * Tasks without dependencies are started in the order they have been added,
+ * so that running them one at a time keeps the configuration order.
+ */
+class TaskScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskScheduler.class);
+
+	/** Final state of a task */
+	enum Status {
+		SUCCEEDED,
+		FAILED,
+		SKIPPED;
+	}
+
+	private final int concurrency;
+
+	/** The tasks to run, by name, in the order they have been added */
+	private final Map<String, Node> nodes;
+
+	/**
+	 * @param concurrency the maximum number of tasks running at the same time
+	 */
+	public TaskScheduler(int concurrency) {
+		this.concurrency = Math.max(concurrency, 1);
+		this.nodes = new LinkedHashMap<String, Node>();
+	}
+
+	/**
+	 * Add a task to run
+	 * @param name the task name
+	 * @param dependsOn the names of the tasks which must succeed first. The
+	 *            ones which are not added to this scheduler are ignored
+	 * @param job the task run, returning its status
+	 */
+	public void add(String name, Collection<String> dependsOn, Callable<Boolean> job) {
+		nodes.put(name, new Node(name, dependsOn, job));
+	}
+
+	/**
+	 * Run all the tasks, and wait for them to complete
+	 * @return the final status of each task, by name
+	 * @throws LscConfigurationException if the dependencies are circular
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	public Map<String, Status> run() throws LscConfigurationException, InterruptedException {
+		// Link the dependencies, then check they can all be satisfied
+		for (Node node : nodes.values()) {
+			for (String dependency : node.dependsOn) {
+				Node required = nodes.get(dependency);
+				if (required == null) {
+					LOGGER.debug("Task {} depends on {} which is not launched, ignoring this dependency", node.name, dependency);
+				} else if (required != node) {
+					required.dependents.add(node);
+					node.remaining++;
+				}
+			}
+		}
+		checkCycles();
+
+		Map<String, Status> statuses = new LinkedHashMap<String, Status>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(nodes.size(), 1)));
+		CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(executor);
+		Map<Future<Boolean>, Node> running = new LinkedHashMap<Future<Boolean>, Node>();
+		try {
+			for (Node node : nodes.values()) {
+				if (node.remaining == 0) {
+					running.put(completion.submit(node.job), node);
+				}
+			}
+			while (!running.isEmpty()) {
+				Future<Boolean> future = completion.take();
+				Node node = running.remove(future);
+				Status status = getStatus(node, future);
+				statuses.put(node.name, status);
+				if (status == Status.SUCCEEDED) {
+					for (Node dependent : node.dependents) {
+						if (--dependent.remaining == 0) {
+							running.put(completion.submit(dependent.job), dependent);
+						}
+					}
+				} else {
+					skipDependents(node, statuses);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return statuses;
+	}
+
+	private Status getStatus(Node node, Future<Boolean> future) throws InterruptedException {
+		try {
+			return (Boolean.TRUE.equals(future.get()) ? Status.SUCCEEDED : Status.FAILED);
+		} catch (ExecutionException e) {
+			LOGGER.error("Task {} failed: {}", node.name, e.getCause().toString());
+			LOGGER.debug(e.getCause().toString(), e.getCause());
+			return Status.FAILED;
+		}
+	}
+
+	/**
+	 * Mark all the tasks depending on a failed task as skipped
+	 */
+	private void skipDependents(Node node, Map<String, Status> statuses) {
+		for (Node dependent : node.dependents) {
+			if (!statuses.containsKey(dependent.name)) {
+				LOGGER.error("Skipping task {} because task {} did not succeed", dependent.name, node.name);
+				statuses.put(dependent.name, Status.SKIPPED);
+				skipDependents(dependent, statuses);
+			}
+		}
+	}
+
+	/**
+	 * Check that the tasks can be sorted according to their dependencies
+	 * @throws LscConfigurationException if the dependencies are circular
+	 */
+	private void checkCycles() throws LscConfigurationException {
+		Map<Node, Integer> remaining = new LinkedHashMap<Node, Integer>();
+		List<Node> ready = new ArrayList<Node>();
+		for (Node node : nodes.values()) {
+			remaining.put(node, node.remaining);
+			if (node.remaining == 0) {
+				ready.add(node);
+			}
+		}
+		int sorted = 0;
+		while (!ready.isEmpty()) {
+			Node node = ready.remove(ready.size() - 1);
+			sorted++;
+			for (Node dependent : node.dependents) {
+				int count = remaining.get(dependent) - 1;
+				remaining.put(dependent, count);
+				if (count == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		if (sorted < nodes.size()) {
+			List<String> cycle = new ArrayList<String>();
+			for (Map.Entry<Node, Integer> node : remaining.entrySet()) {
+				if (node.getValue() > 0) {
+					cycle.add(node.getKey().name);
+				}
+			}
+			throw new LscConfigurationException("Circular dependencies between tasks " + cycle);
+		}
+	}
+
+	/**
+	 * A task and its dependencies
+	 */
+	private static class Node {
+		private final String name;
+		private final Collection<String> dependsOn;
+		private final Callable<Boolean> job;
+		/** The tasks depending on this one */
+		private final List<Node> dependents = new ArrayList<Node>();
+		/** Number of dependencies not completed yet */
+		private int remaining;
+
+		Node(String name, Collection<String> dependsOn, Callable<Boolean> job) {
+			this.name = name;
+			this.dependsOn = dependsOn;
+			this.job = job;
+		}
+	}
+}
@@ -65,7 +65,9 @@ import org.lsc.LscDatasetModification;
 import org.lsc.LscDatasetModification.LscDatasetModificationType;
 import org.lsc.LscModificationType;
 import org.lsc.LscModifications;
+import org.lsc.ScriptProfiler;
 import org.lsc.Task;
+import org.lsc.beans.syncoptions.CompiledSyncPlan;
 import org.lsc.beans.syncoptions.ISyncOptions;
 import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.PolicyType;
@@ -107,6 +109,21 @@ public final class BeanComparator {
 	 */
 	public static LscModificationType calculateModificationType(Task task,
 					IBean srcBean, IBean dstBean) throws LscServiceException {
+		return new BeanComparisonContext(task, srcBean, dstBean).getModificationType();
+	}
+
+	/**
+	 * Static method to return the kind of operation that would happen
+	 *
+	 * @param context the comparison of the source and destination beans
+	 * @return JndiModificationType the modification type that would happen
+	 * @throws LscServiceException
+	 */
+	static LscModificationType calculateModificationType(BeanComparisonContext context)
+					throws LscServiceException {
+		IBean srcBean = context.getSrcBean();
+		IBean dstBean = context.getDstBean();
+
 		// no beans, nothing to do
 		if (srcBean == null && dstBean == null) {
 			return null;
@@ -125,7 +142,7 @@ public final class BeanComparator {
 		// we have the object in the source and the destination
 		// this must be either a MODIFY or MODRDN operation
 		// clone the source bean to calculate modifications on the DN
-		IBean itmBean = cloneSrcBean(task, srcBean, dstBean);
+		IBean itmBean = context.getItmBean();
 		if (!"".equals(itmBean.getMainIdentifier()) &&
 				dstBean.getMainIdentifier().compareToIgnoreCase(itmBean.getMainIdentifier()) != 0) {
 			return LscModificationType.CHANGE_ID;
@@ -151,14 +168,30 @@ public final class BeanComparator {
 	public static LscModifications calculateModifications(
 					Task task, IBean srcBean, IBean dstBean) 
 					throws LscServiceException {
+		return calculateModifications(new BeanComparisonContext(task, srcBean, dstBean));
+	}
+
+	/**
+	 * Static comparison method, reusing the intermediate bean and the
+	 * modification type already computed in the comparison context.
+	 * 
+	 * @param context the comparison of the source and destination beans
+	 * @return modifications to apply to the directory
+	 * @throws LscServiceException
+	 */
+	public static LscModifications calculateModifications(BeanComparisonContext context)
+					throws LscServiceException {
 
 		LscModifications lm = null;
+		Task task = context.getTask();
+		IBean srcBean = context.getSrcBean();
+		IBean dstBean = context.getDstBean();
 
 		// clone the source bean to work on it
-		IBean itmBean = cloneSrcBean(task, srcBean, dstBean);
+		IBean itmBean = context.getItmBean();
 
 		// get modification type to perform
-		LscModificationType modificationType = calculateModificationType(task, srcBean, dstBean);
+		LscModificationType modificationType = context.getModificationType();
 
 		// if there's nothing to do, just return
 		if (modificationType == null) {
@@ -323,10 +356,20 @@ public final class BeanComparator {
 
 				case REPLACE_VALUES:
 					if (attrStatus == PolicyType.FORCE) {
-						if (isModified(dstBean, dstAttrValues, toSetAttrValues)) {
-							LOGGER.debug("{} Replacing attribute \"{}\": source values are {}, old values were {}, new values are {}",
-											new Object[]{logPrefix, attrName, srcAttrValues, dstAttrValues, toSetAttrValues});
-							mi = new LscDatasetModification(operationType, dstAttr.getID(), toSetAttrValues);
+						if (dstBean instanceof OrderedValuesBean) {
+							if (!SetUtils.doSetsMatchWithOrder(toSetAttrValues, dstAttrValues)) {
+								LOGGER.debug("{} Replacing attribute \"{}\": source values are {}, old values were {}, new values are {}",
+												new Object[]{logPrefix, attrName, srcAttrValues, dstAttrValues, toSetAttrValues});
+								mi = new LscDatasetModification(operationType, dstAttr.getID(), toSetAttrValues);
+							}
+						} else {
+							// only log the differences, the values may be numerous
+							SetUtils.Difference difference = SetUtils.diff(dstAttrValues, toSetAttrValues);
+							if (!difference.isEmpty()) {
+								LOGGER.debug("{} Replacing attribute \"{}\": added values are {}, removed values are {}",
+												new Object[]{logPrefix, attrName, difference.getAddedValues(), difference.getRemovedValues()});
+								mi = new LscDatasetModification(operationType, dstAttr.getID(), toSetAttrValues);
+							}
 						}
 					} else if (attrStatus == PolicyType.MERGE) {
 						// check if there are any extra values to be added
@@ -368,15 +411,6 @@ public final class BeanComparator {
 		return result;
 	}
 
-	private static boolean isModified(IBean dstBean, Set<Object> dstAttrValues,
-			Set<Object> toSetAttrValues) {
-		if (dstBean instanceof OrderedValuesBean) {
-			return !SetUtils.doSetsMatchWithOrder(toSetAttrValues, dstAttrValues);
-		} else {
-			return !SetUtils.doSetsMatch(toSetAttrValues, dstAttrValues);
-		}
-	}
-
 	/**
 	 * <P>
 	 * Return the operation to perform on a set of current values, so that they
@@ -506,7 +540,7 @@ public final class BeanComparator {
 	 * @return New bean cloned from srcBean
 	 * @throws LscServiceException
 	 */
-	private static IBean cloneSrcBean(Task task, IBean srcBean, IBean dstBean) throws LscServiceException {
+	static IBean cloneSrcBean(Task task, IBean srcBean, IBean dstBean) throws LscServiceException {
 		//
 		// We clone the source object, because syncoptions should not be used
 		// on modified values of the source object :)
@@ -649,18 +683,28 @@ public final class BeanComparator {
 	}
 
 	private static List<? extends Object> evaluateExpression(Task task, String attributeName, String expression, Map<String, Object> scriptingObjects) throws LscServiceException {
-		if (LscConfiguration.isLdapBinaryAttribute(attributeName)) {
-			return ScriptingEvaluator.evalToByteArrayList(task, expression, scriptingObjects);
-		} else {
-			return ScriptingEvaluator.evalToStringList(task, expression, scriptingObjects);
+		String dataset = ScriptProfiler.enter(attributeName);
+		try {
+			if (CompiledSyncPlan.isBinaryAttribute(task.getSyncOptions(), attributeName)) {
+				return ScriptingEvaluator.evalToByteArrayList(task, expression, scriptingObjects);
+			} else {
+				return ScriptingEvaluator.evalToStringList(task, expression, scriptingObjects);
+			}
+		} finally {
+			ScriptProfiler.exit(dataset);
 		}
 	}
 
     private static Set<Object> splitValues(Task task, String attrName, Set<Object> attrValues) {
         Set<Object> ret = new LinkedHashSet<Object>();
+        String delimiter = null;
+        boolean delimiterRead = false;
         for(Object value : attrValues) {
             if(value instanceof String) {
-                String delimiter = task.getSyncOptions().getDelimiter(attrName);
+                if(!delimiterRead) {
+                    delimiter = task.getSyncOptions().getDelimiter(attrName);
+                    delimiterRead = true;
+                }
                 if(delimiter != null) {
                     StringTokenizer sTok = new StringTokenizer((String) value, delimiter);
                     while( sTok.hasMoreTokens() ) {
@@ -0,0 +1,127 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.beans;
+
+import org.lsc.LscModificationType;
+import org.lsc.Task;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Comparison of a source bean with its destination counterpart.
+ *
+ * The intermediate bean (the source bean with its new main identifier
+ * computed by the DN script) and the modification type are computed only
+ * once per entry, then shared by the condition evaluation, the differences
+ * calculation and the logging.
+ */
+public final class BeanComparisonContext {
+
+	private final Task task;
+
+	private final IBean srcBean;
+
+	private final IBean dstBean;
+
+	/** The source bean with local modifications, computed on first access */
+	private IBean itmBean;
+
+	private boolean itmBeanComputed;
+
+	/** The modification type, computed on first access */
+	private LscModificationType modificationType;
+
+	private boolean modificationTypeComputed;
+
+	/**
+	 * @param task the task
+	 * @param srcBean the source bean, or null if the entry does not exist in the source
+	 * @param dstBean the destination bean, or null if the entry does not exist in the destination
+	 */
+	public BeanComparisonContext(Task task, IBean srcBean, IBean dstBean) {
+		this.task = task;
+		this.srcBean = srcBean;
+		this.dstBean = dstBean;
+	}
+
+	public Task getTask() {
+		return task;
+	}
+
+	public IBean getSrcBean() {
+		return srcBean;
+	}
+
+	public IBean getDstBean() {
+		return dstBean;
+	}
+
+	/**
+	 * Get the copy of the source bean with its main identifier set by the
+	 * DN script, if any.
+	 * @return the intermediate bean, or null if there is no source bean
+	 * @throws LscServiceException thrown if the source bean can not be cloned or the DN script fails
+	 */
+	public IBean getItmBean() throws LscServiceException {
+		if (!itmBeanComputed) {
+			itmBean = BeanComparator.cloneSrcBean(task, srcBean, dstBean);
+			itmBeanComputed = true;
+		}
+		return itmBean;
+	}
+
+	/**
+	 * Get the kind of operation to apply on the destination.
+	 * @return the modification type, or null if there is nothing to do
+	 * @throws LscServiceException thrown if the intermediate bean can not be computed
+	 */
+	public LscModificationType getModificationType() throws LscServiceException {
+		if (!modificationTypeComputed) {
+			modificationType = BeanComparator.calculateModificationType(this);
+			modificationTypeComputed = true;
+		}
+		return modificationType;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.beans.syncoptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.lsc.LscModificationType;
+import org.lsc.configuration.ConditionsType;
+import org.lsc.configuration.ConnectionType;
+import org.lsc.configuration.DatasetType;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.PolicyType;
+import org.lsc.configuration.PropertiesBasedSyncOptionsType;
+import org.lsc.configuration.PivotTransformationType.Transformation;
+import org.lsc.configuration.ValuesType;
+import org.lsc.utils.CaseIgnoreStringHashMap;
+
+/**
+ * Immutable view of a properties based synchronization options
+ * configuration, resolved once when the task is initialized.
+ * 
+ * The per attribute lookups done for every compared entry (policy,
+ * force, default and create values, delimiter, binary flag) are answered
+ * from a case insensitive map instead of scanning the configured
+ * datasets and copying their values at each call.
+ */
+public class CompiledSyncPlan {
+
+	/**
+	 * Settings resolved for a single attribute
+	 */
+	static final class AttributePlan {
+		private final PolicyType policy;
+		private final List<String> defaultValues;
+		private final List<String> createValues;
+		private final List<String> forceValues;
+		private final String delimiter;
+
+		AttributePlan(PolicyType policy, List<String> defaultValues, List<String> createValues,
+						List<String> forceValues, String delimiter) {
+			this.policy = policy;
+			this.defaultValues = defaultValues;
+			this.createValues = createValues;
+			this.forceValues = forceValues;
+			this.delimiter = delimiter;
+		}
+	}
+
+	private final Map<String, AttributePlan> attributes;
+
+	private final AttributePlan defaultPlan;
+
+	private final Set<String> defaultValuedAttributeNames;
+
+	private final Set<String> createAttributeNames;
+
+	private final Set<String> forceValuedAttributeNames;
+
+	private final Map<LscModificationType, String> conditions;
+
+	private final List<Transformation> pivotTransformations;
+
+	private final String dn;
+
+	/** Binary attributes of the LDAP connections, read on first use */
+	private volatile Set<String> binaryAttributes;
+
+	/**
+	 * Resolve the configuration of a task
+	 * @param conf the properties based synchronization options
+	 */
+	public CompiledSyncPlan(PropertiesBasedSyncOptionsType conf) {
+		defaultPlan = new AttributePlan(conf.getDefaultPolicy(), null, null, null, conf.getDefaultDelimiter());
+
+		attributes = new CaseIgnoreStringHashMap<AttributePlan>();
+		Set<String> defaultNames = new HashSet<String>();
+		Set<String> createNames = new HashSet<String>();
+		Set<String> forceNames = new HashSet<String>();
+		if (conf.getDataset() != null) {
+			for (DatasetType dataset : conf.getDataset()) {
+				// The first dataset declared for an attribute wins
+				if (attributes.containsKey(dataset.getName())) {
+					continue;
+				}
+				AttributePlan plan = new AttributePlan(
+								dataset.getPolicy() != null ? dataset.getPolicy() : conf.getDefaultPolicy(),
+								toList(dataset.getDefaultValues()),
+								toList(dataset.getCreateValues()),
+								toList(dataset.getForceValues()),
+								dataset.getDelimiter() != null ? dataset.getDelimiter() : conf.getDefaultDelimiter());
+				attributes.put(dataset.getName(), plan);
+				if (plan.defaultValues != null) {
+					defaultNames.add(dataset.getName());
+				}
+				if (plan.createValues != null) {
+					createNames.add(dataset.getName());
+				}
+				if (plan.forceValues != null) {
+					forceNames.add(dataset.getName());
+				}
+			}
+		}
+		defaultValuedAttributeNames = Collections.unmodifiableSet(defaultNames);
+		createAttributeNames = Collections.unmodifiableSet(createNames);
+		forceValuedAttributeNames = Collections.unmodifiableSet(forceNames);
+
+		ConditionsType conditionsConf = conf.getConditions();
+		conditions = new EnumMap<LscModificationType, String>(LscModificationType.class);
+		conditions.put(LscModificationType.CREATE_OBJECT, orDefault(conditionsConf != null ? conditionsConf.getCreate() : null));
+		conditions.put(LscModificationType.UPDATE_OBJECT, orDefault(conditionsConf != null ? conditionsConf.getUpdate() : null));
+		conditions.put(LscModificationType.DELETE_OBJECT, orDefault(conditionsConf != null ? conditionsConf.getDelete() : null));
+		conditions.put(LscModificationType.CHANGE_ID, orDefault(conditionsConf != null ? conditionsConf.getChangeId() : null));
+
+		if (conf.getPivotTransformation() != null) {
+			pivotTransformations = Collections.unmodifiableList(
+							new ArrayList<Transformation>(conf.getPivotTransformation().getTransformation()));
+		} else {
+			pivotTransformations = null;
+		}
+
+		dn = conf.getMainIdentifier();
+	}
+
+	private static List<String> toList(ValuesType values) {
+		if (values == null || values.getString().isEmpty()) {
+			return null;
+		}
+		return Collections.unmodifiableList(new ArrayList<String>(values.getString()));
+	}
+
+	private static String orDefault(String condition) {
+		return condition != null ? condition : ISyncOptions.DEFAULT_CONDITION;
+	}
+
+	private AttributePlan getAttributePlan(String attributeName) {
+		AttributePlan plan = attributes.get(attributeName);
+		return plan != null ? plan : defaultPlan;
+	}
+
+	public PolicyType getStatus(String attributeName) {
+		return getAttributePlan(attributeName).policy;
+	}
+
+	public List<String> getDefaultValues(String attributeName) {
+		return getAttributePlan(attributeName).defaultValues;
+	}
+
+	public List<String> getCreateValues(String attributeName) {
+		return getAttributePlan(attributeName).createValues;
+	}
+
+	public List<String> getForceValues(String attributeName) {
+		return getAttributePlan(attributeName).forceValues;
+	}
+
+	public String getDelimiter(String attributeName) {
+		return getAttributePlan(attributeName).delimiter;
+	}
+
+	public Set<String> getDefaultValuedAttributeNames() {
+		return defaultValuedAttributeNames;
+	}
+
+	public Set<String> getCreateAttributeNames() {
+		return createAttributeNames;
+	}
+
+	public Set<String> getForceValuedAttributeNames() {
+		return forceValuedAttributeNames;
+	}
+
+	public String getCondition(LscModificationType operation) {
+		String condition = conditions.get(operation);
+		return condition != null ? condition : ISyncOptions.DEFAULT_CONDITION;
+	}
+
+	/**
+	 * @return the pivot transformations of the task, or null if there are none
+	 */
+	public List<Transformation> getPivotTransformations() {
+		return pivotTransformations;
+	}
+
+	public String getDn() {
+		return dn;
+	}
+
+	/**
+	 * Same answer as {@link LscConfiguration#isLdapBinaryAttribute(String)},
+	 * without walking the connections at each call
+	 * @param attributeName the attribute name
+	 * @return true if an LDAP connection declares this attribute as binary
+	 */
+	public boolean isBinary(String attributeName) {
+		Set<String> binaries = binaryAttributes;
+		if (binaries == null) {
+			binaries = new HashSet<String>();
+			for (ConnectionType connection : LscConfiguration.getConnections()) {
+				if (connection instanceof LdapConnectionType) {
+					ValuesType values = ((LdapConnectionType) connection).getBinaryAttributes();
+					if (values != null) {
+						binaries.addAll(values.getString());
+					}
+				}
+			}
+			binaryAttributes = binaries;
+		}
+		return binaries.contains(attributeName);
+	}
+
+	/**
+	 * Tell if an attribute is binary, using the resolved plan when the task
+	 * has properties based synchronization options
+	 * @param syncOptions the synchronization options of the task
+	 * @param attributeName the attribute name
+	 * @return true if an LDAP connection declares this attribute as binary
+	 */
+	public static boolean isBinaryAttribute(ISyncOptions syncOptions, String attributeName) {
+		if (syncOptions instanceof PropertiesBasedSyncOptions) {
+			CompiledSyncPlan plan = ((PropertiesBasedSyncOptions) syncOptions).getSyncPlan();
+			if (plan != null) {
+				return plan.isBinary(attributeName);
+			}
+		}
+		return LscConfiguration.isLdapBinaryAttribute(attributeName);
+	}
+}
@@ -45,18 +45,12 @@
  */
 package org.lsc.beans.syncoptions;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.lsc.LscModificationType;
-import org.lsc.configuration.DatasetType;
-import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.PolicyType;
-import org.lsc.configuration.PropertiesBasedSyncOptionsType;
 import org.lsc.configuration.TaskType;
-import org.lsc.configuration.ValuesType;
 
 /**
  * Synchronization options based on a properties file
@@ -72,137 +66,79 @@ public class PropertiesBasedSyncOptions implements ISyncOptions {
 
 //	private static final Logger LOGGER = LoggerFactory.getLogger(PropertiesBasedSyncOptions.class);
 
-	private PropertiesBasedSyncOptionsType conf;
+	/** The configuration resolved once for all the entries of the task */
+	private CompiledSyncPlan plan;
 
 	public void initialize(TaskType task) {
-		conf = task.getPropertiesBasedSyncOptions();
+		plan = new CompiledSyncPlan(task.getPropertiesBasedSyncOptions());
+	}
+
+	/**
+	 * @return the resolved options of this task
+	 */
+	public CompiledSyncPlan getSyncPlan() {
+		return plan;
 	}
 	
 	public final PolicyType getStatus(final String id, final String attributeName) {
-		PolicyType statusType = LscConfiguration.getDataset(conf, attributeName).getPolicy();
-		return (statusType != null ? statusType : conf.getDefaultPolicy());
+		return plan.getStatus(attributeName);
 	}
 
 	public final List<String> getDefaultValues(final String id, final String attributeName) {
-		ValuesType datasetValues = LscConfiguration.getDataset(conf, attributeName).getDefaultValues();
-		ArrayList<String> copy = null;
-		if (datasetValues != null && datasetValues.getString().size() > 0) {
-			copy = new ArrayList<String>(datasetValues.getString());
-		}
-		return copy;
+		return plan.getDefaultValues(attributeName);
 	}
 
 	public final List<String> getCreateValues(final String id, final String attributeName) {
-		ValuesType datasetValues = LscConfiguration.getDataset(conf, attributeName).getCreateValues();
-		ArrayList<String> copy = null;
-		if (datasetValues != null && datasetValues.getString().size() > 0) {
-			copy = new ArrayList<String>(datasetValues.getString());
-		}
-		return copy;
+		return plan.getCreateValues(attributeName);
 	}
 
 	public final List<String> getForceValues(final String id, final String attributeName) {
-		ValuesType datasetValues = LscConfiguration.getDataset(conf, attributeName).getForceValues();
-		ArrayList<String> copy = null;
-		if (datasetValues != null && datasetValues.getString().size() > 0) {
-			copy = new ArrayList<String>(datasetValues.getString());
-		}
-		return copy;
+		return plan.getForceValues(attributeName);
 	}
 
 	@Override
 	public Set<String> getCreateAttributeNames() {
-		Set<String> createAttrs = new HashSet<String>();
-		for(DatasetType attr : conf.getDataset()) {
-			if(!attr.getCreateValues().getString().isEmpty()) {
-				createAttrs.add(attr.getName());
-			}
-		}
-		return createAttrs;
+		return plan.getCreateAttributeNames();
 	}
 
 
 	@Override
 	public Set<String> getDefaultValuedAttributeNames() {
-		Set<String> createAttrs = new HashSet<String>();
-		for(DatasetType attr : conf.getDataset()) {
-			if(!attr.getDefaultValues().getString().isEmpty()) {
-				createAttrs.add(attr.getName());
-			}
-		}
-		return createAttrs;
+		return plan.getDefaultValuedAttributeNames();
 	}
 
 
 	@Override
 	public Set<String> getForceValuedAttributeNames() {
-		Set<String> createAttrs = new HashSet<String>();
-		for(DatasetType attr : conf.getDataset()) {
-			if(!attr.getForceValues().getString().isEmpty()) {
-				createAttrs.add(attr.getName());
-			}
-		}
-		return createAttrs;
+		return plan.getForceValuedAttributeNames();
 	}
 	
 	public String getDn() {
-		return conf.getMainIdentifier();
+		return plan.getDn();
 	}
 
 
 	public String getCreateCondition() {
-		if (conf.getConditions() == null || conf.getConditions().getCreate() == null) {
-			return DEFAULT_CONDITION;
-		}
-		return conf.getConditions().getCreate();
+		return plan.getCondition(LscModificationType.CREATE_OBJECT);
 	}
 
 	public String getDeleteCondition() {
-		if (conf.getConditions() == null || conf.getConditions().getDelete() == null) {
-			return DEFAULT_CONDITION;
-		}
-		return conf.getConditions().getDelete();
+		return plan.getCondition(LscModificationType.DELETE_OBJECT);
 	}
 
 	public String getUpdateCondition() {
-		if (conf.getConditions() == null || conf.getConditions().getUpdate() == null) {
-			return DEFAULT_CONDITION;
-		}
-		return conf.getConditions().getUpdate();
+		return plan.getCondition(LscModificationType.UPDATE_OBJECT);
 	}
 
 	public String getChangeIdCondition() {
-		if (conf.getConditions() == null || conf.getConditions().getChangeId() == null) {
-			return DEFAULT_CONDITION;
-		}
-		return conf.getConditions().getChangeId();
+		return plan.getCondition(LscModificationType.CHANGE_ID);
 	}
 
 	public String getCondition(LscModificationType operation) {
-		String result = DEFAULT_CONDITION;
-		switch (operation) {
-			case CREATE_OBJECT:
-				result = this.getCreateCondition();
-				break;
-			case UPDATE_OBJECT:
-				result = this.getUpdateCondition();
-				break;
-			case DELETE_OBJECT:
-				result = this.getDeleteCondition();
-				break;
-			case CHANGE_ID:
-				result = this.getChangeIdCondition();
-				break;
-		}
-		return result;
+		return plan.getCondition(operation);
 	}
 	
 	public String getDelimiter(String name) {
-        DatasetType dataset = LscConfiguration.getDataset(conf, name);
-        if(dataset != null && dataset.getDelimiter() != null) {
-            return dataset.getDelimiter();
-        } else {
-            return conf.getDefaultDelimiter();
-        }
+		return plan.getDelimiter(name);
 	}
 }
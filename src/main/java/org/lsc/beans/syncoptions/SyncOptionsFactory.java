@@ -85,7 +85,7 @@ public final class SyncOptionsFactory {
 		return INSTANCE.get(task);
 	}
 
-	private ISyncOptions get(TaskType task) throws LscConfigurationException {
+	private synchronized ISyncOptions get(TaskType task) throws LscConfigurationException {
 		if (!cache.containsKey(task.getName())) {
 			convertFromTask(task);
 		}
@@ -34,6 +34,9 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  *         &lt;element name="append" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *         &lt;element name="operations" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="file" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *         &lt;element name="asynchronous" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
+ *         &lt;element name="bufferSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="fsync" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *       &lt;/sequence>
  *       &lt;attribute name="id" type="{http://www.w3.org/2001/XMLSchema}string" />
  *     &lt;/restriction>
@@ -48,7 +51,10 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
     "name",
     "append",
     "operations",
-    "file"
+    "file",
+    "asynchronous",
+    "bufferSize",
+    "fsync"
 })
 @XmlSeeAlso({
     LdifAuditType.class,
@@ -67,6 +73,12 @@ public class AuditType {
     protected String operations;
     @XmlElement(required = true)
     protected String file;
+    @XmlElement(defaultValue = "false")
+    protected Boolean asynchronous = false;
+    @XmlElement(defaultValue = "8192")
+    protected Integer bufferSize = 8192;
+    @XmlElement(defaultValue = "false")
+    protected Boolean fsync = false;
     @XmlAttribute(name = "id")
     protected String id;
 
@@ -166,6 +178,78 @@ public class AuditType {
         this.file = value;
     }
 
+    /**
+     * Gets the value of the asynchronous property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Sets the value of the asynchronous property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setAsynchronous(Boolean value) {
+        this.asynchronous = value;
+    }
+
+    /**
+     * Gets the value of the bufferSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the value of the bufferSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setBufferSize(Integer value) {
+        this.bufferSize = value;
+    }
+
+    /**
+     * Gets the value of the fsync property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isFsync() {
+        return fsync;
+    }
+
+    /**
+     * Sets the value of the fsync property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setFsync(Boolean value) {
+        this.fsync = value;
+    }
+
     /**
      * Gets the value of the id property.
      * 
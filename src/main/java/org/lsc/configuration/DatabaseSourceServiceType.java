@@ -27,8 +27,12 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="interval" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
  *         &lt;element name="requestNameForList" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="requestNameForObject" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="requestNameForObjectBatch" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="requestNameForNextId" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="requestNameForClean" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="fetchSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="requestNameForChanges" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="watermarkAttribute" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
@@ -42,8 +46,12 @@ import javax.xml.bind.annotation.XmlType;
     "interval",
     "requestNameForList",
     "requestNameForObject",
+    "requestNameForObjectBatch",
     "requestNameForNextId",
-    "requestNameForClean"
+    "requestNameForClean",
+    "fetchSize",
+    "requestNameForChanges",
+    "watermarkAttribute"
 })
 public class DatabaseSourceServiceType
     extends ServiceType
@@ -53,8 +61,12 @@ public class DatabaseSourceServiceType
     protected Integer interval = 5;
     protected String requestNameForList;
     protected String requestNameForObject;
+    protected String requestNameForObjectBatch;
     protected String requestNameForNextId;
     protected String requestNameForClean;
+    protected Integer fetchSize;
+    protected String requestNameForChanges;
+    protected String watermarkAttribute;
 
     /**
      * Gets the value of the interval property.
@@ -128,6 +140,30 @@ public class DatabaseSourceServiceType
         this.requestNameForObject = value;
     }
 
+    /**
+     * Gets the value of the requestNameForObjectBatch property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getRequestNameForObjectBatch() {
+        return requestNameForObjectBatch;
+    }
+
+    /**
+     * Sets the value of the requestNameForObjectBatch property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setRequestNameForObjectBatch(String value) {
+        this.requestNameForObjectBatch = value;
+    }
+
     /**
      * Gets the value of the requestNameForNextId property.
      * 
@@ -176,4 +212,76 @@ public class DatabaseSourceServiceType
         this.requestNameForClean = value;
     }
 
+    /**
+     * Gets the value of the fetchSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the value of the fetchSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setFetchSize(Integer value) {
+        this.fetchSize = value;
+    }
+
+    /**
+     * Gets the value of the requestNameForChanges property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getRequestNameForChanges() {
+        return requestNameForChanges;
+    }
+
+    /**
+     * Sets the value of the requestNameForChanges property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setRequestNameForChanges(String value) {
+        this.requestNameForChanges = value;
+    }
+
+    /**
+     * Gets the value of the watermarkAttribute property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getWatermarkAttribute() {
+        return watermarkAttribute;
+    }
+
+    /**
+     * Sets the value of the watermarkAttribute property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setWatermarkAttribute(String value) {
+        this.watermarkAttribute = value;
+    }
+
 }
@@ -36,6 +36,9 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="binaryAttributes" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
  *         &lt;element name="recursiveDelete" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *         &lt;element name="saslQop" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}saslQopType" minOccurs="0"/>
+ *         &lt;element name="poolSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="poolIdleTimeout" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="sequenceBlockSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
@@ -57,7 +60,10 @@ import javax.xml.bind.annotation.XmlType;
     "sortedBy",
     "binaryAttributes",
     "recursiveDelete",
-    "saslQop"
+    "saslQop",
+    "poolSize",
+    "poolIdleTimeout",
+    "sequenceBlockSize"
 })
 public class LdapConnectionType
     extends ConnectionType
@@ -85,6 +91,12 @@ public class LdapConnectionType
     protected Boolean recursiveDelete = false;
     @XmlElement(defaultValue = "auth")
     protected SaslQopType saslQop = SaslQopType.AUTH;
+    @XmlElement(defaultValue = "10")
+    protected Integer poolSize = 10;
+    @XmlElement(defaultValue = "300")
+    protected Integer poolIdleTimeout = 300;
+    @XmlElement(defaultValue = "1")
+    protected Integer sequenceBlockSize = 1;
 
     /**
      * Gets the value of the authentication property.
@@ -374,4 +386,77 @@ public class LdapConnectionType
         this.saslQop = value;
     }
 
+
+    /**
+     * Gets the value of the poolSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Sets the value of the poolSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setPoolSize(Integer value) {
+        this.poolSize = value;
+    }
+
+    /**
+     * Gets the value of the poolIdleTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * Sets the value of the poolIdleTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setPoolIdleTimeout(Integer value) {
+        this.poolIdleTimeout = value;
+    }
+
+    /**
+     * Gets the value of the sequenceBlockSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getSequenceBlockSize() {
+        return sequenceBlockSize;
+    }
+
+    /**
+     * Sets the value of the sequenceBlockSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setSequenceBlockSize(Integer value) {
+        this.sequenceBlockSize = value;
+    }
+
 }
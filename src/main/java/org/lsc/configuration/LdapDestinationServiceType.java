@@ -22,6 +22,9 @@ import javax.xml.bind.annotation.XmlType;
  * &lt;complexType name="ldapDestinationServiceType">
  *   &lt;complexContent>
  *     &lt;extension base="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}ldapServiceType">
+ *       &lt;sequence>
+ *         &lt;element name="batchReadSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
  * &lt;/complexType>
@@ -30,10 +33,37 @@ import javax.xml.bind.annotation.XmlType;
  * 
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-@XmlType(name = "ldapDestinationServiceType")
+@XmlType(name = "ldapDestinationServiceType", propOrder = {
+    "batchReadSize"
+})
 public class LdapDestinationServiceType
     extends LdapServiceType
 {
 
+    protected Integer batchReadSize;
+
+    /**
+     * Gets the value of the batchReadSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getBatchReadSize() {
+        return batchReadSize;
+    }
+
+    /**
+     * Sets the value of the batchReadSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setBatchReadSize(Integer value) {
+        this.batchReadSize = value;
+    }
 
 }
@@ -56,6 +56,11 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  *         &lt;/choice>
  *         &lt;element name="customLibrary" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
  *         &lt;element name="scriptInclude" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
+ *         &lt;element name="dependsOn" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
+ *         &lt;element name="profile" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
+ *         &lt;element name="slowEntryThreshold" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/>
+ *         &lt;element name="fingerprints" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
+ *         &lt;element name="fingerprintsMaxAge" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/>
  *         &lt;element name="auditLog" maxOccurs="unbounded" minOccurs="0">
  *           &lt;complexType>
  *             &lt;complexContent>
@@ -94,6 +99,11 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
     "pluginSyncOptions",
     "customLibrary",
     "scriptInclude",
+    "dependsOn",
+    "profile",
+    "slowEntryThreshold",
+    "fingerprints",
+    "fingerprintsMaxAge",
     "auditLog"
 })
 public class TaskType {
@@ -121,6 +131,11 @@ public class TaskType {
     protected PluginSyncOptionsType pluginSyncOptions;
     protected ValuesType customLibrary;
     protected ValuesType scriptInclude;
+    protected ValuesType dependsOn;
+    protected Boolean profile;
+    protected Long slowEntryThreshold;
+    protected Boolean fingerprints;
+    protected Long fingerprintsMaxAge;
     protected List<TaskType.AuditLog> auditLog;
     @XmlAttribute(name = "id")
     protected String id;
@@ -557,6 +572,126 @@ public class TaskType {
         this.scriptInclude = value;
     }
 
+    /**
+     * Gets the value of the dependsOn property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link ValuesType }
+     *     
+     */
+    public ValuesType getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * Sets the value of the dependsOn property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link ValuesType }
+     *     
+     */
+    public void setDependsOn(ValuesType value) {
+        this.dependsOn = value;
+    }
+
+    /**
+     * Gets the value of the profile property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets the value of the profile property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setProfile(Boolean value) {
+        this.profile = value;
+    }
+
+    /**
+     * Gets the value of the slowEntryThreshold property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Long }
+     *     
+     */
+    public Long getSlowEntryThreshold() {
+        return slowEntryThreshold;
+    }
+
+    /**
+     * Sets the value of the slowEntryThreshold property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Long }
+     *     
+     */
+    public void setSlowEntryThreshold(Long value) {
+        this.slowEntryThreshold = value;
+    }
+
+    /**
+     * Gets the value of the fingerprints property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isFingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * Sets the value of the fingerprints property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setFingerprints(Boolean value) {
+        this.fingerprints = value;
+    }
+
+    /**
+     * Gets the value of the fingerprintsMaxAge property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Long }
+     *     
+     */
+    public Long getFingerprintsMaxAge() {
+        return fingerprintsMaxAge;
+    }
+
+    /**
+     * Sets the value of the fingerprintsMaxAge property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Long }
+     *     
+     */
+    public void setFingerprintsMaxAge(Long value) {
+        this.fingerprintsMaxAge = value;
+    }
+
     /**
      * Gets the value of the auditLog property.
      * 
@@ -48,6 +48,7 @@ package org.lsc.jmx;
 import java.util.Map;
 
 import javax.management.MXBean;
+import javax.management.openmbean.CompositeData;
 
 import org.lsc.beans.SimpleBean;
 
@@ -143,5 +144,23 @@ public interface LscServer {
 	 * Get status line of a task
 	 */
 	public String getTaskStatus(String taskName);
+
+	/**
+	 * Get the throughput, queue depth and latencies per phase of a task.
+	 * The entries count and the latencies are cumulated since the task has
+	 * been loaded, while the throughput is the one of the current run, or
+	 * of the last one if the task is not running.
+	 * @param taskName the task name
+	 * @return the task metrics, or null if the task does not exist or has
+	 *         not been run yet
+	 */
+	public CompositeData getTaskMetrics(String taskName);
+
+	/**
+	 * Get the metrics of all the tasks already run, see
+	 * {@link #getTaskMetrics(String)}
+	 * @return the tasks metrics
+	 */
+	public CompositeData[] getTasksMetrics();
 	
 }
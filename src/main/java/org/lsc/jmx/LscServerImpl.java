@@ -51,6 +51,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -58,6 +59,8 @@ import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.OpenDataException;
 
 import org.lsc.AbstractSynchronize;
 import org.lsc.Configuration;
@@ -94,9 +97,9 @@ public class LscServerImpl implements LscServer, Runnable {
 
 	public String[] getAsyncTasksName() {
 		List<String> asynchronousTasksName = new ArrayList<String>();
-		for(Task task: synchronize.getTasks()) {
-			if(synchronize.isAsynchronousTask(task.getName())) {
-				asynchronousTasksName.add(task.getName());
+		for(String taskName: synchronize.getTaskNames()) {
+			if(synchronize.isAsynchronousTask(taskName)) {
+				asynchronousTasksName.add(taskName);
 			}
 		}
 		return asynchronousTasksName.toArray(new String[asynchronousTasksName.size()]);
@@ -104,9 +107,9 @@ public class LscServerImpl implements LscServer, Runnable {
 
 	public String[] getSyncTasksName() {
 		List<String> synchronousTasksName = new ArrayList<String>();
-		for(Task task: synchronize.getTasks()) {
-			if(!synchronize.isAsynchronousTask(task.getName())) {
-				synchronousTasksName.add(task.getName());
+		for(String taskName: synchronize.getTaskNames()) {
+			if(!synchronize.isAsynchronousTask(taskName)) {
+				synchronousTasksName.add(taskName);
 			}
 		}
 		return synchronousTasksName.toArray(new String[synchronousTasksName.size()]);
@@ -184,8 +187,8 @@ public class LscServerImpl implements LscServer, Runnable {
 	}
 	
 	public void stop() {
-		for(Task task: synchronize.getTasks()) {
-			String taskName = task.getName();
+		for(Entry<String, Task> task: synchronize.getTasksName()) {
+			String taskName = task.getKey();
 			if(synchronize.isAsynchronousTask(taskName)
 					&& synchronize.isAsynchronousTaskRunning(taskName)) {
 				synchronize.shutdownAsynchronousSynchronize2Ldap(taskName, false);
@@ -214,4 +217,30 @@ public class LscServerImpl implements LscServer, Runnable {
 	public String getTaskStatus(String taskName) {
 		return synchronize.getTaskFullStatus(taskName);
 	}
+
+	public CompositeData getTaskMetrics(String taskName) {
+		// do not instantiate the task, and connect its services, only to read its metrics
+		Task task = synchronize.getInstantiatedTask(taskName);
+		if (task == null) {
+			return null;
+		}
+		try {
+			return TaskMetricsData.toCompositeData(task.getMetrics());
+		} catch (OpenDataException e) {
+			LOGGER.error("Unable to publish the metrics of task " + taskName + ": " + e.toString());
+			LOGGER.debug(e.toString(), e);
+			return null;
+		}
+	}
+
+	public CompositeData[] getTasksMetrics() {
+		List<CompositeData> tasksMetrics = new ArrayList<CompositeData>();
+		for (String taskName : synchronize.getTaskNames()) {
+			CompositeData taskMetrics = getTaskMetrics(taskName);
+			if (taskMetrics != null) {
+				tasksMetrics.add(taskMetrics);
+			}
+		}
+		return tasksMetrics.toArray(new CompositeData[tasksMetrics.size()]);
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jmx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import org.lsc.TaskMetrics;
+import org.lsc.TaskMetrics.Phase;
+import org.lsc.utils.LatencyHistogram;
+
+/**
+ * Convert the metrics of a task to JMX open data
+ */
+final class TaskMetricsData {
+
+	private static final String[] PHASE_ITEMS = { "count", "meanMs", "p50Ms", "p99Ms", "maxMs" };
+
+	private static final CompositeType PHASE_TYPE;
+
+	private static final CompositeType TASK_TYPE;
+
+	static {
+		try {
+			PHASE_TYPE = new CompositeType("PhaseLatency", "Latency of a synchronization phase", PHASE_ITEMS,
+							new String[] { "Number of measures", "Mean duration (ms)", "Median duration (ms)",
+											"99th percentile duration (ms)", "Longest duration (ms)" },
+							new OpenType<?>[] { SimpleType.LONG, SimpleType.DOUBLE, SimpleType.DOUBLE,
+											SimpleType.DOUBLE, SimpleType.DOUBLE });
+
+			List<String> names = new ArrayList<String>();
+			List<String> descriptions = new ArrayList<String>();
+			List<OpenType<?>> types = new ArrayList<OpenType<?>>();
+			addItem(names, descriptions, types, "taskName", "Task name", SimpleType.STRING);
+			addItem(names, descriptions, types, "entries", "Entries handled since the task has been loaded", SimpleType.LONG);
+			addItem(names, descriptions, types, "entriesPerSecond", "Throughput of the current or last run", SimpleType.DOUBLE);
+			addItem(names, descriptions, types, "queueDepth", "Entries waiting for a synchronization thread", SimpleType.INTEGER);
+			for (Phase phase : Phase.values()) {
+				addItem(names, descriptions, types, getItemName(phase), "Latency of the " + phase + " phase since the task has been loaded", PHASE_TYPE);
+			}
+			TASK_TYPE = new CompositeType("TaskMetrics", "Throughput and latencies of a task",
+							names.toArray(new String[names.size()]),
+							descriptions.toArray(new String[descriptions.size()]),
+							types.toArray(new OpenType<?>[types.size()]));
+		} catch (OpenDataException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private TaskMetricsData() {
+	}
+
+	private static void addItem(List<String> names, List<String> descriptions, List<OpenType<?>> types,
+					String name, String description, OpenType<?> type) {
+		names.add(name);
+		descriptions.add(description);
+		types.add(type);
+	}
+
+	/**
+	 * @return the item name of a phase, e.g. sourceRead for SOURCE_READ
+	 */
+	static String getItemName(Phase phase) {
+		StringBuilder name = new StringBuilder();
+		for (String part : phase.name().toLowerCase().split("_")) {
+			name.append(name.length() == 0 ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+		}
+		return name.toString();
+	}
+
+	private static double toMillis(long micros) {
+		return micros / 1000d;
+	}
+
+	private static CompositeData toCompositeData(LatencyHistogram histogram) throws OpenDataException {
+		return new CompositeDataSupport(PHASE_TYPE, PHASE_ITEMS, new Object[] {
+						histogram.getCount(),
+						toMillis(histogram.getMean()),
+						toMillis(histogram.getPercentile(0.5)),
+						toMillis(histogram.getPercentile(0.99)),
+						toMillis(histogram.getMax()) });
+	}
+
+	/**
+	 * @param metrics the task metrics
+	 * @return the metrics as open data
+	 * @throws OpenDataException
+	 */
+	static CompositeData toCompositeData(TaskMetrics metrics) throws OpenDataException {
+		List<String> names = new ArrayList<String>();
+		List<Object> values = new ArrayList<Object>();
+		names.add("taskName");
+		values.add(metrics.getTaskName());
+		names.add("entries");
+		values.add(metrics.getEntries());
+		names.add("entriesPerSecond");
+		values.add(metrics.getEntriesPerSecond());
+		names.add("queueDepth");
+		values.add(metrics.getQueueDepth());
+		for (Phase phase : Phase.values()) {
+			names.add(getItemName(phase));
+			values.add(toCompositeData(metrics.getHistogram(phase)));
+		}
+		return new CompositeDataSupport(TASK_TYPE, names.toArray(new String[names.size()]), values.toArray());
+	}
+}
@@ -50,10 +50,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
@@ -112,6 +116,9 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 
 	protected JndiServices jndiServices;
 
+	/** The filters parsed so far */
+	private final ConcurrentMap<String, FilterTemplate> filterTemplates = new ConcurrentHashMap<String, FilterTemplate>();
+
 	/**
 	 * The default initializer.
 	 * 
@@ -145,6 +152,7 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 		} catch (LscConfigurationException e) {
 			throw new LscServiceConfigurationException(e);
 		}
+		getFilterTemplate(filterIdSync);
 		try {
 			jndiServices = JndiServices.getInstance(serviceProps);
 		} catch (NamingException e) {
@@ -165,6 +173,7 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 		baseDn = ldapService.getBaseDn();
 		filterIdSync = (ldapService.getOneFilter() != null ? ldapService.getOneFilter().trim() : ldapService.getGetOneFilter().trim());
 		filterAll = (ldapService.getAllFilter() != null ? ldapService.getAllFilter().trim() : ldapService.getGetAllFilter().trim());
+		getFilterTemplate(filterIdSync);
 		_filteredSc = new SearchControls();
 		_filteredSc.setReturningAttributes(ldapService.getFetchedAttributes().getString().toArray(new String[ldapService.getFetchedAttributes().getString().size()] ));
 		attrsId = new ArrayList<String>(ldapService.getPivotAttributes().getString().size()); 
@@ -244,25 +253,87 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 	 *             the identified object
 	 */
 	public SearchResult get(String id, LscDatasets pivotAttrs, String searchString) throws NamingException {
-        searchString = Pattern.compile("\\{id\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(Matcher.quoteReplacement(id));
+		searchString = getFilter(id, pivotAttrs, searchString);
+
+		return getJndiServices().getEntry(baseDn, searchString, _filteredSc);
+	}
+	
+	/**
+	 * Build the filter of an entry from a filter template: <code>{id}</code>
+	 * is replaced by the identifier, and each <code>{attribute}</code> by the
+	 * escaped value of the pivot attribute.
+	 * 
+	 * @param id the entry identifier
+	 * @param pivotAttrs the entry pivot attributes
+	 * @param searchString the filter template, which is parsed once
+	 * @return the filter
+	 * @throws NamingException if a pivot attribute of the filter has no value
+	 */
+	protected String getFilter(String id, LscDatasets pivotAttrs, String searchString) throws NamingException {
+		Map<String, String> values = new HashMap<String, String>();
 		if (pivotAttrs != null && pivotAttrs.getDatasets() != null && pivotAttrs.getDatasets().size() > 0) {
 			for (String attributeName : pivotAttrs.getAttributesNames()) {
-				String valueId = pivotAttrs.getValueForFilter(attributeName.toLowerCase());
-				if (valueId != null) {
-					valueId = Matcher.quoteReplacement(valueId);
-				}
-				searchString = Pattern.compile("\\{" + attributeName + "\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(valueId);
+				values.put(attributeName.toLowerCase(), pivotAttrs.getValueForFilter(attributeName.toLowerCase()));
 			}
 		} else if (attrsId.size() == 1) {
-			searchString = Pattern.compile("\\{" + attrsId.get(0) + "\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(Matcher.quoteReplacement(id));
+			values.put(attrsId.get(0).toLowerCase(), id);
 		} else {
 			// this is kept for backwards compatibility but will be removed
-			searchString = filterIdSync.replaceAll("\\{0\\}", Matcher.quoteReplacement(id));
+			return filterIdSync.replaceAll("\\{0\\}", Matcher.quoteReplacement(id));
 		}
+		values.put("id", id);
+		try {
+			return getFilterTemplate(searchString).fill(values);
+		} catch (IllegalArgumentException e) {
+			throw new NamingException(e.getMessage());
+		}
+	}
 
-		return getJndiServices().getEntry(baseDn, searchString, _filteredSc);
+	/**
+	 * Get the parsed form of a filter, parsing it on first use
+	 * @param filter the filter
+	 * @return the filter template
+	 */
+	protected FilterTemplate getFilterTemplate(String filter) {
+		FilterTemplate template = filterTemplates.get(filter);
+		if (template == null) {
+			template = new FilterTemplate(filter);
+			filterTemplates.putIfAbsent(filter, template);
+		}
+		return template;
 	}
-	
+
+	/**
+	 * Get all the entries matching the filterAll, sorted by the directory on
+	 * the pivot attributes. The pivot attributes are always returned, beside
+	 * the fetched attributes, so that the caller can compare entries.
+	 * 
+	 * @return the sorted search results
+	 * @throws NamingException
+	 *             thrown if the search can not be started
+	 */
+	protected Iterator<SearchResult> getSortedSearchResults() throws NamingException {
+		List<String> attributes = new ArrayList<String>(attrs);
+		for (String pivotAttr : attrsId) {
+			boolean found = false;
+			for (String attr : attrs) {
+				if (attr.equalsIgnoreCase(pivotAttr)) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				attributes.add(pivotAttr);
+			}
+		}
+		SearchControls sc = new SearchControls();
+		sc.setDerefLinkFlag(false);
+		sc.setReturningAttributes(attributes.toArray(new String[attributes.size()]));
+		sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		sc.setReturningObjFlag(true);
+		return getJndiServices().getSortedEntries(baseDn, filterAll, sc, attrsId);
+	}
+
 	public void close() throws IOException {
 		try {
 			jndiServices.finalize();
@@ -289,6 +360,15 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 		return attrsId;
 	}
 
+	/**
+	 * Pivot attributes getter, by order of precedence.
+	 * 
+	 * @return the attrId value
+	 */
+	public final List<String> getPivotAttributes() {
+		return attrsId;
+	}
+
 	/**
 	 * Default attributes getter.
 	 * 
@@ -47,7 +47,9 @@ package org.lsc.jndi;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.naming.CommunicationException;
@@ -61,16 +63,26 @@ import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 
 import org.lsc.LscDatasetModification;
+import org.lsc.LscModificationType;
 import org.lsc.LscModifications;
+import org.lsc.beans.IBean;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
 import org.lsc.utils.CaseIgnoreStringHashMap;
+import org.lsc.utils.LSCStructuralLogger;
 
 /**
  * A custom JNDI service to translate modifications on the user's "memberOf"
  * attribute to modifications on the "member" attribute of each groups. This is
  * the way to apply changes on groups with ActiveDirectory.
+ * 
+ * When the modifications are applied by batches, see
+ * {@link org.lsc.service.IBatchWritableService}, the membership changes of
+ * all the users of a batch are collected by group, and each group is
+ * modified once with all its added or removed members, by chunks of
+ * {@link #MEMBERS_PER_MODIFICATION} values. A user is only reported as
+ * synchronized once all its membership changes have been written.
  * @author St&eacute;phane Bond &lt;&gt;
  */
 public class ActiveDirectoryDstService extends SimpleJndiDstService {
@@ -79,6 +91,9 @@ public class ActiveDirectoryDstService extends SimpleJndiDstService {
 
 	final String GROUP_MEMBER_ATTR = "member";
 
+	/** Maximum number of values added to or removed from a group at once */
+	static final int MEMBERS_PER_MODIFICATION = 1000;
+
 	public ActiveDirectoryDstService(TaskType task)
 			throws LscServiceConfigurationException {
 		super(task);
@@ -90,29 +105,17 @@ public class ActiveDirectoryDstService extends SimpleJndiDstService {
 
 		// Convert operations on "memberOf" to operations on the "member"
 		// attribute of the group
-		LscDatasetModification memberOfDm = null;
-		for (int i = 0; i < lm.getLscAttributeModifications().size(); i++) {
-			LscDatasetModification dm = lm.getLscAttributeModifications()
-					.get(i);
-			if (dm.getAttributeName().equals(MEMBER_OF_ATTR)) {
-				memberOfDm = dm;
-				lm.getLscAttributeModifications().remove(i);
-				break;
-			}
-		}
+		LscDatasetModification memberOfDm = removeMemberOf(lm);
 
 		// Apply regular changes
-		if (lm.getLscAttributeModifications().size() > 0
-				|| lm.getNewMainIdentifier() != null) {
+		if (hasRegularChanges(lm)) {
 			success = super.apply(lm);
 		}
 
 		// Apply changes on memberships
-		if (memberOfDm != null) {
-			List<String> oldValues = getAttribute(lm.getMainIdentifier(),
-					MEMBER_OF_ATTR);
+		if (memberOfDm != null && success) {
 			List<JndiModifications> memberOfChanges = computeChanges(
-					lm.getMainIdentifier(), memberOfDm.getValues(), oldValues);
+					lm.getMainIdentifier(), memberOfDm.getValues(), getMemberOf(lm));
 			try {
 				for (JndiModifications jm : memberOfChanges) {
 					success &= jndiServices.apply(jm);
@@ -124,6 +127,178 @@ public class ActiveDirectoryDstService extends SimpleJndiDstService {
 		return success;
 	}
 
+	@Override
+	public boolean[] apply(List<LscModifications> lms) throws LscServiceException {
+		List<LscDatasetModification> memberOfDms = new ArrayList<LscDatasetModification>(lms.size());
+		List<LscModifications> regularLms = new ArrayList<LscModifications>(lms.size());
+		for (LscModifications lm : lms) {
+			memberOfDms.add(removeMemberOf(lm));
+			if (hasRegularChanges(lm)) {
+				regularLms.add(lm);
+			}
+		}
+
+		boolean[] regularResults = super.apply(regularLms);
+		boolean[] results = new boolean[lms.size()];
+		Map<String, GroupChanges> changes = new CaseIgnoreStringHashMap<GroupChanges>();
+		for (int i = 0, j = 0; i < results.length; i++) {
+			LscModifications lm = lms.get(i);
+			results[i] = (j < regularLms.size() && regularLms.get(j) == lm ? regularResults[j++] : true);
+			if (memberOfDms.get(i) != null && results[i]) {
+				addChanges(changes, i, lm, memberOfDms.get(i));
+			}
+		}
+
+		for (Map.Entry<String, GroupChanges> group : changes.entrySet()) {
+			applyChanges(group.getKey(), DirContext.ADD_ATTRIBUTE, group.getValue().added, results);
+			applyChanges(group.getKey(), DirContext.REMOVE_ATTRIBUTE, group.getValue().removed, results);
+		}
+		return results;
+	}
+
+	/**
+	 * Remove the modification of the "memberOf" attribute from the entry
+	 * modifications
+	 * @param lm the entry modifications
+	 * @return the "memberOf" modification, or null if there is none
+	 */
+	private LscDatasetModification removeMemberOf(LscModifications lm) {
+		for (int i = 0; i < lm.getLscAttributeModifications().size(); i++) {
+			LscDatasetModification dm = lm.getLscAttributeModifications()
+					.get(i);
+			if (dm.getAttributeName().equals(MEMBER_OF_ATTR)) {
+				lm.getLscAttributeModifications().remove(i);
+				return dm;
+			}
+		}
+		return null;
+	}
+
+	private boolean hasRegularChanges(LscModifications lm) {
+		return lm.getLscAttributeModifications().size() > 0
+				|| lm.getNewMainIdentifier() != null;
+	}
+
+	/**
+	 * Add the membership changes of a user to the changes of each group
+	 * @param changes the changes of the batch, by group DN
+	 * @param index the index of the user modifications in the batch
+	 * @param lm the user modifications
+	 * @param memberOfDm the new "memberOf" values of the user
+	 * @throws LscServiceException
+	 */
+	private void addChanges(Map<String, GroupChanges> changes, int index, LscModifications lm,
+			LscDatasetModification memberOfDm) throws LscServiceException {
+		String userDn = lm.getMainIdentifier();
+		List<String> oldValues = getMemberOf(lm);
+		// Add operation on newValues not in oldValues
+		for (String groupDn : valuesDiff(memberOfDm.getValues(), oldValues)) {
+			GroupChanges groupChanges = getGroupChanges(changes, groupDn);
+			groupChanges.removed.remove(userDn.toLowerCase());
+			groupChanges.added.put(userDn.toLowerCase(), new Member(userDn, index));
+		}
+		// Remove operation on oldValues not in newValues
+		for (String groupDn : valuesDiff(oldValues, memberOfDm.getValues())) {
+			GroupChanges groupChanges = getGroupChanges(changes, groupDn);
+			groupChanges.added.remove(userDn.toLowerCase());
+			groupChanges.removed.put(userDn.toLowerCase(), new Member(userDn, index));
+		}
+	}
+
+	private static GroupChanges getGroupChanges(Map<String, GroupChanges> changes, String groupDn) {
+		GroupChanges groupChanges = changes.get(groupDn);
+		if (groupChanges == null) {
+			groupChanges = new GroupChanges();
+			changes.put(groupDn, groupChanges);
+		}
+		return groupChanges;
+	}
+
+	/**
+	 * Get the current groups of a user, from the destination entry if it has
+	 * been read with its "memberOf" attribute
+	 * @param lm the user modifications
+	 * @return the groups DN, or null if there is none
+	 * @throws LscServiceException
+	 */
+	private List<String> getMemberOf(LscModifications lm) throws LscServiceException {
+		if (lm.getOperation() == LscModificationType.CREATE_OBJECT) {
+			return null;
+		}
+		IBean dstBean = lm.getDestinationBean();
+		if (dstBean != null && attrs != null && containsIgnoreCase(attrs, MEMBER_OF_ATTR)) {
+			List<String> values = new ArrayList<String>();
+			Set<Object> memberOf = dstBean.getDatasetById(MEMBER_OF_ATTR);
+			if (memberOf != null) {
+				for (Object value : memberOf) {
+					values.add(value.toString());
+				}
+			}
+			return values;
+		}
+		return getAttribute(lm.getMainIdentifier(), MEMBER_OF_ATTR);
+	}
+
+	private static boolean containsIgnoreCase(List<String> values, String value) {
+		for (String v : values) {
+			if (v.equalsIgnoreCase(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add or remove members of a group, by chunks. If a chunk can not be
+	 * applied, for instance because one of the values is already present,
+	 * its members are applied one by one. The result is logged for each
+	 * member, and the users whose change failed are reported as failed.
+	 * 
+	 * @param groupDn the group DN
+	 * @param operation {@link DirContext#ADD_ATTRIBUTE} or {@link DirContext#REMOVE_ATTRIBUTE}
+	 * @param userDns the members, by lower cased DN
+	 * @param results the results of the batch, updated for the failed members
+	 * @throws LscServiceException if the connection is lost
+	 */
+	private void applyChanges(String groupDn, int operation, Map<String, Member> userDns, boolean[] results) throws LscServiceException {
+		List<Member> members = new ArrayList<Member>(userDns.values());
+		String action = (operation == DirContext.ADD_ATTRIBUTE ? "added to" : "removed from");
+		try {
+			for (int start = 0; start < members.size(); start += MEMBERS_PER_MODIFICATION) {
+				List<Member> chunk = members.subList(start, Math.min(start + MEMBERS_PER_MODIFICATION, members.size()));
+				if (chunk.size() > 1 && jndiServices.apply(newGroupModification(groupDn, operation, chunk))) {
+					for (Member member : chunk) {
+						LSCStructuralLogger.DESTINATION.info("{} {} group {}", new Object[] { member.dn, action, groupDn });
+					}
+					continue;
+				}
+				for (Member member : chunk) {
+					if (jndiServices.apply(newGroupModification(groupDn, operation, Arrays.asList(member)))) {
+						LSCStructuralLogger.DESTINATION.info("{} {} group {}", new Object[] { member.dn, action, groupDn });
+					} else {
+						LSCStructuralLogger.DESTINATION.error("{} could not be {} group {}", new Object[] { member.dn, action, groupDn });
+						results[member.index] = false;
+					}
+				}
+			}
+		} catch (CommunicationException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	private JndiModifications newGroupModification(String groupDn, int operation, List<Member> members) {
+		Attribute attr = new BasicAttribute(GROUP_MEMBER_ATTR);
+		for (Member member : members) {
+			attr.add(member.dn);
+		}
+		JndiModifications jm = new JndiModifications(
+				JndiModificationType.MODIFY_ENTRY);
+		jm.setDistinguishName(groupDn);
+		jm.setModificationItems(Arrays
+				.asList(new ModificationItem[] { new ModificationItem(operation, attr) }));
+		return jm;
+	}
+
 	/**
 	 * Compute changes to apply on groups attributes
 	 * 
@@ -225,4 +400,24 @@ public class ActiveDirectoryDstService extends SimpleJndiDstService {
 		return values;
 	}
 
+	/**
+	 * Members added to and removed from a group, by lower cased DN
+	 */
+	private static class GroupChanges {
+		private final Map<String, Member> added = new LinkedHashMap<String, Member>();
+		private final Map<String, Member> removed = new LinkedHashMap<String, Member>();
+	}
+
+	/**
+	 * A member DN, with the index of its modifications in the batch
+	 */
+	private static class Member {
+		private final String dn;
+		private final int index;
+
+		Member(String dn, int index) {
+			this.dn = dn;
+			this.index = index;
+		}
+	}
 }
@@ -0,0 +1,187 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A LDAP filter with placeholders, such as <code>(&amp;(objectClass=inetOrgPerson)(uid={uid}))</code>,
+ * parsed once so that the filter of each entry is built without any
+ * regular expression.
+ * 
+ * A placeholder is a name between braces. Names are case insensitive.
+ * Placeholders without value are kept as they are.
+ */
+public class FilterTemplate {
+
+	/** An equality assertion, up to its value */
+	private static final Pattern ASSERTION_START = Pattern.compile("\\(([a-zA-Z][a-zA-Z0-9.;-]*)=$");
+
+	/** The text between the placeholders, one more than the placeholders */
+	private final String[] texts;
+	/** The lower cased placeholders names */
+	private final String[] slots;
+	/** The placeholders as written in the filter */
+	private final String[] placeholders;
+	/** The length of the filter without its placeholders */
+	private final int textLength;
+
+	/**
+	 * Parse a filter
+	 * @param filter the filter with its placeholders
+	 */
+	public FilterTemplate(String filter) {
+		List<String> textList = new ArrayList<String>();
+		List<String> placeholderList = new ArrayList<String>();
+		int length = 0;
+		int start = 0;
+		int open;
+		while ((open = filter.indexOf('{', start)) >= 0) {
+			int close = filter.indexOf('}', open + 1);
+			if (close < 0) {
+				break;
+			}
+			int nested = filter.lastIndexOf('{', close);
+			if (nested > open) {
+				// "{{name}" : the first brace is part of the text
+				open = nested;
+			}
+			textList.add(filter.substring(start, open));
+			length += open - start;
+			placeholderList.add(filter.substring(open, close + 1));
+			start = close + 1;
+		}
+		textList.add(filter.substring(start));
+		length += filter.length() - start;
+
+		texts = textList.toArray(new String[textList.size()]);
+		placeholders = placeholderList.toArray(new String[placeholderList.size()]);
+		slots = new String[placeholders.length];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = placeholders[i].substring(1, placeholders[i].length() - 1).toLowerCase();
+		}
+		textLength = length;
+	}
+
+	/**
+	 * Build a filter by replacing the placeholders with their values. The
+	 * values are inserted as they are, so they must already be escaped.
+	 * 
+	 * @param values the values, by lower cased placeholder name
+	 * @return the filter
+	 * @throws IllegalArgumentException if a placeholder value is null
+	 */
+	public String fill(Map<String, String> values) {
+		if (slots.length == 0) {
+			return texts[0];
+		}
+		StringBuilder filter = new StringBuilder(textLength + 32 * slots.length);
+		for (int i = 0; i < slots.length; i++) {
+			filter.append(texts[i]);
+			if (values.containsKey(slots[i])) {
+				String value = values.get(slots[i]);
+				if (value == null) {
+					throw new IllegalArgumentException("No value for " + placeholders[i] + " in filter " + toString());
+				}
+				filter.append(value);
+			} else {
+				filter.append(placeholders[i]);
+			}
+		}
+		filter.append(texts[slots.length]);
+		return filter.toString();
+	}
+
+	/**
+	 * @return the lower cased placeholders names, in the filter order
+	 */
+	public String[] getSlots() {
+		return slots.clone();
+	}
+
+	/**
+	 * Get the attribute compared to each placeholder, when the filter only
+	 * requires each placeholder to be equal to an attribute value, such as
+	 * <code>(&amp;(objectClass=inetOrgPerson)(uid={uid}))</code>. The entries
+	 * matching such a filter can be told apart by their values.
+	 * 
+	 * @return the attributes names, in the placeholders order, or null if
+	 *         the filter has no placeholder, uses a placeholder in another
+	 *         assertion or holds a negation or an alternative
+	 */
+	public String[] getAssertedAttributes() {
+		if (slots.length == 0) {
+			return null;
+		}
+		for (String text : texts) {
+			if (text.indexOf('|') >= 0 || text.indexOf('!') >= 0) {
+				return null;
+			}
+		}
+		String[] attributes = new String[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			Matcher assertion = ASSERTION_START.matcher(texts[i]);
+			if (!assertion.find() || !texts[i + 1].startsWith(")")) {
+				return null;
+			}
+			attributes[i] = assertion.group(1);
+		}
+		return attributes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder filter = new StringBuilder();
+		for (int i = 0; i < slots.length; i++) {
+			filter.append(texts[i]).append(placeholders[i]);
+		}
+		return filter.append(texts[slots.length]).toString();
+	}
+}
@@ -45,15 +45,20 @@
  */
 package org.lsc.jndi;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 
 import javax.naming.CommunicationException;
@@ -78,8 +83,7 @@ import javax.naming.ldap.LdapName;
 import javax.naming.ldap.PagedResultsControl;
 import javax.naming.ldap.PagedResultsResponseControl;
 import javax.naming.ldap.SortControl;
-import javax.naming.ldap.StartTlsRequest;
-import javax.naming.ldap.StartTlsResponse;
+import javax.naming.ldap.SortResponseControl;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.NameCallback;
@@ -107,6 +111,7 @@ import org.lsc.configuration.LdapDerefAliasesType;
 import org.lsc.configuration.LdapReferralType;
 import org.lsc.configuration.LdapVersionType;
 import org.lsc.exception.LscConfigurationException;
+import org.lsc.exception.LscServiceCommunicationException;
 import org.lsc.exception.LscServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -128,11 +133,23 @@ public final class JndiServices {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(JndiServices.class);
 
+	/** Default maximum number of pooled connections. */
+	public static final int DEFAULT_POOL_SIZE = 10;
+
+	/** Default idle timeout of pooled connections, in seconds. */
+	public static final int DEFAULT_POOL_IDLE_TIMEOUT = 300;
+
+	/** Default number of values reserved at once by the sequences. */
+	public static final int DEFAULT_SEQUENCE_BLOCK_SIZE = 1;
+
 	/** the ldap ctx. */
 	private LdapContext ctx;
 
-	/** TLSResponse in case we use StartTLS */
-	private StartTlsResponse tlsResponse;
+	/** The connection behind ctx, with its TLS layer if any */
+	private LdapContextPool.PooledContext mainContext;
+
+	/** The connections used by the directory operations */
+	private LdapContextPool pool;
 
 	/** The context base dn. */
 	private Dn contextDn;
@@ -167,52 +184,25 @@ public final class JndiServices {
 		initConnection();
 	}
 
-	private void initConnection()
+	private synchronized void initConnection()
 			throws NamingException, IOException {
 		// log new connection with it's details
 		logConnectingTo(connProps);
 
-		/* should we negotiate TLS? */
-		if (connProps.get(TLS_CONFIGURATION) != null && (Boolean) connProps.get(TLS_CONFIGURATION)) {
-			/* if we're going to do TLS, we mustn't BIND before the STARTTLS operation
-			 * so we remove credentials from the properties to stop JNDI from binding */
-			/* duplicate properties to avoid changing them (they are used as a cache key in getInstance() */
-			Properties localConnProps = new Properties();
-			localConnProps.putAll(connProps);
-			String jndiContextAuthentication = localConnProps.getProperty(Context.SECURITY_AUTHENTICATION);
-			String jndiContextPrincipal = localConnProps.getProperty(Context.SECURITY_PRINCIPAL);
-			String jndiContextCredentials = localConnProps.getProperty(Context.SECURITY_CREDENTIALS);
-			localConnProps.remove(Context.SECURITY_AUTHENTICATION);
-			localConnProps.remove(Context.SECURITY_PRINCIPAL);
-			localConnProps.remove(Context.SECURITY_CREDENTIALS);
-
-			/* open the connection */
-			ctx = new InitialLdapContext(localConnProps, null);
-
-			/* initiate the STARTTLS extended operation */
-			try {
-				tlsResponse = (StartTlsResponse) ctx.extendedOperation(new StartTlsRequest());
-				tlsResponse.negotiate();
-			} catch (IOException e) {
-				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
-				LOGGER.debug(e.toString(), e);
-				throw e;
-			} catch (NamingException e) {
-				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
-				LOGGER.debug(e.toString(), e);
-				throw e;
-			}
-
-			/* now we add the credentials back to the context, to BIND once TLS is started */
-			ctx.addToEnvironment(Context.SECURITY_AUTHENTICATION, jndiContextAuthentication);
-			ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, jndiContextPrincipal);
-			ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, jndiContextCredentials);
-
+		if (pool == null) {
+			pool = new LdapContextPool(connProps, getIntProperty("java.naming.ldap.poolSize", DEFAULT_POOL_SIZE),
+							getIntProperty("java.naming.ldap.poolIdleTimeout", DEFAULT_POOL_IDLE_TIMEOUT) * 1000L);
 		} else {
-			/* don't start TLS, just connect normally (this can be on ldap:// or ldaps://) */
-			ctx = new InitialLdapContext(connProps, null);
+			/* we get here after a communication error: pooled connections may be broken too */
+			pool.clear();
+			if (mainContext != null) {
+				mainContext.close();
+			}
 		}
 
+		mainContext = pool.open();
+		ctx = mainContext.getContext();
+
 		/* get LDAP naming context */
 		try {
 			namingContext = new LdapUrl((String) ctx.getEnvironment().get(Context.PROVIDER_URL));
@@ -250,6 +240,11 @@ public final class JndiServices {
 		ldapApiService.registerControl(factory);
 	}
 
+	private int getIntProperty(String name, int defaultValue) {
+		String value = connProps.getProperty(name);
+		return (value != null ? Integer.parseInt(value) : defaultValue);
+	}
+
 	private void logConnectingTo(Properties connProps) {
 		if (LOGGER.isInfoEnabled()) {
 			StringBuilder sb = new StringBuilder();
@@ -316,7 +311,7 @@ public final class JndiServices {
 	 * @throws IOException
 	 * @throws NamingException
 	 */
-	public static JndiServices getInstance(final Properties props, boolean forceNewConnection) throws NamingException, IOException {
+	public static synchronized JndiServices getInstance(final Properties props, boolean forceNewConnection) throws NamingException, IOException {
         if(forceNewConnection) {
             return new JndiServices(props);
         } else {
@@ -411,6 +406,15 @@ public final class JndiServices {
         if(connection.isRecursiveDelete() != null) {
             props.setProperty("java.naming.recursivedelete", Boolean.toString(connection.isRecursiveDelete()));
         }
+		if(connection.getPoolSize() != null) {
+			props.setProperty("java.naming.ldap.poolSize", "" + connection.getPoolSize());
+		}
+		if(connection.getPoolIdleTimeout() != null) {
+			props.setProperty("java.naming.ldap.poolIdleTimeout", "" + connection.getPoolIdleTimeout());
+		}
+		if(connection.getSequenceBlockSize() != null) {
+			props.setProperty("java.naming.ldap.sequenceBlockSize", "" + connection.getSequenceBlockSize());
+		}
 
 		return props;
 	}
@@ -550,6 +554,19 @@ public final class JndiServices {
 
 	private SearchResult doGetEntry(final String base, final String filter,
 			final SearchControls sc, final int scope) throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			return doGetEntry(ctx, base, filter, sc, scope);
+		} catch (NamingException e) {
+			invalidateIfBroken(ctx, e);
+			throw e;
+		} finally {
+			pool.release(ctx);
+		}
+	}
+
+	private SearchResult doGetEntry(final LdapContext ctx, final String base, final String filter,
+			final SearchControls sc, final int scope) throws NamingException {
 		//sanity checks
 		String searchBase = base == null ? "" : base;
 		String searchFilter = filter == null ? DEFAULT_FILTER : filter;
@@ -557,17 +574,7 @@ public final class JndiServices {
 		NamingEnumeration<SearchResult> ne = null;
 		try {
 			sc.setSearchScope(scope);
-			String rewrittenBase = null;
-			if (contextDn != null && searchBase.toLowerCase().endsWith(contextDn.toString().toLowerCase())) {
-				if (!searchBase.equalsIgnoreCase(contextDn.toString())) {
-				rewrittenBase = searchBase.substring(0, searchBase.toLowerCase().lastIndexOf(contextDn.toString().toLowerCase()) - 1);
-			} else {
-					rewrittenBase = "";
-				}
-			} else {
-				rewrittenBase = searchBase;
-			}
-			ne = ctx.search(rewrittenBase, searchFilter, sc);
+			ne = ctx.search(rewriteSearchBase(searchBase), searchFilter, sc);
 
 		} catch (NamingException nex) {
 			LOGGER.error("Error while looking for {} in {}: {}",
@@ -592,6 +599,85 @@ public final class JndiServices {
 		return sr;
 	}
 
+	/**
+	 * Search for all the entries matching a filter, such as the entries of
+	 * several pivots looked up at once.
+	 *
+	 * This method is a simple LDAP search operation with SUBTREE search
+	 * control
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param sc the search controls
+	 * @return the entries, maybe empty
+	 * @throws SizeLimitExceededException
+	 * 					thrown if the directory size limit is reached
+	 * @throws NamingException
+	 *                 thrown if something goes wrong
+	 */
+	public List<SearchResult> getEntries(final String base, final String filter,
+					final SearchControls sc) throws NamingException {
+		try {
+			return doGetEntries(base, filter, sc);
+		} catch (NamingException nex) {
+			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
+				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
+				LOGGER.debug(nex.getMessage(), nex);
+				try {
+					initConnection();
+				} catch (IOException ioex) {
+					LOGGER.error("I/O error: " + ioex.getMessage());
+					LOGGER.debug(ioex.getMessage(), ioex);
+					// throw the initial communication exception
+					throw nex;
+				}
+				return doGetEntries(base, filter, sc);
+			} else {
+				throw nex;
+			}
+		}
+	}
+
+	private List<SearchResult> doGetEntries(final String base, final String filter,
+			final SearchControls sc) throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			String searchBase = base == null ? "" : base;
+			sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
+			NamingEnumeration<SearchResult> ne = ctx.search(rewriteSearchBase(searchBase), filter, sc);
+			List<SearchResult> entries = new ArrayList<SearchResult>();
+			try {
+				while (ne.hasMore()) {
+					entries.add(ne.next());
+				}
+			} finally {
+				ne.close();
+			}
+			return entries;
+		} catch (NamingException e) {
+			invalidateIfBroken(ctx, e);
+			throw e;
+		} finally {
+			pool.release(ctx);
+		}
+	}
+
+	/**
+	 * Make a search base relative to the context of the connections
+	 * @param searchBase the search base
+	 * @return the relative search base
+	 */
+	private String rewriteSearchBase(String searchBase) {
+		if (contextDn != null && searchBase.toLowerCase().endsWith(contextDn.toString().toLowerCase())) {
+			if (!searchBase.equalsIgnoreCase(contextDn.toString())) {
+				return searchBase.substring(0, searchBase.toLowerCase().lastIndexOf(contextDn.toString().toLowerCase()) - 1);
+			} else {
+				return "";
+			}
+		}
+		return searchBase;
+	}
+
 	/**
 	 * Check if the entry with the specified distinguish name exists (or
 	 * not).
@@ -688,6 +774,19 @@ public final class JndiServices {
 	
 	private SearchResult doReadEntry(final String base, final String filter,
 			final boolean allowError, final SearchControls sc) throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			return doReadEntry(ctx, base, filter, allowError, sc);
+		} catch (NamingException e) {
+			invalidateIfBroken(ctx, e);
+			throw e;
+		} finally {
+			pool.release(ctx);
+		}
+	}
+
+	private SearchResult doReadEntry(final LdapContext ctx, final String base, final String filter,
+			final boolean allowError, final SearchControls sc) throws NamingException {
 		NamingEnumeration<SearchResult> ne = null;
 		sc.setSearchScope(SearchControls.OBJECT_SCOPE);
 		try {
@@ -756,6 +855,19 @@ public final class JndiServices {
 	
 	private List<String> doGetDnList(final String base, final String filter,
 			final int scope) throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			return doGetDnList(ctx, base, filter, scope);
+		} catch (NamingException e) {
+			invalidateIfBroken(ctx, e);
+			throw e;
+		} finally {
+			pool.release(ctx);
+		}
+	}
+
+	private List<String> doGetDnList(final LdapContext ctx, final String base, final String filter,
+			final int scope) throws NamingException {
 		NamingEnumeration<SearchResult> ne = null;
 		List<String> iist = new ArrayList<String>();
 		try {
@@ -813,12 +925,43 @@ public final class JndiServices {
 		}
 	}
 
+	/**
+	 * Apply several directory modifications, in order.
+	 *
+	 * Each modification borrows its own connection, so that the retry after
+	 * a communication error is done on a new one.
+	 *
+	 * @param jms modifications to apply
+	 * @return the status of each modification, in the same order
+	 * @throws CommunicationException If the connection to the directory is lost
+	 */
+	public boolean[] apply(final List<JndiModifications> jms) throws CommunicationException {
+		boolean[] results = new boolean[jms.size()];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = apply(jms.get(i));
+		}
+		return results;
+	}
+
+	/**
+	 * Do not give a connection back to the pool if an error shows it is broken
+	 * @param ctx the borrowed connection
+	 * @param e the error
+	 */
+	private void invalidateIfBroken(final LdapContext ctx, final NamingException e) {
+		if (e instanceof CommunicationException || e instanceof ServiceUnavailableException) {
+			pool.invalidate(ctx);
+		}
+	}
+
 	private boolean doApply(final JndiModifications jm) throws CommunicationException {
 		if (jm == null) {
 			return true;
 		}
 		
+		LdapContext ctx = null;
 		try {
+			ctx = pool.borrow();
 			switch (jm.getOperation()) {
 
 				case ADD_ENTRY:
@@ -887,6 +1030,7 @@ public final class JndiServices {
 				LOGGER.error(errorMessage.toString());
 			}
 			
+			invalidateIfBroken(ctx, ne);
 			if (ne instanceof CommunicationException) {
 				// we lost the connection to the source or destination, stop everything!
 				throw (CommunicationException) ne;
@@ -899,6 +1043,10 @@ public final class JndiServices {
 			}
 			
 			return false;
+		} finally {
+			if (ctx != null) {
+				pool.release(ctx);
+			}
 		}
 	}
 
@@ -932,6 +1080,18 @@ public final class JndiServices {
 	}
 
 	private void doDeleteChildrenRecursively(String distinguishName) throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			doDeleteChildrenRecursively(ctx, distinguishName);
+		} catch (NamingException e) {
+			invalidateIfBroken(ctx, e);
+			throw e;
+		} finally {
+			pool.release(ctx);
+		}
+	}
+
+	private void doDeleteChildrenRecursively(final LdapContext ctx, String distinguishName) throws NamingException {
 		SearchControls sc = new SearchControls();
 		sc.setSearchScope(SearchControls.ONELEVEL_SCOPE);
 		NamingEnumeration<SearchResult> ne = ctx.search(distinguishName, DEFAULT_FILTER, sc);
@@ -1124,7 +1284,20 @@ public final class JndiServices {
 	public Map<String, LscDatasets> doGetAttrsList(final String base,
 			final String filter, final int scope, final List<String> attrsNames)
 			throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			return doGetAttrsList(ctx, base, filter, scope, attrsNames);
+		} catch (NamingException e) {
+			invalidateIfBroken(ctx, e);
+			throw e;
+		} finally {
+			pool.release(ctx);
+		}
+	}
 
+	private Map<String, LscDatasets> doGetAttrsList(final LdapContext ctx, final String base,
+			final String filter, final int scope, final List<String> attrsNames)
+			throws NamingException {
 		// sanity checks
 		String searchBase = base == null ? "" : rewriteBase(base);
 		String searchFilter = filter == null ? DEFAULT_FILTER : filter;
@@ -1172,21 +1345,9 @@ public final class JndiServices {
 				NamingEnumeration<SearchResult> results = ctx.search(searchBase, searchFilter, constraints);
 
 				if (results != null) {
-					Map<String, Object> attrsValues = null;
 					while (results.hasMoreElements()) {
-						attrsValues = new HashMap<String, Object>();
-
 						SearchResult ldapResult = (SearchResult) results.next();
-
-						// get the value for each attribute requested
-						for (String attributeName : attrsNames) {
-							Attribute attr = ldapResult.getAttributes().get(attributeName);
-							if (attr != null && attr.get() != null) {
-								attrsValues.put(attributeName, attr.get());
-							}
-						}
-
-						res.put(ldapResult.getNameInNamespace(), new LscDatasets(attrsValues));
+						res.put(ldapResult.getNameInNamespace(), getPivotDatasets(ldapResult, attrsNames));
 					}
 				}
 				
@@ -1231,6 +1392,315 @@ public final class JndiServices {
 		return res;
 	}
 
+	/**
+	 * Search for all the entries matching the filter, sorted by the server
+	 * on the specified attributes (RFC 2891 server side sort control).
+	 *
+	 * Results are read page by page (if a page size is configured) while the
+	 * returned iterator is consumed, so the whole result set is never held in
+	 * memory. The search runs on a dedicated context so the request controls
+	 * do not leak into the other operations made through this object.
+	 *
+	 * As {@link Iterator} cannot throw checked exceptions, a directory error
+	 * met while iterating is thrown as a {@link RuntimeException} wrapping a
+	 * {@link LscServiceException} (or a {@link LscServiceCommunicationException}
+	 * if the connection has been lost).
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param sc the search controls (scope and returned attributes)
+	 * @param sortKeys the attribute names to sort on, by order of precedence
+	 * @return the search results, in ascending order
+	 * @throws NamingException thrown if the search can not be started
+	 */
+	public Iterator<SearchResult> getSortedEntries(final String base, final String filter,
+					final SearchControls sc, final List<String> sortKeys) throws NamingException {
+		try {
+			return new PagedSearchResults(base, filter, sc, sortKeys);
+		} catch (NamingException nex) {
+			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
+				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
+				LOGGER.debug(nex.getMessage(), nex);
+				try {
+					initConnection();
+				} catch (IOException ioex) {
+					LOGGER.error("I/O error: " + ioex.getMessage());
+					LOGGER.debug(ioex.getMessage(), ioex);
+					// throw the initial communication exception
+					throw nex;
+				}
+				return new PagedSearchResults(base, filter, sc, sortKeys);
+			} else {
+				throw nex;
+			}
+		}
+	}
+
+	/**
+	 * Search for all the entries matching the filter, and return their
+	 * pivot attributes, as {@link #getAttrsList(String, String, int, List)}
+	 * does.
+	 *
+	 * Results are read page by page (if a page size is configured) while the
+	 * returned iterator is consumed, so that the synchronization can start
+	 * with the first page, and the whole result set is never held in memory.
+	 * The search runs on a dedicated context, closed once all the results
+	 * have been read or when the iterator is closed.
+	 *
+	 * As {@link Iterator} cannot throw checked exceptions, a directory error
+	 * met while iterating is thrown as a {@link RuntimeException} wrapping a
+	 * {@link LscServiceException} (or a {@link LscServiceCommunicationException}
+	 * if the connection has been lost). An entry whose pivot attributes can
+	 * not be read is logged and skipped, as getAttrsList does.
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param scope the scope of the search operation
+	 * @param attrsNames the names of the attributes to return
+	 * @return the entries DN and pivot attributes
+	 * @throws NamingException thrown if the search can not be started
+	 */
+	public Iterator<Entry<String, LscDatasets>> getAttrsIterator(final String base, final String filter,
+					final int scope, final List<String> attrsNames) throws NamingException {
+		if (attrsNames == null || attrsNames.size() == 0) {
+			LOGGER.error("No attribute names to read! Check configuration.");
+			return Collections.<Entry<String, LscDatasets>>emptyList().iterator();
+		}
+
+		SearchControls constraints = new SearchControls();
+		constraints.setDerefLinkFlag(false);
+		constraints.setReturningAttributes(attrsNames.toArray(new String[attrsNames.size()]));
+		constraints.setSearchScope(scope);
+		constraints.setReturningObjFlag(true);
+
+		List<String> sortKeys = (sortedBy != null ? Collections.singletonList(sortedBy) : null);
+		PagedSearchResults results = null;
+		try {
+			results = new PagedSearchResults(base, filter, constraints, sortKeys);
+		} catch (NamingException nex) {
+			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
+				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
+				LOGGER.debug(nex.getMessage(), nex);
+				try {
+					initConnection();
+				} catch (IOException ioex) {
+					LOGGER.error("I/O error: " + ioex.getMessage());
+					LOGGER.debug(ioex.getMessage(), ioex);
+					// throw the initial communication exception
+					throw nex;
+				}
+				results = new PagedSearchResults(base, filter, constraints, sortKeys);
+			} else {
+				throw nex;
+			}
+		}
+		return new AttrsIterator(results, attrsNames);
+	}
+
+	/**
+	 * Get the pivot attributes of a search result
+	 * @param ldapResult the search result
+	 * @param attrsNames the pivot attributes names
+	 * @return the pivot attributes
+	 * @throws NamingException thrown if an attribute value can not be read
+	 */
+	private static LscDatasets getPivotDatasets(SearchResult ldapResult, List<String> attrsNames) throws NamingException {
+		Map<String, Object> attrsValues = new HashMap<String, Object>();
+
+		// get the value for each attribute requested
+		for (String attributeName : attrsNames) {
+			Attribute attr = ldapResult.getAttributes().get(attributeName);
+			if (attr != null && attr.get() != null) {
+				attrsValues.put(attributeName, attr.get());
+			}
+		}
+		return new LscDatasets(attrsValues);
+	}
+
+	/**
+	 * Lazy iterator over the pivot attributes of search results
+	 */
+	private static final class AttrsIterator implements Iterator<Entry<String, LscDatasets>>, Closeable {
+
+		private final PagedSearchResults results;
+		private final List<String> attrsNames;
+
+		/** The next readable entry, or null if it has not been read yet */
+		private Entry<String, LscDatasets> nextEntry;
+
+		public AttrsIterator(PagedSearchResults results, List<String> attrsNames) {
+			this.results = results;
+			this.attrsNames = attrsNames;
+		}
+
+		public boolean hasNext() {
+			while (nextEntry == null && results.hasNext()) {
+				SearchResult ldapResult = results.next();
+				try {
+					nextEntry = new AbstractMap.SimpleEntry<String, LscDatasets>(ldapResult.getNameInNamespace(),
+									getPivotDatasets(ldapResult, attrsNames));
+				} catch (NamingException e) {
+					LOGGER.error("Unable to read the pivot attributes of {}, skipping it: {}", ldapResult.getName(), e.toString());
+					LOGGER.debug(e.toString(), e);
+				}
+			}
+			return nextEntry != null;
+		}
+
+		public Entry<String, LscDatasets> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Entry<String, LscDatasets> entry = nextEntry;
+			nextEntry = null;
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			results.close();
+		}
+	}
+
+	/**
+	 * Lazy iterator over a paged, and optionally sorted, search
+	 */
+	private final class PagedSearchResults implements Iterator<SearchResult> {
+
+		private final String searchBase;
+		private final String searchFilter;
+		private final SearchControls constraints;
+
+		/** The sort control, or null if the results are not sorted */
+		private final Control sortControl;
+
+		/** Dedicated context, holding the sort and paged results controls */
+		private LdapContext searchCtx;
+
+		/** Current page, or null when all the results have been read */
+		private NamingEnumeration<SearchResult> results;
+
+		public PagedSearchResults(final String base, final String filter,
+						final SearchControls sc, final List<String> sortKeys) throws NamingException {
+			searchBase = base == null ? "" : rewriteBase(base);
+			searchFilter = filter == null ? DEFAULT_FILTER : filter;
+			constraints = sc;
+			try {
+				sortControl = (sortKeys != null ? new SortControl(sortKeys.toArray(new String[sortKeys.size()]), Control.CRITICAL) : null);
+			} catch (IOException e) {
+				NamingException ne = new NamingException("Unable to encode the sort control: " + e.toString());
+				ne.setRootCause(e);
+				throw ne;
+			}
+			searchCtx = ctx.newInstance(getRequestControls(null));
+			results = searchCtx.search(searchBase, searchFilter, constraints);
+		}
+
+		private Control[] getRequestControls(byte[] cookie) throws NamingException {
+			List<Control> controls = new ArrayList<Control>();
+			if (sortControl != null) {
+				controls.add(sortControl);
+			}
+			if (pageSize <= 0) {
+				return controls.toArray(new Control[controls.size()]);
+			}
+			try {
+				controls.add(new PagedResultsControl(pageSize, cookie, Control.CRITICAL));
+				return controls.toArray(new Control[controls.size()]);
+			} catch (IOException e) {
+				NamingException ne = new NamingException("Unable to encode the paged results control: " + e.toString());
+				ne.setRootCause(e);
+				throw ne;
+			}
+		}
+
+		/**
+		 * Request the next page, if any
+		 * @return the next page results or null if this was the last one
+		 */
+		private NamingEnumeration<SearchResult> nextPage() throws NamingException {
+			byte[] cookie = null;
+			Control[] respCtls = searchCtx.getResponseControls();
+			if (respCtls != null) {
+				for (Control respCtl : respCtls) {
+					if (respCtl instanceof SortResponseControl && !((SortResponseControl) respCtl).isSorted()) {
+						throw ((SortResponseControl) respCtl).getException();
+					} else if (respCtl instanceof PagedResultsResponseControl) {
+						cookie = ((PagedResultsResponseControl) respCtl).getCookie();
+					}
+				}
+			}
+			if (pageSize <= 0 || cookie == null || cookie.length == 0) {
+				return null;
+			}
+			searchCtx.setRequestControls(getRequestControls(cookie));
+			return searchCtx.search(searchBase, searchFilter, constraints);
+		}
+
+		public boolean hasNext() {
+			try {
+				while (results != null) {
+					if (results.hasMore()) {
+						return true;
+					}
+					results = nextPage();
+				}
+				close();
+				return false;
+			} catch (NamingException e) {
+				close();
+				LOGGER.error("Error while reading entries in {}: {}", searchBase, e.toString());
+				LOGGER.debug(e.toString(), e);
+				if (e instanceof CommunicationException || e instanceof ServiceUnavailableException) {
+					throw new RuntimeException(new LscServiceCommunicationException(e));
+				}
+				throw new RuntimeException(new LscServiceException(e));
+			}
+		}
+
+		public SearchResult next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return results.nextElement();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			results = null;
+			if (searchCtx != null) {
+				try {
+					searchCtx.close();
+				} catch (NamingException e) {
+					LOGGER.debug(e.toString(), e);
+				}
+				searchCtx = null;
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum number of connections used at the same time by the
+	 *         directory operations
+	 */
+	public int getPoolSize() {
+		return pool.getMaxSize();
+	}
+
+	/**
+	 * @return the number of values reserved at once by the sequences stored
+	 *         in the directory, see {@link org.lsc.utils.SequencesFactory}
+	 */
+	public int getSequenceBlockSize() {
+		return getIntProperty("java.naming.ldap.sequenceBlockSize", DEFAULT_SEQUENCE_BLOCK_SIZE);
+	}
+
 	/**
 	 * @return the contextDn
 	 */
@@ -1244,16 +1714,15 @@ public final class JndiServices {
 	 */
 	@Override
 	protected void finalize() throws Throwable {
-		// Close the TLS connection (revert back to the underlying LDAP association)
-		if (tlsResponse != null) {
-			tlsResponse.close();
-		}
-
-		// Close the connection to the LDAP server
-		if (ctx != null) {
-			ctx.close();
+		// Close the connections to the LDAP server
+		if (mainContext != null) {
+			mainContext.close();
+			mainContext = null;
 			ctx = null;
 		}
+		if (pool != null) {
+			pool.close();
+		}
 
 		super.finalize();
 	}
@@ -0,0 +1,335 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.StartTlsRequest;
+import javax.naming.ldap.StartTlsResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of LDAP connections sharing the same connection properties.
+ * 
+ * A context is borrowed for each directory operation and given back once
+ * the operation is over, so that parallel synchronization threads do not
+ * share the same context (and its request controls). A thread borrowing
+ * again before having released its context gets the same one back, so that
+ * nested operations can not exhaust the pool.
+ * 
+ * Idle connections are closed after the idle timeout, when the pool is
+ * used again. Broken connections are closed when they are released, see
+ * {@link #invalidate(LdapContext)} and {@link #clear()}.
+ */
+final class LdapContextPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LdapContextPool.class);
+
+	/** The connection properties */
+	private final Properties connProps;
+
+	/** Maximum time in milliseconds a connection may stay unused in the pool */
+	private final long idleTimeout;
+
+	/** Maximum number of connections in use at the same time */
+	private final int maxSize;
+
+	/** One permit for each connection that may be borrowed */
+	private final Semaphore permits;
+
+	/** Idle connections, the most recently used at the end */
+	private final LinkedBlockingDeque<PooledContext> idle;
+
+	/** Connection borrowed by the current thread, if any */
+	private final ThreadLocal<PooledContext> borrowed;
+
+	/** Incremented by {@link #clear()}, the connections opened before are not reused */
+	private volatile int generation;
+
+	/**
+	 * @param connProps the connection properties
+	 * @param maxSize the maximum number of connections in use at the same time
+	 * @param idleTimeout the idle timeout in milliseconds
+	 */
+	public LdapContextPool(final Properties connProps, final int maxSize, final long idleTimeout) {
+		this.connProps = connProps;
+		this.idleTimeout = idleTimeout;
+		this.maxSize = Math.max(maxSize, 1);
+		this.permits = new Semaphore(this.maxSize, true);
+		this.idle = new LinkedBlockingDeque<PooledContext>();
+		this.borrowed = new ThreadLocal<PooledContext>();
+	}
+
+	/**
+	 * @return the maximum number of connections in use at the same time
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Get a context, waiting for one to be released if all are in use.
+	 * Each call must be followed by a call to {@link #release(LdapContext)}
+	 * 
+	 * @return the context
+	 * @throws NamingException thrown if a new connection can not be opened
+	 */
+	public LdapContext borrow() throws NamingException {
+		PooledContext pooled = borrowed.get();
+		if (pooled != null) {
+			pooled.depth++;
+			return pooled.getContext();
+		}
+
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NamingException("Interrupted while waiting for a LDAP connection");
+		}
+		try {
+			evictIdle();
+			pooled = idle.pollLast();
+			if (pooled == null) {
+				pooled = open();
+			}
+		} catch (NamingException e) {
+			permits.release();
+			throw e;
+		} catch (IOException e) {
+			permits.release();
+			NamingException ne = new NamingException(e.toString());
+			ne.setRootCause(e);
+			throw ne;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+		pooled.depth = 1;
+		borrowed.set(pooled);
+		return pooled.getContext();
+	}
+
+	/**
+	 * Give a context back to the pool
+	 * @param ctx the context returned by {@link #borrow()}
+	 */
+	public void release(final LdapContext ctx) {
+		PooledContext pooled = borrowed.get();
+		if (pooled == null || pooled.getContext() != ctx) {
+			LOGGER.warn("Releasing a LDAP connection which has not been borrowed by this thread !");
+			return;
+		}
+		if (--pooled.depth > 0) {
+			return;
+		}
+		borrowed.remove();
+		if (pooled.invalid || pooled.generation != generation) {
+			pooled.close();
+			permits.release();
+			return;
+		}
+		try {
+			// never give back a context with pending request controls
+			ctx.setRequestControls(null);
+			pooled.lastUsed = System.currentTimeMillis();
+			idle.offerLast(pooled);
+		} catch (NamingException e) {
+			LOGGER.debug(e.toString(), e);
+			pooled.close();
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Close a context borrowed by the current thread when it is released,
+	 * instead of giving it back to the pool, for example after a
+	 * communication error
+	 * @param ctx the context returned by {@link #borrow()}
+	 */
+	public void invalidate(final LdapContext ctx) {
+		PooledContext pooled = borrowed.get();
+		if (pooled != null && pooled.getContext() == ctx) {
+			pooled.invalid = true;
+		}
+	}
+
+	/**
+	 * Close all the idle connections, for example after a communication error
+	 * because they may all be broken. Connections in use are closed when they
+	 * are released.
+	 */
+	public synchronized void clear() {
+		generation++;
+		PooledContext pooled = null;
+		while ((pooled = idle.pollFirst()) != null) {
+			pooled.close();
+		}
+	}
+
+	private void evictIdle() {
+		long limit = System.currentTimeMillis() - idleTimeout;
+		Iterator<PooledContext> it = idle.iterator();
+		while (it.hasNext()) {
+			PooledContext pooled = it.next();
+			if (pooled.lastUsed < limit && idle.remove(pooled)) {
+				LOGGER.debug("Closing LDAP connection idle for more than {} ms", idleTimeout);
+				pooled.close();
+			}
+		}
+	}
+
+	/**
+	 * Open a new connection, negotiating StartTLS if requested. The returned
+	 * connection is not managed by the pool.
+	 * 
+	 * @return the new connection
+	 * @throws NamingException thrown if a directory error is encountered
+	 * @throws IOException thrown if an error occurs negotiating StartTLS operation
+	 */
+	public PooledContext open() throws NamingException, IOException {
+		/* should we negotiate TLS? */
+		if (connProps.get(JndiServices.TLS_CONFIGURATION) != null && (Boolean) connProps.get(JndiServices.TLS_CONFIGURATION)) {
+			/* if we're going to do TLS, we mustn't BIND before the STARTTLS operation
+			 * so we remove credentials from the properties to stop JNDI from binding */
+			/* duplicate properties to avoid changing them (they are used as a cache key in getInstance() */
+			Properties localConnProps = new Properties();
+			localConnProps.putAll(connProps);
+			String jndiContextAuthentication = localConnProps.getProperty(Context.SECURITY_AUTHENTICATION);
+			String jndiContextPrincipal = localConnProps.getProperty(Context.SECURITY_PRINCIPAL);
+			String jndiContextCredentials = localConnProps.getProperty(Context.SECURITY_CREDENTIALS);
+			localConnProps.remove(Context.SECURITY_AUTHENTICATION);
+			localConnProps.remove(Context.SECURITY_PRINCIPAL);
+			localConnProps.remove(Context.SECURITY_CREDENTIALS);
+
+			/* open the connection */
+			LdapContext ctx = new InitialLdapContext(localConnProps, null);
+
+			/* initiate the STARTTLS extended operation */
+			StartTlsResponse tlsResponse = null;
+			try {
+				tlsResponse = (StartTlsResponse) ctx.extendedOperation(new StartTlsRequest());
+				tlsResponse.negotiate();
+			} catch (IOException e) {
+				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
+				LOGGER.debug(e.toString(), e);
+				throw e;
+			} catch (NamingException e) {
+				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
+				LOGGER.debug(e.toString(), e);
+				throw e;
+			}
+
+			/* now we add the credentials back to the context, to BIND once TLS is started */
+			ctx.addToEnvironment(Context.SECURITY_AUTHENTICATION, jndiContextAuthentication);
+			ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, jndiContextPrincipal);
+			ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, jndiContextCredentials);
+
+			return new PooledContext(ctx, tlsResponse, generation);
+		} else {
+			/* don't start TLS, just connect normally (this can be on ldap:// or ldaps://) */
+			return new PooledContext(new InitialLdapContext(connProps, null), null, generation);
+		}
+	}
+
+	/**
+	 * Close the pool and all the idle connections
+	 */
+	public void close() {
+		clear();
+	}
+
+	/**
+	 * A LDAP connection, with its TLS layer if any
+	 */
+	static final class PooledContext {
+
+		private final LdapContext ctx;
+		private final StartTlsResponse tlsResponse;
+		private final int generation;
+		private long lastUsed;
+		private int depth;
+		private boolean invalid;
+
+		PooledContext(LdapContext ctx, StartTlsResponse tlsResponse, int generation) {
+			this.ctx = ctx;
+			this.tlsResponse = tlsResponse;
+			this.generation = generation;
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		public LdapContext getContext() {
+			return ctx;
+		}
+
+		public void close() {
+			try {
+				// Close the TLS connection (revert back to the underlying LDAP association)
+				if (tlsResponse != null) {
+					tlsResponse.close();
+				}
+			} catch (IOException e) {
+				LOGGER.debug(e.toString(), e);
+			}
+			try {
+				ctx.close();
+			} catch (NamingException e) {
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+	}
+}
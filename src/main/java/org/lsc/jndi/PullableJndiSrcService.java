@@ -43,6 +43,7 @@
 package org.lsc.jndi;
 
 import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.Date;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -58,7 +59,8 @@ import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
-import org.lsc.service.IAsynchronousService;
+import org.lsc.service.CheckpointStore;
+import org.lsc.service.IResumableService;
 
 /**
  * This directory service class is handling either full 
@@ -71,7 +73,10 @@ import org.lsc.service.IAsynchronousService;
  * @author S. Bahloul &lt;seb@lsc-project.org&gt;
  */
 public class PullableJndiSrcService extends SimpleJndiSrcService implements
-				IAsynchronousService {
+				IResumableService {
+
+	/** Checkpoint key of the last successful synchronization date */
+	private static final String LAST_SUCCESSFUL_SYNC = "lastSuccessfulSync";
 
 	/** This field is storing the last successful synchronization date */
 	private Date lastSuccessfulSync;
@@ -87,6 +92,8 @@ public class PullableJndiSrcService extends SimpleJndiSrcService implements
 	private SimpleDateFormat dateFormater;
 	/** The interval in seconds */
 	private int interval;
+	/** Keeps the last successful synchronization date across restarts */
+	private CheckpointStore checkpoints;
 
 	@Deprecated
 	public PullableJndiSrcService(Properties props, String beanClassName) throws LscServiceConfigurationException {
@@ -120,6 +127,8 @@ public class PullableJndiSrcService extends SimpleJndiSrcService implements
 		} catch(IllegalArgumentException e) {
 			throw new LscServiceConfigurationException(e);
 		}
+		checkpoints = CheckpointStore.forTask(task.getName());
+		lastSuccessfulSync = checkpoints.getDate(LAST_SUCCESSFUL_SYNC);
 	}
 
 	public Entry<String, LscDatasets> getNextId() throws LscServiceException {
@@ -156,6 +165,22 @@ public class PullableJndiSrcService extends SimpleJndiSrcService implements
 		return getNextId();
 	}
 
+	/**
+	 * Save the date of the last query, all the entries it returned having
+	 * been synchronized
+	 */
+	public void checkpoint() throws LscServiceException {
+		if (checkpoints == null) {
+			return;
+		}
+		checkpoints.putDate(LAST_SUCCESSFUL_SYNC, lastSuccessfulSync);
+		try {
+			checkpoints.save();
+		} catch (IOException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+	}
+
 	/**
 	 * The interval accessor
 	 */
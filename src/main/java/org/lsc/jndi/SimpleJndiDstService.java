@@ -47,11 +47,18 @@ package org.lsc.jndi;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.naming.CommunicationException;
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.SizeLimitExceededException;
+import javax.naming.directory.Attribute;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 
@@ -63,7 +70,10 @@ import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceCommunicationException;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
-import org.lsc.service.IWritableService;
+import org.lsc.service.IBatchReadableService;
+import org.lsc.service.IBatchWritableService;
+import org.lsc.service.ISortedService;
+import org.lsc.service.IStreamingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,7 +85,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class SimpleJndiDstService extends AbstractSimpleJndiService implements IWritableService {
+public class SimpleJndiDstService extends AbstractSimpleJndiService implements IBatchWritableService, IBatchReadableService, ISortedService, IStreamingService {
 
 	/**
 	 * Preceding the object feeding, it will be instantiated from this class.
@@ -85,6 +95,12 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	private static final Logger LOGGER = LoggerFactory.getLogger(SimpleJndiDstService.class);
 	
     private List<String> writableDatasetIds;
+
+	/** Number of entries looked up at once, 0 to look them up one by one */
+	private int batchReadSize;
+
+	/** Attribute compared to each placeholder of the filter, see {@link #getBeans(List)} */
+	private String[] assertedAttributes;
 	
 	/**
 	 * Constructor adapted to the context properties and the bean class name to instantiate.
@@ -97,6 +113,15 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	public SimpleJndiDstService(final TaskType task) throws LscServiceConfigurationException {
 		super(task.getLdapDestinationService());
         writableDatasetIds = task.getLdapDestinationService().getFetchedAttributes().getString();
+		if (task.getLdapDestinationService().getBatchReadSize() != null
+						&& task.getLdapDestinationService().getBatchReadSize() > 1) {
+			assertedAttributes = getFilterTemplate(filterIdSync).getAssertedAttributes();
+			if (assertedAttributes != null) {
+				batchReadSize = task.getLdapDestinationService().getBatchReadSize();
+			} else {
+				LOGGER.warn("The filter {} does not allow to look several entries up at once. They will be looked up one by one.", filterIdSync);
+			}
+		}
 		try {
 			this.beanClass = (Class<IBean>) Class.forName(task.getBean());
 		} catch (ClassNotFoundException e) {
@@ -132,7 +157,19 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	 */
 	public final IBean getBean(String pivotName, LscDatasets pivotAttributes, boolean fromSameService) throws LscServiceException {
 		try {
-			SearchResult srObject = get(pivotName, pivotAttributes, filterIdSync);
+			return newBean(get(pivotName, pivotAttributes, filterIdSync));
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Build a bean from a search result
+	 * @param srObject the search result, may be null
+	 * @return the bean, or null if there is no search result or if it can not be built
+	 */
+	private IBean newBean(SearchResult srObject) {
+		try {
 			Method method = beanClass.getMethod("getInstance", 
 							new Class[] { SearchResult.class, String.class, Class.class });
 			return (IBean) method.invoke(null, new Object[] { srObject, jndiServices.completeDn(getBaseDn()), beanClass });
@@ -156,10 +193,237 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 			LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
 							beanClass.getName(), e.toString());
 			LOGGER.debug(e.toString(), e);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the maximum number of entries looked up at once
+	 * @return the number of entries, 0 if they are looked up one by one
+	 */
+	public int getBatchReadSize() {
+		return batchReadSize;
+	}
+
+	/**
+	 * Look several entries up, by groups of {@link #getBatchReadSize()}
+	 * entries. Each group is searched at once, with the filters of its
+	 * entries joined by an OR filter, such as
+	 * <code>(|(uid=a)(uid=b)...)</code>. The entries found are then matched
+	 * back to the pivots on the values of the attributes compared by the
+	 * filter.
+	 * 
+	 * An entry is only returned if it is the single one matching its
+	 * pivots, and a pivot is only known to have no entry when all the entries
+	 * found have been matched. The other pivots are missing from the result,
+	 * so that they are looked up one by one, as before.
+	 * 
+	 * @param ids the entries names with their pivot attributes
+	 * @return the beans, or null for the entries not found, by entry name
+	 * @throws LscServiceException if the search fails
+	 */
+	public Map<String, IBean> getBeans(List<Entry<String, LscDatasets>> ids) throws LscServiceException {
+		Map<String, IBean> beans = new HashMap<String, IBean>(ids.size());
+		if (batchReadSize <= 1) {
+			return beans;
+		}
+		for (int start = 0; start < ids.size(); start += batchReadSize) {
+			getBeans(ids.subList(start, Math.min(start + batchReadSize, ids.size())), beans);
+		}
+		return beans;
+	}
+
+	private void getBeans(List<Entry<String, LscDatasets>> ids, Map<String, IBean> beans) throws LscServiceException {
+		// the filter and compared values of each pivot
+		StringBuilder filter = new StringBuilder("(|");
+		Map<String, List<PivotMatch>> pivotsByValue = new HashMap<String, List<PivotMatch>>(ids.size() * 2);
+		List<PivotMatch> pivots = new ArrayList<PivotMatch>(ids.size());
+		for (Entry<String, LscDatasets> id : ids) {
+			String[] values = getAssertedValues(id.getKey(), id.getValue());
+			if (values == null) {
+				continue;
+			}
+			try {
+				filter.append(getFilter(id.getKey(), id.getValue(), filterIdSync));
+			} catch (NamingException e) {
+				continue;
+			}
+			PivotMatch pivot = new PivotMatch(id.getKey(), values);
+			pivots.add(pivot);
+			List<PivotMatch> sameValue = pivotsByValue.get(values[0]);
+			if (sameValue == null) {
+				sameValue = new ArrayList<PivotMatch>(1);
+				pivotsByValue.put(values[0], sameValue);
+			}
+			sameValue.add(pivot);
+		}
+		if (pivots.isEmpty()) {
+			return;
+		}
+		filter.append(')');
+
+		List<SearchResult> results;
+		try {
+			results = jndiServices.getEntries(getBaseDn(), filter.toString(), getBatchSearchControls());
+		} catch (SizeLimitExceededException e) {
+			LOGGER.debug("Too many entries found while looking {} entries up at once, looking them up one by one", pivots.size());
+			return;
 		} catch (NamingException e) {
 			throw new LscServiceException(e);
 		}
-		return null;
+
+		for (SearchResult result : results) {
+			List<PivotMatch> matches = new ArrayList<PivotMatch>(1);
+			Attribute firstAttribute = result.getAttributes().get(assertedAttributes[0]);
+			for (String value : getNormalizedValues(firstAttribute)) {
+				List<PivotMatch> candidates = pivotsByValue.get(value);
+				if (candidates == null) {
+					continue;
+				}
+				for (PivotMatch candidate : candidates) {
+					if (!matches.contains(candidate) && candidate.matches(result)) {
+						matches.add(candidate);
+					}
+				}
+			}
+			if (matches.isEmpty()) {
+				// the directory compares the values differently
+				LOGGER.debug("Entry {} does not match any looked up pivot, looking them up one by one", result.getNameInNamespace());
+				return;
+			}
+			for (PivotMatch match : matches) {
+				match.results.add(result);
+				// an entry matching several pivots is looked up by each one
+				match.ambiguous |= (matches.size() > 1);
+			}
+		}
+
+		for (PivotMatch pivot : pivots) {
+			if (pivot.ambiguous || pivot.results.size() > 1) {
+				continue;
+			}
+			if (pivot.results.isEmpty()) {
+				beans.put(pivot.id, null);
+				continue;
+			}
+			SearchResult result = pivot.results.get(0);
+			for (String attribute : assertedAttributes) {
+				if (!isFetched(attribute)) {
+					result.getAttributes().remove(attribute);
+				}
+			}
+			IBean bean = newBean(result);
+			if (bean != null) {
+				beans.put(pivot.id, bean);
+			}
+		}
+	}
+
+	/**
+	 * Get the values a pivot is compared to by the filter, as in
+	 * {@link #getFilter(String, LscDatasets, String)}
+	 * @return the normalized values, in the filter placeholders order, or
+	 *         null if they can not be compared
+	 */
+	private String[] getAssertedValues(String id, LscDatasets pivotAttrs) {
+		String[] slots = getFilterTemplate(filterIdSync).getSlots();
+		String[] values = new String[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			Object value;
+			if ("id".equals(slots[i])) {
+				value = id;
+			} else if (pivotAttrs != null && pivotAttrs.getDatasets() != null && pivotAttrs.getDatasets().size() > 0) {
+				value = (pivotAttrs.getDatasets().get(slots[i]) instanceof byte[] ? null : pivotAttrs.getStringValueAttribute(slots[i]));
+			} else if (attrsId.size() == 1 && attrsId.get(0).equalsIgnoreCase(slots[i])) {
+				value = id;
+			} else {
+				value = null;
+			}
+			if (value == null) {
+				return null;
+			}
+			values[i] = normalize(value.toString());
+		}
+		return values;
+	}
+
+	/**
+	 * Normalize a value to compare it as the directory does for most
+	 * attributes: ignoring the case and the insignificant spaces
+	 */
+	private static String normalize(String value) {
+		return value.trim().replaceAll("\\s+", " ").toLowerCase();
+	}
+
+	private static List<String> getNormalizedValues(Attribute attribute) {
+		List<String> values = new ArrayList<String>();
+		if (attribute == null) {
+			return values;
+		}
+		try {
+			NamingEnumeration<?> all = attribute.getAll();
+			while (all.hasMore()) {
+				Object value = all.next();
+				if (value instanceof String) {
+					values.add(normalize((String) value));
+				}
+			}
+		} catch (NamingException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+		return values;
+	}
+
+	private boolean isFetched(String attribute) {
+		for (String attr : getAttrs()) {
+			if (attr.equalsIgnoreCase(attribute)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the search controls reading the fetched attributes and the
+	 *         attributes compared by the filter
+	 */
+	private SearchControls getBatchSearchControls() {
+		List<String> attributes = new ArrayList<String>(getAttrs());
+		for (String attribute : assertedAttributes) {
+			if (!isFetched(attribute)) {
+				attributes.add(attribute);
+			}
+		}
+		SearchControls sc = new SearchControls();
+		sc.setReturningAttributes(attributes.toArray(new String[attributes.size()]));
+		return sc;
+	}
+
+	/**
+	 * A looked up pivot, with the entries matching it
+	 */
+	private final class PivotMatch {
+		private final String id;
+		private final String[] values;
+		private final List<SearchResult> results = new ArrayList<SearchResult>(1);
+		private boolean ambiguous;
+
+		PivotMatch(String id, String[] values) {
+			this.id = id;
+			this.values = values;
+		}
+
+		/**
+		 * @return true if the entry holds all the values compared by the filter
+		 */
+		boolean matches(SearchResult result) {
+			for (int i = 0; i < values.length; i++) {
+				if (!getNormalizedValues(result.getAttributes().get(assertedAttributes[i])).contains(values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 
 	/**
@@ -179,6 +443,69 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 		}
     }
 
+	/**
+	 * Returns the identifiers of all the entries, read page by page while
+	 * they are consumed.
+	 * 
+	 * @return the entries names with the associated pivot attributes
+	 * @throws LscServiceException if the search can not be started
+	 */
+	public Iterator<Entry<String, LscDatasets>> getPivotsIterator() throws LscServiceException {
+		try {
+			return jndiServices.getAttrsIterator(getBaseDn(),
+							getFilterAll(), SearchControls.SUBTREE_SCOPE,
+							getAttrsId());
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns all the entries, sorted by the directory on the pivot attributes.
+	 * 
+	 * @return the sorted beans
+	 * @throws LscServiceException if the search can not be started
+	 */
+	public Iterator<IBean> getSortedBeans() throws LscServiceException {
+		final Iterator<SearchResult> results;
+		final Method method;
+		final String completedBaseDn;
+		try {
+			method = beanClass.getMethod("getInstance", new Class[] { SearchResult.class, String.class, Class.class });
+			completedBaseDn = jndiServices.completeDn(getBaseDn());
+			results = getSortedSearchResults();
+		} catch (NoSuchMethodException e) {
+			LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
+							beanClass.getName(), e.toString());
+			throw new LscServiceConfigurationException(e);
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+		return new Iterator<IBean>() {
+			public boolean hasNext() {
+				return results.hasNext();
+			}
+
+			public IBean next() {
+				try {
+					return (IBean) method.invoke(null, new Object[] { results.next(), completedBaseDn, beanClass });
+				} catch (IllegalAccessException e) {
+					LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
+									beanClass.getName(), e.toString());
+					throw new RuntimeException(new LscServiceException(e));
+				} catch (InvocationTargetException e) {
+					LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
+									beanClass.getName(), e.toString());
+					throw new RuntimeException(new LscServiceException(e));
+				}
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
 	/**
 	 * Apply directory modifications.
 	 *
@@ -204,16 +531,39 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	 * and all other attempts to use this service should fail.
 	 */
 	public boolean apply(LscModifications lm) throws LscServiceException {
-		JndiModifications jm = new JndiModifications(JndiModificationType.getFromLscModificationType(lm.getOperation()), lm.getTaskName());
-		jm.setDistinguishName(lm.getMainIdentifier());
-		jm.setNewDistinguishName(lm.getNewMainIdentifier());
-		jm.setModificationItems(JndiModifications.fromLscAttributeModifications(lm.getLscAttributeModifications()));
 		try {
-			return jndiServices.apply(jm);
+			return jndiServices.apply(toJndiModifications(lm));
+		} catch (CommunicationException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Apply several directory modifications, on the same connection.
+	 *
+	 * @param lms Modifications to apply
+	 * @return the status of each modification
+	 * @throws LscServiceException If the connection to the service is lost
+	 */
+	public boolean[] apply(List<LscModifications> lms) throws LscServiceException {
+		List<JndiModifications> jms = new ArrayList<JndiModifications>(lms.size());
+		for (LscModifications lm : lms) {
+			jms.add(toJndiModifications(lm));
+		}
+		try {
+			return jndiServices.apply(jms);
 		} catch (CommunicationException e) {
 			throw new LscServiceException(e);
 		}
 	}
+
+	private JndiModifications toJndiModifications(LscModifications lm) {
+		JndiModifications jm = new JndiModifications(JndiModificationType.getFromLscModificationType(lm.getOperation()), lm.getTaskName());
+		jm.setDistinguishName(lm.getMainIdentifier());
+		jm.setNewDistinguishName(lm.getNewMainIdentifier());
+		jm.setModificationItems(JndiModifications.fromLscAttributeModifications(lm.getLscAttributeModifications()));
+		return jm;
+	}
 	
 	public List<String> getWriteDatasetIds() {
 		return writableDatasetIds;
@@ -45,11 +45,14 @@
  */
 package org.lsc.jndi;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 
 import javax.naming.NamingException;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
 
 import org.lsc.LscDatasets;
 import org.lsc.beans.IBean;
@@ -58,7 +61,8 @@ import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
-import org.lsc.service.IService;
+import org.lsc.service.ISortedService;
+import org.lsc.service.IStreamingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,7 +74,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class SimpleJndiSrcService extends AbstractSimpleJndiService implements IService {
+public class SimpleJndiSrcService extends AbstractSimpleJndiService implements ISortedService, IStreamingService {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(SimpleJndiSrcService.class);
 	/**
@@ -117,6 +121,8 @@ public class SimpleJndiSrcService extends AbstractSimpleJndiService implements I
 		filterIdClean = ((LdapSourceServiceType)LscConfiguration.getSourceService(task)).getCleanFilter();
 		if(filterIdClean == null) {
 		    LOGGER.warn("No clean filter has been specified for task=" + task.getName() + ". During the clean phase, LSC wouldn't be able to get the right entries and may delete all destination entries !");
+		} else {
+			getFilterTemplate(filterIdClean);
 		}
 		try {
 			this.beanClass = (Class<IBean>) Class.forName(task.getBean());
@@ -181,6 +187,61 @@ public class SimpleJndiSrcService extends AbstractSimpleJndiService implements I
 		}
 	}
 
+	/**
+	 * Returns the identifiers of all the entries, read page by page while
+	 * they are consumed.
+	 * 
+	 * @return the entries names with the associated pivot attributes
+	 * @throws LscServiceException if the search can not be started
+	 */
+	public Iterator<Entry<String, LscDatasets>> getPivotsIterator() throws LscServiceException {
+		try {
+			return jndiServices.getAttrsIterator(getBaseDn(),
+							getFilterAll(), SearchControls.SUBTREE_SCOPE,
+							getAttrsId());
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns all the entries, sorted by the directory on the pivot attributes.
+	 * 
+	 * @return the sorted beans
+	 * @throws LscServiceException if the search can not be started
+	 */
+	public Iterator<IBean> getSortedBeans() throws LscServiceException {
+		final Iterator<SearchResult> results;
+		try {
+			results = getSortedSearchResults();
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+		return new Iterator<IBean>() {
+			public boolean hasNext() {
+				return results.hasNext();
+			}
+
+			public IBean next() {
+				try {
+					return getBeanFromSR(results.next(), beanClass.newInstance());
+				} catch (InstantiationException e) {
+					LOGGER.error("Bad class name: " + beanClass.getName() + "(" + e + ")");
+					throw new RuntimeException(new LscServiceException(e));
+				} catch (IllegalAccessException e) {
+					LOGGER.error("Bad class name: " + beanClass.getName() + "(" + e + ")");
+					throw new RuntimeException(new LscServiceException(e));
+				} catch (NamingException e) {
+					throw new RuntimeException(new LscServiceException(e));
+				}
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
 	/*
 	 * Default filter getter, for one corresponding entry.
 	 * @return the attrId value
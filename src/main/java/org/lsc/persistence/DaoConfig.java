@@ -100,7 +100,7 @@ public final class DaoConfig {
 	 * @return the data accessor manager
 	 * @throws LscServiceConfigurationException 
 	 */
-	public static SqlMapClient getSqlMapClient(Properties databaseProps) throws LscServiceConfigurationException {
+	public static synchronized SqlMapClient getSqlMapClient(Properties databaseProps) throws LscServiceConfigurationException {
 		String mapperKey = new StringBuffer()
 				.append(databaseProps.get("username"))
 				.append("|")
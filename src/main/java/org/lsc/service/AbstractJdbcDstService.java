@@ -65,7 +65,7 @@ import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMapping;
  * 
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public abstract class AbstractJdbcDstService extends AbstractJdbcService implements IWritableService{
+public abstract class AbstractJdbcDstService extends AbstractJdbcService implements IBatchWritableService {
 
     private String serviceName;
     
@@ -79,30 +79,7 @@ public abstract class AbstractJdbcDstService extends AbstractJdbcService impleme
         Map<String, Object> attributeMap = getAttributesMap(lm.getLscAttributeModifications());
         try {
             sqlMapper.startTransaction();
-            switch(lm.getOperation()) {
-            case CHANGE_ID:
-                // Silently return without doing anything
-                break;
-            case CREATE_OBJECT:
-                for(String request: getRequestsNameForInsert()) {
-              	    LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
-                    sqlMapper.insert(request, attributeMap);
-                }
-                break;
-            case DELETE_OBJECT:
-                for(String request: getRequestsNameForDelete()) {
-                	  LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
-                    sqlMapper.delete(request, attributeMap);
-                }
-                break;
-            case UPDATE_OBJECT:
-                // Push the destination value
-                attributeMap = fillAttributesMap(attributeMap, lm.getDestinationBean());
-                for(String request: getRequestsNameForUpdate()) {
-              	    LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
-                    sqlMapper.update(request, attributeMap);
-                }
-            }
+            execute(lm, attributeMap);
             sqlMapper.commitTransaction();
         } catch (SQLException e) {
             LOGGER.error(e.toString(), e);
@@ -118,6 +95,66 @@ public abstract class AbstractJdbcDstService extends AbstractJdbcService impleme
         }
         return true;
     }
+
+    /**
+     * Apply the modifications as a JDBC batch, in a single transaction. If
+     * the batch fails, the modifications are applied again one by one to
+     * find out which ones are in error.
+     */
+    public boolean[] apply(List<LscModifications> lms) throws LscServiceException {
+        boolean[] results = new boolean[lms.size()];
+        boolean applied = false;
+        try {
+            sqlMapper.startTransaction();
+            sqlMapper.startBatch();
+            for (LscModifications lm : lms) {
+                execute(lm, getAttributesMap(lm.getLscAttributeModifications()));
+            }
+            sqlMapper.executeBatch();
+            sqlMapper.commitTransaction();
+            applied = true;
+        } catch (SQLException e) {
+            LOGGER.warn("Error while applying a batch of " + lms.size() + " modifications, applying them one by one (" + e.toString() + ")");
+            LOGGER.debug(e.toString(), e);
+        } finally {
+            try {
+                sqlMapper.endTransaction();
+            } catch (SQLException e) {
+                LOGGER.error(e.toString(), e);
+            }
+        }
+        for (int i = 0; i < results.length; i++) {
+            results[i] = (applied || apply(lms.get(i)));
+        }
+        return results;
+    }
+
+    private void execute(LscModifications lm, Map<String, Object> attributeMap) throws SQLException {
+        switch(lm.getOperation()) {
+        case CHANGE_ID:
+            // Silently return without doing anything
+            break;
+        case CREATE_OBJECT:
+            for(String request: getRequestsNameForInsert()) {
+          	    LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
+                sqlMapper.insert(request, attributeMap);
+            }
+            break;
+        case DELETE_OBJECT:
+            for(String request: getRequestsNameForDelete()) {
+            	  LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
+                sqlMapper.delete(request, attributeMap);
+            }
+            break;
+        case UPDATE_OBJECT:
+            // Push the destination value
+            attributeMap = fillAttributesMap(attributeMap, lm.getDestinationBean());
+            for(String request: getRequestsNameForUpdate()) {
+          	    LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
+                sqlMapper.update(request, attributeMap);
+            }
+        }
+    }
     
     /** Fetched attributes name cache */
     private static Map<String, List<String>> attributesNameCache = new HashMap<String, List<String>>();
@@ -46,18 +46,19 @@
 package org.lsc.service;
 
 import java.sql.SQLException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.naming.CommunicationException;
-import javax.naming.NamingException;
-import javax.naming.directory.BasicAttribute;
 
 import org.apache.commons.collections.map.ListOrderedMap;
 import org.apache.commons.lang.StringUtils;
@@ -69,11 +70,13 @@ import org.lsc.configuration.DatabaseConnectionType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
 import org.lsc.persistence.DaoConfig;
-import org.lsc.utils.SetUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.ibatis.sqlmap.client.SqlMapClient;
+import com.ibatis.sqlmap.client.SqlMapException;
+import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.impl.ExtendedSqlMapClient;
 
 /**
  * Generic JDBC iBatis Service
@@ -82,9 +85,16 @@ import com.ibatis.sqlmap.client.SqlMapClient;
  * Get a look at org.lsc.service.StructureJdbcService class
  * @author Sebastien Bahloul <seb@lsc-project.org>
  */
-public abstract class AbstractJdbcService implements IService {
+public abstract class AbstractJdbcService implements IStreamingService {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractJdbcService.class);
+
+	/** Maximum number of identifiers read ahead of the synchronization */
+	private static final int PIVOTS_QUEUE_SIZE = 1000;
+
+	/** Maximum number of objects read by the batch object request */
+	private static final int OBJECT_BATCH_SIZE = 500;
+
 	protected SqlMapClient sqlMapper;
 	
 	private Class<IBean> beanClass;
@@ -158,17 +168,20 @@ public abstract class AbstractJdbcService implements IService {
 		 * since it may be important when coming from a database.
 		 * This is really an API bug, getListPivots() should return a List, not a Map.
 		 */
-		Map<String, LscDatasets> ret = new ListOrderedMap();
+		final Map<String, LscDatasets> ret = new ListOrderedMap();
 
 		try {
-			List<HashMap<String, Object>> ids = (List<HashMap<String, Object>>) sqlMapper.queryForList(getRequestNameForList());
-			Iterator<HashMap<String, Object>> idsIter = ids.iterator();
-			Map<String, Object> idMap;
-			
-			for (int count = 1; idsIter.hasNext(); count++) {
-				idMap = idsIter.next();
-				ret.put(getMapKey(idMap, count), new LscDatasets(idMap));
-			}
+			// the rows are added to the result while they are read, without
+			// an intermediate list
+			sqlMapper.queryWithRowHandler(getRequestNameForList(), new RowHandler() {
+				private int count = 0;
+
+				public void handleRow(Object row) {
+					Map<String, Object> idMap = (Map<String, Object>) row;
+					count++;
+					ret.put(getMapKey(idMap, count), new LscDatasets(idMap));
+				}
+			});
 		} catch (SQLException e) {
 			LOGGER.warn("Error while looking for the entries list: {}", e.toString());
 			LOGGER.debug(e.toString(), e);
@@ -177,6 +190,52 @@ public abstract class AbstractJdbcService implements IService {
 		return ret;
 	}
 	
+	/**
+	 * Execute the database request listing the object identifiers, handing
+	 * the rows to the caller while they are read instead of loading the
+	 * whole list first.
+	 * @return the entries names with the associated pivot attributes
+	 */
+	public Iterator<Entry<String, LscDatasets>> getPivotsIterator() {
+		return new PipelinedIterator<Entry<String, LscDatasets>>(PIVOTS_QUEUE_SIZE) {
+			@Override
+			protected void produce() throws SQLException {
+				sqlMapper.queryWithRowHandler(getRequestNameForList(), new RowHandler() {
+					private int count = 0;
+
+					@SuppressWarnings("unchecked")
+					public void handleRow(Object row) {
+						Map<String, Object> idMap = (Map<String, Object>) row;
+						count++;
+						put(new AbstractMap.SimpleImmutableEntry<String, LscDatasets>(
+										getMapKey(idMap, count), new LscDatasets(idMap)));
+					}
+				});
+			}
+		}.start("pivots-" + getRequestNameForList());
+	}
+
+	/**
+	 * Set the number of rows fetched at once by the JDBC driver for a
+	 * request, instead of the driver default which may be to read the whole
+	 * result at once.
+	 * @param requestName the request name
+	 * @param fetchSize the number of rows, as expected by the driver
+	 * @throws LscServiceConfigurationException if the request is not defined
+	 */
+	protected void setFetchSize(String requestName, int fetchSize) throws LscServiceConfigurationException {
+		if (!(sqlMapper instanceof ExtendedSqlMapClient)) {
+			LOGGER.warn("Unable to set the fetch size of request {}, it is not supported by {}", requestName,
+							sqlMapper.getClass().getName());
+			return;
+		}
+		try {
+			((ExtendedSqlMapClient) sqlMapper).getMappedStatement(requestName).setFetchSize(fetchSize);
+		} catch (SqlMapException e) {
+			throw new LscServiceConfigurationException(e);
+		}
+	}
+
 	protected String getMapKey(Map<String, Object> idMap, int count) {
 
 		String key;
@@ -200,9 +259,7 @@ public abstract class AbstractJdbcService implements IService {
 	@SuppressWarnings("unchecked")
 	@Override
 	public IBean getBean(String id, LscDatasets attributes, boolean fromSameService) throws LscServiceException {
-		IBean srcBean = null;
 		try {
-			srcBean = beanClass.newInstance();
 			List<?> records = sqlMapper.queryForList(getRequestNameForObjectOrClean(fromSameService), getAttributesMap(attributes));
 			if(records.size() > 1) {
 				throw new LscServiceException("Only a single record can be returned from a getObject request ! " +
@@ -210,16 +267,7 @@ public abstract class AbstractJdbcService implements IService {
 			} else if (records.size() == 0) {
 				return null;
 			}
-			Map<String, Object> record = (Map<String, Object>) records.get(0);
-			for(Entry<String, Object> entry: record.entrySet()) {
-				if(entry.getValue() != null) {
-					srcBean.setDataset(entry.getKey(), SetUtils.attributeToSet(new BasicAttribute(entry.getKey(), entry.getValue())));
-				} else {
-                    srcBean.setDataset(entry.getKey(), SetUtils.attributeToSet(new BasicAttribute(entry.getKey())));
-				}
-			}
-			srcBean.setMainIdentifier(id);
-			return srcBean;
+			return getBean(id, (Map<String, Object>) records.get(0));
 		} catch (InstantiationException e) {
 			LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
 					beanClass.getName(), e.toString());
@@ -234,13 +282,124 @@ public abstract class AbstractJdbcService implements IService {
 			// TODO This SQLException may mean we lost the connection to the DB
 			// This is a dirty hack to make sure we stop everything, and don't risk deleting everything...
 			throw new LscServiceException(new CommunicationException(e.getMessage()));
-		} catch (NamingException e) {
-            LOGGER.error("Unable to get handle cast: " + e.toString());
-            LOGGER.debug(e.toString(), e);
-        }
+		}
+		return null;
+	}
+
+	/**
+	 * Get the name of the request reading several objects at once. It
+	 * receives a "pivots" parameter holding the list of the objects pivot
+	 * attributes, and must return at most one record per object, with its
+	 * pivot attributes.
+	 * @return the request name, or null if the objects can only be read one
+	 *         by one
+	 */
+	public String getRequestNameForObjectBatch() {
 		return null;
 	}
 
+	/**
+	 * Get the maximum number of objects read at once
+	 * @return the number of objects, or 0 if there is no batch object request
+	 * @see #getRequestNameForObjectBatch()
+	 */
+	public int getBatchReadSize() {
+		return getRequestNameForObjectBatch() != null ? OBJECT_BATCH_SIZE : 0;
+	}
+
+	/**
+	 * Read several objects with the batch object request. The records are
+	 * matched to the objects on the values of their pivot attributes.
+	 * @param ids the objects names with their pivot attributes
+	 * @return the beans found, by object name
+	 * @throws LscServiceException May throw a embedded {@link CommunicationException} if an SQLException is encountered
+	 * @see #getRequestNameForObjectBatch()
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, IBean> getBeans(List<Entry<String, LscDatasets>> ids) throws LscServiceException {
+		Map<String, IBean> beans = new HashMap<String, IBean>(ids.size());
+		if (ids.isEmpty()) {
+			return beans;
+		}
+		Set<String> pivotNames = new TreeSet<String>();
+		for (String pivotName : ids.get(0).getValue().getAttributesNames()) {
+			pivotNames.add(pivotName.toLowerCase());
+		}
+		List<Map<String, String>> pivots = new ArrayList<Map<String, String>>(ids.size());
+		Map<String, Entry<String, LscDatasets>> idsByKey = new HashMap<String, Entry<String, LscDatasets>>(ids.size());
+		for (Entry<String, LscDatasets> id : ids) {
+			Map<String, String> pivot = getAttributesMap(id.getValue());
+			pivots.add(pivot);
+			idsByKey.put(getRecordKey(pivotNames, pivot), id);
+		}
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put("pivots", pivots);
+
+		try {
+			List<?> records = sqlMapper.queryForList(getRequestNameForObjectBatch(), parameters);
+			Set<String> duplicates = new HashSet<String>();
+			for (Object record : records) {
+				Map<String, Object> recordMap = (Map<String, Object>) record;
+				Entry<String, LscDatasets> id = idsByKey.get(getRecordKey(pivotNames, recordMap));
+				if (id == null) {
+					LOGGER.debug("Ignoring a record not matching any requested pivot: {}", recordMap);
+				} else if (beans.put(id.getKey(), getBean(id.getKey(), recordMap)) != null) {
+					duplicates.add(id.getKey());
+				}
+			}
+			// let the objects returned several times be read one by one
+			beans.keySet().removeAll(duplicates);
+			return beans;
+		} catch (InstantiationException e) {
+			throw new LscServiceException(e);
+		} catch (IllegalAccessException e) {
+			throw new LscServiceException(e);
+		} catch (SQLException e) {
+			LOGGER.warn("Error while looking for {} entries ({})", ids.size(), e);
+			LOGGER.debug(e.toString(), e);
+			throw new LscServiceException(new CommunicationException(e.getMessage()));
+		}
+	}
+
+	/**
+	 * Build the key matching a record to its pivot attributes
+	 * @param pivotNames the lower cased pivot attributes names
+	 * @param record the record or pivot attributes values
+	 * @return the key, or null if a pivot attribute is missing
+	 */
+	private static String getRecordKey(Set<String> pivotNames, Map<String, ?> record) {
+		Map<String, Object> values = new HashMap<String, Object>(record.size());
+		for (Entry<String, ?> entry : record.entrySet()) {
+			values.put(entry.getKey().toLowerCase(), entry.getValue());
+		}
+		StringBuilder key = new StringBuilder();
+		for (String pivotName : pivotNames) {
+			Object value = values.get(pivotName);
+			if (value == null) {
+				return null;
+			}
+			key.append(getValue(value).toLowerCase()).append('\u0000');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Build a bean from a record, each column being an attribute with a
+	 * single value, or no value if it is null or empty
+	 */
+	private IBean getBean(String id, Map<String, Object> record) throws InstantiationException, IllegalAccessException {
+		IBean bean = beanClass.newInstance();
+		for(Entry<String, Object> entry: record.entrySet()) {
+			Set<Object> values = new HashSet<Object>(1);
+			if(entry.getValue() != null && !"".equals(entry.getValue())) {
+				values.add(entry.getValue());
+			}
+			bean.setDataset(entry.getKey(), values);
+		}
+		bean.setMainIdentifier(id);
+		return bean;
+	}
+
 
 	public static Map<String, Object> fillAttributesMap(
 			Map<String, Object> datasets, IBean destinationBean) {
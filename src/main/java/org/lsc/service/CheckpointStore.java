@@ -0,0 +1,170 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Properties;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.lsc.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local file keeping the synchronization position of an asynchronous task,
+ * such as a SyncRepl cookie or the date of the last successful
+ * synchronization, so that the task can resume from it after a restart.
+ * 
+ * The file is a properties file, saved atomically: the new content is
+ * written to a temporary file which then replaces the previous one.
+ */
+public class CheckpointStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointStore.class);
+
+	/** Checkpoint file name suffix, after the task name */
+	public static final String FILE_SUFFIX = ".checkpoint";
+
+	private final File file;
+	private final Properties values;
+	private boolean modified;
+
+	/**
+	 * Open a store, reading the previously saved values if the file exists
+	 * @param file the checkpoint file
+	 */
+	public CheckpointStore(File file) {
+		this.file = file;
+		this.values = new Properties();
+		if (file.exists()) {
+			try {
+				InputStream in = new FileInputStream(file);
+				try {
+					values.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				LOGGER.error("Unable to read the checkpoint file {}, starting from scratch ({})", file, e.toString());
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+	}
+
+	/**
+	 * Open the store of a task, in the configuration directory
+	 * @param taskName the task name
+	 * @return the store
+	 */
+	public static CheckpointStore forTask(String taskName) {
+		return new CheckpointStore(new File(Configuration.getConfigurationDirectory(), taskName + FILE_SUFFIX));
+	}
+
+	public synchronized String get(String key) {
+		return values.getProperty(key);
+	}
+
+	public synchronized void put(String key, String value) {
+		if (value == null) {
+			modified |= (values.remove(key) != null);
+		} else if (!value.equals(values.setProperty(key, value))) {
+			modified = true;
+		}
+	}
+
+	public byte[] getBytes(String key) {
+		String value = get(key);
+		return (value != null ? DatatypeConverter.parseBase64Binary(value) : null);
+	}
+
+	public void putBytes(String key, byte[] value) {
+		put(key, (value != null ? DatatypeConverter.printBase64Binary(value) : null));
+	}
+
+	public Date getDate(String key) {
+		String value = get(key);
+		try {
+			return (value != null ? new Date(Long.parseLong(value)) : null);
+		} catch (NumberFormatException e) {
+			LOGGER.error("Invalid date {} in the checkpoint file {}", value, file);
+			return null;
+		}
+	}
+
+	public void putDate(String key, Date value) {
+		put(key, (value != null ? Long.toString(value.getTime()) : null));
+	}
+
+	/**
+	 * Write the values to the checkpoint file, if they have changed since
+	 * the last save
+	 * @throws IOException if the file can not be written
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			values.store(out, null);
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		// renaming over an existing file fails on some platforms
+		if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+			throw new IOException("Unable to replace the checkpoint file " + file);
+		}
+		modified = false;
+	}
+}
@@ -0,0 +1,439 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lsc.Configuration;
+import org.lsc.beans.IBean;
+import org.lsc.configuration.JaxbXmlConfigurationHelper;
+import org.lsc.exception.LscServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+
+/**
+ * Local Berkeley DB store of the fingerprints of the entries of a task, used
+ * to skip the source entries which have not changed since their last
+ * synchronization.
+ * 
+ * Each source entry, identified by its main identifier, is recorded with
+ * the digest of its values and with the digest of the destination entry
+ * when both were found in sync. A source entry whose digest has not
+ * changed is then neither looked up in the destination nor compared. An
+ * entry is checked again once its record is older than the maximum age,
+ * and all the entries are checked again after a change of the
+ * configuration file.
+ * 
+ * The records of the entries which have not been seen during a complete
+ * run are removed by {@link #purge()}, so that an entry deleted and later
+ * created again in the source is synchronized again.
+ */
+public class FingerprintStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintStore.class);
+
+	/** Store directory name suffix, after the task name */
+	public static final String DIRECTORY_SUFFIX = ".fingerprints";
+
+	/** Default maximum age of a record, in milliseconds (a week) */
+	public static final long DEFAULT_MAX_AGE = 7L * 24 * 3600 * 1000;
+
+	private static final String DATABASE_NAME = "fingerprints";
+
+	/** Key of the record holding the store settings, never a main identifier */
+	private static final String SETTINGS_KEY = "\0settings";
+
+	private static final Comparator<byte[]> BYTES_ORDER = new Comparator<byte[]>() {
+		public int compare(byte[] a, byte[] b) {
+			for (int i = 0; i < a.length && i < b.length; i++) {
+				int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return a.length - b.length;
+		}
+	};
+
+	private final File directory;
+	private final Environment environment;
+	private final Database database;
+	private final long maxAge;
+	/** Records checked before this date must be checked again */
+	private final long notBefore;
+	/** Date the store was opened, the records not seen since are purged */
+	private final long opened;
+	private final AtomicLong skipped = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Open a store, creating it if needed
+	 * 
+	 * @param directory the store directory
+	 * @param maxAge the time after which an unchanged entry is checked
+	 *            again, in milliseconds
+	 * @param configurationDate the date of the configuration, all the
+	 *            entries are checked again when it changes
+	 * @throws LscServiceException if the store can not be opened
+	 */
+	public FingerprintStore(File directory, long maxAge, long configurationDate) throws LscServiceException {
+		this.directory = directory;
+		this.maxAge = maxAge;
+		this.opened = System.currentTimeMillis();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new LscServiceException("Unable to create the fingerprints directory " + directory);
+		}
+		try {
+			EnvironmentConfig environmentConfig = new EnvironmentConfig();
+			environmentConfig.setAllowCreate(true);
+			environment = new Environment(directory, environmentConfig);
+			DatabaseConfig databaseConfig = new DatabaseConfig();
+			databaseConfig.setAllowCreate(true);
+			database = environment.openDatabase(null, DATABASE_NAME, databaseConfig);
+		} catch (DatabaseException e) {
+			throw new LscServiceException("Unable to open the fingerprints store " + directory, e);
+		}
+
+		// settings: configuration date, then the date before which the
+		// records must be checked again
+		ByteBuffer settings = read(SETTINGS_KEY);
+		if (settings != null && settings.remaining() == 16 && settings.getLong() == configurationDate) {
+			notBefore = settings.getLong();
+		} else {
+			if (settings != null) {
+				LOGGER.info("The configuration has changed, checking again all the entries recorded in {}", directory);
+			}
+			notBefore = opened;
+			write(SETTINGS_KEY, ByteBuffer.allocate(16).putLong(configurationDate).putLong(notBefore).array());
+		}
+	}
+
+	/**
+	 * Open the store of a task, in the configuration directory
+	 * @param taskName the task name
+	 * @param maxAge the time after which an unchanged entry is checked
+	 *            again, in milliseconds
+	 * @return the store
+	 * @throws LscServiceException if the store can not be opened
+	 */
+	public static FingerprintStore forTask(String taskName, long maxAge) throws LscServiceException {
+		File configuration = new File(Configuration.getConfigurationDirectory(), JaxbXmlConfigurationHelper.LSC_CONF_XML);
+		return new FingerprintStore(new File(Configuration.getConfigurationDirectory(), taskName + DIRECTORY_SUFFIX),
+						maxAge, configuration.lastModified());
+	}
+
+	/**
+	 * Compute the fingerprint of an entry, from its main identifier and its
+	 * values. The order of the attributes and of the values does not matter.
+	 * 
+	 * @param bean the entry
+	 * @return the fingerprint
+	 */
+	public static byte[] fingerprint(IBean bean) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		update(digest, bean.getMainIdentifier());
+		Set<String> names = new TreeSet<String>();
+		for (String name : bean.getAttributesNames()) {
+			names.add(name.toLowerCase());
+		}
+		for (String name : names) {
+			Set<Object> values = bean.getDatasetById(name);
+			if (values == null || values.isEmpty()) {
+				continue;
+			}
+			update(digest, name);
+			List<byte[]> encodedValues = new ArrayList<byte[]>(values.size());
+			for (Object value : values) {
+				encodedValues.add(value instanceof byte[] ? (byte[]) value : toBytes(String.valueOf(value)));
+			}
+			Collections.sort(encodedValues, BYTES_ORDER);
+			updateLength(digest, encodedValues.size());
+			for (byte[] value : encodedValues) {
+				updateLength(digest, value.length);
+				digest.update(value);
+			}
+		}
+		return digest.digest();
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		byte[] bytes = toBytes(value != null ? value : "");
+		updateLength(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateLength(MessageDigest digest, int length) {
+		digest.update((byte) (length >>> 24));
+		digest.update((byte) (length >>> 16));
+		digest.update((byte) (length >>> 8));
+		digest.update((byte) length);
+	}
+
+	private static byte[] toBytes(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Check if a source entry has not changed since it was found in sync
+	 * with the destination, and was checked recently enough. The entry is
+	 * then marked as seen.
+	 * 
+	 * @param key the source entry main identifier
+	 * @param source the source entry fingerprint
+	 * @return true if the entry does not need to be synchronized
+	 */
+	public boolean isUnchanged(String key, byte[] source) {
+		ByteBuffer record = read(key);
+		if (record == null) {
+			return false;
+		}
+		long checked = record.getLong();
+		record.getLong();
+		if (!Arrays.equals(source, readBytes(record)) || checked < notBefore
+						|| System.currentTimeMillis() - checked > maxAge) {
+			return false;
+		}
+		byte[] destination = readBytes(record);
+		write(key, encode(checked, source, destination));
+		skipped.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Get the fingerprint of the destination entry, as it was when the same
+	 * source entry was last found in sync with it
+	 * 
+	 * @param key the source entry main identifier
+	 * @param source the source entry fingerprint
+	 * @return the destination entry fingerprint, or null if it is unknown
+	 */
+	public byte[] getDestination(String key, byte[] source) {
+		ByteBuffer record = read(key);
+		if (record == null) {
+			return null;
+		}
+		record.getLong();
+		record.getLong();
+		if (!Arrays.equals(source, readBytes(record))) {
+			return null;
+		}
+		return readBytes(record);
+	}
+
+	/**
+	 * Record an entry found or made in sync with the destination
+	 * 
+	 * @param key the source entry main identifier
+	 * @param source the source entry fingerprint
+	 * @param destination the destination entry fingerprint, or null if it is
+	 *            unknown
+	 */
+	public void put(String key, byte[] source, byte[] destination) {
+		write(key, encode(System.currentTimeMillis(), source, destination));
+	}
+
+	/**
+	 * Forget an entry, so that it is fully synchronized the next time
+	 * @param key the source entry main identifier
+	 */
+	public void remove(String key) {
+		if (closed || key == null) {
+			return;
+		}
+		try {
+			database.delete(null, new DatabaseEntry(toBytes(key)));
+		} catch (DatabaseException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Remove the records of the entries which have not been seen since the
+	 * store has been opened, once all the source entries have been read
+	 * 
+	 * @return the number of removed records
+	 */
+	public int purge() {
+		if (closed) {
+			return 0;
+		}
+		int purged = 0;
+		Cursor cursor = null;
+		try {
+			cursor = database.openCursor(null, null);
+			DatabaseEntry key = new DatabaseEntry();
+			DatabaseEntry data = new DatabaseEntry();
+			while (cursor.getNext(key, data, LockMode.DEFAULT) == OperationStatus.SUCCESS) {
+				if (SETTINGS_KEY.equals(new String(key.getData(), key.getOffset(), key.getSize(), "UTF-8"))) {
+					continue;
+				}
+				ByteBuffer record = ByteBuffer.wrap(data.getData(), data.getOffset(), data.getSize());
+				record.getLong();
+				if (record.getLong() < opened) {
+					cursor.delete();
+					purged++;
+				}
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} catch (DatabaseException e) {
+			LOGGER.error("Unable to purge the fingerprints store {} ({})", directory, e.toString());
+			LOGGER.debug(e.toString(), e);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		return purged;
+	}
+
+	/**
+	 * @return the number of entries skipped since the store has been opened
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * Write the pending records to the disk and close the store
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			database.close();
+			environment.sync();
+			environment.close();
+		} catch (DatabaseException e) {
+			LOGGER.error("Unable to close the fingerprints store {} ({})", directory, e.toString());
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	/* Record: checked date, seen date, source fingerprint, destination fingerprint */
+
+	private byte[] encode(long checked, byte[] source, byte[] destination) {
+		int destinationLength = (destination != null ? destination.length : 0);
+		ByteBuffer record = ByteBuffer.allocate(8 + 8 + 2 + source.length + 2 + destinationLength);
+		record.putLong(checked).putLong(System.currentTimeMillis());
+		record.putShort((short) source.length).put(source);
+		record.putShort((short) destinationLength);
+		if (destination != null) {
+			record.put(destination);
+		}
+		return record.array();
+	}
+
+	private static byte[] readBytes(ByteBuffer record) {
+		int length = record.getShort();
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return bytes;
+	}
+
+	private ByteBuffer read(String key) {
+		if (closed || key == null) {
+			return null;
+		}
+		try {
+			DatabaseEntry data = new DatabaseEntry();
+			if (database.get(null, new DatabaseEntry(toBytes(key)), data, LockMode.READ_UNCOMMITTED) != OperationStatus.SUCCESS) {
+				return null;
+			}
+			return ByteBuffer.wrap(data.getData(), data.getOffset(), data.getSize());
+		} catch (DatabaseException e) {
+			LOGGER.debug(e.toString(), e);
+			return null;
+		}
+	}
+
+	private void write(String key, byte[] record) {
+		if (closed || key == null) {
+			return;
+		}
+		try {
+			database.put(null, new DatabaseEntry(toBytes(key)), new DatabaseEntry(record));
+		} catch (DatabaseException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+}
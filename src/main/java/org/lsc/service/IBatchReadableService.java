@@ -0,0 +1,85 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Service able to read several entries at once, in a single round trip.
+ * 
+ * <p>The synchronization engine uses it instead of
+ * {@link IService#getBean(String, LscDatasets, boolean)} to read the source
+ * entries, or to look their destination entries up, by groups of
+ * {@link #getBatchReadSize()} source identifiers.</p>
+ */
+public interface IBatchReadableService extends IService {
+
+	/**
+	 * Get the maximum number of entries read at once
+	 * @return the number of entries, 0 or 1 if the entries can only be read
+	 *         one by one with the current configuration
+	 */
+	public int getBatchReadSize();
+
+	/**
+	 * Read several entries of the service, with their identifiers such as
+	 * returned by {@link #getListPivots()} of the source service.
+	 * 
+	 * @param ids the entries names with their pivot attributes
+	 * @return the beans found, by entry name. Entries known not to exist may
+	 *         be returned with a null bean. The other entries which are not
+	 *         found, or not identified by a single result, are missing and
+	 *         must be read one by one.
+	 * @throws LscServiceException thrown if none of the entries can be read
+	 */
+	public Map<String, IBean> getBeans(List<Entry<String, LscDatasets>> ids) throws LscServiceException;
+}
@@ -0,0 +1,84 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Extend default IService interface to list all the entries, fully
+ * populated and sorted on their pivot attributes. This is used by the
+ * merge mode to compare the source and the destination in one single pass,
+ * without any per entry lookup.
+ */
+public interface ISortedService extends IService {
+
+	/**
+	 * Get all the entries, in ascending order of their pivot attributes
+	 * values, compared case insensitively and by order of precedence of
+	 * {@link #getPivotAttributes()}. The values are compared as lower cased
+	 * Java strings, as {@link String#compareTo(String)} does: a directory
+	 * must sort them with an ordering rule giving the same order, such as
+	 * caseIgnoreOrderingMatch on ASCII values.
+	 * <p>
+	 * The entries are expected to be read while the iterator is consumed.
+	 * An error met while iterating is thrown as a {@link RuntimeException}
+	 * wrapping a {@link LscServiceException}.
+	 * </p>
+	 * @return the sorted entries (never null)
+	 * @throws LscServiceException if the entries can not be listed
+	 */
+	Iterator<IBean> getSortedBeans() throws LscServiceException;
+
+	/**
+	 * The pivot attributes the entries are sorted on
+	 * @return the pivot attributes names, by order of precedence
+	 */
+	List<String> getPivotAttributes();
+}
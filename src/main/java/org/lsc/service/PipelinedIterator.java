@@ -0,0 +1,183 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Iterator fed by a producer thread through a bounded queue.
+ * 
+ * The producer blocks as soon as <code>capacity</code> items are waiting
+ * to be consumed, so that a large result set is never fully loaded in
+ * memory. A failure of the producer is thrown to the consumer, wrapped in
+ * a {@link LscServiceException}, once the items read before the failure
+ * have been consumed. Closing the iterator stops the producer.
+ * 
+ * @param <T> the items type
+ */
+abstract class PipelinedIterator<T> implements Iterator<T>, Closeable {
+
+	/** Delay between two checks of the closed flag by a blocked producer */
+	private static final long OFFER_TIMEOUT = 100;
+
+	/** Marker put in the queue after the last item */
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private volatile boolean closed;
+	private volatile Exception failure;
+
+	private Object nextItem;
+	private boolean finished;
+
+	public PipelinedIterator(int capacity) {
+		queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	/**
+	 * Read all the items and hand them to {@link #put(Object)}. Run in the
+	 * producer thread.
+	 * @throws Exception any error, thrown back to the consumer
+	 */
+	protected abstract void produce() throws Exception;
+
+	/**
+	 * Start the producer thread.
+	 * @param name the thread name
+	 * @return this iterator
+	 */
+	public PipelinedIterator<T> start(String name) {
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					produce();
+				} catch (Exception e) {
+					if (!closed) {
+						failure = e;
+					}
+				} finally {
+					offer(END);
+				}
+			}
+		}, name);
+		producer.setDaemon(true);
+		producer.start();
+		return this;
+	}
+
+	/**
+	 * Queue an item, waiting while the queue is full.
+	 * @param item the item
+	 * @throws CancellationException if the iterator has been closed
+	 */
+	protected final void put(T item) {
+		if (!offer(item)) {
+			throw new CancellationException("The consumer closed the iterator");
+		}
+	}
+
+	private boolean offer(Object item) {
+		try {
+			while (!closed) {
+				if (queue.offer(item, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	public boolean hasNext() {
+		if (nextItem == null && !finished) {
+			try {
+				nextItem = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new RuntimeException(new LscServiceException(e));
+			}
+			if (nextItem == END) {
+				nextItem = null;
+				finished = true;
+				if (failure != null) {
+					throw new RuntimeException(new LscServiceException(failure));
+				}
+			}
+		}
+		return nextItem != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T item = (T) nextItem;
+		nextItem = null;
+		return item;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void close() {
+		closed = true;
+		finished = true;
+		nextItem = null;
+		queue.clear();
+	}
+}
@@ -46,11 +46,21 @@
 
 package org.lsc.service;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.TreeMap;
 
 import org.lsc.Configuration;
 import org.lsc.LscDatasets;
@@ -64,19 +74,61 @@ import org.lsc.exception.LscServiceInitializationException;
 import org.lsc.persistence.DaoConfig;
 
 /**
+ * JDBC source service.
+ * 
+ * In asynchronous mode, the changes are either polled one by one with the
+ * next id request, or read by pages with the changes request if it is
+ * configured. The changes are read by keyset paging on the watermark
+ * attribute, typically a sequence or a modification timestamp, and the
+ * pivot attributes: the changes request receives the "watermark"
+ * parameter, the watermark value of the last row read (with its JDBC type,
+ * null at the first run), the pivot attributes of this row under their own
+ * names (case insensitive) and the "pageSize" parameter. It must return
+ * the pivot attributes and the watermark attribute of the rows after this
+ * one, ordered on the watermark then on the pivots, for example:
+ * <pre>
+ * WHERE modified &gt; #watermark# OR (modified = #watermark# AND mail &gt; #mail#)
+ * ORDER BY modified, mail
+ * </pre>
+ * so that the rows sharing a watermark value are not skipped at the end of
+ * a page. The position is saved once all the changes read before it have
+ * been synchronized, and the task resumes from it after a restart. Once a
+ * change has failed, the position is not saved anymore, so that the
+ * failed change is read again after a restart.
+ * 
  * @author Jonathan Clarke &lt;jonathan@phillipoux.net&gt;
  *
  */
-public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynchronousService {
+public class SimpleJdbcSrcService extends AbstractJdbcService implements IPushedChangesService, IResumableService,
+				IBatchReadableService {
+
+	/** Checkpoint key of the watermark */
+	private static final String WATERMARK = "watermark";
+
+	/** Checkpoint key of the names of the pivot attributes of the last row, separated by commas */
+	private static final String WATERMARK_PIVOTS = "watermark.pivots";
+
+	/** Checkpoint key suffix of the type of a value */
+	private static final String TYPE_SUFFIX = ".type";
 
 	private final String requestNameForList;
 	private final String requestNameForNextId;
 	private final String requestNameForObject;
+	private final String requestNameForObjectBatch;
 	private final String requestNameForClean;
 	
 	/** Period in (milliseconds) */
 	private int interval;
 
+	private String requestNameForChanges;
+	private String watermarkAttribute;
+	/** The watermark of the last row read, all the changes before it have been returned */
+	private Object watermark;
+	/** The pivot attributes of the last row read */
+	private Map<String, Object> watermarkPivots;
+	/** Keeps the watermark across restarts */
+	private CheckpointStore checkpoints;
+
 	/**
 	 * Simple JDBC source service that gets SQL request names from lsc.properties
 	 * and calls the appropriate SQL requests defined in sql-map-config.d
@@ -90,6 +142,7 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 		super(DaoConfig.getSqlMapClient(Configuration.getAsProperties("src.database")), beanClassName);
 		requestNameForList = props.getProperty("requestNameForList");
 		requestNameForObject = props.getProperty("requestNameForObject");
+		requestNameForObjectBatch = props.getProperty("requestNameForObjectBatch");
 		requestNameForNextId = props.getProperty("requestNameForNextId");
 		requestNameForClean = props.getProperty("requestNameForClean");
 		
@@ -123,6 +176,7 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 		DatabaseSourceServiceType serviceConf = task.getDatabaseSourceService();
 		requestNameForList = serviceConf.getRequestNameForList();
 		requestNameForObject = serviceConf.getRequestNameForObject();
+		requestNameForObjectBatch = serviceConf.getRequestNameForObjectBatch();
         requestNameForNextId = serviceConf.getRequestNameForNextId();
 		requestNameForClean = serviceConf.getRequestNameForClean();
 		if(requestNameForClean == null) {
@@ -130,6 +184,19 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 		}
 		
 		interval = (serviceConf.getInterval() != null ? serviceConf.getInterval().intValue() : 5) * 1000;
+		if (serviceConf.getFetchSize() != null) {
+			setFetchSize(requestNameForList, serviceConf.getFetchSize());
+		}
+
+		requestNameForChanges = serviceConf.getRequestNameForChanges();
+		watermarkAttribute = serviceConf.getWatermarkAttribute();
+		if (requestNameForChanges != null) {
+			if (watermarkAttribute == null) {
+				throw new LscServiceConfigurationException("A watermark attribute must be specified with the changes request for task=" + task.getName());
+			}
+			checkpoints = CheckpointStore.forTask(task.getName());
+			loadWatermark();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -148,6 +215,14 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 		return requestNameForObject;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.lsc.service.AbstractJdbcService#getRequestNameForObjectBatch()
+	 */
+	@Override
+	public String getRequestNameForObjectBatch() {
+		return requestNameForObjectBatch;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.lsc.service.AbstractJdbcService#getRequestNameForNextId()
 	 */
@@ -194,4 +269,163 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 	public long getInterval() {
 		return interval;
 	}
+
+	/**
+	 * Read the next page of changes above the watermark, or poll the next id
+	 * if there is no changes request. If there is no change, wait for the
+	 * timeout before returning.
+	 */
+	public List<Entry<String, LscDatasets>> waitNextIds(int max, long timeout) throws LscServiceException,
+					InterruptedException {
+		List<Entry<String, LscDatasets>> ids;
+		if (requestNameForChanges != null) {
+			ids = getNextIds(max);
+		} else {
+			Entry<String, LscDatasets> id = getNextId();
+			ids = (id != null ? Collections.singletonList(id) : Collections.<Entry<String, LscDatasets>> emptyList());
+		}
+		if (ids.isEmpty()) {
+			Thread.sleep(timeout);
+		}
+		return ids;
+	}
+
+	/**
+	 * Read the changes after the last row read, and move the watermark to
+	 * the last one
+	 * @param max the maximum number of changes
+	 * @return the changed entries identifiers, without the watermark
+	 * @throws LscServiceException if the changes request fails
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Entry<String, LscDatasets>> getNextIds(int max) throws LscServiceException {
+		// the pivot names returned by the database may not have the case of the request parameters
+		Map<String, Object> parameters = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+		if (watermarkPivots != null) {
+			parameters.putAll(watermarkPivots);
+		}
+		parameters.put(WATERMARK, watermark);
+		parameters.put("pageSize", max);
+		List<Map<String, Object>> rows;
+		try {
+			rows = (List<Map<String, Object>>) sqlMapper.queryForList(requestNameForChanges, parameters, 0, max);
+		} catch (SQLException e) {
+			LOGGER.warn("Error while looking for the changes above watermark {} ({})", watermark, e);
+			LOGGER.debug(e.toString(), e);
+			return Collections.emptyList();
+		}
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>(rows.size());
+		for (Map<String, Object> row : rows) {
+			Map<String, Object> idMap = new HashMap<String, Object>(row.size());
+			Object rowWatermark = null;
+			for (Entry<String, Object> column : row.entrySet()) {
+				if (column.getKey().equalsIgnoreCase(watermarkAttribute)) {
+					rowWatermark = column.getValue();
+				} else {
+					idMap.put(column.getKey(), column.getValue());
+				}
+			}
+			if (rowWatermark == null) {
+				throw new LscServiceException("The changes request " + requestNameForChanges + " must return the "
+								+ watermarkAttribute + " watermark attribute");
+			}
+			watermark = rowWatermark;
+			watermarkPivots = idMap;
+			ids.add(new AbstractMap.SimpleImmutableEntry<String, LscDatasets>(getMapKey(idMap, count++), new LscDatasets(idMap)));
+		}
+		return ids;
+	}
+
+	/**
+	 * Save the watermark, all the changes read below it having been
+	 * synchronized
+	 */
+	public void checkpoint() throws LscServiceException {
+		if (checkpoints == null || watermark == null) {
+			return;
+		}
+		putValue(WATERMARK, watermark);
+		StringBuilder pivotNames = new StringBuilder();
+		for (Entry<String, Object> pivot : watermarkPivots.entrySet()) {
+			if (pivotNames.length() > 0) {
+				pivotNames.append(',');
+			}
+			pivotNames.append(pivot.getKey());
+			putValue(WATERMARK + "." + pivot.getKey(), pivot.getValue());
+		}
+		checkpoints.put(WATERMARK_PIVOTS, pivotNames.toString());
+		try {
+			checkpoints.save();
+		} catch (IOException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Read the position saved by {@link #checkpoint()}
+	 */
+	private void loadWatermark() {
+		watermark = getValue(WATERMARK);
+		String pivotNames = checkpoints.get(WATERMARK_PIVOTS);
+		if (watermark == null || pivotNames == null) {
+			return;
+		}
+		watermarkPivots = new LinkedHashMap<String, Object>();
+		for (String pivotName : pivotNames.split(",")) {
+			if (pivotName.length() > 0) {
+				watermarkPivots.put(pivotName, getValue(WATERMARK + "." + pivotName));
+			}
+		}
+	}
+
+	/**
+	 * Save a value with its type, so that it is given back to the database
+	 * with the type it has been read with
+	 * @param key the checkpoint key
+	 * @param value the value read from the database
+	 */
+	private void putValue(String key, Object value) {
+		String type = null;
+		// the dates are written in the JDBC escape format, parsed back by valueOf()
+		if (value instanceof Timestamp || value instanceof java.sql.Date || value instanceof Time
+						|| value instanceof Integer || value instanceof Long || value instanceof BigDecimal) {
+			type = value.getClass().getSimpleName();
+		} else if (value instanceof Number) {
+			type = BigDecimal.class.getSimpleName();
+		}
+		checkpoints.put(key, (value != null ? value.toString() : null));
+		checkpoints.put(key + TYPE_SUFFIX, type);
+	}
+
+	/**
+	 * Read a value saved by {@link #putValue(String, Object)}. A value
+	 * without type is read as a string.
+	 * @param key the checkpoint key
+	 * @return the value, or null
+	 */
+	private Object getValue(String key) {
+		String text = checkpoints.get(key);
+		String type = checkpoints.get(key + TYPE_SUFFIX);
+		if (text == null || type == null) {
+			return text;
+		}
+		try {
+			if (type.equals(Timestamp.class.getSimpleName())) {
+				return Timestamp.valueOf(text);
+			} else if (type.equals(java.sql.Date.class.getSimpleName())) {
+				return java.sql.Date.valueOf(text);
+			} else if (type.equals(Time.class.getSimpleName())) {
+				return Time.valueOf(text);
+			} else if (type.equals(Integer.class.getSimpleName())) {
+				return Integer.valueOf(text);
+			} else if (type.equals(Long.class.getSimpleName())) {
+				return Long.valueOf(text);
+			} else if (type.equals(BigDecimal.class.getSimpleName())) {
+				return new BigDecimal(text);
+			}
+		} catch (IllegalArgumentException e) {
+			LOGGER.error("Invalid {} value {} for {} in the checkpoint file, read as a string", new Object[] { type, text, key });
+		}
+		return text;
+	}
 }
@@ -50,18 +50,20 @@ import java.io.IOException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.naming.NamingException;
 import javax.net.ssl.TrustManagerFactory;
@@ -70,8 +72,10 @@ import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttribut
 import org.apache.directory.api.ldap.codec.decorators.SearchResultEntryDecorator;
 import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
 import org.apache.directory.api.ldap.extras.controls.SynchronizationModeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncDone.SyncDoneValue;
 import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateTypeEnum;
 import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl_impl.SyncInfoValueDecorator;
 import org.apache.directory.api.ldap.extras.controls.syncrepl_impl.SyncRequestValueDecorator;
 import org.apache.directory.api.ldap.model.cursor.EntryCursor;
 import org.apache.directory.api.ldap.model.entry.Attribute;
@@ -81,6 +85,7 @@ import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.message.AliasDerefMode;
 import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
 import org.apache.directory.api.ldap.model.message.LdapResult;
 import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
 import org.apache.directory.api.ldap.model.message.Response;
@@ -117,7 +122,7 @@ import org.slf4j.LoggerFactory;
  * to a compatible directory to get updates on the fly.
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class SyncReplSourceService extends SimpleJndiSrcService implements IAsynchronousService, Closeable {
+public class SyncReplSourceService extends SimpleJndiSrcService implements IResumableService, IPushedChangesService, Closeable {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(SyncReplSourceService.class);
 
@@ -132,6 +137,30 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 	
 	private SearchFuture sf;
 
+	/** Checkpoint key of the synchronization cookie */
+	private static final String COOKIE = "cookie";
+
+	/** OID of the SyncRepl Sync Info Message intermediate response */
+	private static final String SYNC_INFO_OID = "1.3.6.1.4.1.4203.1.9.1.4";
+
+	/** Keeps the synchronization cookie across restarts */
+	private CheckpointStore checkpoints;
+
+	/** The last cookie sent by the server, null until the server sends one */
+	private volatile byte[] cookie;
+
+	/** Maximum number of changes read ahead of the synchronization */
+	private static final int PUSHED_CHANGES_QUEUE_SIZE = 1000;
+
+	/** Changes read by the reader thread, waiting to be synchronized */
+	private final BlockingQueue<PushedChange> pushedChanges = new ArrayBlockingQueue<PushedChange>(PUSHED_CHANGES_QUEUE_SIZE);
+
+	/** Reads the changes pushed by the directory, see {@link #waitNextIds(int, long)} */
+	private Thread reader;
+
+	/** The error which stopped the reader thread */
+	private volatile LscServiceException readerFailure;
+
 	public SyncReplSourceService(final TaskType task)
 			throws LscServiceConfigurationException {
 		super(task);
@@ -142,6 +171,12 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 		ldapConn = (LdapConnectionType) srsc.getConnection().getReference();
 		
 		connection = getConnection(ldapConn);
+
+		checkpoints = CheckpointStore.forTask(task.getName());
+		cookie = checkpoints.getBytes(COOKIE);
+		if (cookie != null) {
+			LOGGER.info("Resuming the synchronization of {} from the saved cookie", task.getName());
+		}
 	}
 
 	public static LdapAsyncConnection getConnection(LdapConnectionType ldapConn) throws LscServiceConfigurationException {
@@ -187,6 +222,11 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 	}
 	
 	public void close() throws IOException {
+		synchronized (this) {
+			if (reader != null) {
+				reader.interrupt();
+			}
+		}
 		connection.close();
 	}
 	
@@ -225,17 +265,10 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 			searchString = filterIdClean; 
 		}
 
-        searchString = Pattern.compile("\\{id\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(Matcher.quoteReplacement(id));
-		if (pivotAttrs != null && pivotAttrs.getDatasets() != null && pivotAttrs.getDatasets().size() > 0) {
-			for (String attributeName : pivotAttrs.getAttributesNames()) {
-				String valueId = pivotAttrs.getValueForFilter(attributeName.toLowerCase());
-				searchString = Pattern.compile("\\{" + attributeName + "\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(Matcher.quoteReplacement(valueId));
-			}
-		} else if (attrsId.size() == 1) {
-			searchString = Pattern.compile("\\{" + attrsId.get(0) + "\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(Matcher.quoteReplacement(id));
-		} else {
-			// this is kept for backwards compatibility but will be removed
-			searchString = filterIdSync.replaceAll("\\{0\\}", id);
+		try {
+			searchString = getFilter(id, pivotAttrs, searchString);
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
 		}
 
 		try {
@@ -281,20 +314,7 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 	public java.util.Map.Entry<String, LscDatasets> getNextId() throws LscServiceException {
 		Map<String, LscDatasets> temporaryMap = new HashMap<String, LscDatasets>(1);
 		if(sf == null || sf.isCancelled()) {
-			try {
-				SearchRequest searchRequest = new SearchRequestImpl();
-				searchRequest.addControl(getSearchContinuationControl(srsc.getServerType()));
-				searchRequest.setBase(new Dn(getBaseDn()));
-				searchRequest.setFilter(getFilterAll());
-				searchRequest.setDerefAliases(getAlias(ldapConn.getDerefAliases()));
-				searchRequest.setScope(SearchScope.SUBTREE);
-				searchRequest.addAttributes(getAttrsId().toArray(new String[getAttrsId().size()]));
-				sf = getConnection(ldapConn).searchAsync(searchRequest);
-			} catch (LdapInvalidDnException e) {
-                throw new LscServiceException(e.toString(), e);
-            } catch (LdapException e) {
-                throw new LscServiceException(e.toString(), e);
-            }
+			sf = startSearch(getConnection(ldapConn), cookie);
 		}
 		Response searchResponse = null;
 		try {
@@ -306,13 +326,20 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 		} catch (TimeoutException e) {
 			LOGGER.warn("Timeout during search !");
 		}
+		byte[] newCookie = readCookie(searchResponse);
+		if (newCookie != null) {
+			cookie = newCookie;
+		}
 		if(checkSearchResponse(searchResponse)) {
 			SearchResultEntryDecorator sre = ((SearchResultEntryDecorator) searchResponse);
 			temporaryMap.put(sre.getObjectName().toString(), convertEntry(sre.getEntry(), true));
 			return temporaryMap.entrySet().iterator().next();
 		} else if(searchResponse != null && searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_DONE){
 		    LdapResult result = ((SearchResultDone)searchResponse).getLdapResult();
-		    if(result.getResultCode() != ResultCodeEnum.SUCCESS) {
+		    if (result.getResultCode() == ResultCodeEnum.E_SYNC_REFRESH_REQUIRED) {
+		        LOGGER.warn("The directory can not resume from the cookie, all the entries are read again");
+		        cookie = null;
+		    } else if(result.getResultCode() != ResultCodeEnum.SUCCESS) {
 		        throw new LscServiceCommunicationException(result.getDiagnosticMessage(), null);
 		    }
 		    sf = null;
@@ -320,6 +347,211 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
         return null;
 	}
 
+	/**
+	 * Start the search returning the changes
+	 * @param conn the connection to search on
+	 * @param resumeCookie the cookie to resume from, may be null
+	 * @return the search responses
+	 * @throws LscServiceException if the search can not be started
+	 */
+	private SearchFuture startSearch(LdapAsyncConnection conn, byte[] resumeCookie) throws LscServiceException {
+		try {
+			SearchRequest searchRequest = new SearchRequestImpl();
+			searchRequest.addControl(getSearchContinuationControl(srsc.getServerType(), resumeCookie));
+			searchRequest.setBase(new Dn(getBaseDn()));
+			searchRequest.setFilter(getFilterAll());
+			searchRequest.setDerefAliases(getAlias(ldapConn.getDerefAliases()));
+			searchRequest.setScope(SearchScope.SUBTREE);
+			searchRequest.addAttributes(getAttrsId().toArray(new String[getAttrsId().size()]));
+			return conn.searchAsync(searchRequest);
+		} catch (LdapInvalidDnException e) {
+			throw new LscServiceException(e.toString(), e);
+		} catch (LdapException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Wait for the changes pushed by the directory. They are read as soon as
+	 * the directory sends them by a dedicated thread, started by the first
+	 * call, which blocks when too many changes are waiting.
+	 */
+	public List<Map.Entry<String, LscDatasets>> waitNextIds(int max, long timeout)
+					throws LscServiceException, InterruptedException {
+		startReader();
+		List<PushedChange> received = new ArrayList<PushedChange>();
+		PushedChange first = pushedChanges.poll(timeout, TimeUnit.MILLISECONDS);
+		if (first != null) {
+			received.add(first);
+			pushedChanges.drainTo(received, max - 1);
+		} else if (readerFailure != null) {
+			throw readerFailure;
+		} else if (!reader.isAlive()) {
+			throw new LscServiceException("The changes reader of " + getBaseDn() + " has stopped");
+		}
+
+		List<Map.Entry<String, LscDatasets>> ids = new ArrayList<Map.Entry<String, LscDatasets>>(received.size());
+		for (PushedChange change : received) {
+			if (change.id != null) {
+				ids.add(change.id);
+			}
+			if (change.cookie != null) {
+				// the cookie is only saved once the previous changes have been applied
+				cookie = change.cookie;
+			}
+		}
+		return ids;
+	}
+
+	private synchronized void startReader() {
+		if (reader == null) {
+			reader = new Thread(new ChangesReader(), "syncrepl-" + getBaseDn());
+			reader.setDaemon(true);
+			reader.start();
+		}
+	}
+
+	/**
+	 * A change read from the directory: an entry identifier, a new cookie,
+	 * or both
+	 */
+	private static final class PushedChange {
+		private final Map.Entry<String, LscDatasets> id;
+		private final byte[] cookie;
+
+		public PushedChange(Map.Entry<String, LscDatasets> id, byte[] cookie) {
+			this.id = id;
+			this.cookie = cookie;
+		}
+	}
+
+	/**
+	 * Read the search responses as soon as they are received, and queue the
+	 * changes. The search is started again, from the last cookie, when the
+	 * directory ends it, or without cookie when the directory requires a
+	 * full refresh (e-syncRefreshRequired), for example because the cookie
+	 * saved before a restart is too old.
+	 */
+	private class ChangesReader implements Runnable {
+
+		public void run() {
+			LdapAsyncConnection conn = null;
+			byte[] readerCookie = cookie;
+			SearchFuture future = null;
+			try {
+				conn = getConnection(ldapConn);
+				if (conn == null) {
+					throw new LscServiceCommunicationException("Unable to connect to " + ldapConn.getUrl(), null);
+				}
+				while (!Thread.currentThread().isInterrupted()) {
+					if (future == null) {
+						future = startSearch(conn, readerCookie);
+					}
+					Response searchResponse;
+					try {
+						searchResponse = future.get(interval, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						continue;
+					}
+					if (searchResponse == null) {
+						continue;
+					}
+
+					byte[] newCookie = readCookie(searchResponse);
+					if (newCookie != null) {
+						readerCookie = newCookie;
+					}
+					Map.Entry<String, LscDatasets> id = null;
+					if (checkSearchResponse(searchResponse)) {
+						SearchResultEntryDecorator sre = ((SearchResultEntryDecorator) searchResponse);
+						id = new AbstractMap.SimpleImmutableEntry<String, LscDatasets>(sre.getObjectName().toString(),
+										convertEntry(sre.getEntry(), true));
+					} else if (searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_DONE) {
+						LdapResult result = ((SearchResultDone) searchResponse).getLdapResult();
+						if (result.getResultCode() == ResultCodeEnum.E_SYNC_REFRESH_REQUIRED) {
+							LOGGER.warn("The directory can not resume from the cookie, all the entries are read again");
+							readerCookie = null;
+						} else if (result.getResultCode() != ResultCodeEnum.SUCCESS) {
+							throw new LscServiceCommunicationException(result.getDiagnosticMessage(), null);
+						}
+						future = null;
+					}
+					if (id != null || newCookie != null) {
+						// blocks while too many changes are waiting to be synchronized
+						pushedChanges.put(new PushedChange(id, newCookie));
+					}
+				}
+			} catch (InterruptedException e) {
+				LOGGER.debug("Changes reader interrupted");
+			} catch (ExecutionException e) {
+				LOGGER.error("Error while reading the changes: {}", e.toString());
+				readerFailure = new LscServiceException(e.toString(), e);
+			} catch (LscServiceException e) {
+				LOGGER.error("Error while reading the changes: {}", e.toString());
+				readerFailure = e;
+			} catch (RuntimeException e) {
+				// for example a CancellationException once the connection is closed
+				LOGGER.error("Error while reading the changes: {}", e.toString());
+				LOGGER.debug(e.toString(), e);
+				readerFailure = new LscServiceException(e.toString(), e);
+			} finally {
+				if (conn != null) {
+					try {
+						conn.close();
+					} catch (Exception e) {
+						LOGGER.debug(e.toString(), e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the synchronization cookie sent by the server along with an entry,
+	 * at the end of the refresh phase or in a Sync Info Message
+	 * @param searchResponse the search response, may be null
+	 * @return the new cookie, or null if the response does not hold one
+	 */
+	private byte[] readCookie(Response searchResponse) {
+		if (searchResponse == null) {
+			return null;
+		}
+		byte[] newCookie = null;
+		if (searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_ENTRY) {
+			SyncStateValue syncStateCtrl = (SyncStateValue) searchResponse.getControl(SyncStateValue.OID);
+			newCookie = (syncStateCtrl != null ? syncStateCtrl.getCookie() : null);
+		} else if (searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_DONE) {
+			SyncDoneValue syncDoneCtrl = (SyncDoneValue) searchResponse.getControl(SyncDoneValue.OID);
+			newCookie = (syncDoneCtrl != null ? syncDoneCtrl.getCookie() : null);
+		} else if (searchResponse.getType() == MessageTypeEnum.INTERMEDIATE_RESPONSE) {
+			IntermediateResponse intermediate = (IntermediateResponse) searchResponse;
+			if (SYNC_INFO_OID.equals(intermediate.getResponseName()) && intermediate.getResponseValue() != null) {
+				try {
+					SyncInfoValueDecorator syncInfo = new SyncInfoValueDecorator(new DefaultLdapCodecService());
+					syncInfo.decode(intermediate.getResponseValue());
+					newCookie = syncInfo.getCookie();
+				} catch (Exception e) {
+					LOGGER.warn("Unable to decode a Sync Info Message: {}", e.toString());
+					LOGGER.debug(e.toString(), e);
+				}
+			}
+		}
+		return newCookie;
+	}
+
+	/**
+	 * Save the last cookie sent by the server, so that only the changes made
+	 * after it are sent again after a restart
+	 */
+	public void checkpoint() throws LscServiceException {
+		checkpoints.putBytes(COOKIE, cookie);
+		try {
+			checkpoints.save();
+		} catch (IOException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+	}
+
 	private boolean checkSearchResponse(Response searchResponse) {
 		if (searchResponse == null || searchResponse.getType() != MessageTypeEnum.SEARCH_RESULT_ENTRY) {
 			return false;
@@ -348,12 +580,26 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 	}
 
 	public static Control getSearchContinuationControl(LdapServerType serverType) throws LscServiceConfigurationException {
+		return getSearchContinuationControl(serverType, null);
+	}
+
+	/**
+	 * Get the control asking the server to send the changes as they happen
+	 * @param serverType the directory type
+	 * @param cookie the SyncRepl cookie to resume from, or null to get all the entries first
+	 * @return the control
+	 * @throws LscServiceConfigurationException if the directory type is not supported
+	 */
+	public static Control getSearchContinuationControl(LdapServerType serverType, byte[] cookie) throws LscServiceConfigurationException {
 		switch(serverType) {
 		case OPEN_LDAP:
 		case APACHE_DS:
 		    DefaultLdapCodecService codec = new DefaultLdapCodecService();
 		    SyncRequestValueDecorator syncControl = new SyncRequestValueDecorator(codec);
 		    syncControl.setMode(SynchronizationModeEnum.REFRESH_AND_PERSIST);
+		    if (cookie != null) {
+		        syncControl.setCookie(cookie);
+		    }
 		    return syncControl;
 		case OPEN_DS:
 		case OPEN_DJ:
@@ -411,6 +657,77 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 		return converted;
 	}
 
+	@Override
+	public Iterator<Map.Entry<String, LscDatasets>> getPivotsIterator() throws LscServiceException {
+		try {
+			return new EntryCursorIterator(connection.search(getBaseDn(), getFilterAll(), SearchScope.SUBTREE,
+					getAttrsId().toArray(new String[getAttrsId().size()])));
+		} catch (RuntimeException e) {
+			throw new LscServiceException(e.toString(), e);
+		} catch (LdapException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Iterate over a search result entries cursor, converting each entry
+	 * when it is read
+	 */
+	private class EntryCursorIterator implements Iterator<Map.Entry<String, LscDatasets>>, Closeable {
+
+		private final EntryCursor entryCursor;
+		private Map.Entry<String, LscDatasets> nextEntry;
+		private boolean done;
+
+		public EntryCursorIterator(EntryCursor entryCursor) {
+			this.entryCursor = entryCursor;
+		}
+
+		public boolean hasNext() {
+			if (nextEntry == null && !done) {
+				try {
+					if (entryCursor.next()) {
+						Entry entry = entryCursor.get();
+						nextEntry = new AbstractMap.SimpleImmutableEntry<String, LscDatasets>(
+										entry.getDn().getName(), convertEntry(entry));
+					} else {
+						entryCursor.getSearchResultDone();
+						close();
+					}
+				} catch (Exception e) {
+					close();
+					throw new RuntimeException(new LscServiceException(
+									"Error while performing search. Results may be incomplete." + e, e));
+				}
+			}
+			return nextEntry != null;
+		}
+
+		public Map.Entry<String, LscDatasets> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<String, LscDatasets> current = nextEntry;
+			nextEntry = null;
+			return current;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			if (!done) {
+				done = true;
+				try {
+					entryCursor.close();
+				} catch (Exception e) {
+					LOGGER.debug(e.toString(), e);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Convert a search result entries list to a LSC ready to use map
 	 * @param entryCursor Unbounded ID LDAP SDK objects 
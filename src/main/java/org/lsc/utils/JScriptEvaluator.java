@@ -47,14 +47,18 @@ package org.lsc.utils;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
@@ -70,6 +74,9 @@ import org.mozilla.javascript.UniqueTag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * This is the Rhino Java Script evaluation context.
  * 
@@ -80,21 +87,44 @@ public final class JScriptEvaluator implements ScriptableEvaluator {
 	// Logger
 	private static final Logger LOGGER = LoggerFactory.getLogger(JScriptEvaluator.class);
 
-//	/** The precompiled Javascript cache. */
-//	private Map<String, Script> cache;
+	/** Maximum number of compiled expressions kept in cache. */
+	private static final int MAX_CACHED_SCRIPTS = 500;
+
+	/* Allow to have shorter names for function in the package org.lsc.utils.directory */
+	private static final String IMPORTS =
+                    "var version = java.lang.System.getProperty(\"java.version\");\n" +
+                    "if (version.startsWith(\"1.8.0\")) { load(\"nashorn:mozilla_compat.js\"); }\n" +
+                    "importPackage(org.lsc.utils.directory);\n" +
+                    "importPackage(org.lsc.utils);\n";
+
+	/* Give back their initial value to the top level declarations which can not be deleted */
+	private static final String UNDEFINE =
+					"(function(global) {\n" +
+					"  for (var i = 0; i < __lscUndefined.length; i++) { global[__lscUndefined[i]] = undefined; }\n" +
+					"})(this);\n";
+
+	/** Marks the top level declarations undefined after an evaluation. */
+	private static final Object UNDEFINED = new Object();
+
+	/**
+	 * The precompiled Javascript cache, shared by the evaluators of all the
+	 * threads. A compiled script is only reused by the engine which compiled
+	 * it, as its evaluation runs in this engine.
+	 */
+	private static final Cache<String, CompiledScript> cache =
+					CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SCRIPTS).build();
+
+	/** The scope of each task, with the imports and the included files already evaluated */
+	private final Cache<Task, TaskScope> scopesCache;
 
 	private ScriptEngine engine;
 	
-	/** The local Rhino context. */
-//	private ScriptContext cx;
-
 	/**
 	 * Default public constructor.
 	 */
 	public JScriptEvaluator(ScriptEngine se) {
-//		cache = new HashMap<String, Script>();
+		scopesCache = CacheBuilder.newBuilder().weakKeys().build();
 		this.engine = se;
-//		cx = se.getContext();//new ContextFactory().enterContext();
 	}
 
     /** {@inheritDoc} */
@@ -254,76 +284,166 @@ public final class JScriptEvaluator implements ScriptableEvaluator {
 	 */
 	private Object instanceEval(final Task task, final String expression,
 					final Map<String, Object> params) throws LscServiceException {
-//		Script script = null;
-		Bindings bindings = engine.createBindings();
+		Object ret = null;
+		TaskScope scope = null;
+		try {
+			scope = getScope(task);
+
+			if(params != null) {
+				for(String paramName: params.keySet()) {
+					scope.bindings.put(paramName, params.get(paramName));
+				}
+			}
 
+			ret = eval(expression, scope.bindings);
+		} catch (ScriptException e) {
+            LOGGER.error("Fail to compute expression: " + expression + " on " + 
+                    (params.containsKey("srcBean") && ((IBean)params.get("srcBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("srcBean")).getMainIdentifier() : 
+                        ( params.containsKey("dstBean") && ((IBean)params.get("dstBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("dstBean")).getMainIdentifier() :
+                            "unknown id !"))
+                    + "\nReason: " + e.toString());
+            LOGGER.debug(e.toString(), e);
+            throw new LscServiceException (e);
+		} catch (RuntimeException e) {
+            throw new LscServiceException (e);
+		} catch (Exception e) {
+			LOGGER.error(e.toString());
+			LOGGER.debug(e.toString(), e);
+			return null;
+		} finally {
+			// the bindings are reused: only keep what is shared by the task
+			if (scope != null) {
+				try {
+					scope.reset();
+				} catch (ScriptException e) {
+					// the bindings can not be trusted anymore
+					scopesCache.invalidate(task);
+					LOGGER.debug(e.toString(), e);
+				}
+			}
+		}
 
-		/* Allow to have shorter names for function in the package org.lsc.utils.directory */
-		String expressionImport =
-                        "var version = java.lang.System.getProperty(\"java.version\");\n" +
-                        "if (version.startsWith(\"1.8.0\")) { load(\"nashorn:mozilla_compat.js\"); }\n" +
-                        "importPackage(org.lsc.utils.directory);\n" +
-                        "importPackage(org.lsc.utils);\n" + expression;
+		return ret;
+	}
 
-//		if (cache.containsKey(expressionImport)) {
-//			script = cache.get(expressionImport);
-//		} else {
-//			script = cx.compileString(expressionImport, "<cmd>", 1, null);
-//			cache.put(expressionImport, script);
-//		}
+	/**
+	 * Get the scope of the task, evaluating the imports and the included
+	 * files at first call for this task.
+	 * 
+	 * @param task the task
+	 * @return the task scope
+	 * @throws ScriptException thrown if an included file can not be evaluated
+	 * @throws IOException thrown if an included file can not be read
+	 */
+	private TaskScope getScope(final Task task) throws ScriptException, IOException {
+		TaskScope scope = scopesCache.getIfPresent(task);
+		if (scope != null) {
+			return scope;
+		}
+		Bindings bindings = engine.createBindings();
+		engine.eval(IMPORTS, bindings);
+		if (task.getScriptIncludes() != null) {
+			for (File scriptInclude: task.getScriptIncludes()) {
+				if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
+					FileReader reader = new FileReader(scriptInclude);
+					try {
+						engine.eval(reader, bindings);
+					} finally {
+						reader.close();
+					}
+				}
+			}
+		}
 
 		// add LDAP interface for destination
-		if (!bindings.containsKey("ldap") && task.getDestinationService() instanceof AbstractSimpleJndiService) {
+		if (task.getDestinationService() instanceof AbstractSimpleJndiService) {
 			ScriptableJndiServices dstSjs = new ScriptableJndiServices();
 			dstSjs.setJndiServices(((AbstractSimpleJndiService)task.getDestinationService()).getJndiServices());
 			bindings.put("ldap", dstSjs);
 		}
 
 		// add LDAP interface for source
-		if (!bindings.containsKey("srcLdap") && task.getSourceService() instanceof AbstractSimpleJndiService) {
+		if (task.getSourceService() instanceof AbstractSimpleJndiService) {
 			ScriptableJndiServices srcSjs = new ScriptableJndiServices();
 			srcSjs.setJndiServices(((AbstractSimpleJndiService)task.getSourceService()).getJndiServices());
 			bindings.put("srcLdap", srcSjs);
 		}
 
-		if(params != null) {
-			for(String paramName: params.keySet()) {
-				bindings.put(paramName, params.get(paramName));
-			}
+		scope = new TaskScope(bindings);
+		scopesCache.put(task, scope);
+		return scope;
+	}
+
+	/**
+	 * The bindings where the imports and the included files of a task have
+	 * been evaluated. They are reset to this state after each evaluation, so
+	 * that the parameters, the variables, the functions and the implicit
+	 * globals of an evaluation are not seen by the next ones.
+	 */
+	private final class TaskScope {
+
+		private final Bindings bindings;
+
+		/** The names and values shared by all the evaluations */
+		private final Map<String, Object> values;
+
+		private TaskScope(Bindings bindings) {
+			this.bindings = bindings;
+			this.values = new HashMap<String, Object>(bindings);
 		}
-		
-		Object ret = null;
-		try {
-			if (task.getScriptIncludes() != null) {
-				for (File scriptInclude: task.getScriptIncludes()) {
-					if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
-						FileReader reader = new FileReader(scriptInclude);
-						try {
-							engine.eval(reader, bindings);
-						} finally {
-							reader.close();
-						}
+
+		private void reset() throws ScriptException {
+			List<String> undefined = new ArrayList<String>();
+			for (String name : new ArrayList<String>(bindings.keySet())) {
+				if (!values.containsKey(name)) {
+					bindings.remove(name);
+					if (bindings.containsKey(name)) {
+						// engines such as Nashorn do not delete a global declared with var or function
+						undefined.add(name);
+						values.put(name, UNDEFINED);
 					}
 				}
 			}
-			ret = engine.eval(expressionImport, bindings);
-		} catch (ScriptException e) {
-            LOGGER.error("Fail to compute expression: " + expression + " on " + 
-                    (params.containsKey("srcBean") && ((IBean)params.get("srcBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("srcBean")).getMainIdentifier() : 
-                        ( params.containsKey("dstBean") && ((IBean)params.get("dstBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("dstBean")).getMainIdentifier() :
-                            "unknown id !"))
-                    + "\nReason: " + e.toString());
-            LOGGER.debug(e.toString(), e);
-            throw new LscServiceException (e);
-		} catch (RuntimeException e) {
-            throw new LscServiceException (e);
-		} catch (Exception e) {
-			LOGGER.error(e.toString());
-			LOGGER.debug(e.toString(), e);
-			return null;
+			for (Map.Entry<String, Object> value : values.entrySet()) {
+				Object current = bindings.get(value.getKey());
+				if (value.getValue() == UNDEFINED) {
+					if (current != null && !undefined.contains(value.getKey())) {
+						undefined.add(value.getKey());
+					}
+				} else if (current == null ? value.getValue() != null : !current.equals(value.getValue())) {
+					bindings.put(value.getKey(), value.getValue());
+				}
+			}
+			if (!undefined.isEmpty()) {
+				bindings.put("__lscUndefined", undefined.toArray(new String[undefined.size()]));
+				try {
+					eval(UNDEFINE, bindings);
+				} finally {
+					bindings.remove("__lscUndefined");
+				}
+			}
 		}
+	}
 
-		return ret;
+	/**
+	 * Evaluate the expression, compiling it at first call if the engine
+	 * supports it.
+	 * 
+	 * @param expression the expression
+	 * @param bindings the bindings to evaluate it with
+	 * @return the evaluation result
+	 * @throws ScriptException thrown if the evaluation fails
+	 */
+	private Object eval(final String expression, final Bindings bindings) throws ScriptException {
+		if (!(engine instanceof Compilable)) {
+			return engine.eval(expression, bindings);
+		}
+		CompiledScript script = cache.getIfPresent(expression);
+		if (script == null || script.getEngine() != engine) {
+			script = ((Compilable) engine).compile(expression);
+			cache.put(expression, script);
+		}
+		return script.eval(bindings);
 	}
 	
 	private static Object convertJsToJava(Object src) {
@@ -47,6 +47,7 @@ package org.lsc.utils;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -71,6 +72,9 @@ import org.mozilla.javascript.UniqueTag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * This is the Rhino Java Script evaluation context.
  * 
@@ -81,17 +85,35 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
     // Logger
     private static final Logger LOGGER = LoggerFactory.getLogger(RhinoJScriptEvaluator.class);
 
+    /** Maximum number of compiled expressions kept in cache. */
+    private static final int MAX_CACHED_SCRIPTS = 500;
+
     /** The local Rhino context. */
     private Context             cx;
 
     /** debug flag */
     private boolean debug;
+
+    /** The context factory, the debugger uses its own one for each evaluation */
+    private final ContextFactory factory;
+
+    /** The standard objects, sealed to be shared by all the evaluations */
+    private ScriptableObject sharedScope;
+
+    /** The compiled expressions, by expression text, shared by the evaluators of all the threads */
+    private static final Cache<String, Script> scriptsCache =
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SCRIPTS).build();
+
+    /** The compiled include files, by task, shared by the evaluators of all the threads */
+    private static final Cache<Task, List<Script>> includesCache =
+            CacheBuilder.newBuilder().weakKeys().build();
     
     /**
      * Default public constructor.
      */
     public RhinoJScriptEvaluator(boolean debug) {
         this.debug = debug;
+        factory = new ContextFactory();
     }
 
     /** {@inheritDoc} */
@@ -263,13 +285,13 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
             + "with (new JavaImporter(Packages.org.lsc.utils)) {\n" 
             + expression + "\n}}";
 
-        ContextFactory factory = new ContextFactory();
-        
+        ContextFactory contextFactory = factory;
         if(debug) {
-            rhinoDebugger = new RhinoDebugger(expressionImport, factory);
+            contextFactory = new ContextFactory();
+            rhinoDebugger = new RhinoDebugger(expressionImport, contextFactory);
         }
 
-        cx = factory.enterContext();
+        cx = contextFactory.enterContext();
         
 //        if(debug) {
 //            cx.setGeneratingDebug(true);
@@ -277,8 +299,8 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
 //            cx.setOptimizationLevel(-1);
 //        }
 
-        Scriptable scope = cx.initStandardObjects();
-        Script script = cx.compileString(expressionImport, "<cmd>", 1, null);
+        Scriptable scope = newScope();
+        Script script = getScript(expression, expressionImport);
 
         
      // add LDAP interface for destination
@@ -302,20 +324,7 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
 
         Object ret = null;
         try {
-        	List<Script> includes = new ArrayList<Script>();
-			if (task.getScriptIncludes() != null) {
-				for (File scriptInclude: task.getScriptIncludes()) {
-					if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
-						FileReader reader = new FileReader(scriptInclude);
-						try {
-							Script include = cx.compileReader(reader, scriptInclude.getAbsolutePath(), 1, null);
-							includes.add(include);
-						} finally {
-							reader.close();
-						}	
-					}
-				}
-			}
+        	List<Script> includes = getIncludes(task);
             if(debug) {
                 rhinoDebugger.initContext(cx, scope, script);
                 Object jsObj = Context.javaToJS(rhinoDebugger, scope);
@@ -349,6 +358,77 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
         return ret;
     }
 
+    /**
+     * Get a new scope for an evaluation. Only the parameters are specific to
+     * the evaluation: the standard objects are inherited from a shared scope,
+     * sealed so that an evaluation can not alter them for the next ones.
+     * 
+     * @return the new scope
+     */
+    private Scriptable newScope() {
+        if (debug) {
+            return cx.initStandardObjects();
+        }
+        if (sharedScope == null) {
+            sharedScope = cx.initStandardObjects(null, true);
+        }
+        Scriptable scope = cx.newObject(sharedScope);
+        scope.setPrototype(sharedScope);
+        scope.setParentScope(null);
+        return scope;
+    }
+
+    /**
+     * Get the compiled expression, from the cache if already compiled.
+     * 
+     * @param expression the expression, used as the cache key
+     * @param expressionImport the expression with its imports
+     * @return the compiled expression
+     */
+    private Script getScript(final String expression, final String expressionImport) {
+        Script script = (debug ? null : scriptsCache.getIfPresent(expression));
+        if (script == null) {
+            script = cx.compileString(expressionImport, "<cmd>", 1, null);
+            if (!debug) {
+                scriptsCache.put(expression, script);
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Get the compiled Javascript files included by the task, reading and
+     * compiling them at first call for this task.
+     * 
+     * @param task the task
+     * @return the compiled includes, in declaration order
+     * @throws IOException thrown if an include file can not be read
+     */
+    private List<Script> getIncludes(final Task task) throws IOException {
+        List<Script> includes = (debug ? null : includesCache.getIfPresent(task));
+        if (includes != null) {
+            return includes;
+        }
+        includes = new ArrayList<Script>();
+		if (task.getScriptIncludes() != null) {
+			for (File scriptInclude: task.getScriptIncludes()) {
+				if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
+					FileReader reader = new FileReader(scriptInclude);
+					try {
+						Script include = cx.compileReader(reader, scriptInclude.getAbsolutePath(), 1, null);
+						includes.add(include);
+					} finally {
+						reader.close();
+					}	
+				}
+			}
+		}
+        if (!debug) {
+            includesCache.put(task, includes);
+        }
+        return includes;
+    }
+
     private static Object convertJsToJava(Object src) {
         if (src == null) {
             return null;
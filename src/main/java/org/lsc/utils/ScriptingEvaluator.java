@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 
@@ -29,6 +30,13 @@ public class ScriptingEvaluator {
 
 	public static ScriptEngineManager mgr;
 
+	/**
+	 * The Javascript engine, shared by the evaluators of all the threads so
+	 * that they reuse the same compiled scripts. Each evaluator keeps its own
+	 * bindings.
+	 */
+	private static ScriptEngine jsEngine;
+
 	private Map<String, ScriptableEvaluator> instancesTypeCache;
 
 	private ScriptableEvaluator defaultImplementation;
@@ -47,7 +55,7 @@ public class ScriptingEvaluator {
 			for (String name : sef.getNames()) {
 				if ("js".equals(name)) {
 					instancesTypeCache.put(name,
-							new JScriptEvaluator(sef.getScriptEngine()));
+							new JScriptEvaluator(getJsEngine(sef)));
 					break;
 				} else if ("groovy".equals(name)) {
 					instancesTypeCache.put("gr",
@@ -71,6 +79,13 @@ public class ScriptingEvaluator {
 		defaultImplementation = instancesTypeCache.get("js");
 	}
 
+	private static synchronized ScriptEngine getJsEngine(ScriptEngineFactory sef) {
+		if (jsEngine == null) {
+			jsEngine = sef.getScriptEngine();
+		}
+		return jsEngine;
+	}
+
 	public static ScriptingEvaluator getInstance() {
         String threadName = Thread.currentThread().getName();
         ScriptingEvaluator scriptingEvaluator = null;
@@ -124,37 +139,73 @@ public class ScriptingEvaluator {
 	 */
 	public static String evalToString(final Task task, final String expression,
 			final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToString(task, getInstance().removePrefix(expression), params);
+		long start = System.nanoTime();
+		try {
+			ScriptableEvaluator se = getInstance().identifyScriptingEngine(
+					expression);
+			return se.evalToString(task, getInstance().removePrefix(expression), params);
+		} finally {
+			record(task, expression, start);
+		}
 	}
 
 	public static List<String> evalToStringList(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToStringList(task, getInstance().removePrefix(expression), params);
+		long start = System.nanoTime();
+		try {
+			ScriptableEvaluator se = getInstance().identifyScriptingEngine(
+					expression);
+			return se.evalToStringList(task, getInstance().removePrefix(expression), params);
+		} finally {
+			record(task, expression, start);
+		}
 	}
 
 	public static List<byte[]> evalToByteArrayList(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToByteArrayList(task, getInstance().removePrefix(expression), params);
+		long start = System.nanoTime();
+		try {
+			ScriptableEvaluator se = getInstance().identifyScriptingEngine(
+					expression);
+			return se.evalToByteArrayList(task, getInstance().removePrefix(expression), params);
+		} finally {
+			record(task, expression, start);
+		}
 	}
 
 	public static byte[] evalToByteArray(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToByteArray(task, getInstance().removePrefix(expression), params);
+		long start = System.nanoTime();
+		try {
+			ScriptableEvaluator se = getInstance().identifyScriptingEngine(
+					expression);
+			return se.evalToByteArray(task, getInstance().removePrefix(expression), params);
+		} finally {
+			record(task, expression, start);
+		}
 	}
 
 	public static Boolean evalToBoolean(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToBoolean(task, getInstance().removePrefix(expression), params);
+		long start = System.nanoTime();
+		try {
+			ScriptableEvaluator se = getInstance().identifyScriptingEngine(
+					expression);
+			return se.evalToBoolean(task, getInstance().removePrefix(expression), params);
+		} finally {
+			record(task, expression, start);
+		}
 	}
 
+	/**
+	 * Account the evaluation time in the task metrics
+	 * @param task the task evaluating the expression, may be null
+	 * @param expression the evaluated expression
+	 * @param start the evaluation start, see {@link System#nanoTime()}
+	 */
+	private static void record(Task task, String expression, long start) {
+		if (task != null && task.getMetrics() != null) {
+			task.getMetrics().recordScript(expression, System.nanoTime() - start);
+		}
+	}
 }
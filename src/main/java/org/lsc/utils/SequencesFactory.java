@@ -49,6 +49,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
@@ -65,11 +66,23 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class is used to manage numeric sequences
- * via LDAP Directory entries storage
+ * via LDAP Directory entries storage.
+ * 
+ * Values may be reserved in the directory by blocks, which are then handed
+ * out from memory, as set by the sequenceBlockSize of the LDAP connection
+ * (1 by default: each value is reserved by itself). The directory always
+ * holds the last value reserved by any process, so several processes can
+ * share the same sequence. The unused values of the blocks are given back
+ * by {@link #release()} if no other process reserved values since; if the
+ * process stops before, they are lost, and the value stored in the
+ * directory jumps by the block size at each reservation.
  * @author Sebastien Bahloul &lt;sbahloul@linagora.com&gt;
  */
 public class SequencesFactory {
 
+	/** Default number of values reserved at once */
+	public static final int DEFAULT_BLOCK_SIZE = JndiServices.DEFAULT_SEQUENCE_BLOCK_SIZE;
+
 	/** the factory instance */
 	private static SequencesFactory instance;
 	/** the sequences cache */
@@ -78,6 +91,9 @@ public class SequencesFactory {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SequencesFactory.class);
 
 	private JndiServices jndiServices;
+
+	/** the number of values reserved at once */
+	private int blockSize;
 	
 	/**
 	 * The local constructor
@@ -85,13 +101,14 @@ public class SequencesFactory {
 	private SequencesFactory(JndiServices jndiServices) {
 		this.jndiServices = jndiServices;
 		sequences = new HashMap<String, Sequence>();
+		blockSize = (jndiServices != null ? Math.max(jndiServices.getSequenceBlockSize(), 1) : DEFAULT_BLOCK_SIZE);
 	}
 
 	/**
 	 * Get the factory instance (if needed create and initialize it)
 	 * @return the instance
 	 */
-	public static SequencesFactory getInstance(JndiServices services) {
+	public static synchronized SequencesFactory getInstance(JndiServices services) {
 		if (instance == null) {
 			LOGGER.info("Initializing the sequences factory.");
 			instance = new SequencesFactory(services);
@@ -99,6 +116,36 @@ public class SequencesFactory {
 		return instance;
 	}
 
+	/**
+	 * Give back the unused values of the sequences of the factory instance,
+	 * if it has been created
+	 */
+	public static synchronized void releaseInstance() {
+		if (instance != null) {
+			instance.release();
+		}
+	}
+
+	/**
+	 * Block size accessor
+	 * @return the number of values reserved at once
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Block size accessor. It applies to the next reservations.
+	 * @param blockSize the number of values reserved at once, 1 to reserve
+	 *            them one by one
+	 */
+	public synchronized void setBlockSize(int blockSize) {
+		this.blockSize = Math.max(blockSize, 1);
+		for (Sequence sq : sequences.values()) {
+			sq.setBlockSize(this.blockSize);
+		}
+	}
+
 	/**
 	 * Get the next value for this sequence
 	 * 
@@ -124,7 +171,9 @@ public class SequencesFactory {
 	 * 
 	 * @param dn DN where the sequence is stored in the directory
 	 * @param attributeName The attribute name the sequence is stored in
-	 * @return the current value, a negative value means an error
+	 * @return the last value handed out by this process, or the value stored
+	 *         in the directory if there is none, a negative value means an
+	 *         error
 	 */
 	public int getCurrentValue(String dn, String attributeName) {
 		String hash = getHash(dn, attributeName);
@@ -139,6 +188,16 @@ public class SequencesFactory {
 		return sq.getCurrentValue();
 	}
 
+	/**
+	 * Give back the values reserved but not handed out yet by all the
+	 * sequences. The next values will be reserved again from the directory.
+	 */
+	public synchronized void release() {
+		for (Sequence sq : sequences.values()) {
+			sq.release();
+		}
+	}
+
 	/**
 	 * Private local method to get a sequence
 	 * @param dn DN where the sequence is stored in the directory
@@ -146,11 +205,12 @@ public class SequencesFactory {
 	 * @param hash A unique identifier for this sequence. See {@link #getHash(String, String)}.
 	 * @return Sequence A Sequence object representing this entry
 	 */
-	private Sequence getSequence(String dn, String attributeName, String hash) {
+	private synchronized Sequence getSequence(String dn, String attributeName, String hash) {
 		if (sequences.containsKey(hash)) {
 			return sequences.get(hash);
 		} else {
 			Sequence seq = new Sequence(jndiServices);
+			seq.setBlockSize(blockSize);
 			if (!seq.load(dn, attributeName, 0)) {
 				return null;
 			}
@@ -176,8 +236,12 @@ class Sequence {
 	private String dn;
 	/** The attribute name */
 	private String attributeName;
-	/** The value */
+	/** The value stored in the directory */
 	private int value;
+	/** The number of values reserved at once */
+	private int blockSize = 1;
+	/** The values reserved by this process, or null */
+	private volatile Block block;
 	
 	private JndiServices jndiServices;
 
@@ -207,7 +271,15 @@ class Sequence {
 		dn = value;
 	}
 
+	public synchronized void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
 	public int getCurrentValue() {
+		Block current = block;
+		if (current != null && current.getLastValue() >= current.first) {
+			return current.getLastValue();
+		}
 		return value;
 	}
 
@@ -233,60 +305,164 @@ class Sequence {
 	}
 	
 	/**
-	 * Return the updated in directory new value
+	 * Return the next value of the block reserved in the directory. A new
+	 * block is reserved when it is exhausted.
 	 * @return Next value to set, or -1 if an error occurred
 	 */
-	public synchronized int getNextValue() {
+	public int getNextValue() {
+		while (true) {
+			Block current = block;
+			if (current != null) {
+				int newValue = current.next.getAndIncrement();
+				if (newValue <= current.last) {
+					return newValue;
+				}
+			}
+			synchronized (this) {
+				// another thread may have reserved a new block meanwhile
+				if (block == current && !reserveBlock()) {
+					return -1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reserve a new block of values in the directory
+	 * @return false if the maximum number of retries has been reached
+	 */
+	private synchronized boolean reserveBlock() {
 		for (int i=0; i<INCREMENT_MAX_RETRY; i++) {
-			int newValue = incrementValue();
+			int newValue = incrementValue(blockSize);
 			if (newValue != -1) {
-				return newValue;
+				block = new Block(newValue - blockSize + 1, newValue);
+				return true;
 			} else {
 				LOGGER.warn("Failed to update the directory for the value of the sequence {}/{}, retrying: "+(i+1)+"/"+INCREMENT_MAX_RETRY, getDn(), getAttributeName());
 			}
 		}
 		LOGGER.error("Maximum retry ("+INCREMENT_MAX_RETRY+") reached to increment sequence {}/{}", getDn(), getAttributeName());
-		return -1;
+		block = null;
+		return false;
+	}
+
+	/**
+	 * Give back the values of the current block which have not been handed
+	 * out. This is only done if the directory still holds the last value of
+	 * the block, i.e. if no other process reserved values since.
+	 */
+	public synchronized void release() {
+		Block current = block;
+		if (current == null) {
+			return;
+		}
+		block = null;
+		int lastValue = current.close();
+		if (lastValue == current.last) {
+			return;
+		}
+		try {
+			if (replaceValue(current.last, lastValue)) {
+				LOGGER.debug("Gave back the values {} to {} of the sequence {}/{}",
+								new Object[] { lastValue + 1, current.last, getDn(), getAttributeName() });
+				return;
+			}
+		} catch (NamingException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+		LOGGER.info("The values {} to {} of the sequence {}/{} could not be given back",
+						new Object[] { lastValue + 1, current.last, getDn(), getAttributeName() });
 	}
 	
-	private synchronized int incrementValue() {
+	/**
+	 * Add an increment to the value stored in the directory
+	 * @param increment the number of values to reserve
+	 * @return the new value, or -1 if an error occurred
+	 */
+	private synchronized int incrementValue(int increment) {
 		int newValue = 0;
 		try {
 			if (!readValue()) {
 				return -1;
 			}
 			
-			int value = getCurrentValue();
-			newValue = value + 1;
-			
-			Attribute valueAttribute = new BasicAttribute(getAttributeName());
-			valueAttribute.clear();
-			valueAttribute.add("" + value);
-
-			Attribute newValueAttribute = new BasicAttribute(getAttributeName());
-			newValueAttribute.clear();
-			newValueAttribute.add("" + newValue);
-
-			// prepare modifications to be written to the directory
-			JndiModifications jm = new JndiModifications(JndiModificationType.MODIFY_ENTRY);
-			jm.setDistinguishName(getDn());
-			List<ModificationItem> mi = new ArrayList<ModificationItem>();
-			mi.add(new ModificationItem(DirContext.REMOVE_ATTRIBUTE, valueAttribute));
-			mi.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, newValueAttribute));
-			jm.setModificationItems(mi);
-
-			if (!jndiServices.apply(jm)) {
+			newValue = value + increment;
+			if (!replaceValue(value, newValue)) {
 				return -1;
 			}
 		} catch (NamingException e) {
 			return -1;
 		}
+		return newValue;
+	}
 
+	/**
+	 * Replace the value stored in the directory, if it has not been changed
+	 * meanwhile: the old value is removed and the new one added by a single
+	 * modification, which fails if the old value is not present anymore.
+	 * @param value the expected current value
+	 * @param newValue the new value
+	 * @return true if the value has been replaced
+	 * @throws NamingException
+	 */
+	private boolean replaceValue(int value, int newValue) throws NamingException {
+		Attribute valueAttribute = new BasicAttribute(getAttributeName());
+		valueAttribute.clear();
+		valueAttribute.add("" + value);
+
+		Attribute newValueAttribute = new BasicAttribute(getAttributeName());
+		newValueAttribute.clear();
+		newValueAttribute.add("" + newValue);
+
+		// prepare modifications to be written to the directory
+		JndiModifications jm = new JndiModifications(JndiModificationType.MODIFY_ENTRY);
+		jm.setDistinguishName(getDn());
+		List<ModificationItem> mi = new ArrayList<ModificationItem>();
+		mi.add(new ModificationItem(DirContext.REMOVE_ATTRIBUTE, valueAttribute));
+		mi.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, newValueAttribute));
+		jm.setModificationItems(mi);
+
+		if (!jndiServices.apply(jm)) {
+			return false;
+		}
 		setValue(newValue);
-		return newValue;
+		return true;
 	}
 
 	public String getDn() {
 		return dn;
 	}
+
+	/**
+	 * A range of values reserved in the directory, handed out without lock
+	 */
+	private static class Block {
+		/** the first value of the block */
+		private final int first;
+		/** the last value of the block */
+		private final int last;
+		/** the next value to hand out */
+		private final AtomicInteger next;
+
+		private Block(int first, int last) {
+			this.first = first;
+			this.last = last;
+			next = new AtomicInteger(first);
+		}
+
+		/**
+		 * @return the last value handed out, or first - 1 if there is none
+		 */
+		private int getLastValue() {
+			return Math.min(next.get(), last + 1) - 1;
+		}
+
+		/**
+		 * Stop handing out values
+		 * @return the last value handed out, or first - 1 if there is none
+		 */
+		private int close() {
+			return Math.min(next.getAndSet(last + 1), last + 1) - 1;
+		}
+	}
 }
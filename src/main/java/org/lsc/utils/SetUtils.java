@@ -141,60 +141,9 @@ public class SetUtils {
 			return needles;
 		}
 
+		ValueIndex index = new ValueIndex(haystack);
 		for (Object needle : needles) {
-			ByteBuffer needleBuff = null;
-
-			// use a byte buffer is needle is binary
-			if (needle.getClass().isAssignableFrom(byte[].class)) {
-				needleBuff = ByteBuffer.wrap((byte[]) needle);
-			}
-
-			boolean foundInHaystack = false;
-			for (Object haystackValue : haystack) {
-				ByteBuffer haystackValueBuff = null;
-
-				// use a byte buffer if haystack value is binary
-				if (haystackValue.getClass().isAssignableFrom(byte[].class)) {
-					haystackValueBuff = ByteBuffer.wrap((byte[]) haystackValue);
-
-					// make sure we have a byte buffer for the needle too
-					if (needleBuff == null) {
-						// if needle is binary, make this haystack value binary
-						if (needle.getClass().isAssignableFrom(String.class)) {
-							needleBuff = ByteBuffer.wrap(((String) needle).getBytes());
-						} else {
-							continue;
-						}
-					}
-				}
-
-				// needleBuff is set if either needle or haystack value are
-				// binary
-				// do a binary comparison
-				if (needleBuff != null) {
-					// make sure we have a byte buffer for haystack value too
-					if (haystackValueBuff == null) {
-						if (haystackValue.getClass().isAssignableFrom(String.class)) {
-							haystackValueBuff = ByteBuffer.wrap(((String) haystackValue).getBytes());
-						} else {
-							continue;
-						}
-					}
-
-					// binary comparison
-					if (haystackValueBuff.compareTo(needleBuff) == 0) {
-						foundInHaystack = true;
-					}
-				} else {
-					// fall back to standard compare (works well for String,
-					// int, boolean, etc)
-					if (haystackValue.equals(needle)) {
-						foundInHaystack = true;
-					}
-				}
-			}
-
-			if (!foundInHaystack) {
+			if (!index.contains(needle)) {
 				missingNeedles.add(needle);
 			}
 		}
@@ -305,19 +254,41 @@ public class SetUtils {
 		}
 
 		// check if there are any values in srcAttr not in dstAttr
-		if (!SetUtils.setContainsAll(dstAttrValues, srcAttrValues)) {
-			return false;
+		ValueIndex dstIndex = new ValueIndex(dstAttrValues);
+		for (Object value : srcAttrValues) {
+			if (!dstIndex.contains(value)) {
+				return false;
+			}
 		}
 
 		// check if there are any values in dstAttr not in srcAttr
-		if (!SetUtils.setContainsAll(srcAttrValues, dstAttrValues)) {
-			return false;
+		ValueIndex srcIndex = new ValueIndex(srcAttrValues);
+		for (Object value : dstAttrValues) {
+			if (!srcIndex.contains(value)) {
+				return false;
+			}
 		}
 
 		// looks ok!
 		return true;
 	}
 
+	/**
+	 * Compute the values to add and to remove to turn a set of values into
+	 * another one. This method is type-aware and will intelligently compare
+	 * byte[], String, etc.
+	 * 
+	 * @param currentValues
+	 *            the current values, may be null
+	 * @param wantedValues
+	 *            the values wanted, may be null
+	 * @return the differences between the two sets. Never null.
+	 */
+	public static Difference diff(Set<Object> currentValues, Set<Object> wantedValues) {
+		return new Difference(findMissingNeedles(currentValues, wantedValues),
+						findMissingNeedles(wantedValues, currentValues));
+	}
+
 	/**
 	 * Compare two lists of values to see if they contain the same values and in same order.
 	 * This method is type-aware and will intelligently compare byte[], String, etc.
@@ -337,4 +308,96 @@ public class SetUtils {
 		Set<Object> valuesToAdd = findMissingNeedles(set, values);
 		set.addAll(valuesToAdd);
 	}
+
+	/**
+	 * Values to add and to remove, as returned by {@link SetUtils#diff(Set, Set)}
+	 */
+	public static final class Difference {
+
+		private final Set<Object> addedValues;
+
+		private final Set<Object> removedValues;
+
+		private Difference(Set<Object> addedValues, Set<Object> removedValues) {
+			this.addedValues = addedValues;
+			this.removedValues = removedValues;
+		}
+
+		/**
+		 * @return the wanted values which are not in the current values
+		 */
+		public Set<Object> getAddedValues() {
+			return addedValues;
+		}
+
+		/**
+		 * @return the current values which are not wanted anymore
+		 */
+		public Set<Object> getRemovedValues() {
+			return removedValues;
+		}
+
+		/**
+		 * @return true if both sets hold the same values
+		 */
+		public boolean isEmpty() {
+			return addedValues.isEmpty() && removedValues.isEmpty();
+		}
+	}
+
+	/**
+	 * Hash index on a set of values, so that looking for a value does not
+	 * require to compare it with every value of the set.
+	 * 
+	 * Values are compared the same way as they have always been: a byte[]
+	 * matches another byte[] or a String with the same content (using the
+	 * platform encoding), any other value is compared with equals().
+	 */
+	private static final class ValueIndex {
+
+		/** The values which are not binary */
+		private final Set<Object> values;
+
+		/** The binary values */
+		private final Set<ByteBuffer> binaryValues;
+
+		/** The String values encoded, only computed if a binary value is looked for */
+		private Set<ByteBuffer> encodedStrings;
+
+		public ValueIndex(Set<?> indexedValues) {
+			values = new HashSet<Object>(indexedValues.size() * 2);
+			binaryValues = new HashSet<ByteBuffer>();
+			for (Object value : indexedValues) {
+				if (value instanceof byte[]) {
+					binaryValues.add(ByteBuffer.wrap((byte[]) value));
+				} else {
+					values.add(value);
+				}
+			}
+		}
+
+		public boolean contains(Object value) {
+			if (value instanceof byte[]) {
+				ByteBuffer valueBuff = ByteBuffer.wrap((byte[]) value);
+				return binaryValues.contains(valueBuff) || getEncodedStrings().contains(valueBuff);
+			} else if (values.contains(value)) {
+				return true;
+			} else if (value instanceof String && !binaryValues.isEmpty()) {
+				return binaryValues.contains(ByteBuffer.wrap(((String) value).getBytes()));
+			}
+			return false;
+		}
+
+		private Set<ByteBuffer> getEncodedStrings() {
+			if (encodedStrings == null) {
+				encodedStrings = new HashSet<ByteBuffer>();
+				for (Object value : values) {
+					if (value instanceof String) {
+						encodedStrings.add(ByteBuffer.wrap(((String) value).getBytes()));
+					}
+				}
+			}
+			return encodedStrings;
+		}
+	}
 }
@@ -0,0 +1,316 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+
+/**
+ * Audit appender writing from a dedicated thread.
+ * 
+ * The synchronization threads only put the audited events in a bounded
+ * buffer, and block when it is full. A single writer thread takes the
+ * events by groups, formats them in a reused buffer when the layout is an
+ * {@link AuditFormatter}, and writes each group to the file at once,
+ * forcing it to the disk if fsync is enabled. The pending events are
+ * written when the appender is stopped, or when the JVM exits.
+ */
+public class AsyncAuditAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+	/** Default number of events waiting to be written */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Maximum number of events written at once */
+	private static final int MAX_GROUP_SIZE = 1024;
+
+	/** Time the writer waits for events before checking if it is stopped, in milliseconds */
+	private static final long POLL_DELAY = 200;
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	private String file;
+	private boolean append = true;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private boolean fsync;
+	private Layout<ILoggingEvent> layout;
+
+	private BlockingQueue<ILoggingEvent> queue;
+	private FileChannel channel;
+	private Thread writer;
+	private Thread shutdownHook;
+	private volatile boolean stopping;
+
+	/* Writer thread state, reused from one group to the next */
+	private final StringBuilder text = new StringBuilder(64 * 1024);
+	private final CharsetEncoder encoder = UTF8.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+
+	@Override
+	public void start() {
+		if (layout == null) {
+			addError("No layout set for the appender named [" + name + "].");
+			return;
+		}
+		if (file == null) {
+			addError("No file set for the appender named [" + name + "].");
+			return;
+		}
+		try {
+			File auditFile = new File(file);
+			if (auditFile.getParentFile() != null) {
+				auditFile.getParentFile().mkdirs();
+			}
+			channel = new FileOutputStream(auditFile, append).getChannel();
+			write(layout.getFileHeader());
+			write(layout.getPresentationHeader());
+		} catch (IOException e) {
+			addError("Unable to open the audit file " + file, e);
+			return;
+		}
+
+		queue = new ArrayBlockingQueue<ILoggingEvent>(bufferSize);
+		stopping = false;
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeEvents();
+			}
+		}, "audit-" + name);
+		writer.setDaemon(true);
+		writer.start();
+
+		shutdownHook = new Thread(new Runnable() {
+			public void run() {
+				AsyncAuditAppender.this.stop();
+			}
+		}, "audit-" + name + "-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		super.start();
+	}
+
+	@Override
+	protected void append(ILoggingEvent event) {
+		if (layout instanceof AuditFormatter && !((AuditFormatter) layout).isAudited(event)) {
+			return;
+		}
+		// the event is formatted by another thread
+		event.prepareForDeferredProcessing();
+		try {
+			while (!queue.offer(event, POLL_DELAY, TimeUnit.MILLISECONDS)) {
+				// do not wait forever for a writer which is gone
+				if (!writer.isAlive()) {
+					addError("The audit writer of the appender named [" + name + "] is stopped, event dropped");
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			addWarn("Interrupted while waiting to audit an event", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeEvents() {
+		List<ILoggingEvent> events = new ArrayList<ILoggingEvent>(MAX_GROUP_SIZE);
+		while (true) {
+			ILoggingEvent event;
+			try {
+				event = queue.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				event = null;
+			}
+			if (event == null) {
+				if (stopping && queue.isEmpty()) {
+					return;
+				}
+				continue;
+			}
+			events.add(event);
+			queue.drainTo(events, MAX_GROUP_SIZE - 1);
+			try {
+				writeGroup(events);
+			} catch (Throwable t) {
+				// keep the writer alive, the producers would block forever otherwise
+				addError("Unable to audit " + events.size() + " events", t);
+			} finally {
+				events.clear();
+			}
+		}
+	}
+
+	private void writeGroup(List<ILoggingEvent> events) {
+		text.setLength(0);
+		for (ILoggingEvent pending : events) {
+			try {
+				if (layout instanceof AuditFormatter) {
+					((AuditFormatter) layout).format(pending, text);
+				} else {
+					text.append(layout.doLayout(pending));
+				}
+			} catch (RuntimeException e) {
+				addError("Unable to format an audit event", e);
+			}
+		}
+		try {
+			write(text);
+		} catch (IOException e) {
+			addError("Unable to write to the audit file " + file, e);
+		}
+	}
+
+	/**
+	 * Encode and write some text in one group, forcing it to the disk if
+	 * required
+	 * @param chars the text, may be null
+	 * @throws IOException
+	 */
+	private void write(CharSequence chars) throws IOException {
+		if (chars == null || chars.length() == 0) {
+			return;
+		}
+		CharBuffer in = CharBuffer.wrap(chars);
+		encoder.reset();
+		bytes.clear();
+		while (true) {
+			CoderResult result = encoder.encode(in, bytes, true);
+			if (result.isOverflow()) {
+				drain();
+			} else {
+				break;
+			}
+		}
+		while (encoder.flush(bytes).isOverflow()) {
+			drain();
+		}
+		drain();
+		if (fsync) {
+			channel.force(false);
+		}
+	}
+
+	private void drain() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+
+	@Override
+	public void stop() {
+		synchronized (this) {
+			if (!isStarted()) {
+				return;
+			}
+			super.stop();
+		}
+		stopping = true;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			addWarn("Interrupted while writing the pending audit events", e);
+			Thread.currentThread().interrupt();
+		}
+		try {
+			write(layout.getPresentationFooter());
+			write(layout.getFileFooter());
+			channel.close();
+		} catch (IOException e) {
+			addError("Unable to close the audit file " + file, e);
+		}
+		if (Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// the JVM is already exiting
+			}
+		}
+	}
+
+	public void setFile(String file) {
+		this.file = file;
+	}
+
+	public void setAppend(boolean append) {
+		this.append = append;
+	}
+
+	/**
+	 * @param bufferSize the number of events waiting to be written before
+	 *            the synchronization threads block
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @param fsync true to force each group of events to the disk
+	 */
+	public void setFsync(boolean fsync) {
+		this.fsync = fsync;
+	}
+
+	public void setLayout(Layout<ILoggingEvent> layout) {
+		this.layout = layout;
+	}
+}
@@ -49,10 +49,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 
+import org.lsc.LscDatasetModification;
 import org.lsc.LscModificationType;
 import org.lsc.LscModifications;
 
@@ -65,7 +65,7 @@ import ch.qos.logback.core.LayoutBase;
  * @author R&eacute;my-Christophe Schermesser &lt;remy-christophe@schermesser.com&gt;
  *
  */
-public class CsvLayout extends LayoutBase<ILoggingEvent> {
+public class CsvLayout extends LayoutBase<ILoggingEvent> implements AuditFormatter {
 
 	/* Default values for the parameters */
 	protected static final String DEFAULT_SEPARATOR = ";";
@@ -109,44 +109,70 @@ public class CsvLayout extends LayoutBase<ILoggingEvent> {
 	 * @return The String to log
 	 */
 	public String doLayout(ILoggingEvent event) {
-		Object[] messages = event.getArgumentArray();
-		String result = "";
+		if (!isAudited(event)) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder(1024);
+		format(event, sb);
+		return sb.toString();
+	}
 
+	private static LscModifications getModifications(ILoggingEvent event) {
+		Object[] messages = event.getArgumentArray();
 		if (messages != null &&
 						messages.length != 0 &&
 						messages[0] != null &&
 						LscModifications.class.isAssignableFrom(messages[0].getClass()) ) {
-			LscModifications lm = (LscModifications) messages[0];
-
+			return (LscModifications) messages[0];
+		}
+		return null;
+	}
 
-			if (operations.contains(lm.getOperation()) && 
-							( taskNamesList.size() == 0 ||
-							  taskNamesList.contains(lm.getTaskName().toLowerCase()))) {
-				StringBuilder sb = new StringBuilder(1024);
+	public boolean isAudited(ILoggingEvent event) {
+		LscModifications lm = getModifications(event);
+		return lm != null && operations.contains(lm.getOperation()) && 
+						( taskNamesList.size() == 0 ||
+						  taskNamesList.contains(lm.getTaskName().toLowerCase()));
+	}
 
-				Map<String, List<Object>> modifications = lm.getModificationsItemsByHash();
+	public void format(ILoggingEvent event, StringBuilder sb) {
+		if (!isAudited(event) || attributes.isEmpty()) {
+			return;
+		}
+		LscModifications lm = getModifications(event);
 
-				List<Object> values = null;
+		for(String attributeName: attributes) {
+			/* Does the modification has the attribute ? */
+			List<Object> values = getValues(lm, attributeName);
+			if (values != null) {
+				if (values.size() > 0) {
+					sb.append(values.get(0));
+				}
+			} else if (attributeName.equalsIgnoreCase(DN_STRING)) {
+				sb.append(lm.getMainIdentifier());
+			}
+			
+			sb.append(separator);
+		}
+		//Remove the last unecessary separator
+		sb.deleteCharAt(sb.length()-1).append("\n");
+	}
 
-				for(String attributeName: attributes) {
-					/* Does the modification has the attribute ? */
-					if (modifications.containsKey(attributeName)) {
-						values = modifications.get(attributeName);
-						if (values.size() > 0) {
-							sb.append(values.get(0));
-						}
-					} else if (attributeName.equalsIgnoreCase(DN_STRING)) {
-						sb.append(lm.getMainIdentifier());
-					}
-					
-					sb.append(separator);
+	/**
+	 * Get the values of an attribute modification, the last one winning as
+	 * in {@link LscModifications#getModificationsItemsByHash()}, without
+	 * building the map for each logged modification
+	 */
+	private static List<Object> getValues(LscModifications lm, String attributeName) {
+		List<Object> values = null;
+		if (lm.getLscAttributeModifications() != null) {
+			for (LscDatasetModification modification : lm.getLscAttributeModifications()) {
+				if (modification.getAttributeName().equalsIgnoreCase(attributeName)) {
+					values = modification.getValues();
 				}
-				//Remove the last unecessary separator
-				sb.deleteCharAt(sb.length()-1).append("\n");
-				result = sb.toString();
 			}
 		}
-		return result;
+		return values;
 	}
 
 	public String getHeader() {
@@ -70,7 +70,7 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
  *
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class LdifLayout extends PatternLayout {
+public class LdifLayout extends PatternLayout implements AuditFormatter {
 	
 	/* The separator of the log operations */
 	protected static final String LOG_OPERATIONS_SEPARATOR = ",";
@@ -82,6 +82,10 @@ public class LdifLayout extends PatternLayout {
 	/* The operations to log */
 	protected Set<LscModificationType> operations;
 
+	/* The second of the last header date, and its formatted value */
+	private long headerSecond = -1;
+	private String headerDate;
+
 	public LdifLayout() {
 		operations = new HashSet<LscModificationType>();
 	}
@@ -96,29 +100,65 @@ public class LdifLayout extends PatternLayout {
 	 */
 	@Override
 	public final String doLayout(final ILoggingEvent le) {
-		Object[] messages = le.getArgumentArray();
+		LscModifications lm = getModifications(le);
 		String msg = "";
 
-		if (messages == null || 
-						messages.length == 0 ||
-						messages[0] == null ||
-						!(LscModifications.class.isAssignableFrom(messages[0].getClass()))) {
+		if (lm == null) {
 			if (!onlyLdif) {
 				msg = super.doLayout(le);
 			}
 		} else {
-			LscModifications lm = (LscModifications) messages[0];
 			if (operations.contains(lm.getOperation())) {
 				msg = format(lm);
 			}
 		}
 		return msg;
 	}
+
+	private static LscModifications getModifications(final ILoggingEvent le) {
+		Object[] messages = le.getArgumentArray();
+		if (messages == null || 
+						messages.length == 0 ||
+						messages[0] == null ||
+						!(LscModifications.class.isAssignableFrom(messages[0].getClass()))) {
+			return null;
+		}
+		return (LscModifications) messages[0];
+	}
+
+	public boolean isAudited(ILoggingEvent event) {
+		LscModifications lm = getModifications(event);
+		return (lm == null ? !onlyLdif : operations.contains(lm.getOperation()));
+	}
+
+	/**
+	 * Append the LDIF of an event, dated with the event time. The date is
+	 * only formatted again when the second changes.
+	 */
+	public void format(ILoggingEvent event, StringBuilder out) {
+		LscModifications lm = getModifications(event);
+		if (lm == null) {
+			if (!onlyLdif) {
+				out.append(super.doLayout(event));
+			}
+		} else if (operations.contains(lm.getOperation())) {
+			long second = event.getTimeStamp() / 1000;
+			if (second != headerSecond) {
+				headerDate = new Date(event.getTimeStamp()).toString();
+				headerSecond = second;
+			}
+			format(lm, headerDate, out);
+		}
+	}
 	
 	public static String format(LscModifications lm) {
 		StringBuilder msgBuffer = new StringBuilder();
-		
-		printHeader(msgBuffer);
+		format(lm, new Date().toString(), msgBuffer);
+		return msgBuffer.toString();
+	}
+
+	private static void format(LscModifications lm, String date, StringBuilder msgBuffer) {
+		msgBuffer.append("# ").append(date).append("\n");
 		
 		String dn = "";
 		if (lm.getMainIdentifier() != null && lm.getMainIdentifier().length() > 0) {
@@ -137,7 +177,7 @@ public class LdifLayout extends PatternLayout {
 		switch (lm.getOperation()) {
 			case CREATE_OBJECT:
 				msgBuffer.append("changetype: add\n");
-				msgBuffer.append(listToLdif(lm.getLscAttributeModifications(), true));
+				listToLdif(msgBuffer, lm.getLscAttributeModifications(), true);
 				break;
 			case CHANGE_ID:
 				LdapName ln;
@@ -160,7 +200,7 @@ public class LdifLayout extends PatternLayout {
 				break;
 			case UPDATE_OBJECT:
 				msgBuffer.append("changetype: modify\n");
-				msgBuffer.append(listToLdif(lm.getLscAttributeModifications(), false));
+				listToLdif(msgBuffer, lm.getLscAttributeModifications(), false);
 				break;
 			case DELETE_OBJECT:
 				msgBuffer.append("changetype: delete\n");
@@ -168,25 +208,19 @@ public class LdifLayout extends PatternLayout {
 			default:
 		}
 		msgBuffer.append("\n");
-		return msgBuffer.toString();
-	}
-
-	private static void printHeader(StringBuilder msgBuffer) {
-		msgBuffer.append("# ").append(new Date()).append("\n");
 	}
 
 	/**
 	 * Pretty print the modification items.
 	 *
+	 * @param sb
+	 *            the buffer to print to
 	 * @param modificationItems
 	 *            the modification items to pretty print
 	 * @param addEntry
 	 *            is this a new entry
-	 * @return the string to log
 	 */
-	private static String listToLdif(final List<LscDatasetModification> modificationItems, final boolean addEntry) {
-		StringBuilder sb = new StringBuilder();
-
+	private static void listToLdif(final StringBuilder sb, final List<LscDatasetModification> modificationItems, final boolean addEntry) {
 		for(LscDatasetModification mi: modificationItems) {
 			try {
 				if (!addEntry) {
@@ -210,7 +244,6 @@ public class LdifLayout extends PatternLayout {
 				sb.append(mi.getAttributeName()).append(": ").append("!!! Unable to print value !!!\n");
 			}
 		}
-		return sb.toString();
 	}
 
 	public static void printAttributeToStringBuffer(StringBuilder sb, String attrName, List<Object> values) throws NamingException {
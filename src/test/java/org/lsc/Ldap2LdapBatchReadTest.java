@@ -0,0 +1,158 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.TaskType;
+import org.lsc.jndi.JndiModificationType;
+import org.lsc.jndi.JndiModifications;
+import org.lsc.jndi.SimpleJndiDstService;
+
+/**
+ * Look the destination entries of the ldap2ldap task up by groups, and
+ * check they are the ones looked up one by one. The entries that are not
+ * found are returned as null, and the ambiguous ones are left out so that
+ * they are looked up one by one.
+ */
+public class Ldap2LdapBatchReadTest extends CommonLdapSyncTest {
+
+	private static final String DN_AMBIGUOUS_DST = "cn=CN0001bis," + DESTINATION_DN;
+
+	private SimpleJndiDstService dstService;
+
+	@Before
+	public void setup() throws Exception {
+		LscConfiguration.reset();
+		LscConfiguration.getInstance();
+		Assert.assertNotNull(LscConfiguration.getConnection("dst-ldap"));
+		reloadJndiConnections();
+
+		TaskType task = LscConfiguration.getTask(TASK_NAME);
+		task.getLdapDestinationService().setBatchReadSize(10);
+		dstService = new SimpleJndiDstService(task);
+		assertEquals(10, dstService.getBatchReadSize());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (dstJndiServices.exists(DN_AMBIGUOUS_DST)) {
+			JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY, TASK_NAME);
+			jm.setDistinguishName(DN_AMBIGUOUS_DST);
+			dstJndiServices.apply(jm);
+		}
+		dstService.close();
+		LscConfiguration.reset();
+	}
+
+	@Test
+	public final void testGetBeans() throws Exception {
+		// a second entry with the same pivot as CN0001
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY, TASK_NAME);
+		jm.setDistinguishName(DN_AMBIGUOUS_DST);
+		List<ModificationItem> mis = new ArrayList<ModificationItem>();
+		BasicAttribute objectClass = new BasicAttribute("objectClass", "top");
+		objectClass.add("person");
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", "CN0001bis")));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("sn", "SN0001")));
+		jm.setModificationItems(mis);
+		assertTrue(dstJndiServices.apply(jm));
+
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		ids.add(newId("CN0004", "SN0004"));
+		ids.add(newId("CN9999", "SN9999"));
+		ids.add(newId("CN0001", "SN0001"));
+
+		Map<String, IBean> beans = dstService.getBeans(ids);
+
+		// found, as when looked up by itself
+		IBean found = beans.get("CN0004");
+		assertNotNull(found);
+		IBean expected = dstService.getBean(ids.get(0).getKey(), ids.get(0).getValue(), true);
+		assertNotNull(expected);
+		assertEquals(expected.getMainIdentifier(), found.getMainIdentifier());
+		assertEquals(expected.getAttributesNames(), found.getAttributesNames());
+		assertEquals(expected.getDatasetFirstValueById("cn"), found.getDatasetFirstValueById("cn"));
+
+		// known to be absent
+		assertTrue(beans.containsKey("CN9999"));
+		assertNull(beans.get("CN9999"));
+		assertNull(dstService.getBean(ids.get(1).getKey(), ids.get(1).getValue(), true));
+
+		// ambiguous, left to be looked up by itself
+		assertFalse(beans.containsKey("CN0001"));
+		assertEquals(2, beans.size());
+	}
+
+	private static Entry<String, LscDatasets> newId(String cn, String sn) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("cn", cn);
+		values.put("sn", sn);
+		return new AbstractMap.SimpleEntry<String, LscDatasets>(cn, new LscDatasets(values));
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Check the walk through sorted entries used by the merge mode.
+ */
+public class MergeCursorTest {
+
+	private static final List<String> PIVOTS = Arrays.asList(new String[] { "uid" });
+
+	private static IBean newBean(String dn, String... uids) {
+		IBean bean = new SimpleBean();
+		bean.setMainIdentifier(dn);
+		if (uids.length > 0) {
+			Set<Object> values = new LinkedHashSet<Object>();
+			values.addAll(Arrays.asList(uids));
+			bean.setDataset("uid", values);
+		}
+		return bean;
+	}
+
+	@Test
+	public void testSortedEntries() throws LscServiceException {
+		List<IBean> beans = new ArrayList<IBean>();
+		beans.add(newBean("uid=a", "A"));
+		beans.add(newBean("uid=b", "b"));
+		beans.add(newBean("uid=c", "zz", "c"));
+		InfoCounter counter = new InfoCounter();
+		MergeCursor cursor = new MergeCursor(beans.iterator(), PIVOTS, "source", counter);
+
+		assertTrue(cursor.next());
+		assertEquals("a", cursor.getKey());
+		assertEquals("A", cursor.getId().getValue().getStringValueAttribute("uid"));
+		assertTrue(cursor.next());
+		assertEquals("b", cursor.getKey());
+		// the smallest value of a multi valued pivot is used
+		assertTrue(cursor.next());
+		assertEquals("c", cursor.getKey());
+		assertEquals("uid=c", cursor.getBean().getMainIdentifier());
+		assertFalse(cursor.next());
+		assertEquals(0, counter.getCountError());
+	}
+
+	@Test
+	public void testEntryWithoutPivot() throws LscServiceException {
+		List<IBean> beans = new ArrayList<IBean>();
+		beans.add(newBean("uid=a", "a"));
+		beans.add(newBean("cn=nopivot"));
+		beans.add(newBean("uid=b", "b"));
+		InfoCounter counter = new InfoCounter();
+		MergeCursor cursor = new MergeCursor(beans.iterator(), PIVOTS, "source", counter);
+
+		assertTrue(cursor.next());
+		assertTrue(cursor.next());
+		assertEquals("b", cursor.getKey());
+		assertFalse(cursor.next());
+		assertEquals(1, counter.getCountError());
+	}
+
+	@Test(expected = LscServiceException.class)
+	public void testUnsortedEntries() throws LscServiceException {
+		List<IBean> beans = new ArrayList<IBean>();
+		beans.add(newBean("uid=b", "b"));
+		beans.add(newBean("uid=a", "a"));
+		MergeCursor cursor = new MergeCursor(beans.iterator(), PIVOTS, "destination", new InfoCounter());
+
+		assertTrue(cursor.next());
+		cursor.next();
+	}
+
+	@Test(expected = LscServiceException.class)
+	public void testDuplicatePivots() throws LscServiceException {
+		List<IBean> beans = new ArrayList<IBean>();
+		beans.add(newBean("uid=a,ou=people", "a"));
+		beans.add(newBean("uid=a,ou=other", "A"));
+		MergeCursor cursor = new MergeCursor(beans.iterator(), PIVOTS, "destination", new InfoCounter());
+
+		assertTrue(cursor.next());
+		cursor.next();
+	}
+}
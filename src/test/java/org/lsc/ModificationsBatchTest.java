@@ -0,0 +1,162 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import mockit.Delegate;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+
+import org.junit.Test;
+import org.lsc.exception.LscServiceCommunicationException;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IBatchWritableService;
+
+/**
+ * Check the modifications are applied by batches, and their results
+ * reported one by one.
+ */
+public class ModificationsBatchTest {
+
+	@Mocked Task task;
+	@Mocked AbstractSynchronize abstractSynchronize;
+
+	private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+	private void expectBatches(final IBatchWritableService service) throws LscServiceException {
+		new NonStrictExpectations() {
+			{
+				task.getDestinationService(); result = service;
+				service.apply(withInstanceOf(List.class)); result = new Delegate() {
+					@SuppressWarnings("unused")
+					boolean[] apply(List<LscModifications> lms) {
+						batchSizes.add(lms.size());
+						boolean[] results = new boolean[lms.size()];
+						Arrays.fill(results, true);
+						// the second modification of the first batch fails
+						if (batchSizes.size() == 1 && lms.size() > 1) {
+							results[1] = false;
+						}
+						return results;
+					}
+				};
+			}
+		};
+	}
+
+	@Test
+	public void testAppliedBySize(@Injectable final IBatchWritableService service) throws LscServiceException {
+		expectBatches(service);
+		InfoCounter counter = new InfoCounter();
+		ModificationsBatch batch = new ModificationsBatch(task, counter, abstractSynchronize, 2, 60000);
+
+		batch.add(new LscModifications(LscModificationType.CREATE_OBJECT, "test"), null, "a");
+		assertEquals(0, batchSizes.size());
+		batch.add(new LscModifications(LscModificationType.CREATE_OBJECT, "test"), null, "b");
+		assertEquals(Arrays.asList(2), batchSizes);
+		batch.add(new LscModifications(LscModificationType.UPDATE_OBJECT, "test"), null, "c");
+		batch.close();
+
+		assertEquals(Arrays.asList(2, 1), batchSizes);
+		assertEquals(2, counter.getCountCompleted());
+		assertEquals(1, counter.getCountError());
+	}
+
+	@Test(timeout = 10000)
+	public void testAppliedByDelay(@Injectable final IBatchWritableService service) throws Exception {
+		expectBatches(service);
+		InfoCounter counter = new InfoCounter();
+		ModificationsBatch batch = new ModificationsBatch(task, counter, abstractSynchronize, 100, 50);
+
+		batch.add(new LscModifications(LscModificationType.CREATE_OBJECT, "test"), null, "a");
+		while (counter.getCountCompleted() == 0) {
+			Thread.sleep(10);
+		}
+		batch.close();
+
+		assertEquals(Arrays.asList(1), batchSizes);
+	}
+
+	@Test
+	public void testAbortedOnConnectionLost(@Injectable final IBatchWritableService service) throws LscServiceException {
+		new NonStrictExpectations() {
+			{
+				task.getDestinationService(); result = service;
+				service.apply(withInstanceOf(List.class)); result = new Delegate() {
+					@SuppressWarnings("unused")
+					boolean[] apply(List<LscModifications> lms) throws LscServiceException {
+						batchSizes.add(lms.size());
+						throw new LscServiceException(new LscServiceCommunicationException("Connection lost", null));
+					}
+				};
+			}
+		};
+		InfoCounter counter = new InfoCounter();
+		ModificationsBatch batch = new ModificationsBatch(task, counter, abstractSynchronize, 2, 60000);
+
+		batch.add(new LscModifications(LscModificationType.CREATE_OBJECT, "test"), null, "a");
+		assertFalse(batch.isAborted());
+		batch.add(new LscModifications(LscModificationType.CREATE_OBJECT, "test"), null, "b");
+		assertTrue(batch.isAborted());
+
+		// the following modifications are not sent anymore, but still counted
+		batch.add(new LscModifications(LscModificationType.UPDATE_OBJECT, "test"), null, "c");
+		batch.close();
+
+		assertEquals(Arrays.asList(2), batchSizes);
+		assertEquals(0, counter.getCountCompleted());
+		assertEquals(3, counter.getCountError());
+	}
+}
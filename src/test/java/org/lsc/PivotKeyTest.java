@@ -0,0 +1,91 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+/**
+ * Check the pivot keys used to find the orphan entries while cleaning.
+ */
+public class PivotKeyTest {
+
+	private static LscDatasets newPivots(String... namesAndValues) {
+		LscDatasets pivots = new LscDatasets();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			pivots.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return pivots;
+	}
+
+	@Test
+	public void testCaseInsensitive() {
+		assertEquals(AbstractSynchronize.getPivotKey(newPivots("uid", "JDoe")),
+						AbstractSynchronize.getPivotKey(newPivots("UID", "jdoe")));
+		assertFalse(AbstractSynchronize.getPivotKey(newPivots("uid", "jdoe")).equals(
+						AbstractSynchronize.getPivotKey(newPivots("uid", "jdoe2"))));
+	}
+
+	@Test
+	public void testMultiplePivots() {
+		// the pivot attributes order does not matter
+		assertEquals(AbstractSynchronize.getPivotKey(newPivots("uid", "jdoe", "ou", "people")),
+						AbstractSynchronize.getPivotKey(newPivots("ou", "People", "uid", "jdoe")));
+		// values are not mixed between attributes
+		assertFalse(AbstractSynchronize.getPivotKey(newPivots("a", "x", "b", "")).equals(
+						AbstractSynchronize.getPivotKey(newPivots("a", "", "b", "x"))));
+	}
+
+	@Test
+	public void testBinaryPivot() {
+		LscDatasets binary = new LscDatasets();
+		binary.put("uid", "jdoe".getBytes());
+		assertEquals(AbstractSynchronize.getPivotKey(newPivots("uid", "jdoe")),
+						AbstractSynchronize.getPivotKey(binary));
+	}
+}
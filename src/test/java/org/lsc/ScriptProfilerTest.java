@@ -0,0 +1,112 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.lsc.TaskMetrics.Phase;
+
+public class ScriptProfilerTest {
+
+	@Test
+	public void testDatasets() {
+		ScriptProfiler profiler = new ScriptProfiler("task", ScriptProfiler.DEFAULT_SLOW_ENTRY_THRESHOLD);
+
+		profiler.recordExpression("a", 10);
+		String previous = ScriptProfiler.enter("mail");
+		try {
+			profiler.recordExpression("a", 100);
+			String nested = ScriptProfiler.enter("cn");
+			profiler.recordExpression("a", 1000);
+			ScriptProfiler.exit(nested);
+			profiler.recordExpression("a", 100);
+		} finally {
+			ScriptProfiler.exit(previous);
+		}
+		profiler.recordExpression("a", 10);
+
+		assertEquals(20, profiler.getTotal("-", "a"));
+		assertEquals(200, profiler.getTotal("mail", "a"));
+		assertEquals(1000, profiler.getTotal("cn", "a"));
+		assertEquals(0, profiler.getTotal("cn", "b"));
+	}
+
+	@Test
+	public void testReport() {
+		ScriptProfiler profiler = new ScriptProfiler("task", ScriptProfiler.DEFAULT_SLOW_ENTRY_THRESHOLD);
+		String previous = ScriptProfiler.enter("description");
+		profiler.recordExpression("srcBean.getDatasetFirstValueById('description')", 2000000);
+		ScriptProfiler.exit(previous);
+		previous = ScriptProfiler.enter("cn");
+		profiler.recordExpression("srcBean.getDatasetFirstValueById('cn')", 5000000);
+		profiler.recordExpression("srcBean.getDatasetFirstValueById('cn')", 1000000);
+		ScriptProfiler.exit(previous);
+
+		List<ScriptProfiler.ExpressionStats> ranked = profiler.getRankedExpressions();
+		assertEquals(2, ranked.size());
+
+		String report = profiler.getReport();
+		assertTrue(report.indexOf("cn") < report.indexOf("description"));
+		assertTrue(report.contains("6.0"));
+	}
+
+	@Test
+	public void testEntries() {
+		ScriptProfiler profiler = new ScriptProfiler("task", 0);
+		// phases recorded outside of an entry are ignored
+		profiler.recordPhase(Phase.APPLY, 10);
+		profiler.endEntry("ignored");
+
+		profiler.startEntry();
+		profiler.recordPhase(Phase.SOURCE_READ, 1000000);
+		profiler.recordPhase(Phase.SCRIPT, 2000000);
+		profiler.endEntry("uid=1");
+	}
+}
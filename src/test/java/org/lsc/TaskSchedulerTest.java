@@ -0,0 +1,155 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.lsc.exception.LscConfigurationException;
+
+/**
+ * Check the tasks ordering according to their dependencies.
+ */
+public class TaskSchedulerTest {
+
+	private static final List<String> NONE = Collections.emptyList();
+
+	private static Callable<Boolean> job(final List<String> runs, final String name, final boolean status) {
+		return new Callable<Boolean>() {
+			public Boolean call() {
+				synchronized (runs) {
+					runs.add(name);
+				}
+				return status;
+			}
+		};
+	}
+
+	@Test
+	public void testSequentialOrder() throws Exception {
+		List<String> runs = new ArrayList<String>();
+		TaskScheduler scheduler = new TaskScheduler(1);
+		scheduler.add("a", Arrays.asList("c"), job(runs, "a", true));
+		scheduler.add("b", NONE, job(runs, "b", true));
+		scheduler.add("c", Arrays.asList("b", "unknown"), job(runs, "c", true));
+		scheduler.add("d", NONE, job(runs, "d", true));
+
+		Map<String, TaskScheduler.Status> statuses = scheduler.run();
+		assertEquals(Arrays.asList("b", "d", "c", "a"), runs);
+		assertEquals(4, statuses.size());
+		for (TaskScheduler.Status status : statuses.values()) {
+			assertEquals(TaskScheduler.Status.SUCCEEDED, status);
+		}
+	}
+
+	@Test
+	public void testFailureSkipsDependents() throws Exception {
+		List<String> runs = new ArrayList<String>();
+		TaskScheduler scheduler = new TaskScheduler(2);
+		scheduler.add("a", NONE, job(runs, "a", false));
+		scheduler.add("b", Arrays.asList("a"), job(runs, "b", true));
+		scheduler.add("c", Arrays.asList("b"), job(runs, "c", true));
+		scheduler.add("d", NONE, new Callable<Boolean>() {
+			public Boolean call() {
+				throw new IllegalStateException("failure");
+			}
+		});
+		scheduler.add("e", NONE, job(runs, "e", true));
+
+		Map<String, TaskScheduler.Status> statuses = scheduler.run();
+		assertEquals(TaskScheduler.Status.FAILED, statuses.get("a"));
+		assertEquals(TaskScheduler.Status.SKIPPED, statuses.get("b"));
+		assertEquals(TaskScheduler.Status.SKIPPED, statuses.get("c"));
+		assertEquals(TaskScheduler.Status.FAILED, statuses.get("d"));
+		assertEquals(TaskScheduler.Status.SUCCEEDED, statuses.get("e"));
+		assertEquals(2, runs.size());
+	}
+
+	@Test(timeout = 10000)
+	public void testIndependentTasksRunConcurrently() throws Exception {
+		final CountDownLatch started = new CountDownLatch(2);
+		Callable<Boolean> waitOther = new Callable<Boolean>() {
+			public Boolean call() throws InterruptedException {
+				started.countDown();
+				return started.await(5, TimeUnit.SECONDS);
+			}
+		};
+		TaskScheduler scheduler = new TaskScheduler(2);
+		scheduler.add("a", NONE, waitOther);
+		scheduler.add("b", NONE, waitOther);
+
+		Map<String, TaskScheduler.Status> statuses = scheduler.run();
+		assertEquals(TaskScheduler.Status.SUCCEEDED, statuses.get("a"));
+		assertEquals(TaskScheduler.Status.SUCCEEDED, statuses.get("b"));
+	}
+
+	@Test
+	public void testCircularDependencies() throws Exception {
+		List<String> runs = new ArrayList<String>();
+		TaskScheduler scheduler = new TaskScheduler(1);
+		scheduler.add("a", Arrays.asList("b"), job(runs, "a", true));
+		scheduler.add("b", Arrays.asList("a"), job(runs, "b", true));
+		scheduler.add("c", NONE, job(runs, "c", true));
+		try {
+			scheduler.run();
+			fail("Circular dependencies must be rejected");
+		} catch (LscConfigurationException e) {
+			assertTrue(e.getMessage().contains("[a, b]"));
+		}
+		assertTrue(runs.isEmpty());
+	}
+}
@@ -64,6 +64,7 @@ import mockit.Injectable;
 import mockit.Mocked;
 import mockit.NonStrict;
 import mockit.NonStrictExpectations;
+import mockit.Verifications;
 
 import org.junit.Test;
 import org.lsc.LscModificationType;
@@ -129,6 +130,37 @@ public class BeanComparatorTest {
 		assertEquals(LscModificationType.CHANGE_ID, BeanComparator.calculateModificationType(task, srcBean, dstBean));
 	}
 
+	/**
+	 * The DN script must be evaluated only once per entry, when the
+	 * modification type and the modifications are computed from the same
+	 * comparison context.
+	 * @throws LscServiceException 
+	 */
+	@Test
+	public void testComparisonContextEvaluatesDnOnce(@Injectable final ISyncOptions syncOptions) throws LscServiceException {
+		new NonStrictExpectations() {
+			{
+				syncOptions.getDn(); result = "\"new DN\"";
+				task.getSyncOptions(); result = syncOptions;
+			}
+		};
+		IBean srcBean = new SimpleBean();
+		IBean dstBean = new SimpleBean();
+		dstBean.setMainIdentifier("old DN");
+
+		BeanComparisonContext context = new BeanComparisonContext(task, srcBean, dstBean);
+		assertEquals(LscModificationType.CHANGE_ID, context.getModificationType());
+		LscModifications lm = BeanComparator.calculateModifications(context);
+		assertEquals("old DN", lm.getMainIdentifier());
+		assertEquals("new DN", lm.getNewMainIdentifier());
+
+		new Verifications() {
+			{
+				syncOptions.getDn(); times = 1;
+			}
+		};
+	}
+
 	/**
 	 * This test ensures that a source bean containing fields with only
 	 * empty string values is not output as a modification to be applied
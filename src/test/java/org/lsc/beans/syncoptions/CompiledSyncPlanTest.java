@@ -0,0 +1,112 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.beans.syncoptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.lsc.LscModificationType;
+import org.lsc.configuration.ConditionsType;
+import org.lsc.configuration.DatasetType;
+import org.lsc.configuration.PolicyType;
+import org.lsc.configuration.PropertiesBasedSyncOptionsType;
+import org.lsc.configuration.ValuesType;
+
+public class CompiledSyncPlanTest {
+
+	private static DatasetType dataset(String name, PolicyType policy, String... forceValues) {
+		DatasetType dataset = new DatasetType();
+		dataset.setName(name);
+		dataset.setPolicy(policy);
+		if (forceValues.length > 0) {
+			ValuesType values = new ValuesType();
+			values.getString().addAll(Arrays.asList(forceValues));
+			dataset.setForceValues(values);
+		}
+		return dataset;
+	}
+
+	@Test
+	public final void testAttributes() {
+		PropertiesBasedSyncOptionsType conf = new PropertiesBasedSyncOptionsType();
+		conf.setDefaultPolicy(PolicyType.FORCE);
+		conf.setDefaultDelimiter(";");
+		conf.getDataset().add(dataset("mail", PolicyType.KEEP, "\"a\"", "\"b\""));
+		conf.getDataset().add(dataset("MAIL", PolicyType.MERGE));
+		conf.getDataset().add(dataset("cn", null));
+
+		CompiledSyncPlan plan = new CompiledSyncPlan(conf);
+
+		assertEquals(PolicyType.KEEP, plan.getStatus("Mail"));
+		assertEquals(Arrays.asList("\"a\"", "\"b\""), plan.getForceValues("mail"));
+		assertEquals(PolicyType.FORCE, plan.getStatus("cn"));
+		assertNull(plan.getForceValues("cn"));
+		assertEquals(PolicyType.FORCE, plan.getStatus("unknown"));
+		assertEquals(";", plan.getDelimiter("unknown"));
+		assertNull(plan.getDefaultValues("unknown"));
+		assertEquals(1, plan.getForceValuedAttributeNames().size());
+		assertTrue(plan.getForceValuedAttributeNames().contains("mail"));
+		assertTrue(plan.getCreateAttributeNames().isEmpty());
+	}
+
+	@Test
+	public final void testConditions() {
+		PropertiesBasedSyncOptionsType conf = new PropertiesBasedSyncOptionsType();
+		ConditionsType conditions = new ConditionsType();
+		conditions.setDelete("false");
+		conf.setConditions(conditions);
+
+		CompiledSyncPlan plan = new CompiledSyncPlan(conf);
+
+		assertEquals("false", plan.getCondition(LscModificationType.DELETE_OBJECT));
+		assertEquals(ISyncOptions.DEFAULT_CONDITION, plan.getCondition(LscModificationType.CREATE_OBJECT));
+		assertNull(plan.getPivotTransformations());
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.CommonLdapSyncTest;
+import org.lsc.LscDatasetModification;
+import org.lsc.LscDatasetModification.LscDatasetModificationType;
+import org.lsc.LscModificationType;
+import org.lsc.LscModifications;
+import org.lsc.configuration.LscConfiguration;
+
+/**
+ * Check the "memberOf" changes are written to the groups, and their
+ * failures reported for each entry.
+ */
+public class ActiveDirectoryDstServiceTest extends CommonLdapSyncTest {
+
+	private static final String DN_GROUP = "cn=adTestGroup," + DESTINATION_DN;
+
+	private ActiveDirectoryDstService dstService;
+
+	@Before
+	public void setup() throws Exception {
+		LscConfiguration.reset();
+		LscConfiguration.getInstance();
+		Assert.assertNotNull(LscConfiguration.getConnection("dst-ldap"));
+		reloadJndiConnections();
+		dstService = new ActiveDirectoryDstService(LscConfiguration.getTask(TASK_NAME));
+
+		// a group CN0004 already belongs to
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY, TASK_NAME);
+		jm.setDistinguishName(DN_GROUP);
+		List<ModificationItem> mis = new ArrayList<ModificationItem>();
+		BasicAttribute objectClass = new BasicAttribute("objectClass", "top");
+		objectClass.add("groupOfNames");
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", "adTestGroup")));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("member", DN_DELETE_DST)));
+		jm.setModificationItems(mis);
+		assertTrue(dstJndiServices.apply(jm));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (dstJndiServices.exists(DN_GROUP)) {
+			JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY, TASK_NAME);
+			jm.setDistinguishName(DN_GROUP);
+			dstJndiServices.apply(jm);
+		}
+		dstService.close();
+		LscConfiguration.reset();
+	}
+
+	@Test
+	public final void testApply() throws Exception {
+		assertTrue(dstService.apply(newMemberOf(DN_MODIFY_DST, DN_GROUP)));
+		// already a member
+		assertFalse(dstService.apply(newMemberOf(DN_DELETE_DST, DN_GROUP)));
+
+		checkAttributeValues(DN_GROUP, "member", Arrays.asList(DN_DELETE_DST, DN_MODIFY_DST));
+	}
+
+	@Test
+	public final void testApplyBatch() throws Exception {
+		boolean[] results = dstService.apply(Arrays.asList(newMemberOf(DN_MODIFY_DST, DN_GROUP),
+						newMemberOf(DN_DELETE_DST, DN_GROUP)));
+
+		// the group is modified at once, then member by member once rejected
+		assertTrue(results[0]);
+		assertFalse(results[1]);
+		checkAttributeValues(DN_GROUP, "member", Arrays.asList(DN_DELETE_DST, DN_MODIFY_DST));
+	}
+
+	private static LscModifications newMemberOf(String dn, String groupDn) {
+		LscModifications lm = new LscModifications(LscModificationType.UPDATE_OBJECT, TASK_NAME);
+		lm.setMainIdentifer(dn);
+		List<LscDatasetModification> dms = new ArrayList<LscDatasetModification>();
+		dms.add(new LscDatasetModification(LscDatasetModificationType.REPLACE_VALUES, "memberOf",
+						Collections.<Object>singletonList(groupDn)));
+		lm.setLscAttributeModifications(dms);
+		return lm;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Check the filters built from the pivot filter templates.
+ */
+public class FilterTemplateTest {
+
+	private static Map<String, String> newValues(String... namesAndValues) {
+		Map<String, String> values = new HashMap<String, String>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			values.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return values;
+	}
+
+	@Test
+	public void testFill() {
+		FilterTemplate template = new FilterTemplate("(&(objectClass=inetOrgPerson)(uid={UID})(ou={ou}))");
+		assertEquals("(&(objectClass=inetOrgPerson)(uid=jdoe)(ou=people))",
+						template.fill(newValues("uid", "jdoe", "ou", "people")));
+		assertEquals("(&(objectClass=inetOrgPerson)(uid={UID})(ou=people))", template.fill(newValues("ou", "people")));
+		assertEquals("(objectClass=*)", new FilterTemplate("(objectClass=*)").fill(newValues("uid", "jdoe")));
+	}
+
+	@Test
+	public void testValuesAreNotParsed() {
+		FilterTemplate template = new FilterTemplate("(|(cn={cn})(sn={sn}))");
+		assertEquals("(|(cn={sn}\\2a)(sn=$1))", template.fill(newValues("cn", "{sn}\\2a", "sn", "$1")));
+	}
+
+	@Test
+	public void testBraces() {
+		assertEquals("(cn={x)", new FilterTemplate("(cn={x)").fill(newValues("x", "y")));
+		assertEquals("(cn={y)", new FilterTemplate("(cn={{x})").fill(newValues("x", "y")));
+		assertEquals("(cn=})", new FilterTemplate("(cn=})").fill(newValues("x", "y")));
+	}
+
+	@Test
+	public void testAssertedAttributes() {
+		assertArrayEquals(new String[] { "uid", "ou" },
+						new FilterTemplate("(&(objectClass=inetOrgPerson)(uid={UID})(ou={ou}))").getAssertedAttributes());
+		assertArrayEquals(new String[] { "employeeNumber" }, new FilterTemplate("(employeeNumber={id})").getAssertedAttributes());
+		assertNull(new FilterTemplate("(objectClass=*)").getAssertedAttributes());
+		assertNull(new FilterTemplate("(|(cn={cn})(sn={sn}))").getAssertedAttributes());
+		assertNull(new FilterTemplate("(&(uid={uid})(!(ou=deleted)))").getAssertedAttributes());
+		assertNull(new FilterTemplate("(mail={uid}@lsc-project.org)").getAssertedAttributes());
+		assertNull(new FilterTemplate("(cn~={cn})").getAssertedAttributes());
+	}
+
+	@Test
+	public void testMissingValue() {
+		try {
+			new FilterTemplate("(uid={uid})").fill(newValues("uid", null));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -101,6 +101,33 @@ public class JScriptEvaluatorTest {
 		ScriptingEvaluator.evalToString(task, "src.get()", table);
 	}
 
+	@Test(expected=LscServiceException.class)
+	public void testParametersNotKept() throws LscServiceException {
+		Map<String, Object> table = new HashMap<String, Object>();
+		table.put("srcAttr", new BasicAttribute("a", "b"));
+		assertEquals("b", ScriptingEvaluator.evalToString(task, "srcAttr.get()", table));
+
+		// same compiled expression, but the previous parameters must be gone
+		ScriptingEvaluator.evalToString(task, "srcAttr.get()", new HashMap<String, Object>());
+	}
+
+	@Test
+	public void testGlobalsNotKept() throws LscServiceException {
+		Map<String, Object> table = new HashMap<String, Object>();
+		assertEquals("1 set", ScriptingEvaluator.evalToString(task,
+						"var counter = (typeof counter == 'undefined' ? 0 : counter) + 1;"
+						+ " function defined() { return 'set'; }"
+						+ " implicit = defined(); String(counter) + ' ' + implicit", table));
+
+		// the variables, functions and implicit globals of the previous evaluation must be gone
+		assertEquals("undefined undefined undefined", ScriptingEvaluator.evalToString(task,
+						"typeof counter + ' ' + typeof defined + ' ' + typeof implicit", table));
+		assertEquals("1 set", ScriptingEvaluator.evalToString(task,
+						"var counter = (typeof counter == 'undefined' ? 0 : counter) + 1;"
+						+ " function defined() { return 'set'; }"
+						+ " implicit = defined(); String(counter) + ' ' + implicit", table));
+	}
+
 	@Test
 	public void testOk2() throws LscServiceException {
 		Map<String, Object> table = new HashMap<String, Object>();
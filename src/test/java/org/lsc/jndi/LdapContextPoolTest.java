@@ -0,0 +1,185 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+import javax.naming.spi.InitialContextFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the connections reuse of the LDAP connections pool, without any
+ * directory: contexts are provided by a fake initial context factory.
+ */
+public class LdapContextPoolTest {
+
+	private static final AtomicInteger opened = new AtomicInteger();
+
+	private LdapContextPool pool;
+
+	public static class FakeContextFactory implements InitialContextFactory {
+		public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+			opened.incrementAndGet();
+			return (Context) Proxy.newProxyInstance(LdapContext.class.getClassLoader(),
+							new Class<?>[] { LdapContext.class }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					} else if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	@Before
+	public void setup() {
+		opened.set(0);
+		Properties props = new Properties();
+		props.setProperty(Context.INITIAL_CONTEXT_FACTORY, FakeContextFactory.class.getName());
+		pool = new LdapContextPool(props, 2, 60000);
+	}
+
+	@Test
+	public void testNestedBorrow() throws NamingException {
+		LdapContext ctx = pool.borrow();
+		LdapContext nested = pool.borrow();
+		assertSame(ctx, nested);
+		pool.release(nested);
+		pool.release(ctx);
+		assertEquals(1, opened.get());
+	}
+
+	@Test
+	public void testReuse() throws NamingException {
+		LdapContext ctx = pool.borrow();
+		pool.release(ctx);
+		LdapContext other = pool.borrow();
+		pool.release(other);
+		assertSame(ctx, other);
+		assertEquals(1, opened.get());
+
+		pool.clear();
+		other = pool.borrow();
+		pool.release(other);
+		assertNotSame(ctx, other);
+		assertEquals(2, opened.get());
+	}
+
+	@Test
+	public void testInvalidate() throws NamingException {
+		LdapContext ctx = pool.borrow();
+		LdapContext nested = pool.borrow();
+		pool.invalidate(nested);
+		pool.release(nested);
+		pool.release(ctx);
+
+		// the broken context is not given back
+		LdapContext other = pool.borrow();
+		pool.release(other);
+		assertNotSame(ctx, other);
+		assertEquals(2, opened.get());
+	}
+
+	@Test
+	public void testReleasedAfterClear() throws Exception {
+		final LdapContext ctx = pool.borrow();
+		// another thread clears the pool after a communication error
+		Thread thread = new Thread() {
+			public void run() {
+				pool.clear();
+			}
+		};
+		thread.start();
+		thread.join();
+		pool.release(ctx);
+
+		// the context borrowed before is not given back
+		LdapContext other = pool.borrow();
+		pool.release(other);
+		assertNotSame(ctx, other);
+		assertEquals(2, opened.get());
+	}
+
+	@Test
+	public void testConcurrentBorrow() throws Exception {
+		final LdapContext ctx = pool.borrow();
+		final AtomicReference<LdapContext> other = new AtomicReference<LdapContext>();
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					LdapContext borrowed = pool.borrow();
+					other.set(borrowed);
+					pool.release(borrowed);
+				} catch (NamingException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		pool.release(ctx);
+		assertNotSame(ctx, other.get());
+		assertEquals(2, opened.get());
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Check the entries recorded by {@link FingerprintStore} are skipped until
+ * they change, expire or are purged.
+ */
+public class FingerprintStoreTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("lsc", FingerprintStore.DIRECTORY_SUFFIX);
+		directory.delete();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private static IBean newBean(String id, String... mails) {
+		IBean bean = new SimpleBean();
+		bean.setMainIdentifier(id);
+		Set<Object> values = new LinkedHashSet<Object>();
+		values.addAll(Arrays.asList(mails));
+		bean.setDataset("mail", values);
+		return bean;
+	}
+
+	@Test
+	public void testFingerprint() {
+		byte[] fingerprint = FingerprintStore.fingerprint(newBean("uid=1", "a@lsc-project.org", "b@lsc-project.org"));
+		assertArrayEquals(fingerprint, FingerprintStore.fingerprint(newBean("uid=1", "b@lsc-project.org", "a@lsc-project.org")));
+		assertFalse(Arrays.equals(fingerprint, FingerprintStore.fingerprint(newBean("uid=1", "a@lsc-project.org"))));
+		assertFalse(Arrays.equals(fingerprint, FingerprintStore.fingerprint(newBean("uid=2", "a@lsc-project.org", "b@lsc-project.org"))));
+	}
+
+	@Test
+	public void testUnchangedEntrySkipped() throws LscServiceException {
+		byte[] source = FingerprintStore.fingerprint(newBean("uid=1", "a@lsc-project.org"));
+		byte[] destination = FingerprintStore.fingerprint(newBean("cn=1", "a@lsc-project.org"));
+		FingerprintStore store = new FingerprintStore(directory, FingerprintStore.DEFAULT_MAX_AGE, 1);
+		assertFalse(store.isUnchanged("uid=1", source));
+		store.put("uid=1", source, destination);
+		assertTrue(store.isUnchanged("uid=1", source));
+		assertArrayEquals(destination, store.getDestination("uid=1", source));
+		assertEquals(1, store.getSkipped());
+
+		byte[] changed = FingerprintStore.fingerprint(newBean("uid=1", "b@lsc-project.org"));
+		assertFalse(store.isUnchanged("uid=1", changed));
+		assertNull(store.getDestination("uid=1", changed));
+		store.close();
+
+		store = new FingerprintStore(directory, FingerprintStore.DEFAULT_MAX_AGE, 1);
+		assertTrue(store.isUnchanged("uid=1", source));
+		store.close();
+
+		// a configuration change requires to check all the entries again
+		store = new FingerprintStore(directory, FingerprintStore.DEFAULT_MAX_AGE, 2);
+		assertFalse(store.isUnchanged("uid=1", source));
+		store.put("uid=1", source, null);
+		assertTrue(store.isUnchanged("uid=1", source));
+		assertNull(store.getDestination("uid=1", source));
+		store.remove("uid=1");
+		assertFalse(store.isUnchanged("uid=1", source));
+		store.close();
+	}
+
+	@Test
+	public void testExpiredEntryChecked() throws LscServiceException {
+		byte[] source = FingerprintStore.fingerprint(newBean("uid=1", "a@lsc-project.org"));
+		FingerprintStore store = new FingerprintStore(directory, -1, 1);
+		store.put("uid=1", source, null);
+		assertFalse(store.isUnchanged("uid=1", source));
+		store.close();
+	}
+
+	@Test
+	public void testUnseenEntryPurged() throws LscServiceException, InterruptedException {
+		byte[] source1 = FingerprintStore.fingerprint(newBean("uid=1", "a@lsc-project.org"));
+		byte[] source2 = FingerprintStore.fingerprint(newBean("uid=2", "b@lsc-project.org"));
+		FingerprintStore store = new FingerprintStore(directory, FingerprintStore.DEFAULT_MAX_AGE, 1);
+		store.put("uid=1", source1, null);
+		store.put("uid=2", source2, null);
+		store.close();
+		Thread.sleep(10);
+
+		store = new FingerprintStore(directory, FingerprintStore.DEFAULT_MAX_AGE, 1);
+		assertTrue(store.isUnchanged("uid=2", source2));
+		assertEquals(1, store.purge());
+		assertFalse(store.isUnchanged("uid=1", source1));
+		assertTrue(store.isUnchanged("uid=2", source2));
+		store.close();
+	}
+}
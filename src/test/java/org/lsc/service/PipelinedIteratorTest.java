@@ -0,0 +1,129 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Check the producer/consumer behavior of {@link PipelinedIterator}.
+ */
+public class PipelinedIteratorTest {
+
+	@Test
+	public void testAllItemsInOrder() {
+		PipelinedIterator<Integer> it = new PipelinedIterator<Integer>(2) {
+			@Override
+			protected void produce() {
+				for (int i = 0; i < 100; i++) {
+					put(i);
+				}
+			}
+		}.start("test");
+
+		List<Integer> items = new ArrayList<Integer>();
+		while (it.hasNext()) {
+			items.add(it.next());
+		}
+		assertEquals(100, items.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i), items.get(i));
+		}
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void testFailureAfterItems() {
+		PipelinedIterator<String> it = new PipelinedIterator<String>(10) {
+			@Override
+			protected void produce() throws Exception {
+				put("a");
+				throw new Exception("broken");
+			}
+		}.start("test");
+
+		assertTrue(it.hasNext());
+		assertEquals("a", it.next());
+		try {
+			it.hasNext();
+			fail("The producer failure must be thrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof LscServiceException);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testCloseStopsProducer() throws InterruptedException {
+		final CountDownLatch stopped = new CountDownLatch(1);
+		PipelinedIterator<Integer> it = new PipelinedIterator<Integer>(1) {
+			@Override
+			protected void produce() {
+				try {
+					for (int i = 0; ; i++) {
+						put(i);
+					}
+				} finally {
+					stopped.countDown();
+				}
+			}
+		}.start("test");
+
+		assertEquals(Integer.valueOf(0), it.next());
+		it.close();
+		assertTrue(stopped.await(5, TimeUnit.SECONDS));
+		assertFalse(it.hasNext());
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.Configuration;
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.configuration.DatabaseConnectionType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.TaskType;
+
+/**
+ * Read the source entries of a database, in the INETORGPERSON table of an
+ * in memory HSQLDB database.
+ */
+public class SimpleJdbcSrcServiceTest {
+
+	private static final String TASK_NAME = "db2ldapTestTask";
+
+	private Connection con;
+
+	private TaskType task;
+
+	@Before
+	public void setUp() throws Exception {
+		LscConfiguration.reset();
+		DatabaseConnectionType pc = (DatabaseConnectionType) LscConfiguration.getConnection("src-jdbc");
+		pc.setUrl("jdbc:hsqldb:mem:lsc");
+
+		Class.forName(pc.getDriver()).newInstance();
+		con = DriverManager.getConnection(pc.getUrl(), pc.getUsername(), pc.getPassword());
+		Statement stm = con.createStatement();
+		stm.execute("DROP TABLE INETORGPERSON IF EXISTS");
+		stm.execute("CREATE TABLE INETORGPERSON (id INTEGER PRIMARY KEY, uid VARCHAR(50), sn VARCHAR(50),"
+						+ " givenName VARCHAR(50), cn VARCHAR(100), mail VARCHAR(100), address VARCHAR(255),"
+						+ " telephoneNumber VARCHAR(50), objectClass VARCHAR(50))");
+		for (int i = 1; i <= 5; i++) {
+			stm.execute("INSERT INTO INETORGPERSON (id, uid, sn, givenName, cn, mail) VALUES (" + i + ", 'user" + i
+							+ "', 'User" + i + "', 'Test', 'Test User" + i + "', 'user" + i + "@lsc-project.org')");
+		}
+		stm.close();
+
+		task = LscConfiguration.getTask(TASK_NAME);
+		getCheckpointFile().delete();
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		getCheckpointFile().delete();
+		con.close();
+	}
+
+	private File getCheckpointFile() {
+		return new File(Configuration.getConfigurationDirectory(), TASK_NAME + CheckpointStore.FILE_SUFFIX);
+	}
+
+	private static List<String> getMails(List<Entry<String, LscDatasets>> ids) {
+		List<String> mails = new ArrayList<String>();
+		for (Entry<String, LscDatasets> id : ids) {
+			mails.add(id.getValue().getStringValueAttribute("mail"));
+		}
+		return mails;
+	}
+
+	private static Entry<String, LscDatasets> newId(String mail) {
+		LscDatasets pivots = new LscDatasets();
+		pivots.put("mail", mail);
+		return new AbstractMap.SimpleImmutableEntry<String, LscDatasets>(mail, pivots);
+	}
+
+	@Test
+	public void testGetBeans() throws Exception {
+		task.getDatabaseSourceService().setRequestNameForObjectBatch("getObjectsTestDb2Ldap");
+		Statement stm = con.createStatement();
+		stm.execute("INSERT INTO INETORGPERSON (id, uid, sn, givenName, cn, mail) VALUES (6, 'user6', 'User6', 'Test',"
+						+ " 'Test User6', 'user5@lsc-project.org')");
+		stm.close();
+
+		SimpleJdbcSrcService service = new SimpleJdbcSrcService(task);
+		assertTrue(service.getBatchReadSize() > 1);
+
+		List<Entry<String, LscDatasets>> ids = Arrays.asList(newId("user1@lsc-project.org"), newId("user2@lsc-project.org"),
+						newId("missing@lsc-project.org"), newId("user5@lsc-project.org"));
+		Map<String, IBean> beans = service.getBeans(ids);
+
+		// the missing entry and the entry found twice are left to the single entry reads
+		assertEquals(new HashSet<String>(Arrays.asList("user1@lsc-project.org", "user2@lsc-project.org")), beans.keySet());
+		for (Entry<String, LscDatasets> id : ids.subList(0, 2)) {
+			IBean single = service.getBean(id.getKey(), id.getValue(), true);
+			assertNotNull(single);
+			assertEquals(single.getMainIdentifier(), beans.get(id.getKey()).getMainIdentifier());
+			assertEquals(new HashSet<String>(single.datasets().getAttributesNames()),
+							new HashSet<String>(beans.get(id.getKey()).datasets().getAttributesNames()));
+			assertEquals(single.getDatasetFirstValueById("cn"), beans.get(id.getKey()).getDatasetFirstValueById("cn"));
+		}
+		assertNull(service.getBean(ids.get(2).getKey(), ids.get(2).getValue(), true));
+
+		// without batch object request, all the entries are read one by one
+		task.getDatabaseSourceService().setRequestNameForObjectBatch(null);
+		assertEquals(0, new SimpleJdbcSrcService(task).getBatchReadSize());
+	}
+
+	@Test
+	public void testChangesByPages() throws Exception {
+		task.getDatabaseSourceService().setRequestNameForChanges("getChangesTestDb2Ldap");
+		task.getDatabaseSourceService().setWatermarkAttribute("id");
+
+		SimpleJdbcSrcService service = new SimpleJdbcSrcService(task);
+		assertEquals(Arrays.asList("user1@lsc-project.org", "user2@lsc-project.org"), getMails(service.waitNextIds(2, 0)));
+		// these changes have been synchronized
+		service.checkpoint();
+
+		// the next changes fail, so that the position is not saved anymore
+		assertEquals(Arrays.asList("user3@lsc-project.org", "user4@lsc-project.org"), getMails(service.waitNextIds(2, 0)));
+		assertEquals(Arrays.asList("user5@lsc-project.org"), getMails(service.waitNextIds(2, 0)));
+		assertTrue(service.waitNextIds(2, 0).isEmpty());
+
+		// after a restart, the changes are read again from the saved watermark
+		service = new SimpleJdbcSrcService(task);
+		assertEquals(Arrays.asList("user3@lsc-project.org", "user4@lsc-project.org", "user5@lsc-project.org"),
+						getMails(service.waitNextIds(10, 0)));
+	}
+
+	@Test
+	public void testChangesSharingTheWatermark() throws Exception {
+		// the modifications of a burst share the same timestamp
+		Statement stm = con.createStatement();
+		stm.execute("ALTER TABLE INETORGPERSON ADD COLUMN modified TIMESTAMP");
+		stm.execute("UPDATE INETORGPERSON SET modified = '2012-12-12 16:25:01.000000000' WHERE id < 5");
+		stm.execute("UPDATE INETORGPERSON SET modified = '2012-12-12 16:25:02.000000000' WHERE id = 5");
+		stm.close();
+		task.getDatabaseSourceService().setRequestNameForChanges("getChangesByDateTestDb2Ldap");
+		task.getDatabaseSourceService().setWatermarkAttribute("modified");
+
+		SimpleJdbcSrcService service = new SimpleJdbcSrcService(task);
+		assertEquals(Arrays.asList("user1@lsc-project.org", "user2@lsc-project.org"), getMails(service.waitNextIds(2, 0)));
+		service.checkpoint();
+
+		// the rows sharing the timestamp of the end of the page are not skipped
+		assertEquals(Arrays.asList("user3@lsc-project.org", "user4@lsc-project.org"), getMails(service.waitNextIds(2, 0)));
+		assertEquals(Arrays.asList("user5@lsc-project.org"), getMails(service.waitNextIds(2, 0)));
+		assertTrue(service.waitNextIds(2, 0).isEmpty());
+
+		// the saved position keeps its type after a restart
+		CheckpointStore checkpoints = new CheckpointStore(getCheckpointFile());
+		assertEquals("Timestamp", checkpoints.get("watermark.type"));
+		service = new SimpleJdbcSrcService(task);
+		assertEquals(Arrays.asList("user3@lsc-project.org", "user4@lsc-project.org", "user5@lsc-project.org"),
+						getMails(service.waitNextIds(10, 0)));
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.CommonLdapSyncTest;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.jndi.JndiModificationType;
+import org.lsc.jndi.JndiModifications;
+
+/**
+ * Check the values handed out by blocks are unique and contiguous when
+ * several threads cross the block boundaries.
+ */
+public class SequencesFactoryTest extends CommonLdapSyncTest {
+
+	private static final String DN_SEQUENCE = "cn=sequenceTest," + DESTINATION_DN;
+	private static final String ATTRIBUTE = "employeeNumber";
+	private static final int BLOCK_SIZE = 10;
+	private static final int THREADS = 8;
+
+	@Before
+	public void setup() throws Exception {
+		LscConfiguration.reset();
+		LscConfiguration.getInstance();
+		Assert.assertNotNull(LscConfiguration.getConnection("dst-ldap"));
+		reloadJndiConnections();
+
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY, TASK_NAME);
+		jm.setDistinguishName(DN_SEQUENCE);
+		List<ModificationItem> mis = new ArrayList<ModificationItem>();
+		BasicAttribute objectClass = new BasicAttribute("objectClass", "top");
+		objectClass.add("person");
+		objectClass.add("organizationalPerson");
+		objectClass.add("inetOrgPerson");
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", "sequenceTest")));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("sn", "sequenceTest")));
+		mis.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute(ATTRIBUTE, "0")));
+		jm.setModificationItems(mis);
+		assertTrue(dstJndiServices.apply(jm));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (dstJndiServices.exists(DN_SEQUENCE)) {
+			JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY, TASK_NAME);
+			jm.setDistinguishName(DN_SEQUENCE);
+			dstJndiServices.apply(jm);
+		}
+		LscConfiguration.reset();
+	}
+
+	private Sequence newSequence() {
+		Sequence sequence = new Sequence(dstJndiServices);
+		assertTrue(sequence.load(DN_SEQUENCE, ATTRIBUTE, 0));
+		sequence.setBlockSize(BLOCK_SIZE);
+		return sequence;
+	}
+
+	/**
+	 * Take some values from the sequences, each thread using them in turn
+	 * @return the values, sorted
+	 */
+	private List<Integer> getNextValues(final Sequence[] sequences, final int valuesPerThread) throws InterruptedException {
+		final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			final Sequence sequence = sequences[i % sequences.length];
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < valuesPerThread; j++) {
+						values.add(sequence.getNextValue());
+					}
+				}
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		List<Integer> sorted = new ArrayList<Integer>(values);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	@Test
+	public final void testConcurrentBlocks() throws Exception {
+		Sequence sequence = newSequence();
+
+		// 104 values, the boundary of each block is crossed by concurrent threads
+		List<Integer> values = getNextValues(new Sequence[] { sequence }, 13);
+
+		// no duplicate nor gap
+		assertEquals(THREADS * 13, values.size());
+		for (int i = 0; i < values.size(); i++) {
+			assertEquals(Integer.valueOf(i + 1), values.get(i));
+		}
+		assertEquals(104, sequence.getCurrentValue());
+		// only the last block is reserved beyond the values handed out
+		checkAttributeValues(DN_SEQUENCE, ATTRIBUTE, Arrays.asList("110"));
+
+		sequence.release();
+		checkAttributeValues(DN_SEQUENCE, ATTRIBUTE, Arrays.asList("104"));
+		assertEquals(105, sequence.getNextValue());
+	}
+
+	@Test
+	public final void testSharedSequence() throws Exception {
+		// two processes reserving blocks in the same entry
+		Sequence sequence = newSequence();
+		Sequence otherSequence = newSequence();
+
+		List<Integer> values = getNextValues(new Sequence[] { sequence, otherSequence }, 13);
+
+		Set<Integer> uniqueValues = new TreeSet<Integer>(values);
+		assertEquals(values.size(), uniqueValues.size());
+		assertTrue(values.get(0) > 0);
+		// at most the end of the current block of each process is unused
+		assertTrue(values.get(values.size() - 1) <= values.size() + 2 * BLOCK_SIZE);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Check the type-aware comparisons of {@link SetUtils}.
+ */
+public class SetUtilsTest {
+
+	private static Set<Object> values(Object... values) {
+		return new LinkedHashSet<Object>(Arrays.asList(values));
+	}
+
+	@Test
+	public void testFindMissingNeedles() {
+		Set<Object> missing = SetUtils.findMissingNeedles(values("a", "b"), values("b", "c"));
+		assertEquals(values("c"), missing);
+
+		assertTrue(SetUtils.findMissingNeedles(values("a"), null).isEmpty());
+		assertEquals(values("a"), SetUtils.findMissingNeedles(null, values("a")));
+	}
+
+	@Test
+	public void testBinaryAndStringValues() {
+		// a binary value matches a String with the same content, both ways
+		assertTrue(SetUtils.setContainsAll(values("a".getBytes(), "b"), values("a", "b".getBytes())));
+		assertTrue(SetUtils.doSetsMatch(values("a".getBytes(), "b"), values("b".getBytes(), "a")));
+		assertFalse(SetUtils.doSetsMatch(values("a".getBytes()), values("b")));
+
+		// other types are only equal to themselves
+		assertFalse(SetUtils.setContainsAll(values("1"), values(1)));
+		assertTrue(SetUtils.setContainsAll(values(1, "1"), values(1)));
+	}
+
+	@Test
+	public void testDoSetsMatchBothWays() {
+		// same size, all values on the left found on the right, but not the opposite
+		assertFalse(SetUtils.doSetsMatch(values("a", "a".getBytes()), values("a", "b")));
+		assertFalse(SetUtils.doSetsMatch(values("a", "b"), values("a", "a".getBytes())));
+	}
+
+	@Test
+	public void testDiff() {
+		SetUtils.Difference diff = SetUtils.diff(values("a", "b", "c".getBytes()), values("c", "d"));
+		assertEquals(values("d"), diff.getAddedValues());
+		assertEquals(values("a", "b"), diff.getRemovedValues());
+		assertFalse(diff.isEmpty());
+
+		assertTrue(SetUtils.diff(values("a"), values("a".getBytes())).isEmpty());
+	}
+
+	@Test(timeout = 10000)
+	public void testLargeSets() {
+		Set<Object> current = new HashSet<Object>();
+		Set<Object> wanted = new HashSet<Object>();
+		for (int i = 0; i < 150000; i++) {
+			current.add("uid=user" + i + ",ou=People,dc=lsc-project,dc=org");
+			wanted.add("uid=user" + (i + 10) + ",ou=People,dc=lsc-project,dc=org");
+		}
+		SetUtils.Difference diff = SetUtils.diff(current, wanted);
+		assertEquals(10, diff.getAddedValues().size());
+		assertEquals(10, diff.getRemovedValues().size());
+		assertFalse(SetUtils.doSetsMatch(current, wanted));
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscDatasetModification;
+import org.lsc.LscDatasetModification.LscDatasetModificationType;
+import org.lsc.LscModificationType;
+import org.lsc.LscModifications;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.LayoutBase;
+
+/**
+ * Check that {@link AsyncAuditAppender} writes every audited event, blocks
+ * the callers when its buffer is full, and writes the same file as the
+ * synchronous {@link FileAppender}.
+ */
+public class AsyncAuditAppenderTest {
+
+	private LoggerContext lc = new LoggerContext();
+	private Logger LOGGER = lc.getLogger(AsyncAuditAppender.class);
+
+	/* The LDIF records are dated when they are formatted */
+	@Mocked java.util.Date date;
+
+	private File file;
+	private File syncFile;
+
+	@Before
+	public void setUp() throws IOException {
+		new NonStrictExpectations() {
+			{
+				date.toString(); result = "Wed Dec 12 16:25:01 CET 2012";
+			}
+		};
+		file = File.createTempFile("lsc", ".audit");
+		syncFile = File.createTempFile("lsc", ".audit");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		syncFile.delete();
+	}
+
+	private ILoggingEvent makeLoggingEvent(String message, Object object) {
+		return new LoggingEvent("org.lsc",
+						LOGGER, Level.INFO, message,
+						null, new Object[]{object});
+	}
+
+	private ILoggingEvent makeModificationEvent(LscModificationType type, String task, int i) {
+		LscModifications lm = new LscModifications(type, task);
+		lm.setMainIdentifer("cn=test" + i + ",o=testing");
+		List<LscDatasetModification> mi = new ArrayList<LscDatasetModification>();
+		mi.add(new LscDatasetModification(LscDatasetModificationType.ADD_VALUES, "givenName", Arrays.asList(new Object[] { "Jon" + i } )));
+		mi.add(new LscDatasetModification(LscDatasetModificationType.REPLACE_VALUES, "cn", Arrays.asList(new Object[] { "Tester CN " + i } )));
+		lm.setLscAttributeModifications(mi);
+		return makeLoggingEvent(lm.toString(), lm);
+	}
+
+	private List<ILoggingEvent> makeLoggingEvents() {
+		List<ILoggingEvent> events = new ArrayList<ILoggingEvent>();
+		for (int i = 0; i < 100; i++) {
+			events.add(makeModificationEvent(LscModificationType.CREATE_OBJECT, "testTask", i));
+			events.add(makeModificationEvent(LscModificationType.UPDATE_OBJECT, "testTask", i));
+			events.add(makeModificationEvent(LscModificationType.CREATE_OBJECT, "notInList", i));
+			events.add(makeLoggingEvent("random string " + i, null));
+		}
+		return events;
+	}
+
+	private CsvLayout makeCsvLayout() {
+		CsvLayout layout = new CsvLayout();
+		layout.setSeparator(";");
+		layout.setLogOperations("create");
+		layout.setTaskNames("testTask");
+		layout.setAttrs("givenName;sn;dn;;cn");
+		layout.setContext(lc);
+		layout.start();
+		return layout;
+	}
+
+	private LdifLayout makeLdifLayout() {
+		LdifLayout layout = new LdifLayout();
+		layout.setPattern("%m%n");
+		layout.setLogOperations("create,update");
+		layout.setContext(lc);
+		layout.start();
+		return layout;
+	}
+
+	private AsyncAuditAppender makeAppender(Layout<ILoggingEvent> layout, int bufferSize) {
+		AsyncAuditAppender appender = new AsyncAuditAppender();
+		appender.setName("asyncAudit");
+		appender.setContext(lc);
+		appender.setFile(file.getPath());
+		appender.setAppend(false);
+		appender.setBufferSize(bufferSize);
+		appender.setLayout(layout);
+		appender.start();
+		assertTrue(appender.isStarted());
+		return appender;
+	}
+
+	private void assertSameAsFileAppender(Layout<ILoggingEvent> asyncLayout, Layout<ILoggingEvent> syncLayout) throws IOException {
+		// configured as the synchronous audit in Configuration
+		FileAppender<ILoggingEvent> fileAppender = new FileAppender<ILoggingEvent>();
+		fileAppender.setName("audit");
+		fileAppender.setContext(lc);
+		fileAppender.setAppend(false);
+		fileAppender.setFile(syncFile.getPath());
+		fileAppender.setLayout(syncLayout);
+		fileAppender.start();
+		assertTrue(fileAppender.isStarted());
+
+		AsyncAuditAppender appender = makeAppender(asyncLayout, 16);
+		for (ILoggingEvent event : makeLoggingEvents()) {
+			fileAppender.doAppend(event);
+			appender.doAppend(event);
+		}
+		fileAppender.stop();
+		appender.stop();
+
+		byte[] expected = FileUtils.readFileToByteArray(syncFile);
+		assertTrue(expected.length > 0);
+		assertArrayEquals(expected, FileUtils.readFileToByteArray(file));
+	}
+
+	@Test
+	public void testPendingEventsWrittenOnStop() throws IOException {
+		CsvLayout layout = makeCsvLayout();
+		AsyncAuditAppender appender = makeAppender(layout, AsyncAuditAppender.DEFAULT_BUFFER_SIZE);
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			appender.doAppend(makeModificationEvent(LscModificationType.CREATE_OBJECT, "testTask", i));
+			expected.append("Jon").append(i).append(";;cn=test").append(i).append(",o=testing;;Tester CN ").append(i).append("\n");
+		}
+		// stop without waiting for the writer
+		appender.stop();
+		assertFalse(appender.isStarted());
+
+		assertEquals(expected.toString(), FileUtils.readFileToString(file, "utf-8"));
+	}
+
+	@Test
+	public void testFullBufferBlocks() throws Exception {
+		final BlockingLayout layout = new BlockingLayout();
+		layout.setContext(lc);
+		layout.start();
+		final AsyncAuditAppender appender = makeAppender(layout, 1);
+
+		// the writer takes the first event and waits while formatting it
+		appender.doAppend(makeLoggingEvent("0", null));
+		assertTrue(layout.formatting.await(5, TimeUnit.SECONDS));
+		// the second one fills the buffer
+		appender.doAppend(makeLoggingEvent("1", null));
+
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				appender.doAppend(makeLoggingEvent("2", null));
+			}
+		});
+		producer.start();
+		producer.join(1000);
+		assertTrue("The event must wait for some room in the buffer", producer.isAlive());
+
+		layout.released.countDown();
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		appender.stop();
+
+		assertEquals("0\n1\n2\n", FileUtils.readFileToString(file, "utf-8"));
+	}
+
+	@Test
+	public void testCsvSameAsFileAppender() throws IOException {
+		assertSameAsFileAppender(makeCsvLayout(), makeCsvLayout());
+	}
+
+	@Test
+	public void testLdifSameAsFileAppender() throws IOException {
+		assertSameAsFileAppender(makeLdifLayout(), makeLdifLayout());
+	}
+
+	/**
+	 * Layout waiting to be released when formatting its first event
+	 */
+	private static class BlockingLayout extends LayoutBase<ILoggingEvent> implements AuditFormatter {
+
+		private final CountDownLatch formatting = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		public boolean isAudited(ILoggingEvent event) {
+			return true;
+		}
+
+		public void format(ILoggingEvent event, StringBuilder out) {
+			formatting.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			out.append(event.getMessage()).append("\n");
+		}
+
+		public String doLayout(ILoggingEvent event) {
+			StringBuilder out = new StringBuilder();
+			format(event, out);
+			return out.toString();
+		}
+	}
+}